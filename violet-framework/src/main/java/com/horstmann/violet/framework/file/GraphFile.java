@@ -1,7 +1,10 @@
 package com.horstmann.violet.framework.file;
 
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.File;
+import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
@@ -9,27 +12,39 @@ import java.text.MessageFormat;
 import java.text.SimpleDateFormat;
 import java.util.ArrayList;
 import java.util.Calendar;
+import java.util.Collection;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
 
 import javax.imageio.ImageIO;
 import javax.swing.ImageIcon;
 import javax.swing.JOptionPane;
+import javax.swing.SwingUtilities;
 
 import com.horstmann.violet.framework.dialog.DialogFactory;
 import com.horstmann.violet.framework.file.chooser.IFileChooserService;
 import com.horstmann.violet.framework.file.export.FileExportService;
 import com.horstmann.violet.framework.file.naming.ExtensionFilter;
 import com.horstmann.violet.framework.file.naming.FileNamingService;
+import com.horstmann.violet.framework.file.persistence.BinaryPersistenceService;
+import com.horstmann.violet.framework.file.persistence.EditJournal;
 import com.horstmann.violet.framework.file.persistence.IFilePersistenceService;
 import com.horstmann.violet.framework.file.persistence.IFileReader;
 import com.horstmann.violet.framework.file.persistence.IFileWriter;
-import com.horstmann.violet.framework.file.persistence.JFileWriter;
+import com.horstmann.violet.framework.file.persistence.XStreamBasedPersistenceService;
 import com.horstmann.violet.framework.injection.bean.ManiocFramework.BeanInjector;
 import com.horstmann.violet.framework.injection.bean.ManiocFramework.InjectedBean;
 import com.horstmann.violet.framework.injection.resources.ResourceBundleInjector;
 import com.horstmann.violet.framework.injection.resources.annotation.ResourceBundleBean;
 import com.horstmann.violet.framework.printer.PrintEngine;
 import com.horstmann.violet.product.diagram.abstracts.IGraph;
+import com.horstmann.violet.product.diagram.abstracts.edge.IEdge;
+import com.horstmann.violet.product.diagram.abstracts.node.INode;
 
 public class GraphFile implements IGraphFile
 {
@@ -49,6 +64,7 @@ public class GraphFile implements IGraphFile
 
 			this.autoSaveFile = new File(this.autoSaveDirectory + this.autoSaveFilename);
 			this.autoSaveFile.createNewFile();
+			this.journal = new EditJournal(EditJournal.getJournalFile(this.autoSaveFile));
         }
         catch (Exception e)
         {
@@ -74,11 +90,12 @@ public class GraphFile implements IGraphFile
         InputStream in = fileOpener.getInputStream();
         if (in != null)
         {
-			this.graph = this.filePersistenceService.read(in);
+			this.graph = getPersistenceService(file.getFilename()).read(in);
 			this.autoSaveFilename = file.getFilename();
 
 			this.autoSaveFile = new File(this.autoSaveDirectory + this.autoSaveFilename);
 			this.autoSaveFile.createNewFile();
+			this.journal = new EditJournal(EditJournal.getJournalFile(this.autoSaveFile));
         }
         else
         {
@@ -109,6 +126,7 @@ public class GraphFile implements IGraphFile
     public void setSaveRequired()
     {
         this.isSaveRequired = true;
+        this.hasUnjournaledChanges = true;
         fireGraphModified();
     }
 
@@ -140,62 +158,417 @@ public class GraphFile implements IGraphFile
             saveToNewLocation();
             return;
         }
-        try
+        if (this.fileChooserService.isWebStart())
         {
             IFileWriter fileSaver = getFileSaver(false);
-            OutputStream outputStream = fileSaver.getOutputStream();
-            this.filePersistenceService.write(this.graph, outputStream);
-            this.isSaveRequired = false;
-            fireGraphSaved();
-            this.currentFilename = fileSaver.getFileDefinition().getFilename();
-            this.currentDirectory = fileSaver.getFileDefinition().getDirectory();
+            if (fileSaver != null)
+            {
+                scheduleSave(null, fileSaver, false);
+            }
+            return;
         }
-        catch (Exception e)
+        scheduleSave(new File(this.currentDirectory, this.currentFilename), null, false);
+    }
+
+    /**
+     * Writes a whole backup (a checkpoint) only when the journal can't be used instead : before the first checkpoint,
+     * after changes which couldn't be journaled, when the journal becomes too long to replay quickly or when the last
+     * checkpoint is old.
+     */
+    @Override
+    public void autoSave()
+    {
+        if (!autoSaveFile.exists())
         {
-            throw new RuntimeException(e);
+            return;
         }
+        long now = System.currentTimeMillis();
+        boolean isCheckpointNeeded = !this.isCheckpointRequested || this.hasUnjournaledChanges
+                || this.journal.getLength() > MAX_JOURNAL_LENGTH || now - this.lastCheckpointTime > MAX_CHECKPOINT_AGE;
+        if (!isCheckpointNeeded)
+        {
+            return;
+        }
+        this.isCheckpointRequested = true;
+        this.hasUnjournaledChanges = false;
+        this.lastCheckpointTime = now;
+        scheduleSave(autoSaveFile, null, true);
     }
-    
-	@Override
-	public void autoSave() {
-		try {
-			if (autoSaveFile.exists()) {
-				JFileWriter jfilewriter = new JFileWriter(autoSaveFile);
-				this.filePersistenceService.write(this.graph, jfilewriter.getOutputStream());
-			}
-		} catch (Exception e) {
-			throw new RuntimeException(e);
-		}
-	}
-	
-	@Override
-	public void removeBackup() {
-		if (autoSaveFile.exists())
-			autoSaveFile.delete();
-	}
 
+    /**
+     * Records are made here, from the graph as it is now, and appended in background after the saves already
+     * requested. As a checkpoint clears the journal once it is written, the journal only holds the changes made after
+     * the snapshot of the last checkpoint (or a few more, which are replayed without effect).
+     */
     @Override
-    public void saveToNewLocation()
+    public void journalChanges(Collection<INode> nodes, Collection<IEdge> edges)
     {
-        try
+        if (!this.isCheckpointRequested)
+        {
+            // Nothing to replay the changes onto : the next autosave writes them in a checkpoint
+            this.hasUnjournaledChanges = true;
+            return;
+        }
+        final byte[] record = this.journal.createRecord(this.graph, nodes, edges);
+        this.hasUnjournaledChanges = false;
+        SAVE_EXECUTOR.execute(new Runnable()
         {
-            IFileWriter fileSaver = getFileSaver(true);
-            if (fileSaver == null)
+            public void run()
             {
-                // This appends when the action is cancelled
-                return;
+                try
+                {
+                    journal.append(record);
+                }
+                catch (IOException e)
+                {
+                    hasUnjournaledChanges = true;
+                }
             }
-            OutputStream outputStream = fileSaver.getOutputStream();
-            this.filePersistenceService.write(this.graph, outputStream);
-            this.isSaveRequired = false;
+        });
+    }
+
+    @Override
+    public void removeBackup()
+    {
+        waitForPendingSaves();
+        if (autoSaveFile.exists())
+        {
+            autoSaveFile.delete();
+        }
+        try
+        {
+            this.journal.clear();
+        }
+        catch (IOException e)
+        {
+            // Will be deleted at next startup
+        }
+    }
+
+    @Override
+    public void saveToNewLocation()
+    {
+        IFileWriter fileSaver = getFileSaver(true);
+        if (fileSaver == null)
+        {
+            // This appends when the action is cancelled
+            return;
+        }
+        try
+        {
             this.currentFilename = fileSaver.getFileDefinition().getFilename();
             this.currentDirectory = fileSaver.getFileDefinition().getDirectory();
-            fireGraphSaved();
         }
         catch (IOException e1)
         {
             String message = MessageFormat.format(fileExportErrorMessage, e1.getMessage());
             JOptionPane.showMessageDialog(null, message, fileExportError, JOptionPane.ERROR_MESSAGE);
+            return;
+        }
+        scheduleSave(null, fileSaver, false);
+    }
+
+    @Override
+    public boolean waitForPendingSaves()
+    {
+        try
+        {
+            SAVE_EXECUTOR.submit(new Runnable()
+            {
+                public void run()
+                {
+                    // Saves are written in turn, so all the previous ones are done when this one runs
+                }
+            }).get();
+        }
+        catch (InterruptedException e)
+        {
+            Thread.currentThread().interrupt();
+        }
+        catch (ExecutionException e)
+        {
+            throw new RuntimeException(e);
+        }
+        return !this.isLastSaveFailed;
+    }
+
+    /**
+     * @param filename
+     * @return the service reading and writing this kind of file
+     */
+    private IFilePersistenceService getPersistenceService(String filename)
+    {
+        if (this.fileNamingService.isBinaryFile(filename))
+        {
+            return this.binaryPersistenceService;
+        }
+        return this.filePersistenceService;
+    }
+
+    /**
+     * Takes a snapshot of the graph and hands it to the background writer. The snapshot is the graph serialized by
+     * XStream : it is made here, on the thread which modifies the graph, so it is consistent, and the writer rebuilds
+     * its own copy of the graph from it to render the file (image included) without touching the displayed one. When
+     * the same file is still waiting for a previous snapshot, this snapshot replaces it instead of queuing another
+     * write.
+     *
+     * @param file local file to replace or null to write to fileSaver
+     * @param fileSaver writer to use when file is null
+     * @param isBackup true for an autosave (which doesn't change the save state of the graph)
+     */
+    private void scheduleSave(File file, IFileWriter fileSaver, boolean isBackup)
+    {
+        long requestTime = System.nanoTime();
+        ByteArrayOutputStream snapshot = new ByteArrayOutputStream();
+        this.snapshotService.write(this.graph, snapshot);
+        if (!isBackup)
+        {
+            this.isSaveRequired = false;
+            this.isLastSaveFailed = false;
+        }
+        synchronized (this.queuedSaves)
+        {
+            this.lastSnapshotDuration = System.nanoTime() - requestTime;
+            SaveTask queuedSave = file == null ? null : this.queuedSaves.get(file);
+            if (queuedSave != null)
+            {
+                queuedSave.snapshot = snapshot.toByteArray();
+                this.coalescedSaveCount++;
+                return;
+            }
+            // Backups are always restored with the default service
+            IFilePersistenceService persistenceService = isBackup ? this.filePersistenceService : getPersistenceService(this.currentFilename);
+            SaveTask saveTask = new SaveTask(file, fileSaver, persistenceService, isBackup, snapshot.toByteArray(), requestTime);
+            if (file != null)
+            {
+                this.queuedSaves.put(file, saveTask);
+            }
+            SAVE_EXECUTOR.execute(saveTask);
+        }
+    }
+
+    /**
+     * Writes a whole file content to a temporary file, then renames it to replace the target file, so that the target
+     * file is either the previous version or the new one, never a partial one.
+     *
+     * @param file
+     * @param content
+     * @throws IOException
+     */
+    private static void replaceFile(File file, ByteArrayOutputStream content) throws IOException
+    {
+        File directory = file.getAbsoluteFile().getParentFile();
+        File temporaryFile = File.createTempFile("." + file.getName() + ".", ".tmp", directory);
+        try
+        {
+            FileOutputStream out = new FileOutputStream(temporaryFile);
+            try
+            {
+                content.writeTo(out);
+                out.getFD().sync();
+            }
+            finally
+            {
+                out.close();
+            }
+            if (!temporaryFile.renameTo(file))
+            {
+                // Some platforms (Windows) don't rename over an existing file
+                if (!file.delete() || !temporaryFile.renameTo(file))
+                {
+                    throw new IOException("Unable to replace file " + file.getAbsolutePath());
+                }
+            }
+        }
+        finally
+        {
+            if (temporaryFile.exists())
+            {
+                temporaryFile.delete();
+            }
+        }
+    }
+
+    /**
+     * Background writing of a snapshot
+     */
+    private class SaveTask implements Runnable
+    {
+        private SaveTask(File file, IFileWriter fileSaver, IFilePersistenceService persistenceService, boolean isBackup, byte[] snapshot,
+                long requestTime)
+        {
+            this.file = file;
+            this.fileSaver = fileSaver;
+            this.persistenceService = persistenceService;
+            this.isBackup = isBackup;
+            this.snapshot = snapshot;
+            this.requestTime = requestTime;
+        }
+
+        public void run()
+        {
+            byte[] content;
+            synchronized (queuedSaves)
+            {
+                if (this.file != null)
+                {
+                    queuedSaves.remove(this.file);
+                }
+                content = this.snapshot;
+            }
+            try
+            {
+                IGraph graphCopy = snapshotService.read(new ByteArrayInputStream(content));
+                ByteArrayOutputStream fileContent = new ByteArrayOutputStream();
+                this.persistenceService.write(graphCopy, fileContent);
+                if (this.file != null)
+                {
+                    replaceFile(this.file, fileContent);
+                }
+                else
+                {
+                    OutputStream out = this.fileSaver.getOutputStream();
+                    try
+                    {
+                        fileContent.writeTo(out);
+                    }
+                    finally
+                    {
+                        out.close();
+                    }
+                }
+                if (this.isBackup)
+                {
+                    // The new checkpoint includes all the changes journaled before
+                    journal.clear();
+                }
+                onSaveDone(this);
+            }
+            catch (Exception e)
+            {
+                onSaveFailed(this, e);
+            }
+        }
+
+        private final File file;
+        private final IFileWriter fileSaver;
+        private final IFilePersistenceService persistenceService;
+        private final boolean isBackup;
+        private final long requestTime;
+        private byte[] snapshot;
+    }
+
+    /**
+     * Records latency and tells listeners (on the event dispatch thread) that a save is written
+     *
+     * @param saveTask
+     */
+    private void onSaveDone(SaveTask saveTask)
+    {
+        synchronized (this.queuedSaves)
+        {
+            this.lastSaveLatency = System.nanoTime() - saveTask.requestTime;
+            this.totalSaveLatency += this.lastSaveLatency;
+            this.saveCount++;
+        }
+        if (saveTask.isBackup)
+        {
+            return;
+        }
+        SwingUtilities.invokeLater(new Runnable()
+        {
+            public void run()
+            {
+                fireGraphSaved();
+            }
+        });
+    }
+
+    /**
+     * Marks the graph as still to be saved and tells the user and listeners (on the event dispatch thread) that a save
+     * failed
+     *
+     * @param saveTask
+     * @param e
+     */
+    private void onSaveFailed(final SaveTask saveTask, final Exception e)
+    {
+        if (!saveTask.isBackup)
+        {
+            this.isSaveRequired = true;
+            this.isLastSaveFailed = true;
+        }
+        else
+        {
+            this.isCheckpointRequested = false;
+            this.hasUnjournaledChanges = true;
+        }
+        SwingUtilities.invokeLater(new Runnable()
+        {
+            public void run()
+            {
+                fireGraphSaveFailed(e);
+                if (!saveTask.isBackup)
+                {
+                    String message = MessageFormat.format(fileExportErrorMessage, e.getMessage());
+                    JOptionPane.showMessageDialog(null, message, fileExportError, JOptionPane.ERROR_MESSAGE);
+                }
+            }
+        });
+    }
+
+    /**
+     * @return number of saves and autosaves written
+     */
+    public long getSaveCount()
+    {
+        synchronized (this.queuedSaves)
+        {
+            return this.saveCount;
+        }
+    }
+
+    /**
+     * @return number of saves and autosaves merged into a save which was still waiting to be written
+     */
+    public long getCoalescedSaveCount()
+    {
+        synchronized (this.queuedSaves)
+        {
+            return this.coalescedSaveCount;
+        }
+    }
+
+    /**
+     * @return time (in nanoseconds) from the request of the last written save to the end of its writing
+     */
+    public long getLastSaveLatency()
+    {
+        synchronized (this.queuedSaves)
+        {
+            return this.lastSaveLatency;
+        }
+    }
+
+    /**
+     * @return average time (in nanoseconds) from the request of a save to the end of its writing
+     */
+    public long getAverageSaveLatency()
+    {
+        synchronized (this.queuedSaves)
+        {
+            return this.saveCount == 0 ? 0 : this.totalSaveLatency / this.saveCount;
+        }
+    }
+
+    /**
+     * @return time (in nanoseconds) spent by the last save on the calling thread to take the snapshot of the graph
+     */
+    public long getLastSnapshotDuration()
+    {
+        synchronized (this.queuedSaves)
+        {
+            return this.lastSnapshotDuration;
         }
     }
 
@@ -216,9 +589,10 @@ public class GraphFile implements IGraphFile
             if (isAskedForNewLocation)
             {
                 ExtensionFilter extensionFilter = this.fileNamingService.getExtensionFilter(this.graph);
+                ExtensionFilter binaryExtensionFilter = this.fileNamingService.getBinaryExtensionFilter();
                 ExtensionFilter[] array =
                 {
-                    extensionFilter
+                    binaryExtensionFilter, extensionFilter
                 };
                 return this.fileChooserService.chooseAndGetFileWriter(array);
             }
@@ -264,6 +638,22 @@ public class GraphFile implements IGraphFile
         }
     }
 
+    /**
+     * Sends an event to listeners when a save has failed
+     *
+     * @param e cause
+     */
+    private void fireGraphSaveFailed(Exception e)
+    {
+        synchronized (listeners)
+        {
+            for (IGraphFileListener listener : listeners)
+            {
+                listener.onFileSaveFailed(e);
+            }
+        }
+    }
+
     /**
      * Sends an event to listeners when the graph has been saved
      */
@@ -309,7 +699,14 @@ public class GraphFile implements IGraphFile
 
             try
             {
-                ImageIO.write(FileExportService.getImage(this.graph), format, out);
+                if ("png".equalsIgnoreCase(format))
+                {
+                    FileExportService.exportToPng(this.graph, out);
+                }
+                else
+                {
+                    ImageIO.write(FileExportService.getImage(this.graph), format, out);
+                }
             }
             finally
             {
@@ -328,6 +725,26 @@ public class GraphFile implements IGraphFile
         FileExportService.exportToPdf(graph, out);
     }
 
+    @Override
+    public void exportToSvg(OutputStream out)
+    {
+        try
+        {
+            try
+            {
+                FileExportService.exportToSvg(this.graph, out);
+            }
+            finally
+            {
+                out.close();
+            }
+        }
+        catch (IOException e)
+        {
+            throw new RuntimeException(e);
+        }
+    }
+
     @Override
     public void exportToPrinter()
     {
@@ -349,7 +766,9 @@ public class GraphFile implements IGraphFile
     private String currentDirectory;
     private final String autoSaveDirectory = System.getProperty("user.home") + File.separator + "VioletUML" + File.separator;
 
-    private boolean isSaveRequired = false;
+    private volatile boolean isSaveRequired = false;
+
+    private volatile boolean isLastSaveFailed = false;
 
     @ResourceBundleBean(key = "dialog.export_to_clipboard.icon")
     private ImageIcon clipBoardDialogIcon;
@@ -375,6 +794,8 @@ public class GraphFile implements IGraphFile
     @InjectedBean
     private IFilePersistenceService filePersistenceService;
 
+    private final IFilePersistenceService binaryPersistenceService = new BinaryPersistenceService();
+
     @ResourceBundleBean(key = "file.export.error.message")
     private String fileExportErrorMessage;
 
@@ -387,4 +808,50 @@ public class GraphFile implements IGraphFile
     private List<IGraphFileListener> listeners = new ArrayList<IGraphFileListener>();
 
     private File autoSaveFile;
+
+    /**
+     * Changes made since the last checkpoint of the backup
+     */
+    private EditJournal journal;
+
+    private volatile boolean isCheckpointRequested = false;
+
+    /**
+     * True when some changes are neither in the last checkpoint nor in the journal
+     */
+    private volatile boolean hasUnjournaledChanges = false;
+
+    private long lastCheckpointTime;
+
+    /**
+     * Makes the snapshots of the graph
+     */
+    private final XStreamBasedPersistenceService snapshotService = new XStreamBasedPersistenceService();
+
+    /**
+     * Saves waiting to be written, by file
+     */
+    private final Map<File, SaveTask> queuedSaves = new HashMap<File, SaveTask>();
+
+    private long saveCount;
+    private long coalescedSaveCount;
+    private long lastSaveLatency;
+    private long totalSaveLatency;
+    private long lastSnapshotDuration;
+
+    private static final long MAX_JOURNAL_LENGTH = 1024 * 1024;
+    private static final long MAX_CHECKPOINT_AGE = 10 * 60 * 1000;
+
+    /**
+     * Writes the saves of all the files in turn, out of the event dispatch thread
+     */
+    private static final ExecutorService SAVE_EXECUTOR = Executors.newSingleThreadExecutor(new ThreadFactory()
+    {
+        public Thread newThread(Runnable runnable)
+        {
+            Thread thread = new Thread(runnable, "GraphFileSaver");
+            thread.setDaemon(true);
+            return thread;
+        }
+    });
 }
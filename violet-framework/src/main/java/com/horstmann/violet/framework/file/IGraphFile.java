@@ -1,8 +1,11 @@
 package com.horstmann.violet.framework.file;
 
 import java.io.OutputStream;
+import java.util.Collection;
 
 import com.horstmann.violet.product.diagram.abstracts.IGraph;
+import com.horstmann.violet.product.diagram.abstracts.edge.IEdge;
+import com.horstmann.violet.product.diagram.abstracts.node.INode;
 
 public interface IGraphFile extends IFile
 {
@@ -26,14 +29,22 @@ public interface IGraphFile extends IFile
     
     
     /**
-     * Saves the graph
+     * Saves the graph. The graph is captured immediately and written in background : listeners are informed when it
+     * is written or when it failed.
      */
     public abstract void save();
 
     /**
-     * Saves the graph to a new URI (thiw will open a file chooser)
+     * Saves the graph to a new URI (thiw will open a file chooser). As save(), it is written in background.
      */
     public abstract void saveToNewLocation();
+
+    /**
+     * Waits until all the requested saves and autosaves are written
+     *
+     * @return false if the last save of this graph failed
+     */
+    public abstract boolean waitForPendingSaves();
     
     /**
      * Adds a listener to be informed each time the graph is modified or saved
@@ -70,6 +81,13 @@ public interface IGraphFile extends IFile
      */
     public abstract void exportToPdf(OutputStream out);
 
+    /**
+     * Exports the current graph to a SVG file.
+     *
+     * @param out the output stream
+     */
+    public abstract void exportToSvg(OutputStream out);
+
     /**
      * Prints the graph
      * 
@@ -87,6 +105,22 @@ public interface IGraphFile extends IFile
      */
     public String getDirectory();
     
+    /**
+     * Saves a backup of the graph (written in background as save())
+     */
     public abstract void autoSave();
+
+    /**
+     * Records the new state of changed elements in the journal of the backup, so that they are recovered after a crash
+     * without writing the whole backup again
+     * 
+     * @param nodes nodes added, removed or modified
+     * @param edges edges added, removed or modified
+     */
+    public abstract void journalChanges(Collection<INode> nodes, Collection<IEdge> edges);
+
+    /**
+     * Removes the backup, once the pending saves are written
+     */
     public abstract void removeBackup();
 }
\ No newline at end of file
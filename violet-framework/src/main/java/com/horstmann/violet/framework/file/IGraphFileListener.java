@@ -19,4 +19,11 @@ public interface IGraphFileListener
      */
     public void onFileSaved();
 
+    /**
+     * Invoked when a save or a backup of the graph couldn't be written
+     * 
+     * @param e cause
+     */
+    public void onFileSaveFailed(Exception e);
+
 }
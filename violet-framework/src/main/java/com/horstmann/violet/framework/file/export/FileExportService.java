@@ -30,6 +30,8 @@ import org.freehep.graphicsio.pdf.PDFGraphics2D;
 import java.awt.*;
 import java.awt.geom.Rectangle2D;
 import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+import java.io.IOException;
 import java.io.OutputStream;
 
 public class FileExportService
@@ -55,6 +57,78 @@ public class FileExportService
         return image;
     }
 
+    /**
+     * Writes the graph as a PNG image without drawing it in a whole image : it is drawn tile by tile, each band of
+     * tiles being encoded before the next one is drawn. So memory only depends on the image width, not on its area.
+     * Pixels are the same as the ones of getImage().
+     *
+     * @param graph
+     * @param out where the image is written (not closed)
+     * @throws IOException
+     */
+    public static void exportToPng(IGraph graph, OutputStream out) throws IOException
+    {
+        Rectangle2D bounds = graph.getClipBounds();
+        int width = (int) bounds.getWidth() + 1;
+        int height = (int) bounds.getHeight() + 1;
+        int tileWidth = Math.min(TILE_WIDTH, width);
+        int tileHeight = Math.min(TILE_HEIGHT, height);
+
+        PngStreamWriter pngWriter = new PngStreamWriter(out, width, height);
+        BufferedImage tile = new BufferedImage(tileWidth, tileHeight, BufferedImage.TYPE_INT_RGB);
+        int[] tilePixels = ((DataBufferInt) tile.getRaster().getDataBuffer()).getData();
+        int[] bandPixels = new int[width * tileHeight];
+        for (int y = 0; y < height; y += tileHeight)
+        {
+            int rowCount = Math.min(tileHeight, height - y);
+            for (int x = 0; x < width; x += tileWidth)
+            {
+                int columnCount = Math.min(tileWidth, width - x);
+                Graphics2D g2 = tile.createGraphics();
+                // The clip restricts drawing to the elements of this tile
+                g2.clipRect(0, 0, columnCount, rowCount);
+                g2.translate(-x, -y);
+                renderIGraphToGraphics2D(graph, g2);
+                g2.dispose();
+                for (int row = 0; row < rowCount; row++)
+                {
+                    System.arraycopy(tilePixels, row * tileWidth, bandPixels, row * width + x, columnCount);
+                }
+            }
+            pngWriter.writeRows(bandPixels, 0, width, rowCount);
+        }
+        pngWriter.finish();
+    }
+
+    /**
+     * Writes a downscaled PNG image of the graph (for previews), which fits in the given size. The graph is drawn
+     * scaled, so the image is as sharp as a small image can be. Graphs smaller than this size are written full size.
+     *
+     * @param graph
+     * @param out where the image is written (not closed)
+     * @param maxWidth
+     * @param maxHeight
+     * @throws IOException
+     */
+    public static void exportThumbnailToPng(IGraph graph, OutputStream out, int maxWidth, int maxHeight) throws IOException
+    {
+        Rectangle2D bounds = graph.getClipBounds();
+        double scale = Math.min(1, Math.min(maxWidth / (bounds.getWidth() + 1), maxHeight / (bounds.getHeight() + 1)));
+        int width = Math.max(1, (int) Math.ceil((bounds.getWidth() + 1) * scale));
+        int height = Math.max(1, (int) Math.ceil((bounds.getHeight() + 1) * scale));
+
+        BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+        Graphics2D g2 = image.createGraphics();
+        g2.setRenderingHint(RenderingHints.KEY_RENDERING, RenderingHints.VALUE_RENDER_QUALITY);
+        g2.scale(scale, scale);
+        renderIGraphToGraphics2D(graph, g2);
+        g2.dispose();
+
+        PngStreamWriter pngWriter = new PngStreamWriter(out, width, height);
+        pngWriter.writeRows(((DataBufferInt) image.getRaster().getDataBuffer()).getData(), 0, width, height);
+        pngWriter.finish();
+    }
+
     /**
      * Export graph to clipboard (Do not merge with exportToClipBoard(). Used in Eclipse plugin)
      *
@@ -95,6 +169,21 @@ public class FileExportService
         g.endExport();
     }
 
+    /**
+     * Export graph to SVG file. The document is written while the graph is drawn.
+     *
+     * @param graph
+     * @param out output stream to file (not closed)
+     * @throws IOException
+     */
+    public static void exportToSvg(IGraph graph, OutputStream out) throws IOException
+    {
+        Rectangle2D bounds = graph.getClipBounds();
+        SvgGraphics2D g2 = new SvgGraphics2D(out, bounds.getWidth() + 1, bounds.getHeight() + 1);
+        renderIGraphToGraphics2D(graph, g2);
+        g2.finish();
+    }
+
     private static Graphics2D renderIGraphToGraphics2D(IGraph graph, Graphics2D g2)
     {
         Rectangle2D bounds = graph.getClipBounds();
@@ -111,6 +200,12 @@ public class FileExportService
         return g2;
     }
 
+    /**
+     * Size of the tiles drawn by exportToPng()
+     */
+    private static final int TILE_WIDTH = 512;
+    private static final int TILE_HEIGHT = 128;
+
     /**
      * Auteur : a.depellegrin<br>
      * Definition : Exports class diagram graph to xmi <br>
@@ -0,0 +1,223 @@
+package com.horstmann.violet.framework.file.export;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+
+/**
+ * Writes a PNG image (8 bits RGB) row by row, so that an image can be written while it is drawn, without having all
+ * its pixels in memory. Each row is filtered with the PNG filter (none, sub or up) which gives the smallest values, as
+ * most encoders do, then compressed into IDAT chunks of a fixed size.
+ */
+public class PngStreamWriter
+{
+
+    /**
+     * Writes the image header
+     *
+     * @param out where the image is written (not closed)
+     * @param width image width, in pixels
+     * @param height image height, in pixels
+     * @throws IOException
+     */
+    public PngStreamWriter(OutputStream out, int width, int height) throws IOException
+    {
+        if (width <= 0 || height <= 0)
+        {
+            throw new IllegalArgumentException("Invalid image size " + width + "x" + height);
+        }
+        this.out = new DataOutputStream(out);
+        this.width = width;
+        this.height = height;
+        this.out.write(SIGNATURE);
+        ByteArrayOutputStream header = new ByteArrayOutputStream(13);
+        DataOutputStream headerOut = new DataOutputStream(header);
+        headerOut.writeInt(width);
+        headerOut.writeInt(height);
+        headerOut.writeByte(8); // Bit depth
+        headerOut.writeByte(2); // Color type : RGB
+        headerOut.writeByte(0); // Compression : deflate
+        headerOut.writeByte(0); // Filter method : adaptive
+        headerOut.writeByte(0); // No interlace
+        writeChunk("IHDR", header.toByteArray(), 0, header.size());
+        this.deflater = new Deflater(Deflater.DEFAULT_COMPRESSION);
+        this.compressedOut = new DeflaterOutputStream(new ChunkOutputStream(), this.deflater, IDAT_CHUNK_SIZE);
+        this.previousRow = new byte[width * 3];
+        this.currentRow = new byte[width * 3];
+        this.filteredRow = new byte[width * 3 + 1];
+        this.candidateRow = new byte[width * 3 + 1];
+    }
+
+    /**
+     * Writes the next rows of the image
+     *
+     * @param pixels rows, as RGB integers (alpha ignored), such as the data of a TYPE_INT_RGB BufferedImage
+     * @param offset index of the first pixel of the first row
+     * @param scanlineStride distance between the first pixels of two rows
+     * @param rowCount number of rows to write
+     * @throws IOException
+     */
+    public void writeRows(int[] pixels, int offset, int scanlineStride, int rowCount) throws IOException
+    {
+        if (this.writtenRowCount + rowCount > this.height)
+        {
+            throw new IllegalStateException("More rows than the image height");
+        }
+        for (int row = 0; row < rowCount; row++)
+        {
+            int pixelIndex = offset + row * scanlineStride;
+            byte[] current = this.currentRow;
+            for (int i = 0, j = 0; i < this.width; i++, j += 3)
+            {
+                int rgb = pixels[pixelIndex + i];
+                current[j] = (byte) (rgb >> 16);
+                current[j + 1] = (byte) (rgb >> 8);
+                current[j + 2] = (byte) rgb;
+            }
+            filterRow();
+            this.compressedOut.write(this.filteredRow, 0, this.filteredRow.length);
+            byte[] swap = this.previousRow;
+            this.previousRow = this.currentRow;
+            this.currentRow = swap;
+            this.writtenRowCount++;
+        }
+    }
+
+    /**
+     * Writes the end of the image. All the rows must have been written.
+     *
+     * @throws IOException
+     */
+    public void finish() throws IOException
+    {
+        if (this.writtenRowCount != this.height)
+        {
+            throw new IllegalStateException(this.writtenRowCount + " rows written instead of " + this.height);
+        }
+        this.compressedOut.finish();
+        this.deflater.end();
+        writeChunk("IEND", new byte[0], 0, 0);
+        this.out.flush();
+    }
+
+    /**
+     * Puts in filteredRow the current row filtered with the filter giving the smallest sum of absolute values
+     */
+    private void filterRow()
+    {
+        byte[] current = this.currentRow;
+        byte[] previous = this.previousRow;
+        int length = current.length;
+        boolean isFirstRow = this.writtenRowCount == 0;
+
+        // None
+        byte[] best = this.filteredRow;
+        best[0] = FILTER_NONE;
+        long bestSum = 0;
+        for (int i = 0; i < length; i++)
+        {
+            best[i + 1] = current[i];
+            bestSum += Math.abs((int) current[i]);
+        }
+        if (bestSum == 0)
+        {
+            return;
+        }
+
+        // Sub
+        byte[] candidate = this.candidateRow;
+        candidate[0] = FILTER_SUB;
+        long sum = 0;
+        for (int i = 0; i < length; i++)
+        {
+            byte value = (byte) (current[i] - (i < 3 ? 0 : current[i - 3]));
+            candidate[i + 1] = value;
+            sum += Math.abs((int) value);
+        }
+        if (sum < bestSum)
+        {
+            bestSum = sum;
+            this.candidateRow = best;
+            this.filteredRow = candidate;
+            best = candidate;
+            candidate = this.candidateRow;
+        }
+
+        // Up
+        if (isFirstRow)
+        {
+            return;
+        }
+        candidate[0] = FILTER_UP;
+        sum = 0;
+        for (int i = 0; i < length && sum < bestSum; i++)
+        {
+            byte value = (byte) (current[i] - previous[i]);
+            candidate[i + 1] = value;
+            sum += Math.abs((int) value);
+        }
+        if (sum < bestSum)
+        {
+            this.candidateRow = best;
+            this.filteredRow = candidate;
+        }
+    }
+
+    private void writeChunk(String type, byte[] data, int offset, int length) throws IOException
+    {
+        byte[] typeBytes = type.getBytes("US-ASCII");
+        CRC32 crc = new CRC32();
+        crc.update(typeBytes);
+        crc.update(data, offset, length);
+        this.out.writeInt(length);
+        this.out.write(typeBytes);
+        this.out.write(data, offset, length);
+        this.out.writeInt((int) crc.getValue());
+    }
+
+    /**
+     * Cuts compressed data into IDAT chunks
+     */
+    private class ChunkOutputStream extends OutputStream
+    {
+        @Override
+        public void write(int b) throws IOException
+        {
+            write(new byte[] {
+                (byte) b
+            }, 0, 1);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException
+        {
+            if (len > 0)
+            {
+                writeChunk("IDAT", b, off, len);
+            }
+        }
+    }
+
+    private final DataOutputStream out;
+    private final int width;
+    private final int height;
+    private final Deflater deflater;
+    private final DeflaterOutputStream compressedOut;
+    private byte[] previousRow;
+    private byte[] currentRow;
+    private byte[] filteredRow;
+    private byte[] candidateRow;
+    private int writtenRowCount;
+
+    private static final byte[] SIGNATURE = {
+            (byte) 137, 80, 78, 71, 13, 10, 26, 10
+    };
+    private static final byte FILTER_NONE = 0;
+    private static final byte FILTER_SUB = 1;
+    private static final byte FILTER_UP = 2;
+    private static final int IDAT_CHUNK_SIZE = 64 * 1024;
+}
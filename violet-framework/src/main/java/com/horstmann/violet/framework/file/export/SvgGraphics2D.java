@@ -0,0 +1,1242 @@
+package com.horstmann.violet.framework.file.export;
+
+import java.awt.AlphaComposite;
+import java.awt.BasicStroke;
+import java.awt.Color;
+import java.awt.Composite;
+import java.awt.Font;
+import java.awt.FontMetrics;
+import java.awt.GradientPaint;
+import java.awt.Graphics;
+import java.awt.Graphics2D;
+import java.awt.GraphicsConfiguration;
+import java.awt.Image;
+import java.awt.Paint;
+import java.awt.Polygon;
+import java.awt.Rectangle;
+import java.awt.RenderingHints;
+import java.awt.Shape;
+import java.awt.Stroke;
+import java.awt.font.FontRenderContext;
+import java.awt.font.GlyphVector;
+import java.awt.font.TextLayout;
+import java.awt.geom.AffineTransform;
+import java.awt.geom.Arc2D;
+import java.awt.geom.Area;
+import java.awt.geom.Ellipse2D;
+import java.awt.geom.Line2D;
+import java.awt.geom.NoninvertibleTransformException;
+import java.awt.geom.Path2D;
+import java.awt.geom.PathIterator;
+import java.awt.geom.Rectangle2D;
+import java.awt.geom.RoundRectangle2D;
+import java.awt.image.BufferedImage;
+import java.awt.image.BufferedImageOp;
+import java.awt.image.ImageObserver;
+import java.awt.image.RenderedImage;
+import java.awt.image.renderable.RenderableImage;
+import java.io.BufferedWriter;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.text.AttributedCharacterIterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import javax.imageio.ImageIO;
+
+import org.apache.commons.codec.binary.Base64;
+
+import com.horstmann.violet.product.diagram.property.text.DisplayTextLayout;
+
+/**
+ * Graphics2D writing SVG to a stream while drawing. Shapes are written as paths in page coordinates, strings as text
+ * elements and images as embedded PNG images. Styles are written once, as CSS classes shared by all the elements having
+ * the same style, at the end of the document.
+ *
+ * Graphics methods can't throw IOException, so the first error is kept and thrown by finish().
+ */
+public class SvgGraphics2D extends Graphics2D
+{
+
+    /**
+     * Writes the document header
+     *
+     * @param out where the document is written (not closed)
+     * @param width page width
+     * @param height page height
+     */
+    public SvgGraphics2D(OutputStream out, double width, double height)
+    {
+        this.document = new Document(out);
+        this.document.write("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n<svg xmlns=\"http://www.w3.org/2000/svg\" "
+                + "xmlns:xlink=\"http://www.w3.org/1999/xlink\" version=\"1.1\" xml:space=\"preserve\" width=\"");
+        this.document.write(format(width));
+        this.document.write("\" height=\"");
+        this.document.write(format(height));
+        this.document.write("\" viewBox=\"0 0 ");
+        this.document.write(format(width));
+        this.document.write(' ');
+        this.document.write(format(height));
+        this.document.write("\">\n");
+        this.hints.put(DisplayTextLayout.KEY_TEXT_AS_STRINGS, Boolean.TRUE);
+    }
+
+    /**
+     * Copy constructor used by create()
+     *
+     * @param graphics
+     */
+    private SvgGraphics2D(SvgGraphics2D graphics)
+    {
+        this.document = graphics.document;
+        this.transform = new AffineTransform(graphics.transform);
+        this.paint = graphics.paint;
+        this.color = graphics.color;
+        this.background = graphics.background;
+        this.stroke = graphics.stroke;
+        this.font = graphics.font;
+        this.composite = graphics.composite;
+        this.clip = graphics.clip;
+        this.hints = (RenderingHints) graphics.hints.clone();
+    }
+
+    /**
+     * Writes the styles and the end of the document
+     *
+     * @throws IOException if the document couldn't be written entirely
+     */
+    public void finish() throws IOException
+    {
+        Document document = this.document;
+        if (!document.styleClasses.isEmpty())
+        {
+            document.write("<style type=\"text/css\"><![CDATA[\n");
+            for (Map.Entry<String, String> aStyle : document.styleClasses.entrySet())
+            {
+                document.write('.');
+                document.write(aStyle.getValue());
+                document.write('{');
+                document.write(aStyle.getKey());
+                document.write("}\n");
+            }
+            document.write("]]></style>\n");
+        }
+        document.write("</svg>\n");
+        try
+        {
+            document.out.flush();
+        }
+        catch (IOException e)
+        {
+            document.setError(e);
+        }
+        if (document.error != null)
+        {
+            throw document.error;
+        }
+    }
+
+    @Override
+    public void draw(Shape s)
+    {
+        if (this.stroke instanceof BasicStroke)
+        {
+            writePath(s, getStrokeStyle((BasicStroke) this.stroke), false);
+        }
+        else
+        {
+            fill(this.stroke.createStrokedShape(s));
+        }
+    }
+
+    @Override
+    public void fill(Shape s)
+    {
+        writePath(s, getFillStyle(), true);
+    }
+
+    @Override
+    public void drawString(String str, int x, int y)
+    {
+        drawString(str, (float) x, (float) y);
+    }
+
+    @Override
+    public void drawString(String str, float x, float y)
+    {
+        if (str.length() == 0)
+        {
+            return;
+        }
+        Document document = this.document;
+        StringBuilder style = new StringBuilder(getFillStyle());
+        appendFontStyle(style);
+        document.write("<text");
+        if (isTranslation(this.transform))
+        {
+            writeAttribute("x", format(x + this.transform.getTranslateX()));
+            writeAttribute("y", format(y + this.transform.getTranslateY()));
+        }
+        else
+        {
+            writeAttribute("x", format(x));
+            writeAttribute("y", format(y));
+            writeAttribute("transform", formatMatrix(this.transform));
+        }
+        writeAttribute("class", document.getStyleClass(style.toString()));
+        writeClipAttribute();
+        document.write('>');
+        document.writeEscaped(str);
+        document.write("</text>\n");
+    }
+
+    @Override
+    public void drawString(AttributedCharacterIterator iterator, int x, int y)
+    {
+        drawString(iterator, (float) x, (float) y);
+    }
+
+    @Override
+    public void drawString(AttributedCharacterIterator iterator, float x, float y)
+    {
+        TextLayout layout = new TextLayout(iterator, getFontRenderContext());
+        fill(layout.getOutline(AffineTransform.getTranslateInstance(x, y)));
+    }
+
+    @Override
+    public void drawGlyphVector(GlyphVector g, float x, float y)
+    {
+        fill(g.getOutline(x, y));
+    }
+
+    @Override
+    public boolean drawImage(Image img, AffineTransform xform, ImageObserver obs)
+    {
+        RenderedImage image = toRenderedImage(img, obs);
+        if (image == null)
+        {
+            return false;
+        }
+        AffineTransform imageTransform = new AffineTransform(this.transform);
+        if (xform != null)
+        {
+            imageTransform.concatenate(xform);
+        }
+        writeImage(image, imageTransform);
+        return true;
+    }
+
+    @Override
+    public void drawImage(BufferedImage img, BufferedImageOp op, int x, int y)
+    {
+        BufferedImage image = op != null ? op.filter(img, null) : img;
+        drawImage(image, AffineTransform.getTranslateInstance(x, y), null);
+    }
+
+    @Override
+    public void drawRenderedImage(RenderedImage img, AffineTransform xform)
+    {
+        AffineTransform imageTransform = new AffineTransform(this.transform);
+        if (xform != null)
+        {
+            imageTransform.concatenate(xform);
+        }
+        writeImage(img, imageTransform);
+    }
+
+    @Override
+    public void drawRenderableImage(RenderableImage img, AffineTransform xform)
+    {
+        drawRenderedImage(img.createDefaultRendering(), xform);
+    }
+
+    @Override
+    public boolean drawImage(Image img, int x, int y, ImageObserver observer)
+    {
+        return drawImage(img, AffineTransform.getTranslateInstance(x, y), observer);
+    }
+
+    @Override
+    public boolean drawImage(Image img, int x, int y, int width, int height, ImageObserver observer)
+    {
+        int imageWidth = img.getWidth(observer);
+        int imageHeight = img.getHeight(observer);
+        if (imageWidth <= 0 || imageHeight <= 0)
+        {
+            return false;
+        }
+        AffineTransform xform = AffineTransform.getTranslateInstance(x, y);
+        xform.scale((double) width / imageWidth, (double) height / imageHeight);
+        return drawImage(img, xform, observer);
+    }
+
+    @Override
+    public boolean drawImage(Image img, int x, int y, Color bgcolor, ImageObserver observer)
+    {
+        int width = img.getWidth(observer);
+        int height = img.getHeight(observer);
+        if (width <= 0 || height <= 0)
+        {
+            return false;
+        }
+        return drawImage(img, x, y, width, height, bgcolor, observer);
+    }
+
+    @Override
+    public boolean drawImage(Image img, int x, int y, int width, int height, Color bgcolor, ImageObserver observer)
+    {
+        if (bgcolor != null)
+        {
+            Paint oldPaint = this.paint;
+            setPaint(bgcolor);
+            fillRect(x, y, width, height);
+            setPaint(oldPaint);
+        }
+        return drawImage(img, x, y, width, height, observer);
+    }
+
+    @Override
+    public boolean drawImage(Image img, int dx1, int dy1, int dx2, int dy2, int sx1, int sy1, int sx2, int sy2, ImageObserver observer)
+    {
+        return drawImage(img, dx1, dy1, dx2, dy2, sx1, sy1, sx2, sy2, null, observer);
+    }
+
+    @Override
+    public boolean drawImage(Image img, int dx1, int dy1, int dx2, int dy2, int sx1, int sy1, int sx2, int sy2, Color bgcolor,
+            ImageObserver observer)
+    {
+        RenderedImage image = toRenderedImage(img, observer);
+        if (image == null || sx1 == sx2 || sy1 == sy2)
+        {
+            return false;
+        }
+        BufferedImage source = image instanceof BufferedImage ? (BufferedImage) image : toBufferedImage(image);
+        int x = Math.max(0, Math.min(sx1, sx2));
+        int y = Math.max(0, Math.min(sy1, sy2));
+        int width = Math.min(source.getWidth(), Math.max(sx1, sx2)) - x;
+        int height = Math.min(source.getHeight(), Math.max(sy1, sy2)) - y;
+        if (width <= 0 || height <= 0)
+        {
+            return false;
+        }
+        if (bgcolor != null)
+        {
+            Paint oldPaint = this.paint;
+            setPaint(bgcolor);
+            fill(new Rectangle(Math.min(dx1, dx2), Math.min(dy1, dy2), Math.abs(dx2 - dx1), Math.abs(dy2 - dy1)));
+            setPaint(oldPaint);
+        }
+        AffineTransform xform = AffineTransform.getTranslateInstance(dx1, dy1);
+        xform.scale((double) (dx2 - dx1) / (sx2 - sx1), (double) (dy2 - dy1) / (sy2 - sy1));
+        xform.translate(sx1 < sx2 ? 0 : -width, sy1 < sy2 ? 0 : -height);
+        return drawImage(source.getSubimage(x, y, width, height), xform, observer);
+    }
+
+    @Override
+    public boolean hit(Rectangle rect, Shape s, boolean onStroke)
+    {
+        if (onStroke)
+        {
+            s = this.stroke.createStrokedShape(s);
+        }
+        s = this.transform.createTransformedShape(s);
+        return s.intersects(rect);
+    }
+
+    @Override
+    public GraphicsConfiguration getDeviceConfiguration()
+    {
+        return this.document.getScratchGraphics().getDeviceConfiguration();
+    }
+
+    @Override
+    public void setComposite(Composite comp)
+    {
+        this.composite = comp;
+    }
+
+    @Override
+    public void setPaint(Paint paint)
+    {
+        if (paint == null)
+        {
+            return;
+        }
+        this.paint = paint;
+        if (paint instanceof Color)
+        {
+            this.color = (Color) paint;
+        }
+    }
+
+    @Override
+    public void setStroke(Stroke s)
+    {
+        this.stroke = s;
+    }
+
+    @Override
+    public void setRenderingHint(RenderingHints.Key hintKey, Object hintValue)
+    {
+        this.hints.put(hintKey, hintValue);
+    }
+
+    @Override
+    public Object getRenderingHint(RenderingHints.Key hintKey)
+    {
+        return this.hints.get(hintKey);
+    }
+
+    @Override
+    public void setRenderingHints(Map<?, ?> hints)
+    {
+        this.hints.clear();
+        this.hints.put(DisplayTextLayout.KEY_TEXT_AS_STRINGS, Boolean.TRUE);
+        this.hints.putAll(hints);
+    }
+
+    @Override
+    public void addRenderingHints(Map<?, ?> hints)
+    {
+        this.hints.putAll(hints);
+    }
+
+    @Override
+    public RenderingHints getRenderingHints()
+    {
+        return (RenderingHints) this.hints.clone();
+    }
+
+    @Override
+    public void translate(int x, int y)
+    {
+        this.transform.translate(x, y);
+    }
+
+    @Override
+    public void translate(double tx, double ty)
+    {
+        this.transform.translate(tx, ty);
+    }
+
+    @Override
+    public void rotate(double theta)
+    {
+        this.transform.rotate(theta);
+    }
+
+    @Override
+    public void rotate(double theta, double x, double y)
+    {
+        this.transform.rotate(theta, x, y);
+    }
+
+    @Override
+    public void scale(double sx, double sy)
+    {
+        this.transform.scale(sx, sy);
+    }
+
+    @Override
+    public void shear(double shx, double shy)
+    {
+        this.transform.shear(shx, shy);
+    }
+
+    @Override
+    public void transform(AffineTransform tx)
+    {
+        this.transform.concatenate(tx);
+    }
+
+    @Override
+    public void setTransform(AffineTransform tx)
+    {
+        this.transform = new AffineTransform(tx);
+    }
+
+    @Override
+    public AffineTransform getTransform()
+    {
+        return new AffineTransform(this.transform);
+    }
+
+    @Override
+    public Paint getPaint()
+    {
+        return this.paint;
+    }
+
+    @Override
+    public Composite getComposite()
+    {
+        return this.composite;
+    }
+
+    @Override
+    public void setBackground(Color color)
+    {
+        this.background = color;
+    }
+
+    @Override
+    public Color getBackground()
+    {
+        return this.background;
+    }
+
+    @Override
+    public Stroke getStroke()
+    {
+        return this.stroke;
+    }
+
+    @Override
+    public void clip(Shape s)
+    {
+        if (s == null)
+        {
+            this.clip = null;
+            return;
+        }
+        Shape deviceShape = this.transform.createTransformedShape(s);
+        if (this.clip == null)
+        {
+            this.clip = deviceShape;
+        }
+        else if (this.clip instanceof Rectangle2D && deviceShape instanceof Rectangle2D)
+        {
+            this.clip = ((Rectangle2D) this.clip).createIntersection((Rectangle2D) deviceShape);
+        }
+        else
+        {
+            Area area = new Area(this.clip);
+            area.intersect(new Area(deviceShape));
+            this.clip = area;
+        }
+    }
+
+    @Override
+    public FontRenderContext getFontRenderContext()
+    {
+        return FONT_RENDER_CONTEXT;
+    }
+
+    @Override
+    public Graphics create()
+    {
+        return new SvgGraphics2D(this);
+    }
+
+    @Override
+    public Color getColor()
+    {
+        return this.color;
+    }
+
+    @Override
+    public void setColor(Color c)
+    {
+        if (c != null)
+        {
+            setPaint(c);
+        }
+    }
+
+    @Override
+    public void setPaintMode()
+    {
+        // Always in paint mode
+    }
+
+    @Override
+    public void setXORMode(Color c1)
+    {
+        // Not supported by SVG
+    }
+
+    @Override
+    public Font getFont()
+    {
+        return this.font;
+    }
+
+    @Override
+    public void setFont(Font font)
+    {
+        if (font != null)
+        {
+            this.font = font;
+        }
+    }
+
+    @Override
+    public FontMetrics getFontMetrics(Font f)
+    {
+        return this.document.getScratchGraphics().getFontMetrics(f);
+    }
+
+    @Override
+    public Rectangle getClipBounds()
+    {
+        Shape userClip = getClip();
+        return userClip != null ? userClip.getBounds() : null;
+    }
+
+    @Override
+    public void clipRect(int x, int y, int width, int height)
+    {
+        clip(new Rectangle(x, y, width, height));
+    }
+
+    @Override
+    public void setClip(int x, int y, int width, int height)
+    {
+        setClip(new Rectangle(x, y, width, height));
+    }
+
+    @Override
+    public Shape getClip()
+    {
+        if (this.clip == null)
+        {
+            return null;
+        }
+        try
+        {
+            return this.transform.createInverse().createTransformedShape(this.clip);
+        }
+        catch (NoninvertibleTransformException e)
+        {
+            return null;
+        }
+    }
+
+    @Override
+    public void setClip(Shape clip)
+    {
+        this.clip = null;
+        clip(clip);
+    }
+
+    @Override
+    public void copyArea(int x, int y, int width, int height, int dx, int dy)
+    {
+        // Nothing to copy in a vector document
+    }
+
+    @Override
+    public void drawLine(int x1, int y1, int x2, int y2)
+    {
+        draw(new Line2D.Float(x1, y1, x2, y2));
+    }
+
+    @Override
+    public void drawRect(int x, int y, int width, int height)
+    {
+        draw(new Rectangle(x, y, width, height));
+    }
+
+    @Override
+    public void fillRect(int x, int y, int width, int height)
+    {
+        fill(new Rectangle(x, y, width, height));
+    }
+
+    @Override
+    public void clearRect(int x, int y, int width, int height)
+    {
+        Paint oldPaint = this.paint;
+        Composite oldComposite = this.composite;
+        setPaint(this.background);
+        this.composite = AlphaComposite.SrcOver;
+        fillRect(x, y, width, height);
+        setPaint(oldPaint);
+        this.composite = oldComposite;
+    }
+
+    @Override
+    public void drawRoundRect(int x, int y, int width, int height, int arcWidth, int arcHeight)
+    {
+        draw(new RoundRectangle2D.Float(x, y, width, height, arcWidth, arcHeight));
+    }
+
+    @Override
+    public void fillRoundRect(int x, int y, int width, int height, int arcWidth, int arcHeight)
+    {
+        fill(new RoundRectangle2D.Float(x, y, width, height, arcWidth, arcHeight));
+    }
+
+    @Override
+    public void drawOval(int x, int y, int width, int height)
+    {
+        draw(new Ellipse2D.Float(x, y, width, height));
+    }
+
+    @Override
+    public void fillOval(int x, int y, int width, int height)
+    {
+        fill(new Ellipse2D.Float(x, y, width, height));
+    }
+
+    @Override
+    public void drawArc(int x, int y, int width, int height, int startAngle, int arcAngle)
+    {
+        draw(new Arc2D.Float(x, y, width, height, startAngle, arcAngle, Arc2D.OPEN));
+    }
+
+    @Override
+    public void fillArc(int x, int y, int width, int height, int startAngle, int arcAngle)
+    {
+        fill(new Arc2D.Float(x, y, width, height, startAngle, arcAngle, Arc2D.PIE));
+    }
+
+    @Override
+    public void drawPolyline(int[] xPoints, int[] yPoints, int nPoints)
+    {
+        if (nPoints < 2)
+        {
+            return;
+        }
+        Path2D.Float path = new Path2D.Float();
+        path.moveTo(xPoints[0], yPoints[0]);
+        for (int i = 1; i < nPoints; i++)
+        {
+            path.lineTo(xPoints[i], yPoints[i]);
+        }
+        draw(path);
+    }
+
+    @Override
+    public void drawPolygon(int[] xPoints, int[] yPoints, int nPoints)
+    {
+        draw(new Polygon(xPoints, yPoints, nPoints));
+    }
+
+    @Override
+    public void fillPolygon(int[] xPoints, int[] yPoints, int nPoints)
+    {
+        fill(new Polygon(xPoints, yPoints, nPoints));
+    }
+
+    @Override
+    public void dispose()
+    {
+        // Nothing to release, the document is shared with the other graphics
+    }
+
+    /**
+     * Writes a path element
+     *
+     * @param s shape, in user coordinates
+     * @param style CSS style of the path
+     * @param isFilled true if the path is filled (its winding rule matters then)
+     */
+    private void writePath(Shape s, String style, boolean isFilled)
+    {
+        PathIterator iterator = s.getPathIterator(this.transform);
+        if (isFilled && iterator.getWindingRule() == PathIterator.WIND_EVEN_ODD)
+        {
+            style += ";fill-rule:evenodd";
+        }
+        String pathData = formatPath(iterator);
+        if (pathData.length() == 0)
+        {
+            return;
+        }
+        Document document = this.document;
+        document.write("<path");
+        writeAttribute("class", document.getStyleClass(style));
+        writeClipAttribute();
+        writeAttribute("d", pathData);
+        document.write("/>\n");
+    }
+
+    /**
+     * Writes an image element, the image being embedded as a PNG image
+     *
+     * @param image
+     * @param imageTransform from image pixels to page coordinates
+     */
+    private void writeImage(RenderedImage image, AffineTransform imageTransform)
+    {
+        ByteArrayOutputStream pngBytes = new ByteArrayOutputStream();
+        try
+        {
+            ImageIO.write(image, "png", pngBytes);
+        }
+        catch (IOException e)
+        {
+            this.document.setError(e);
+            return;
+        }
+        Document document = this.document;
+        document.write("<image");
+        writeAttribute("width", Integer.toString(image.getWidth()));
+        writeAttribute("height", Integer.toString(image.getHeight()));
+        if (!imageTransform.isIdentity())
+        {
+            writeAttribute("transform", formatMatrix(imageTransform));
+        }
+        float opacity = getCompositeAlpha();
+        if (opacity < 1)
+        {
+            writeAttribute("opacity", format(opacity));
+        }
+        writeClipAttribute();
+        document.write(" xlink:href=\"data:image/png;base64,");
+        document.write(Base64.encodeBase64String(pngBytes.toByteArray()).replace("\r", "").replace("\n", ""));
+        document.write("\"/>\n");
+    }
+
+    private void writeAttribute(String name, String value)
+    {
+        Document document = this.document;
+        document.write(' ');
+        document.write(name);
+        document.write("=\"");
+        document.write(value);
+        document.write('"');
+    }
+
+    /**
+     * Refers to the current clip, which is written before if it isn't the one of the previous element
+     */
+    private void writeClipAttribute()
+    {
+        if (this.clip == null)
+        {
+            return;
+        }
+        Document document = this.document;
+        if (this.clip != document.lastClip)
+        {
+            document.lastClip = this.clip;
+            document.lastClipId = "c" + (document.clipCount++);
+            document.write("<clipPath id=\"");
+            document.write(document.lastClipId);
+            document.write("\"><path d=\"");
+            document.write(formatPath(this.clip.getPathIterator(null)));
+            document.write("\"/></clipPath>\n");
+        }
+        writeAttribute("clip-path", "url(#" + document.lastClipId + ")");
+    }
+
+    /**
+     * @return CSS style filling with the current paint
+     */
+    private String getFillStyle()
+    {
+        StringBuilder style = new StringBuilder("fill:");
+        appendColor(style, getPaintColor(), "fill-opacity");
+        style.append(";stroke:none");
+        return style.toString();
+    }
+
+    /**
+     * @param basicStroke
+     * @return CSS style drawing with the current paint and the given stroke
+     */
+    private String getStrokeStyle(BasicStroke basicStroke)
+    {
+        double scale = getScale(this.transform);
+        StringBuilder style = new StringBuilder("fill:none;stroke:");
+        appendColor(style, getPaintColor(), "stroke-opacity");
+        // Java draws 0 width strokes as thin lines
+        style.append(";stroke-width:").append(format(Math.max(basicStroke.getLineWidth() * scale, MIN_STROKE_WIDTH)));
+        if (basicStroke.getEndCap() != BasicStroke.CAP_BUTT)
+        {
+            style.append(";stroke-linecap:").append(basicStroke.getEndCap() == BasicStroke.CAP_ROUND ? "round" : "square");
+        }
+        if (basicStroke.getLineJoin() != BasicStroke.JOIN_MITER)
+        {
+            style.append(";stroke-linejoin:").append(basicStroke.getLineJoin() == BasicStroke.JOIN_ROUND ? "round" : "bevel");
+        }
+        else if (basicStroke.getMiterLimit() != DEFAULT_MITER_LIMIT)
+        {
+            style.append(";stroke-miterlimit:").append(format(basicStroke.getMiterLimit()));
+        }
+        float[] dashes = basicStroke.getDashArray();
+        if (dashes != null && dashes.length > 0)
+        {
+            style.append(";stroke-dasharray:");
+            for (int i = 0; i < dashes.length; i++)
+            {
+                if (i > 0)
+                {
+                    style.append(',');
+                }
+                style.append(format(dashes[i] * scale));
+            }
+            if (basicStroke.getDashPhase() != 0)
+            {
+                style.append(";stroke-dashoffset:").append(format(basicStroke.getDashPhase() * scale));
+            }
+        }
+        return style.toString();
+    }
+
+    /**
+     * Adds the current font to a CSS style
+     *
+     * @param style
+     */
+    private void appendFontStyle(StringBuilder style)
+    {
+        Font currentFont = this.font;
+        style.append(";font-family:").append(getFontFamily(currentFont.getFamily()));
+        // In user coordinates : text elements drawn with a scale have a transform
+        style.append(";font-size:").append(format(currentFont.getSize2D())).append("px");
+        if (currentFont.isBold())
+        {
+            style.append(";font-weight:bold");
+        }
+        if (currentFont.isItalic())
+        {
+            style.append(";font-style:italic");
+        }
+    }
+
+    /**
+     * Adds a color and its opacity (combined with the composite one) to a CSS style
+     *
+     * @param style
+     * @param c
+     * @param opacityProperty
+     */
+    private void appendColor(StringBuilder style, Color c, String opacityProperty)
+    {
+        style.append('#');
+        int rgb = c.getRGB() & 0xFFFFFF;
+        for (int shift = 20; shift >= 0; shift -= 4)
+        {
+            style.append(HEX_DIGITS[(rgb >> shift) & 0xF]);
+        }
+        float opacity = c.getAlpha() / 255f * getCompositeAlpha();
+        if (opacity < 1)
+        {
+            style.append(';').append(opacityProperty).append(':').append(format(opacity));
+        }
+    }
+
+    /**
+     * @return color of the current paint (gradients and textures are drawn with a single color)
+     */
+    private Color getPaintColor()
+    {
+        if (this.paint instanceof Color)
+        {
+            return (Color) this.paint;
+        }
+        if (this.paint instanceof GradientPaint)
+        {
+            return ((GradientPaint) this.paint).getColor1();
+        }
+        return this.color;
+    }
+
+    private float getCompositeAlpha()
+    {
+        if (this.composite instanceof AlphaComposite)
+        {
+            return ((AlphaComposite) this.composite).getAlpha();
+        }
+        return 1;
+    }
+
+    /**
+     * @param img
+     * @param observer
+     * @return the image as a RenderedImage (null if it isn't loaded yet)
+     */
+    private static RenderedImage toRenderedImage(Image img, ImageObserver observer)
+    {
+        if (img instanceof RenderedImage)
+        {
+            return (RenderedImage) img;
+        }
+        int width = img.getWidth(observer);
+        int height = img.getHeight(observer);
+        if (width <= 0 || height <= 0)
+        {
+            return null;
+        }
+        BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB);
+        Graphics2D g2 = image.createGraphics();
+        g2.drawImage(img, 0, 0, observer);
+        g2.dispose();
+        return image;
+    }
+
+    private static BufferedImage toBufferedImage(RenderedImage img)
+    {
+        BufferedImage image = new BufferedImage(img.getWidth(), img.getHeight(), BufferedImage.TYPE_INT_ARGB);
+        Graphics2D g2 = image.createGraphics();
+        g2.drawRenderedImage(img, new AffineTransform());
+        g2.dispose();
+        return image;
+    }
+
+    /**
+     * @param family Java font family
+     * @return CSS font family
+     */
+    private static String getFontFamily(String family)
+    {
+        if (Font.SANS_SERIF.equals(family) || Font.DIALOG.equals(family))
+        {
+            return "sans-serif";
+        }
+        if (Font.SERIF.equals(family))
+        {
+            return "serif";
+        }
+        if (Font.MONOSPACED.equals(family) || Font.DIALOG_INPUT.equals(family))
+        {
+            return "monospace";
+        }
+        return "'" + family.replace("'", "") + "',sans-serif";
+    }
+
+    private static boolean isTranslation(AffineTransform transform)
+    {
+        return (transform.getType() & ~AffineTransform.TYPE_TRANSLATION) == 0;
+    }
+
+    /**
+     * @param transform
+     * @return how much lengths are scaled by the transform (in average)
+     */
+    private static double getScale(AffineTransform transform)
+    {
+        return Math.sqrt(Math.abs(transform.getDeterminant()));
+    }
+
+    private static String formatMatrix(AffineTransform transform)
+    {
+        return "matrix(" + format(transform.getScaleX()) + " " + format(transform.getShearY()) + " " + format(transform.getShearX()) + " "
+                + format(transform.getScaleY()) + " " + format(transform.getTranslateX()) + " " + format(transform.getTranslateY()) + ")";
+    }
+
+    /**
+     * @param iterator
+     * @return SVG path data
+     */
+    private static String formatPath(PathIterator iterator)
+    {
+        StringBuilder path = new StringBuilder();
+        double[] coordinates = new double[6];
+        while (!iterator.isDone())
+        {
+            int type = iterator.currentSegment(coordinates);
+            switch (type)
+            {
+            case PathIterator.SEG_MOVETO:
+                appendSegment(path, 'M', coordinates, 2);
+                break;
+            case PathIterator.SEG_LINETO:
+                appendSegment(path, 'L', coordinates, 2);
+                break;
+            case PathIterator.SEG_QUADTO:
+                appendSegment(path, 'Q', coordinates, 4);
+                break;
+            case PathIterator.SEG_CUBICTO:
+                appendSegment(path, 'C', coordinates, 6);
+                break;
+            case PathIterator.SEG_CLOSE:
+                path.append('Z');
+                break;
+            }
+            iterator.next();
+        }
+        return path.toString();
+    }
+
+    private static void appendSegment(StringBuilder path, char command, double[] coordinates, int count)
+    {
+        path.append(command);
+        for (int i = 0; i < count; i++)
+        {
+            if (i > 0 && coordinates[i] >= 0)
+            {
+                path.append(' ');
+            }
+            appendNumber(path, coordinates[i]);
+        }
+    }
+
+    /**
+     * @param value
+     * @return the value with 2 decimals at most, without trailing zeros
+     */
+    static String format(double value)
+    {
+        StringBuilder text = new StringBuilder(12);
+        appendNumber(text, value);
+        return text.toString();
+    }
+
+    private static void appendNumber(StringBuilder text, double value)
+    {
+        long hundredths = Math.round(value * 100);
+        if (hundredths < 0)
+        {
+            text.append('-');
+            hundredths = -hundredths;
+        }
+        text.append(hundredths / 100);
+        int decimals = (int) (hundredths % 100);
+        if (decimals != 0)
+        {
+            text.append('.').append(decimals / 10);
+            if (decimals % 10 != 0)
+            {
+                text.append(decimals % 10);
+            }
+        }
+    }
+
+    /**
+     * Output and styles, shared by a graphics and the ones it creates
+     */
+    private static class Document
+    {
+        public Document(OutputStream out)
+        {
+            try
+            {
+                this.out = new BufferedWriter(new OutputStreamWriter(out, "UTF-8"));
+            }
+            catch (IOException e)
+            {
+                throw new IllegalStateException(e);
+            }
+        }
+
+        public void write(String text)
+        {
+            if (this.error != null)
+            {
+                return;
+            }
+            try
+            {
+                this.out.write(text);
+            }
+            catch (IOException e)
+            {
+                setError(e);
+            }
+        }
+
+        public void write(char c)
+        {
+            if (this.error != null)
+            {
+                return;
+            }
+            try
+            {
+                this.out.write(c);
+            }
+            catch (IOException e)
+            {
+                setError(e);
+            }
+        }
+
+        /**
+         * Writes text content, escaping XML characters
+         *
+         * @param text
+         */
+        public void writeEscaped(String text)
+        {
+            StringBuilder escaped = new StringBuilder(text.length() + 16);
+            for (int i = 0; i < text.length(); i++)
+            {
+                char c = text.charAt(i);
+                switch (c)
+                {
+                case '<':
+                    escaped.append("&lt;");
+                    break;
+                case '>':
+                    escaped.append("&gt;");
+                    break;
+                case '&':
+                    escaped.append("&amp;");
+                    break;
+                default:
+                    if (c >= ' ' || c == '\t')
+                    {
+                        escaped.append(c);
+                    }
+                }
+            }
+            write(escaped.toString());
+        }
+
+        /**
+         * @param style
+         * @return the class of this style, created the first time the style is used
+         */
+        public String getStyleClass(String style)
+        {
+            String styleClass = this.styleClasses.get(style);
+            if (styleClass == null)
+            {
+                styleClass = "s" + this.styleClasses.size();
+                this.styleClasses.put(style, styleClass);
+            }
+            return styleClass;
+        }
+
+        /**
+         * @return a graphics used to measure fonts
+         */
+        public Graphics2D getScratchGraphics()
+        {
+            if (this.scratchGraphics == null)
+            {
+                this.scratchGraphics = new BufferedImage(1, 1, BufferedImage.TYPE_INT_ARGB).createGraphics();
+            }
+            return this.scratchGraphics;
+        }
+
+        public void setError(IOException e)
+        {
+            if (this.error == null)
+            {
+                this.error = e;
+            }
+        }
+
+        private final Writer out;
+        private final Map<String, String> styleClasses = new LinkedHashMap<String, String>();
+        private Graphics2D scratchGraphics;
+        private IOException error;
+        private Shape lastClip;
+        private String lastClipId;
+        private int clipCount;
+    }
+
+    private final Document document;
+    private AffineTransform transform = new AffineTransform();
+    private Paint paint = Color.BLACK;
+    private Color color = Color.BLACK;
+    private Color background = Color.WHITE;
+    private Stroke stroke = new BasicStroke();
+    private Font font = new Font(Font.SANS_SERIF, Font.PLAIN, 12);
+    private Composite composite = AlphaComposite.SrcOver;
+    private Shape clip;
+    private RenderingHints hints = new RenderingHints(null);
+
+    private static final FontRenderContext FONT_RENDER_CONTEXT = new FontRenderContext(null, true, false);
+    private static final char[] HEX_DIGITS = "0123456789abcdef".toCharArray();
+    private static final float MIN_STROKE_WIDTH = 0.5f;
+    private static final float DEFAULT_MITER_LIMIT = 10;
+}
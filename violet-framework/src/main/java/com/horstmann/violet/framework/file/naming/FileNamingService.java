@@ -21,7 +21,7 @@
 
 package com.horstmann.violet.framework.file.naming;
 
-import java.util.Collection;
+import java.util.ArrayList;
 import java.util.Collections;
 import java.util.Comparator;
 import java.util.LinkedHashMap;
@@ -113,10 +113,28 @@ public class FileNamingService
     public ExtensionFilter[] getFileFilters()
     {
         Map<Class<? extends IGraph>, ExtensionFilter> filters = getExtensionFilters();
-        Collection<ExtensionFilter> values = filters.values();
+        List<ExtensionFilter> values = new ArrayList<ExtensionFilter>(filters.values());
+        values.add(getBinaryExtensionFilter());
         return (ExtensionFilter[]) values.toArray(new ExtensionFilter[values.size()]);
     }
 
+    /**
+     * @return the extension filter of compact binary files (any diagram type)
+     */
+    public ExtensionFilter getBinaryExtensionFilter()
+    {
+        return new ExtensionFilter(this.binaryFileFilterName, this.binaryFileExtension);
+    }
+
+    /**
+     * @param filename
+     * @return true if the file has to be read and written in the compact binary format
+     */
+    public boolean isBinaryFile(String filename)
+    {
+        return filename != null && filename.toLowerCase().endsWith(this.binaryFileExtension.toLowerCase());
+    }
+
     /**
      * @param graph
      * @return the file filter specific to a graph type
@@ -152,6 +170,14 @@ public class FileNamingService
         return filter;
     }
 
+    /**
+     * @return the extension filter for svg export
+     */
+    public ExtensionFilter getSvgExtensionFilter()
+    {
+        return new ExtensionFilter(this.svgFileTypeFilterName, this.svgFileTypeExtension);
+    }
+
 
     @ResourceBundleBean(key="files.pdf.name")
     private String pdfFileTypeFilterName;
@@ -159,6 +185,12 @@ public class FileNamingService
     @ResourceBundleBean(key="files.pdf.extension")
     private String pdfFileTypeExtension;
 
+    @ResourceBundleBean(key="files.svg.name")
+    private String svgFileTypeFilterName;
+
+    @ResourceBundleBean(key="files.svg.extension")
+    private String svgFileTypeExtension;
+
     @ResourceBundleBean(key="files.image.type1.name")
     private String imageFileType1FilterName;
     
@@ -183,6 +215,12 @@ public class FileNamingService
     @ResourceBundleBean(key="files.global.extension")
     private String defaultFileExtension;
 
+    @ResourceBundleBean(key="files.binary.name")
+    private String binaryFileFilterName;
+
+    @ResourceBundleBean(key="files.binary.extension")
+    private String binaryFileExtension;
+
     @InjectedBean
     private PluginRegistry pluginRegistry;
 
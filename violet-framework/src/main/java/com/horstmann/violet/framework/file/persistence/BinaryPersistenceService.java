@@ -0,0 +1,60 @@
+package com.horstmann.violet.framework.file.persistence;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Arrays;
+
+import com.horstmann.violet.product.diagram.abstracts.IGraph;
+
+/**
+ * Saves graphs in a compact binary file (see CompactBinaryWriter). Graphs are mapped by the same XStream as xml
+ * files, so a graph can go from one format to the other without any loss.
+ */
+public class BinaryPersistenceService implements IFilePersistenceService
+{
+
+    @Override
+    public void write(IGraph graph, OutputStream out)
+    {
+        try
+        {
+            BufferedOutputStream bufferedOut = new BufferedOutputStream(out);
+            bufferedOut.write(CompactBinaryWriter.MAGIC_NUMBER);
+            this.xstreamService.write(graph, new CompactBinaryWriter(bufferedOut));
+            bufferedOut.close();
+        }
+        catch (IOException e)
+        {
+            throw new RuntimeException(e);
+        }
+    }
+
+    @Override
+    public IGraph read(InputStream in) throws IOException
+    {
+        BufferedInputStream bufferedIn = new BufferedInputStream(in);
+        byte[] magicNumber = new byte[CompactBinaryWriter.MAGIC_NUMBER.length];
+        int count = 0;
+        while (count < magicNumber.length)
+        {
+            int read = bufferedIn.read(magicNumber, count, magicNumber.length - count);
+            if (read == -1)
+            {
+                break;
+            }
+            count += read;
+        }
+        if (!Arrays.equals(magicNumber, CompactBinaryWriter.MAGIC_NUMBER))
+        {
+            throw new IOException("Not a Violet binary file");
+        }
+        IGraph graph = this.xstreamService.read(new CompactBinaryReader(bufferedIn));
+        bufferedIn.close();
+        return graph;
+    }
+
+    private XStreamBasedPersistenceService xstreamService = new XStreamBasedPersistenceService();
+}
@@ -0,0 +1,239 @@
+package com.horstmann.violet.framework.file.persistence;
+
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.UUID;
+
+import com.thoughtworks.xstream.converters.ErrorWriter;
+import com.thoughtworks.xstream.io.HierarchicalStreamReader;
+import com.thoughtworks.xstream.io.StreamException;
+
+/**
+ * Reads the tree written by CompactBinaryWriter. Nodes are read as XStream moves down to them, so only the nodes from
+ * the root to the current one are kept in memory.
+ */
+class CompactBinaryReader implements HierarchicalStreamReader
+{
+    /**
+     * Reads up to the root node
+     *
+     * @param in where to read (not closed by close())
+     */
+    CompactBinaryReader(InputStream in)
+    {
+        this.in = new DataInputStream(in);
+        moveDown();
+    }
+
+    public boolean hasMoreChildren()
+    {
+        return peekToken() == CompactBinaryWriter.START;
+    }
+
+    public void moveDown()
+    {
+        try
+        {
+            int token = readToken();
+            if (token != CompactBinaryWriter.START)
+            {
+                throw new StreamException("Node expected, found token " + token);
+            }
+            Node node = new Node();
+            node.name = readString();
+            int attributeCount = (int) readUnsigned();
+            for (int i = 0; i < attributeCount; i++)
+            {
+                node.attributeNames.add(readString());
+                node.attributeValues.add(readValue());
+            }
+            if (peekToken() == CompactBinaryWriter.VALUE)
+            {
+                readToken();
+                node.value = readValue();
+            }
+            this.path.add(node);
+        }
+        catch (IOException e)
+        {
+            throw new StreamException(e);
+        }
+    }
+
+    public void moveUp()
+    {
+        while (hasMoreChildren())
+        {
+            moveDown();
+            moveUp();
+        }
+        int token = readToken();
+        if (token != CompactBinaryWriter.END)
+        {
+            throw new StreamException("End of node expected, found token " + token);
+        }
+        this.path.remove(this.path.size() - 1);
+    }
+
+    public String getNodeName()
+    {
+        return getCurrentNode().name;
+    }
+
+    public String getValue()
+    {
+        return getCurrentNode().value;
+    }
+
+    public String getAttribute(String name)
+    {
+        int index = getCurrentNode().attributeNames.indexOf(name);
+        return index == -1 ? null : getAttribute(index);
+    }
+
+    public String getAttribute(int index)
+    {
+        return getCurrentNode().attributeValues.get(index);
+    }
+
+    public int getAttributeCount()
+    {
+        return getCurrentNode().attributeNames.size();
+    }
+
+    public String getAttributeName(int index)
+    {
+        return getCurrentNode().attributeNames.get(index);
+    }
+
+    public Iterator getAttributeNames()
+    {
+        return getCurrentNode().attributeNames.iterator();
+    }
+
+    public void appendErrors(ErrorWriter errorWriter)
+    {
+        StringBuilder path = new StringBuilder();
+        for (Node node : this.path)
+        {
+            path.append('/').append(node.name);
+        }
+        errorWriter.add("path", path.toString());
+    }
+
+    public void close()
+    {
+        // The stream belongs to the caller
+    }
+
+    public HierarchicalStreamReader underlyingReader()
+    {
+        return this;
+    }
+
+    private Node getCurrentNode()
+    {
+        return this.path.get(this.path.size() - 1);
+    }
+
+    private int peekToken()
+    {
+        if (this.nextToken == NO_TOKEN)
+        {
+            this.nextToken = readToken();
+        }
+        return this.nextToken;
+    }
+
+    private int readToken()
+    {
+        if (this.nextToken != NO_TOKEN)
+        {
+            int token = this.nextToken;
+            this.nextToken = NO_TOKEN;
+            return token;
+        }
+        try
+        {
+            return this.in.readUnsignedByte();
+        }
+        catch (IOException e)
+        {
+            throw new StreamException(e);
+        }
+    }
+
+    private String readValue() throws IOException
+    {
+        int type = this.in.readUnsignedByte();
+        switch (type)
+        {
+        case CompactBinaryWriter.STRING_VALUE:
+            return readString();
+        case CompactBinaryWriter.INTEGER_VALUE:
+            return Long.toString(readSigned());
+        case CompactBinaryWriter.INTEGRAL_DECIMAL_VALUE:
+            return Double.toString(readSigned());
+        case CompactBinaryWriter.UUID_VALUE:
+            return new UUID(this.in.readLong(), this.in.readLong()).toString();
+        default:
+            throw new StreamException("Unknown value type " + type);
+        }
+    }
+
+    private String readString() throws IOException
+    {
+        int index = (int) readUnsigned();
+        if (index > 0)
+        {
+            return this.stringTable.get(index - 1);
+        }
+        byte[] bytes = new byte[(int) readUnsigned()];
+        this.in.readFully(bytes);
+        String string = new String(bytes, CompactBinaryWriter.CHARSET);
+        this.stringTable.add(string);
+        return string;
+    }
+
+    private long readSigned() throws IOException
+    {
+        long value = readUnsigned();
+        return (value >>> 1) ^ -(value & 1);
+    }
+
+    private long readUnsigned() throws IOException
+    {
+        long value = 0;
+        int shift = 0;
+        int b = this.in.readUnsignedByte();
+        while ((b & 0x80) != 0)
+        {
+            value |= (long) (b & 0x7F) << shift;
+            shift += 7;
+            b = this.in.readUnsignedByte();
+        }
+        return value | ((long) b << shift);
+    }
+
+    /**
+     * Node on the path to the current one
+     */
+    private static class Node
+    {
+        private String name;
+        private List<String> attributeNames = new ArrayList<String>();
+        private List<String> attributeValues = new ArrayList<String>();
+        private String value = "";
+    }
+
+    private final DataInputStream in;
+    private final List<String> stringTable = new ArrayList<String>();
+    private final List<Node> path = new ArrayList<Node>();
+    private int nextToken = NO_TOKEN;
+
+    private static final int NO_TOKEN = -1;
+}
@@ -0,0 +1,269 @@
+package com.horstmann.violet.framework.file.persistence;
+
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+import com.thoughtworks.xstream.io.HierarchicalStreamWriter;
+import com.thoughtworks.xstream.io.StreamException;
+
+/**
+ * Writes the tree XStream makes of a graph in a compact binary form (read by CompactBinaryReader) :
+ * <ul>
+ * <li>each node is a START token, its name, its attributes, an optional VALUE token with its value, its children and
+ * an END token</li>
+ * <li>names and texts are written once, then referenced by their index in a string table built as the file is
+ * written</li>
+ * <li>integers (references between objects, colors...), integral decimals (coordinates) and UUIDs (element ids) are
+ * written as numbers, with variable length integers</li>
+ * </ul>
+ */
+class CompactBinaryWriter implements HierarchicalStreamWriter
+{
+    /**
+     * @param out where to write (not closed by close())
+     */
+    CompactBinaryWriter(OutputStream out)
+    {
+        this.out = new DataOutputStream(out);
+    }
+
+    public void startNode(String name)
+    {
+        writePendingNode();
+        this.pendingNodeName = name;
+    }
+
+    public void addAttribute(String name, String value)
+    {
+        this.pendingAttributes.add(name);
+        this.pendingAttributes.add(value);
+    }
+
+    public void setValue(String text)
+    {
+        try
+        {
+            writePendingNode();
+            this.out.writeByte(VALUE);
+            writeValue(text);
+        }
+        catch (IOException e)
+        {
+            throw new StreamException(e);
+        }
+    }
+
+    public void endNode()
+    {
+        try
+        {
+            writePendingNode();
+            this.out.writeByte(END);
+        }
+        catch (IOException e)
+        {
+            throw new StreamException(e);
+        }
+    }
+
+    public void flush()
+    {
+        try
+        {
+            this.out.flush();
+        }
+        catch (IOException e)
+        {
+            throw new StreamException(e);
+        }
+    }
+
+    public void close()
+    {
+        flush();
+    }
+
+    public HierarchicalStreamWriter underlyingWriter()
+    {
+        return this;
+    }
+
+    /**
+     * Writes the node started last, once all its attributes are known
+     */
+    private void writePendingNode()
+    {
+        if (this.pendingNodeName == null)
+        {
+            return;
+        }
+        try
+        {
+            this.out.writeByte(START);
+            writeString(this.pendingNodeName);
+            writeUnsigned(this.pendingAttributes.size() / 2);
+            for (int i = 0; i < this.pendingAttributes.size(); i += 2)
+            {
+                writeString(this.pendingAttributes.get(i));
+                writeValue(this.pendingAttributes.get(i + 1));
+            }
+        }
+        catch (IOException e)
+        {
+            throw new StreamException(e);
+        }
+        this.pendingNodeName = null;
+        this.pendingAttributes.clear();
+    }
+
+    /**
+     * Writes an attribute or node value, as a number when it can be read back as the same text
+     *
+     * @param value
+     * @throws IOException
+     */
+    private void writeValue(String value) throws IOException
+    {
+        Long integer = parseInteger(value);
+        if (integer != null)
+        {
+            this.out.writeByte(INTEGER_VALUE);
+            writeSigned(integer.longValue());
+            return;
+        }
+        if (value.endsWith(".0"))
+        {
+            Long integralPart = parseInteger(value.substring(0, value.length() - 2));
+            if (integralPart != null && Double.toString(integralPart.doubleValue()).equals(value))
+            {
+                this.out.writeByte(INTEGRAL_DECIMAL_VALUE);
+                writeSigned(integralPart.longValue());
+                return;
+            }
+        }
+        if (value.length() == UUID_LENGTH)
+        {
+            UUID uuid = parseUUID(value);
+            if (uuid != null)
+            {
+                this.out.writeByte(UUID_VALUE);
+                this.out.writeLong(uuid.getMostSignificantBits());
+                this.out.writeLong(uuid.getLeastSignificantBits());
+                return;
+            }
+        }
+        this.out.writeByte(STRING_VALUE);
+        writeString(value);
+    }
+
+    /**
+     * Writes a string the first time, then its index in the string table
+     *
+     * @param string
+     * @throws IOException
+     */
+    private void writeString(String string) throws IOException
+    {
+        Integer index = this.stringTable.get(string);
+        if (index != null)
+        {
+            writeUnsigned(index.intValue() + 1);
+            return;
+        }
+        byte[] bytes = string.getBytes(CHARSET);
+        writeUnsigned(0);
+        writeUnsigned(bytes.length);
+        this.out.write(bytes);
+        this.stringTable.put(string, Integer.valueOf(this.stringTable.size()));
+    }
+
+    private void writeSigned(long value) throws IOException
+    {
+        writeUnsigned((value << 1) ^ (value >> 63));
+    }
+
+    private void writeUnsigned(long value) throws IOException
+    {
+        while ((value & ~0x7FL) != 0)
+        {
+            this.out.writeByte((int) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        this.out.writeByte((int) value);
+    }
+
+    /**
+     * @param value
+     * @return the integer written exactly as value or null if there's none
+     */
+    private static Long parseInteger(String value)
+    {
+        int length = value.length();
+        if (length == 0 || length > MAX_INTEGER_LENGTH)
+        {
+            return null;
+        }
+        for (int i = 0; i < length; i++)
+        {
+            char c = value.charAt(i);
+            if ((c < '0' || c > '9') && !(i == 0 && c == '-' && length > 1))
+            {
+                return null;
+            }
+        }
+        try
+        {
+            long integer = Long.parseLong(value);
+            return Long.toString(integer).equals(value) ? Long.valueOf(integer) : null;
+        }
+        catch (NumberFormatException e)
+        {
+            return null;
+        }
+    }
+
+    /**
+     * @param value
+     * @return the UUID written exactly as value or null if there's none
+     */
+    private static UUID parseUUID(String value)
+    {
+        try
+        {
+            UUID uuid = UUID.fromString(value);
+            return uuid.toString().equals(value) ? uuid : null;
+        }
+        catch (IllegalArgumentException e)
+        {
+            return null;
+        }
+    }
+
+    private final DataOutputStream out;
+    private final Map<String, Integer> stringTable = new HashMap<String, Integer>();
+    private String pendingNodeName;
+    private final List<String> pendingAttributes = new ArrayList<String>();
+
+    static final byte[] MAGIC_NUMBER = {
+            'V', 'L', 'T', 'B', 1
+    };
+    static final String CHARSET = "UTF-8";
+
+    static final int START = 1;
+    static final int VALUE = 2;
+    static final int END = 3;
+
+    static final int STRING_VALUE = 0;
+    static final int INTEGER_VALUE = 1;
+    static final int INTEGRAL_DECIMAL_VALUE = 2;
+    static final int UUID_VALUE = 3;
+
+    private static final int MAX_INTEGER_LENGTH = 19;
+    private static final int UUID_LENGTH = 36;
+}
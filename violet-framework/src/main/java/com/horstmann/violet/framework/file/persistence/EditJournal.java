@@ -0,0 +1,442 @@
+package com.horstmann.violet.framework.file.persistence;
+
+import java.awt.geom.Point2D;
+import java.awt.geom.Rectangle2D;
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.CRC32;
+
+import com.horstmann.violet.product.diagram.abstracts.IGraph;
+import com.horstmann.violet.product.diagram.abstracts.Id;
+import com.horstmann.violet.product.diagram.abstracts.edge.IEdge;
+import com.horstmann.violet.product.diagram.abstracts.node.INode;
+
+/**
+ * Append only journal of the changes made to a graph since its last checkpoint (a full file written by an autosave).
+ * After a crash, the graph is restored by reading the checkpoint and replaying the journal onto it.<br/>
+ * Each record holds the state of the elements changed by an edit : the whole tree of each changed node (from its top
+ * level ancestor), each changed edge with the ids of its nodes, and the ids of the removed elements. Records are
+ * written in the compact binary form (see CompactBinaryWriter), each one preceded by its length and checksum, so that
+ * a record cut by a crash is detected and ignored. Replaying a record twice, or replaying records already included in
+ * a checkpoint, gives the same graph.
+ */
+public class EditJournal
+{
+    /**
+     * @param file where records are appended
+     */
+    public EditJournal(File file)
+    {
+        this.file = file;
+    }
+
+    /**
+     * @param checkpointFile
+     * @return the journal of the changes made after this checkpoint
+     */
+    public static File getJournalFile(File checkpointFile)
+    {
+        return new File(checkpointFile.getPath() + EXTENSION);
+    }
+
+    /**
+     * @param file
+     * @return true if this file is a journal (and not a checkpoint)
+     */
+    public static boolean isJournalFile(File file)
+    {
+        return file.getName().endsWith(EXTENSION);
+    }
+
+    /**
+     * Makes a record of the current state of changed elements. It must be called by the thread which modifies the
+     * graph, but the record can then be appended by any thread.
+     *
+     * @param graph
+     * @param changedNodes nodes added, removed or modified
+     * @param changedEdges edges added, removed or modified
+     * @return the record
+     */
+    public byte[] createRecord(IGraph graph, Collection<INode> changedNodes, Collection<IEdge> changedEdges)
+    {
+        Record record = new Record();
+        Map<INode, Boolean> topLevelNodes = new IdentityHashMap<INode, Boolean>();
+        for (INode aNode : changedNodes)
+        {
+            if (graph.findNode(aNode.getId()) != aNode)
+            {
+                record.removedIds.add(aNode.getId());
+                continue;
+            }
+            INode topLevelNode = aNode;
+            while (topLevelNode.getParent() != null)
+            {
+                topLevelNode = topLevelNode.getParent();
+            }
+            if (!topLevelNodes.containsKey(topLevelNode))
+            {
+                topLevelNodes.put(topLevelNode, Boolean.TRUE);
+                record.nodes.add(topLevelNode);
+            }
+        }
+        for (IEdge anEdge : changedEdges)
+        {
+            if (graph.findEdge(anEdge.getId()) != anEdge)
+            {
+                record.removedIds.add(anEdge.getId());
+                continue;
+            }
+            record.edges.add(anEdge);
+            record.startNodeIds.add(anEdge.getStartNode() == null ? null : anEdge.getStartNode().getId());
+            record.endNodeIds.add(anEdge.getEndNode() == null ? null : anEdge.getEndNode().getId());
+        }
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        CompactBinaryWriter writer = new CompactBinaryWriter(out);
+        this.xstreamService.writeDetached(record, writer);
+        writer.close();
+        return out.toByteArray();
+    }
+
+    /**
+     * Appends a record and forces it to the disk
+     *
+     * @param record
+     * @throws IOException
+     */
+    public void append(byte[] record) throws IOException
+    {
+        CRC32 checksum = new CRC32();
+        checksum.update(record);
+        ByteArrayOutputStream frame = new ByteArrayOutputStream(record.length + 8);
+        DataOutputStream frameOut = new DataOutputStream(frame);
+        frameOut.writeInt(record.length);
+        frameOut.writeInt((int) checksum.getValue());
+        frameOut.write(record);
+        FileOutputStream out = new FileOutputStream(this.file, true);
+        try
+        {
+            frame.writeTo(out);
+            out.getFD().sync();
+        }
+        finally
+        {
+            out.close();
+        }
+    }
+
+    /**
+     * Removes all the records (when a new checkpoint includes them)
+     *
+     * @throws IOException
+     */
+    public void clear() throws IOException
+    {
+        if (this.file.exists() && !this.file.delete())
+        {
+            throw new IOException("Unable to clear journal " + this.file.getAbsolutePath());
+        }
+    }
+
+    /**
+     * @return journal size in bytes
+     */
+    public long getLength()
+    {
+        return this.file.length();
+    }
+
+    /**
+     * Replays all the records onto a graph read from the checkpoint. Reading stops at the first incomplete or corrupted
+     * record, as it can only be the last one, cut by a crash. Elements added by the replay get new ids.
+     *
+     * @param graph
+     * @return number of records replayed
+     * @throws IOException
+     */
+    public int replay(IGraph graph) throws IOException
+    {
+        if (!this.file.exists())
+        {
+            return 0;
+        }
+        Replay replay = new Replay(graph);
+        int count = 0;
+        DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(this.file)));
+        try
+        {
+            while (true)
+            {
+                byte[] record;
+                try
+                {
+                    int length = in.readInt();
+                    int expectedChecksum = in.readInt();
+                    if (length < 0 || length > MAX_RECORD_LENGTH)
+                    {
+                        break;
+                    }
+                    record = new byte[length];
+                    in.readFully(record);
+                    CRC32 checksum = new CRC32();
+                    checksum.update(record);
+                    if ((int) checksum.getValue() != expectedChecksum)
+                    {
+                        break;
+                    }
+                }
+                catch (EOFException e)
+                {
+                    break;
+                }
+                Object content = this.xstreamService.readDetached(new CompactBinaryReader(new ByteArrayInputStream(record)));
+                replay.apply((Record) content);
+                count++;
+            }
+        }
+        finally
+        {
+            in.close();
+        }
+        return count;
+    }
+
+    /**
+     * State of the elements changed by an edit
+     */
+    private static class Record
+    {
+        /** Top level nodes, with their children */
+        private List<INode> nodes = new ArrayList<INode>();
+        private List<IEdge> edges = new ArrayList<IEdge>();
+        private List<Id> startNodeIds = new ArrayList<Id>();
+        private List<Id> endNodeIds = new ArrayList<Id>();
+        private List<Id> removedIds = new ArrayList<Id>();
+    }
+
+    /**
+     * Applies records onto a graph. As the graph gives new ids to the elements added to it, elements are found by the
+     * ids they had when they were recorded.
+     */
+    private static class Replay
+    {
+        private Replay(IGraph graph)
+        {
+            this.graph = graph;
+        }
+
+        private void apply(Record record)
+        {
+            for (Id anId : record.removedIds)
+            {
+                INode node = findNode(anId);
+                if (node != null)
+                {
+                    this.graph.removeNode(node);
+                    continue;
+                }
+                IEdge edge = findEdge(anId);
+                if (edge != null)
+                {
+                    this.graph.removeEdge(edge);
+                }
+            }
+            for (INode aNode : record.nodes)
+            {
+                putNode(aNode);
+            }
+            for (int i = 0; i < record.edges.size(); i++)
+            {
+                IEdge anEdge = record.edges.get(i);
+                IEdge previousEdge = findEdge(anEdge.getId());
+                if (previousEdge != null)
+                {
+                    this.graph.removeEdge(previousEdge);
+                }
+                Id endNodeId = record.endNodeIds.get(i);
+                // Rebuilt before being connected, as connecting it computes its contact points
+                anEdge.reconstruction();
+                connect(anEdge, anEdge.getId(), findNode(record.startNodeIds.get(i)), endNodeId == null ? null : findNode(endNodeId));
+            }
+        }
+
+        /**
+         * Replaces the nodes of a recorded tree (wherever they are in the graph) by the tree
+         *
+         * @param topLevelNode
+         */
+        private void putNode(INode topLevelNode)
+        {
+            List<INode> recordedNodes = new ArrayList<INode>();
+            recordedNodes.add(topLevelNode);
+            for (int i = 0; i < recordedNodes.size(); i++)
+            {
+                INode aNode = recordedNodes.get(i);
+                for (INode aChild : aNode.getChildren())
+                {
+                    aChild.setParent(aNode);
+                    recordedNodes.add(aChild);
+                }
+            }
+            // Edges connected to the previous nodes are removed with them, then connected again to the new ones
+            List<INode> previousNodes = new ArrayList<INode>();
+            Map<IEdge, Id> connectedEdges = new IdentityHashMap<IEdge, Id>();
+            List<IEdge> connectedEdgesOrder = new ArrayList<IEdge>();
+            for (INode aNode : recordedNodes)
+            {
+                INode previousNode = findNode(aNode.getId());
+                if (previousNode == null)
+                {
+                    continue;
+                }
+                previousNodes.add(previousNode);
+                List<INode> fifo = new ArrayList<INode>();
+                fifo.add(previousNode);
+                for (int i = 0; i < fifo.size(); i++)
+                {
+                    fifo.addAll(fifo.get(i).getChildren());
+                    for (IEdge anEdge : this.graph.getConnectedEdges(fifo.get(i)))
+                    {
+                        if (!connectedEdges.containsKey(anEdge))
+                        {
+                            connectedEdges.put(anEdge, getRecordedId(anEdge));
+                            connectedEdgesOrder.add(anEdge);
+                        }
+                    }
+                }
+            }
+            Map<IEdge, Id[]> connectedNodeIds = new IdentityHashMap<IEdge, Id[]>();
+            for (IEdge anEdge : connectedEdgesOrder)
+            {
+                connectedNodeIds.put(anEdge, new Id[] {
+                        getRecordedId(anEdge.getStartNode()), getRecordedId(anEdge.getEndNode())
+                });
+            }
+            if (!previousNodes.isEmpty())
+            {
+                this.graph.removeNode(previousNodes.toArray(new INode[previousNodes.size()]));
+            }
+
+            Map<Id, INode> recordedIds = new HashMap<Id, INode>();
+            for (INode aNode : recordedNodes)
+            {
+                recordedIds.put(aNode.getId(), aNode);
+            }
+            topLevelNode.setGraph(this.graph);
+            topLevelNode.reconstruction();
+            // Added where no node can become its parent, then moved to its recorded location
+            Point2D location = topLevelNode.getLocation();
+            Rectangle2D bounds = this.graph.getDrawingBounds(this.graph.getAllNodes(), Collections.<IEdge> emptyList());
+            Point2D freeLocation = bounds == null ? location : new Point2D.Double(bounds.getMinX() - 1, bounds.getMinY() - 1);
+            this.graph.addNode(topLevelNode, freeLocation);
+            topLevelNode.setLocation(location);
+            for (Map.Entry<Id, INode> entry : recordedIds.entrySet())
+            {
+                this.nodes.put(entry.getKey(), entry.getValue());
+                this.nodeIds.put(entry.getValue(), entry.getKey());
+            }
+
+            for (IEdge anEdge : connectedEdgesOrder)
+            {
+                Id[] nodeIds = connectedNodeIds.get(anEdge);
+                connect(anEdge, connectedEdges.get(anEdge), findNode(nodeIds[0]), nodeIds[1] == null ? null : findNode(nodeIds[1]));
+            }
+        }
+
+        /**
+         * Connects an edge, unless one of its nodes doesn't exist anymore
+         *
+         * @param edge
+         * @param recordedId
+         * @param startNode
+         * @param endNode
+         */
+        private void connect(IEdge edge, Id recordedId, INode startNode, INode endNode)
+        {
+            if (startNode == null)
+            {
+                return;
+            }
+            boolean isConnected = this.graph.connect(edge, startNode, edge.getStartLocation(), endNode, edge.getEndLocation(),
+                    edge.getTransitionPoints());
+            if (!isConnected)
+            {
+                return;
+            }
+            this.edges.put(recordedId, edge);
+            this.edgeIds.put(edge, recordedId);
+        }
+
+        /**
+         * @param recordedId
+         * @return the node which had this id when it was recorded (or read from the checkpoint) if it is on the graph
+         */
+        private INode findNode(Id recordedId)
+        {
+            INode node = this.nodes.get(recordedId);
+            if (node == null)
+            {
+                node = this.graph.findNode(recordedId);
+                return node != null && !this.nodeIds.containsKey(node) ? node : null;
+            }
+            return this.graph.findNode(node.getId()) == node ? node : null;
+        }
+
+        /**
+         * @param recordedId
+         * @return the edge which had this id when it was recorded (or read from the checkpoint) if it is on the graph
+         */
+        private IEdge findEdge(Id recordedId)
+        {
+            IEdge edge = this.edges.get(recordedId);
+            if (edge == null)
+            {
+                edge = this.graph.findEdge(recordedId);
+                return edge != null && !this.edgeIds.containsKey(edge) ? edge : null;
+            }
+            return this.graph.findEdge(edge.getId()) == edge ? edge : null;
+        }
+
+        private Id getRecordedId(INode node)
+        {
+            if (node == null)
+            {
+                return null;
+            }
+            Id recordedId = this.nodeIds.get(node);
+            return recordedId != null ? recordedId : node.getId();
+        }
+
+        private Id getRecordedId(IEdge edge)
+        {
+            Id recordedId = this.edgeIds.get(edge);
+            return recordedId != null ? recordedId : edge.getId();
+        }
+
+        private final IGraph graph;
+        private final Map<Id, INode> nodes = new HashMap<Id, INode>();
+        private final Map<INode, Id> nodeIds = new IdentityHashMap<INode, Id>();
+        private final Map<Id, IEdge> edges = new HashMap<Id, IEdge>();
+        private final Map<IEdge, Id> edgeIds = new IdentityHashMap<IEdge, Id>();
+    }
+
+    private final File file;
+    private final XStreamBasedPersistenceService xstreamService = new XStreamBasedPersistenceService();
+
+    private static final String EXTENSION = ".journal";
+    private static final int MAX_RECORD_LENGTH = 64 * 1024 * 1024;
+}
@@ -0,0 +1,40 @@
+package com.horstmann.violet.framework.file.persistence;
+
+import com.horstmann.violet.product.diagram.abstracts.Id;
+import com.thoughtworks.xstream.converters.Converter;
+import com.thoughtworks.xstream.converters.MarshallingContext;
+import com.thoughtworks.xstream.converters.UnmarshallingContext;
+import com.thoughtworks.xstream.io.HierarchicalStreamReader;
+import com.thoughtworks.xstream.io.HierarchicalStreamWriter;
+
+/**
+ * Writes an id as its text value in a "value" attribute, as it was written when ids were kept as strings, so that files
+ * don't change.
+ */
+class IdConverter implements Converter
+{
+
+    public boolean canConvert(Class type)
+    {
+        return Id.class.equals(type);
+    }
+
+    public void marshal(Object source, HierarchicalStreamWriter writer, MarshallingContext context)
+    {
+        writer.addAttribute(VALUE_ATTRIBUTE, ((Id) source).getValue());
+    }
+
+    public Object unmarshal(HierarchicalStreamReader reader, UnmarshallingContext context)
+    {
+        String value = reader.getAttribute(VALUE_ATTRIBUTE);
+        if (value == null)
+        {
+            // Graphs give new ids to their elements anyway
+            return new Id();
+        }
+        return new Id(value);
+    }
+
+    private static final String VALUE_ATTRIBUTE = "value";
+
+}
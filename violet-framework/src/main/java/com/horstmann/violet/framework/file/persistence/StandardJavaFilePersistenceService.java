@@ -242,22 +242,15 @@ public class StandardJavaFilePersistenceService implements IFilePersistenceServi
             {
                 super.initialize(type, oldInstance, newInstance, out);
                 ImageNode n = (ImageNode) oldInstance;
-                try
+                String imageContent = n.getImageContent();
+                int width = n.getImageWidth();
+                int height = n.getImageHeight();
+                out.writeStatement(new Statement(oldInstance, "setImageContent", new Object[]
                 {
-                    String imageContent = n.getImageContent();
-                    int width = n.getImageWidth();
-                    int height = n.getImageHeight();
-                    out.writeStatement(new Statement(oldInstance, "setImageContent", new Object[]
-                    {
-                            imageContent,
-                            width,
-                            height
-                    }));
-                }
-                catch (InterruptedException e)
-                {
-                    throw new RuntimeException("Error while serializing ImageNode", e);
-                }
+                        imageContent,
+                        width,
+                        height
+                }));
             }
         });
     }
@@ -21,22 +21,17 @@
 
 package com.horstmann.violet.framework.file.persistence;
 
-import java.io.ByteArrayInputStream;
-import java.io.IOException;
 import java.io.InputStream;
-import java.io.InputStreamReader;
 import java.io.OutputStream;
-import java.io.UnsupportedEncodingException;
 import java.util.HashMap;
-import java.util.Hashtable;
-import java.util.Iterator;
 import java.util.Map;
-import java.util.Set;
 
 import com.horstmann.violet.product.diagram.property.ArrowheadChoiceList;
 import com.horstmann.violet.product.diagram.property.BentStyleChoiceList;
 import com.horstmann.violet.product.diagram.property.LineStyleChoiceList;
+import com.horstmann.violet.framework.util.StringFilterInputStream;
 import com.horstmann.violet.framework.util.StringFilterOutputStream;
+import com.horstmann.violet.framework.util.StringReplacementTrie;
 import com.horstmann.violet.product.diagram.common.node.DiagramLinkNode;
 import com.horstmann.violet.product.diagram.common.edge.NoteEdge;
 import com.horstmann.violet.product.diagram.common.node.NoteNode;
@@ -59,8 +54,30 @@ public class Violet016BackportFormatService
      */
     public static InputStream convertFromViolet016(InputStream in)
     {
+        return new StringFilterInputStream(in, getFromViolet016Trie());
+    }
+
+    /**
+     * This filter guarantees compatibility for Violet 0.16 file format
+     * 
+     * @param out raw output stream
+     * @return converted output stream
+     */
+    public static OutputStream convertToViolet016(OutputStream out)
+    {
+        return new StringFilterOutputStream(out, getToViolet016Trie());
+    }
 
-        Map<String, String> replaceMap = new Hashtable<String, String>();
+    /**
+     * @return old class names and their current names, built once until new entries are registered
+     */
+    private static synchronized StringReplacementTrie getFromViolet016Trie()
+    {
+        if (fromViolet016Trie != null)
+        {
+            return fromViolet016Trie;
+        }
+        Map<String, String> replaceMap = new HashMap<String, String>();
         replaceMap.putAll(violet016CompatibilityMap);
 
         // fix framework elements
@@ -74,76 +91,20 @@ public class Violet016BackportFormatService
         replaceMap.put("com.horstmann.violet.NoteNode", NoteNode.class.getName());
         replaceMap.put("com.horstmann.violet.PointNode", PointNode.class.getName());
 
-        String original = getInputStreamContent(in);
-        String replaced = replaceAll(original, replaceMap);
-        try
-        {
-            return new ByteArrayInputStream(replaced.getBytes("UTF-8"));
-        }
-        catch (UnsupportedEncodingException ex)
-        {
-            ex.printStackTrace();
-            return new ByteArrayInputStream(replaced.getBytes());
-        }
+        fromViolet016Trie = new StringReplacementTrie(replaceMap);
+        return fromViolet016Trie;
     }
 
     /**
-     * Converts inputStream to String
-     * 
-     * @param in stream
-     * @return string
+     * @return current class names and their old names, built once until new entries are registered
      */
-    private static String getInputStreamContent(InputStream in)
+    private static synchronized StringReplacementTrie getToViolet016Trie()
     {
-        try
+        if (toViolet016Trie != null)
         {
-            InputStreamReader isr = new InputStreamReader(in, "UTF-8");
-            StringBuffer buffer = new StringBuffer();
-            int len = 1024;
-            char buf[] = new char[len];
-            int numRead;
-            while ((numRead = isr.read(buf, 0, len)) != -1)
-            {
-                buffer.append(buf, 0, numRead);
-            }
-            isr.close();
-            return buffer.toString();
+            return toViolet016Trie;
         }
-        catch (IOException e)
-        {
-            throw new RuntimeException(e);
-        }
-    }
-
-    /**
-     * Filters a string and replaces all key courrences issed from the map by its valye
-     * 
-     * @param input string
-     * @param replaceMap key = searchedString / value = replaceString
-     * @return filtered string
-     */
-    private static String replaceAll(String input, Map<String, String> replaceMap)
-    {
-        Set<String> set = replaceMap.keySet();
-        for (Iterator<String> iter = set.iterator(); iter.hasNext();)
-        {
-            String searchedStr = iter.next();
-            String replaceStr = replaceMap.get(searchedStr);
-            input = input.replaceAll(searchedStr, replaceStr);
-        }
-        return input;
-    }
-
-    /**
-     * This filter guarantees compatibility for Violet 0.16 file format
-     * 
-     * @param out raw output stream
-     * @return converted output stream
-     */
-    public static OutputStream convertToViolet016(OutputStream out)
-    {
-
-        Map<String, String> replaceMap = new Hashtable<String, String>();
+        Map<String, String> replaceMap = new HashMap<String, String>();
         replaceMap.putAll(getReversedMap(violet016CompatibilityMap));
 
         // fix framework elements
@@ -156,9 +117,8 @@ public class Violet016BackportFormatService
         replaceMap.put(NoteNode.class.getName(), "com.horstmann.violet.NoteNode");
         replaceMap.put(PointNode.class.getName(), "com.horstmann.violet.PointNode");
 
-        StringFilterOutputStream filteredOutputStream = new StringFilterOutputStream(out, replaceMap);
-        return filteredOutputStream;
-
+        toViolet016Trie = new StringReplacementTrie(replaceMap);
+        return toViolet016Trie;
     }
 
     /**
@@ -167,9 +127,11 @@ public class Violet016BackportFormatService
      * 
      * @param entries
      */
-    public static void addViolet016CompatibilityEntries(Map<String, String> entries)
+    public static synchronized void addViolet016CompatibilityEntries(Map<String, String> entries)
     {
         violet016CompatibilityMap.putAll(entries);
+        fromViolet016Trie = null;
+        toViolet016Trie = null;
     }
 
     /**
@@ -198,4 +160,8 @@ public class Violet016BackportFormatService
      */
     private static Map<String, String> violet016CompatibilityMap = new HashMap<String, String>();
 
+    private static StringReplacementTrie fromViolet016Trie;
+
+    private static StringReplacementTrie toViolet016Trie;
+
 }
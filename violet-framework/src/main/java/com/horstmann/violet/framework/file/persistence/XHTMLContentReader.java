@@ -0,0 +1,177 @@
+package com.horstmann.violet.framework.file.persistence;
+
+import java.io.IOException;
+import java.io.PushbackReader;
+import java.io.Reader;
+import java.util.regex.Pattern;
+
+/**
+ * Reads the graph content embedded in a Violet html file, that is to say the text of the script tag which has the
+ * "content" id, without its CDATA section or comment markers. The html file is read as this reader is read, so only a
+ * few characters are kept in memory whatever the file size.
+ */
+class XHTMLContentReader extends Reader
+{
+    /**
+     * @param in html file
+     */
+    XHTMLContentReader(Reader in)
+    {
+        this.in = new PushbackReader(in, LOOKAHEAD_SIZE);
+    }
+
+    @Override
+    public int read(char[] buffer, int offset, int length) throws IOException
+    {
+        if (!this.isContentFound)
+        {
+            this.isContentFound = true;
+            this.isContentEnded = !findContent();
+        }
+        if (this.isContentEnded || length == 0)
+        {
+            return this.isContentEnded ? -1 : 0;
+        }
+        int count = 0;
+        while (count < length)
+        {
+            int c = this.in.read();
+            if (c == -1 || (c == this.endMarker.charAt(0) && isAt(this.endMarker.substring(1), this.isEndMarkerCaseSensitive)))
+            {
+                this.isContentEnded = true;
+                break;
+            }
+            buffer[offset + count] = (char) c;
+            count++;
+        }
+        return count == 0 ? -1 : count;
+    }
+
+    @Override
+    public void close() throws IOException
+    {
+        this.in.close();
+    }
+
+    /**
+     * Skips the html file up to the content and finds how it ends
+     *
+     * @return false if there's no content
+     * @throws IOException
+     */
+    private boolean findContent() throws IOException
+    {
+        while (skipTo("<script", false))
+        {
+            StringBuilder attributes = new StringBuilder();
+            int c = this.in.read();
+            while (c != -1 && c != '>' && attributes.length() < MAX_TAG_LENGTH)
+            {
+                attributes.append((char) c);
+                c = this.in.read();
+            }
+            if (c == '>' && CONTENT_ID.matcher(attributes).find())
+            {
+                this.endMarker = "</script";
+                this.isEndMarkerCaseSensitive = false;
+                skipWhitespaces();
+                if (isAt("<!--", true))
+                {
+                    this.endMarker = "-->";
+                    this.isEndMarkerCaseSensitive = true;
+                    skipWhitespaces();
+                }
+                if (isAt("<![CDATA[", true))
+                {
+                    this.endMarker = "]]>";
+                    this.isEndMarkerCaseSensitive = true;
+                }
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Reads up to the end of a string
+     *
+     * @param string
+     * @param isCaseSensitive
+     * @return false if the end of the file has been reached before
+     * @throws IOException
+     */
+    private boolean skipTo(String string, boolean isCaseSensitive) throws IOException
+    {
+        int c = this.in.read();
+        while (c != -1)
+        {
+            if (isSameChar(c, string.charAt(0), isCaseSensitive) && isAt(string.substring(1), isCaseSensitive))
+            {
+                return true;
+            }
+            c = this.in.read();
+        }
+        return false;
+    }
+
+    /**
+     * Reads a string if it comes next, or reads nothing
+     *
+     * @param string
+     * @param isCaseSensitive
+     * @return true if the string has been read
+     * @throws IOException
+     */
+    private boolean isAt(String string, boolean isCaseSensitive) throws IOException
+    {
+        char[] next = new char[string.length()];
+        int count = 0;
+        boolean isMatching = true;
+        while (isMatching && count < next.length)
+        {
+            int c = this.in.read();
+            if (c == -1)
+            {
+                isMatching = false;
+                break;
+            }
+            next[count] = (char) c;
+            isMatching = isSameChar(c, string.charAt(count), isCaseSensitive);
+            count++;
+        }
+        if (isMatching)
+        {
+            return true;
+        }
+        this.in.unread(next, 0, count);
+        return false;
+    }
+
+    private void skipWhitespaces() throws IOException
+    {
+        int c = this.in.read();
+        while (c != -1 && Character.isWhitespace(c))
+        {
+            c = this.in.read();
+        }
+        if (c != -1)
+        {
+            this.in.unread(c);
+        }
+    }
+
+    private static boolean isSameChar(int c, char expected, boolean isCaseSensitive)
+    {
+        return c == expected || (!isCaseSensitive && Character.toLowerCase(c) == expected);
+    }
+
+    private final PushbackReader in;
+    private boolean isContentFound;
+    private boolean isContentEnded;
+    private String endMarker;
+    private boolean isEndMarkerCaseSensitive;
+
+    private static final int LOOKAHEAD_SIZE = 16;
+    private static final int MAX_TAG_LENGTH = 1024;
+    private static final Pattern CONTENT_ID = Pattern.compile("\\bid\\s*=\\s*[\"']?content(?![\\w-])", Pattern.CASE_INSENSITIVE);
+}
@@ -1,26 +1,28 @@
 package com.horstmann.violet.framework.file.persistence;
 
 import java.io.BufferedInputStream;
-import java.io.ByteArrayInputStream;
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
 import java.io.ByteArrayOutputStream;
+import java.io.FilterOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
 import java.io.OutputStream;
 import java.io.OutputStreamWriter;
-import java.io.StringWriter;
+import java.io.Reader;
 import java.io.Writer;
-
-import javax.imageio.ImageIO;
-import javax.swing.text.MutableAttributeSet;
-import javax.swing.text.html.HTML;
-import javax.swing.text.html.HTMLEditorKit;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
 
 import org.apache.commons.codec.binary.Base64OutputStream;
 
 import com.horstmann.violet.framework.file.export.FileExportService;
 import com.horstmann.violet.framework.injection.bean.ManiocFramework.InjectedBean;
 import com.horstmann.violet.framework.injection.bean.ManiocFramework.ManagedBean;
+import com.horstmann.violet.framework.userpreferences.UserPreferencesService;
 import com.horstmann.violet.framework.util.VersionChecker;
 import com.horstmann.violet.product.diagram.abstracts.IGraph;
 
@@ -30,18 +32,35 @@ public class XHTMLPersistenceService implements IFilePersistenceService
 
     private static final String TEMPLATE_FILE = "XHTMLFileTemplate.violet.html";
 
-    private static final String IMAGE_TYPE = "png";
-
     private static final String HTML_INLINE_IMAGE_PREFIX = "data:image/png;base64,";
 
+    private static final String HTML_INLINE_SVG_IMAGE_PREFIX = "data:image/svg+xml;base64,";
+
     private static final String TEMPLATE_VERSION_KEY = "${version}";
     
     private static final String TEMPLATE_IMAGE_KEY = "${image}";
 
     private static final String TEMPLATE_XMLCONTENT_KEY = "${content}";
 
+    private static final Pattern TEMPLATE_KEY = Pattern.compile("\\$\\{\\w+\\}");
+
+    /**
+     * Template split around its keys (loaded once)
+     */
+    private static List<String> templateParts;
+
     private XStreamBasedPersistenceService xstreamService = new XStreamBasedPersistenceService();
 
+    /**
+     * Maximum width and height of the embedded image (0 to embed it full size)
+     */
+    private int maxImageSize = 0;
+
+    /**
+     * True to embed a SVG image rather than a PNG one
+     */
+    private boolean isSvgImage = false;
+
     @InjectedBean
     private VersionChecker versionChecker;
     
@@ -50,23 +69,44 @@ public class XHTMLPersistenceService implements IFilePersistenceService
     {
         try
         {
-            OutputStreamWriter writer = new OutputStreamWriter(out, "UTF-8");
-        	InputStream templateAsStream = this.getClass().getResourceAsStream(TEMPLATE_FILE);
-            String template = getInputStreamContent(templateAsStream);
-            ByteArrayOutputStream graphOutputStream = new ByteArrayOutputStream();
-            xstreamService.write(graph, graphOutputStream);
-            String graphString = graphOutputStream.toString();
-            ByteArrayOutputStream imageOutputStream = new ByteArrayOutputStream();
-            Base64OutputStream base64ImageOutputStream = new Base64OutputStream(imageOutputStream);
-            ImageIO.write(FileExportService.getImage(graph), IMAGE_TYPE, base64ImageOutputStream);
-            String imageString = HTML_INLINE_IMAGE_PREFIX + imageOutputStream.toString();
-            template = template.replace(TEMPLATE_VERSION_KEY, this.versionChecker.getAppVersionNumber());
-            template = template.replace(TEMPLATE_XMLCONTENT_KEY, graphString);
-            template = template.replace(TEMPLATE_IMAGE_KEY, imageString);
-            writer.write(new String(template.getBytes()));
-            templateAsStream.close();
-            imageOutputStream.close();
-            base64ImageOutputStream.close();
+            Writer writer = new BufferedWriter(new OutputStreamWriter(out, "UTF-8"));
+            List<String> templateParts = getTemplateParts();
+            for (int i = 0; i < templateParts.size(); i++)
+            {
+                String part = templateParts.get(i);
+                if (i % 2 == 0)
+                {
+                    writer.write(part);
+                }
+                else if (TEMPLATE_VERSION_KEY.equals(part))
+                {
+                    writer.write(this.versionChecker.getAppVersionNumber());
+                }
+                else if (TEMPLATE_XMLCONTENT_KEY.equals(part))
+                {
+                    xstreamService.write(graph, writer);
+                }
+                else if (TEMPLATE_IMAGE_KEY.equals(part))
+                {
+                    writer.write(this.isSvgImage ? HTML_INLINE_SVG_IMAGE_PREFIX : HTML_INLINE_IMAGE_PREFIX);
+                    writer.flush();
+                    // Base64 is ascii, so it goes straight to the output stream
+                    Base64OutputStream base64ImageOutputStream = new Base64OutputStream(new UnclosableOutputStream(out));
+                    if (this.isSvgImage)
+                    {
+                        FileExportService.exportToSvg(graph, base64ImageOutputStream);
+                    }
+                    else if (this.maxImageSize > 0)
+                    {
+                        FileExportService.exportThumbnailToPng(graph, base64ImageOutputStream, this.maxImageSize, this.maxImageSize);
+                    }
+                    else
+                    {
+                        FileExportService.exportToPng(graph, base64ImageOutputStream);
+                    }
+                    base64ImageOutputStream.close();
+                }
+            }
             writer.close();
         }
         catch (IOException e)
@@ -75,26 +115,75 @@ public class XHTMLPersistenceService implements IFilePersistenceService
         }
     }
 
+    /**
+     * Embeds a downscaled image of the diagram instead of a full size one. The diagram itself is still saved entirely.
+     *
+     * @param maxImageSize maximum width and height of the embedded image, in pixels (0 to embed it full size)
+     */
+    public void setMaxImageSize(int maxImageSize)
+    {
+        this.maxImageSize = maxImageSize;
+    }
+
+    /**
+     * Embeds a SVG image of the diagram instead of a PNG one. It is smaller and faster to write for big diagrams.
+     *
+     * @param isSvgImage
+     */
+    public void setSvgImage(boolean isSvgImage)
+    {
+        this.isSvgImage = isSvgImage;
+    }
+
+    /**
+     * Takes the settings of the embedded image (format and maximum size) from user preferences
+     *
+     * @param userPreferencesService
+     */
+    public void applyUserPreferences(UserPreferencesService userPreferencesService)
+    {
+        setSvgImage(userPreferencesService.isSvgImageInFiles());
+        setMaxImageSize(userPreferencesService.getImageMaxSizeInFiles());
+    }
+
     @Override
     public IGraph read(InputStream in) throws IOException
     {
-        InputStreamReader reader = new InputStreamReader(in, "UTF-8");
-    	XHTMLPersistenceServiceParserGetter kit = new XHTMLPersistenceServiceParserGetter();
-        HTMLEditorKit.Parser parser = kit.getParser();
-        StringWriter writer = new StringWriter();
-        HTMLEditorKit.ParserCallback callback = new XHTMLPersistenceServiceParserCallback(writer);
-        parser.parse(reader, callback, true);
-        String xmlContent = writer.toString();
-        InputStream xmlContentStream = new ByteArrayInputStream(xmlContent.getBytes());
-        IGraph graph = this.xstreamService.read(xmlContentStream);
+        Reader reader = new XHTMLContentReader(new BufferedReader(new InputStreamReader(in, "UTF-8")));
+        IGraph graph = this.xstreamService.read(reader);
         reader.close();
-        xmlContentStream.close();
-        reader.close();
-        writer.close();
         return graph;
     }
 
-    private String getInputStreamContent(InputStream in) throws IOException
+    /**
+     * Splits the file template around its keys. Parts at even indexes are html to copy, the ones at odd indexes are
+     * keys to replace.
+     *
+     * @return template parts
+     * @throws IOException
+     */
+    private static synchronized List<String> getTemplateParts() throws IOException
+    {
+        if (templateParts == null)
+        {
+            InputStream templateAsStream = XHTMLPersistenceService.class.getResourceAsStream(TEMPLATE_FILE);
+            String template = getInputStreamContent(templateAsStream);
+            List<String> parts = new ArrayList<String>();
+            Matcher matcher = TEMPLATE_KEY.matcher(template);
+            int index = 0;
+            while (matcher.find())
+            {
+                parts.add(template.substring(index, matcher.start()));
+                parts.add(matcher.group());
+                index = matcher.end();
+            }
+            parts.add(template.substring(index));
+            templateParts = parts;
+        }
+        return templateParts;
+    }
+
+    private static String getInputStreamContent(InputStream in) throws IOException
     {
         BufferedInputStream bis = new BufferedInputStream(in);
         ByteArrayOutputStream buf = new ByteArrayOutputStream();
@@ -112,85 +201,27 @@ public class XHTMLPersistenceService implements IFilePersistenceService
         return content;
     }
 
-    private class XHTMLPersistenceServiceParserGetter extends HTMLEditorKit
+    /**
+     * Output stream which lets the underlying stream open when closed
+     */
+    private static class UnclosableOutputStream extends FilterOutputStream
     {
-        public HTMLEditorKit.Parser getParser()
-        {
-            return super.getParser();
-        }
-    }
-
-    private class XHTMLPersistenceServiceParserCallback extends HTMLEditorKit.ParserCallback
-    {
-
-        private Writer out;
-
-        private boolean inHeader = false;
-
-        public XHTMLPersistenceServiceParserCallback(Writer out)
+        public UnclosableOutputStream(OutputStream out)
         {
-            this.out = out;
+            super(out);
         }
 
-        public void handleStartTag(HTML.Tag tag, MutableAttributeSet attributes, int position)
-        {
-            if (!tag.equals(HTML.Tag.SCRIPT))
-            {
-                return;
-            }
-            if (!attributes.containsAttribute(HTML.getAttributeKey("id"), "content"))
-            {
-                return;
-            }
-            this.inHeader = true;
-        }
-
-        public void handleEndTag(HTML.Tag tag, int position)
-        {
-            if (tag.equals(HTML.Tag.SCRIPT))
-            {
-                if (this.inHeader)
-                {
-                    this.inHeader = false;
-                }
-            }
-            // work around bug in the parser that fails to call flush
-            if (tag.equals(HTML.Tag.HTML)) this.flush();
-        }
-        
-
         @Override
-        public void handleComment(char[] text, int position)
+        public void write(byte[] b, int off, int len) throws IOException
         {
-            if (this.inHeader)
-            {
-                try
-                {
-                    String xmlContent = new String(text);
-                    xmlContent = xmlContent.replace("<![CDATA[", "");
-                    xmlContent = xmlContent.replace("]]>", "");
-                    out.write(xmlContent);
-                    out.flush();
-                }
-                catch (IOException ex)
-                {
-                    throw new RuntimeException(ex);
-                }
-            }
+            out.write(b, off, len);
         }
 
-        public void flush()
+        @Override
+        public void close() throws IOException
         {
-            try
-            {
-                out.flush();
-            }
-            catch (IOException e)
-            {
-                throw new RuntimeException(e);
-            }
+            flush();
         }
-
     }
 
 }
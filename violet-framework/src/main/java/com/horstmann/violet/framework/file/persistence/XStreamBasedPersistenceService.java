@@ -6,6 +6,8 @@ import java.io.InputStream;
 import java.io.InputStreamReader;
 import java.io.OutputStream;
 import java.io.OutputStreamWriter;
+import java.io.Reader;
+import java.io.Writer;
 import java.util.Collection;
 import java.util.List;
 
@@ -16,12 +18,17 @@ import com.horstmann.violet.framework.plugin.IDiagramPlugin;
 import com.horstmann.violet.framework.plugin.PluginRegistry;
 import com.horstmann.violet.product.diagram.property.LineStyleChoiceList;
 import com.horstmann.violet.product.diagram.abstracts.IGraph;
+import com.horstmann.violet.product.diagram.abstracts.edge.AbstractEdge;
 import com.horstmann.violet.product.diagram.abstracts.edge.IEdge;
+import com.horstmann.violet.product.diagram.abstracts.node.AbstractNode;
 import com.horstmann.violet.product.diagram.abstracts.node.INode;
 import com.horstmann.violet.product.diagram.property.ArrowheadChoiceList;
 import com.horstmann.violet.product.diagram.property.BentStyleChoiceList;
 import com.thoughtworks.xstream.XStream;
-import com.thoughtworks.xstream.io.xml.DomDriver;
+import com.thoughtworks.xstream.io.HierarchicalStreamReader;
+import com.thoughtworks.xstream.io.HierarchicalStreamWriter;
+import com.thoughtworks.xstream.io.xml.PrettyPrintWriter;
+import com.thoughtworks.xstream.io.xml.StaxDriver;
 
 @ManagedBean(registeredManually=true)
 public class XStreamBasedPersistenceService implements IFilePersistenceService {
@@ -36,15 +43,43 @@ public class XStreamBasedPersistenceService implements IFilePersistenceService {
 	@Override
 	public IGraph read(InputStream in) throws IOException {
 		InputStreamReader reader = new InputStreamReader(in);
-		XStream xStream = new XStream(new DomDriver("UTF-8"));
-		xStream = getConfiguredXStream(xStream);
-		Object fromXML = xStream.fromXML(reader);
+		IGraph graph = read(reader);
+		reader.close();
+		return graph;
+	}
+
+	/**
+	 * Reads a graph from characters (the reader is not closed)
+	 * 
+	 * @param reader
+	 * @return the graph that is read in
+	 */
+	public IGraph read(Reader reader) {
+		return toGraph(getXStream().fromXML(reader));
+	}
+
+	/**
+	 * Reads a graph from any tree reader, with the same mapping as xml files
+	 * 
+	 * @param reader
+	 * @return the graph that is read in
+	 */
+	IGraph read(HierarchicalStreamReader reader) {
+		return toGraph(getXStream().unmarshal(reader));
+	}
+
+	/**
+	 * Finishes a graph made by XStream
+	 * 
+	 * @param fromXML
+	 * @return graph
+	 */
+	private IGraph toGraph(Object fromXML) {
 		IGraph graph = (IGraph) fromXML;
 		Collection<INode> allNodes = graph.getAllNodes();
 		for (INode aNode : allNodes) {
 			aNode.setGraph(graph);
 		}
-		reader.close();
 		graph.deserializeSupport();
 		return graph;
 	}
@@ -53,21 +88,111 @@ public class XStreamBasedPersistenceService implements IFilePersistenceService {
 	public void write(IGraph graph, OutputStream out) {
 		try {
 			OutputStreamWriter writer = new OutputStreamWriter(out);
-			XStream xStream = new XStream(new DomDriver("UTF-8"));
-			xStream = getConfiguredXStream(xStream);
-			xStream.toXML(graph, writer);
+			write(graph, writer);
 			writer.close();
 		} catch (IOException e) {
 			throw new RuntimeException(e);
 		}
 	}
-	
-	private XStream getConfiguredXStream(XStream xStream) {
+
+	/**
+	 * Writes a graph as characters (the writer is flushed but not closed)
+	 * 
+	 * @param graph
+	 * @param writer
+	 */
+	public void write(IGraph graph, Writer writer) {
+		// Same writer as the one of DomDriver, so files don't change
+		write(graph, new PrettyPrintWriter(writer));
+	}
+
+	/**
+	 * Writes a graph to any tree writer, with the same mapping as xml files (the writer is flushed but not closed)
+	 * 
+	 * @param graph
+	 * @param writer
+	 */
+	void write(IGraph graph, HierarchicalStreamWriter writer) {
+		getXStream().marshal(graph, writer);
+		writer.flush();
+	}
+
+	/**
+	 * Writes graph elements (or any object holding them) to a tree writer, with the same mapping as xml files except
+	 * that nodes don't refer to their parent and edges don't refer to their nodes. So a node is written with its
+	 * children only and an edge alone.
+	 * 
+	 * @param object
+	 * @param writer
+	 */
+	void writeDetached(Object object, HierarchicalStreamWriter writer) {
+		getDetachedXStream().marshal(object, writer);
+		writer.flush();
+	}
+
+	/**
+	 * Reads what writeDetached() wrote. Parents of nodes and nodes of edges are null.
+	 * 
+	 * @param reader
+	 * @return object read
+	 */
+	Object readDetached(HierarchicalStreamReader reader) {
+		return getDetachedXStream().unmarshal(reader);
+	}
+
+	/**
+	 * Gets the XStream instance shared by all the services. Configuring it instantiates a graph of each diagram plugin to
+	 * find node and edge classes, so this is only done again when plugins change. Once configured, XStream can be used
+	 * by several threads at once. It reads with a StAX parser, which streams the document instead of building its DOM.
+	 * 
+	 * @return configured XStream
+	 */
+	private XStream getXStream() {
+		synchronized (XStreamBasedPersistenceService.class) {
+			long pluginRegistryVersion = this.pluginRegistry.getVersion();
+			if (sharedXStream == null || sharedPluginRegistry != this.pluginRegistry || sharedPluginRegistryVersion != pluginRegistryVersion) {
+				sharedXStream = getConfiguredXStream(new XStream(new StaxDriver()));
+				sharedPluginRegistry = this.pluginRegistry;
+				sharedPluginRegistryVersion = pluginRegistryVersion;
+			}
+			return sharedXStream;
+		}
+	}
+
+	/**
+	 * Gets the XStream instance used by writeDetached() and readDetached(), shared like the main one
+	 * 
+	 * @return configured XStream
+	 */
+	private XStream getDetachedXStream() {
+		synchronized (XStreamBasedPersistenceService.class) {
+			long pluginRegistryVersion = this.pluginRegistry.getVersion();
+			if (sharedDetachedXStream == null || sharedDetachedPluginRegistry != this.pluginRegistry || sharedDetachedPluginRegistryVersion != pluginRegistryVersion) {
+				XStream xStream = getConfiguredXStream(new XStream(new StaxDriver()));
+				xStream.omitField(AbstractNode.class, "parent");
+				xStream.omitField(AbstractEdge.class, "startNode");
+				xStream.omitField(AbstractEdge.class, "endNode");
+				sharedDetachedXStream = xStream;
+				sharedDetachedPluginRegistry = this.pluginRegistry;
+				sharedDetachedPluginRegistryVersion = pluginRegistryVersion;
+			}
+			return sharedDetachedXStream;
+		}
+	}
+
+	/**
+	 * Sets the aliases and modes of the file format on a new XStream instance (package visible for benchmarks)
+	 * 
+	 * @param xStream
+	 * @return the same instance
+	 */
+	XStream getConfiguredXStream(XStream xStream) {
 		xStream.autodetectAnnotations(true);
 		xStream.setMode(XStream.ID_REFERENCES);
 		xStream.useAttributeFor(Point2D.Double.class, "x");
 		xStream.useAttributeFor(Point2D.Double.class, "y");
 		xStream.alias("Point2D.Double", Point2D.Double.class);
+		xStream.registerConverter(new IdConverter());
 		xStream.addImmutableType(ArrowheadChoiceList.class);
         xStream.addImmutableType(LineStyleChoiceList.class);
         xStream.addImmutableType(BentStyleChoiceList.class);
@@ -79,13 +204,16 @@ public class XStreamBasedPersistenceService implements IFilePersistenceService {
 				IGraph aDummyGraph = graphClass.newInstance();
 				List<IEdge> edgePrototypes = aDummyGraph.getEdgePrototypes();
 				List<INode> nodePrototypes = aDummyGraph.getNodePrototypes();
+				xStream.processAnnotations(graphClass);
 				for (IEdge anEdgePrototype : edgePrototypes) {
 					Class<? extends IEdge> edgeClass = anEdgePrototype.getClass();
 					xStream.alias(edgeClass.getSimpleName(), anEdgePrototype.getClass());
+					xStream.processAnnotations(edgeClass);
 				}
 				for (INode aNodePrototype : nodePrototypes) {
 					Class<? extends INode> nodeClass = aNodePrototype.getClass();
 					xStream.alias(nodeClass.getSimpleName(), aNodePrototype.getClass());
+					xStream.processAnnotations(nodeClass);
 				}
 			} catch (Exception e) {
 				throw new RuntimeException(e);
@@ -94,4 +222,11 @@ public class XStreamBasedPersistenceService implements IFilePersistenceService {
 		return xStream;
 	}
 
+	private static XStream sharedXStream;
+	private static PluginRegistry sharedPluginRegistry;
+	private static long sharedPluginRegistryVersion;
+	private static XStream sharedDetachedXStream;
+	private static PluginRegistry sharedDetachedPluginRegistry;
+	private static long sharedDetachedPluginRegistryVersion;
+
 }
@@ -99,8 +99,13 @@ public abstract class Content
         {
             throw new IllegalArgumentException("min width can only be a positive number");
         }
+        double oldWidth = getWidth();
         this.minWidth = minWidth;
         refreshUp();
+        if(oldWidth != getWidth())
+        {
+            fireContentResized();
+        }
     }
 
     /**
@@ -112,8 +117,13 @@ public abstract class Content
         {
             throw new IllegalArgumentException("min height can only be a positive number");
         }
+        double oldHeight = getHeight();
         this.minHeight = minHeight;
         refreshUp();
+        if(oldHeight != getHeight())
+        {
+            fireContentResized();
+        }
     }
 
     /**
@@ -152,7 +162,11 @@ public abstract class Content
         {
             throw new IllegalArgumentException("width can only be a positive number");
         }
-        this.width = width;
+        if(this.width != width)
+        {
+            this.width = width;
+            fireContentResized();
+        }
     }
 
     /**
@@ -165,7 +179,11 @@ public abstract class Content
         {
             throw new IllegalArgumentException("height can only be a positive number");
         }
-        this.height = height;
+        if(this.height != height)
+        {
+            this.height = height;
+            fireContentResized();
+        }
     }
 
     /**
@@ -191,10 +209,53 @@ public abstract class Content
         refresh();
     }
 
+    /**
+     * adds an object notified each time the dimensions of this element change
+     * @param listener
+     */
+    public final void addResizeListener(ContentResizeListener listener)
+    {
+        if(null == listener)
+        {
+            throw new NullPointerException("listener can't be null");
+        }
+        if(null == resizeListeners)
+        {
+            resizeListeners = new ArrayList<ContentResizeListener>(1);
+        }
+        resizeListeners.add(listener);
+    }
+
+    /**
+     * removes an object notified each time the dimensions of this element change
+     * @param listener
+     */
+    public final void removeResizeListener(ContentResizeListener listener)
+    {
+        if(null != resizeListeners)
+        {
+            resizeListeners.remove(listener);
+        }
+    }
+
+    private void fireContentResized()
+    {
+        if(null == resizeListeners)
+        {
+            return;
+        }
+        for (int i = 0; i < resizeListeners.size(); i++)
+        {
+            resizeListeners.get(i).onContentResized(this);
+        }
+    }
+
     private ArrayList<Content> parents = new ArrayList<Content>();
 
     private double minWidth = 0;
     private double minHeight = 0;
     private double width = 0;
     private double height = 0;
+
+    private ArrayList<ContentResizeListener> resizeListeners;
 }
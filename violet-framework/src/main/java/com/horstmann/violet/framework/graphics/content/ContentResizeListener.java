@@ -0,0 +1,9 @@
+package com.horstmann.violet.framework.graphics.content;
+
+/**
+ * Notified each time the dimensions of a content change
+ */
+public interface ContentResizeListener
+{
+    void onContentResized(Content content);
+}
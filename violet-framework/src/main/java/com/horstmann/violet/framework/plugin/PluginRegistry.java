@@ -30,6 +30,18 @@ public class PluginRegistry
     public void register(IDiagramPlugin newDiagramPlugin)
     {
         this.diagramPlugins.add(newDiagramPlugin);
+        this.version++;
+    }
+
+    /**
+     * Gets a counter incremented each time a plugin is registered. It allows to cache anything computed from the
+     * plugin list.
+     * 
+     * @return the current registry version
+     */
+    public long getVersion()
+    {
+        return this.version;
     }
     
     /**
@@ -42,5 +54,8 @@ public class PluginRegistry
     /** diagram plugins */
     private List<IDiagramPlugin> diagramPlugins = new ArrayList<IDiagramPlugin>();
 
+    /** registry version */
+    private volatile long version;
+
 
 }
@@ -124,6 +124,17 @@ public class ThemeManager
         currentTheme.activate();
     }
 
+    /**
+     * Sets the theme used to draw diagrams without applying its look and feel, for headless rendering where no Swing
+     * component is shown
+     * 
+     * @param aTheme t
+     */
+    public void setThemeWithoutLookAndFeel(ITheme aTheme)
+    {
+        currentTheme = aTheme;
+    }
+
     /**
      * @return current theme
      */
@@ -155,12 +166,12 @@ public class ThemeManager
     /**
      * Single instance
      */
-    private static ThemeManager instance;
+    private static volatile ThemeManager instance;
 
     /**
      * Current graphical theme
      */
-    private ITheme currentTheme;
+    private volatile ITheme currentTheme;
 
     /**
      * Installed Themes
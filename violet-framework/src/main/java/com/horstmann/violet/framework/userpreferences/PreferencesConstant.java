@@ -102,6 +102,26 @@ public class PreferencesConstant
     public static final PreferencesConstant NETWORK_GUESTCONFIG_HTTP_SERVERURL = new PreferencesConstant(
             "network.guestconfig.http.serverurl");
 
+    /**
+     * Key to store the maximum number of undo history entries per diagram
+     */
+    public static final PreferencesConstant UNDO_HISTORY_MAX_COUNT = new PreferencesConstant("undo.history.maxcount");
+
+    /**
+     * Key to store the maximum estimated memory (in bytes) taken by the undo history of a diagram
+     */
+    public static final PreferencesConstant UNDO_HISTORY_MAX_SIZE = new PreferencesConstant("undo.history.maxsize");
+
+    /**
+     * Key to store if diagram files embed a SVG image rather than a PNG one
+     */
+    public static final PreferencesConstant FILE_IMAGE_SVG = new PreferencesConstant("file.image.svg");
+
+    /**
+     * Key to store the maximum width and height (in pixels) of the image embedded in diagram files
+     */
+    public static final PreferencesConstant FILE_IMAGE_MAX_SIZE = new PreferencesConstant("file.image.maxsize");
+
     
     /**
      * Preference constants list
@@ -110,7 +130,7 @@ public class PreferencesConstant
 
     static
     {
-        LIST = new PreferencesConstant[8];
+        LIST = new PreferencesConstant[11];
         LIST[0] = LOOK_AND_FEEL;
         LIST[1] = RECENT_FILES;
         LIST[2] = OPENED_FILES_ON_WORKSPACE;
@@ -118,6 +138,10 @@ public class PreferencesConstant
         LIST[4] = NETWORK_HOSTCONFIG_USERID;
         LIST[5] = NETWORK_GUESTCONFIG_USERID;
         LIST[6] = NETWORK_GUESTCONFIG_HTTP_SERVERURL;
+        LIST[7] = UNDO_HISTORY_MAX_COUNT;
+        LIST[8] = UNDO_HISTORY_MAX_SIZE;
+        LIST[9] = FILE_IMAGE_SVG;
+        LIST[10] = FILE_IMAGE_MAX_SIZE;
     }
 
 }
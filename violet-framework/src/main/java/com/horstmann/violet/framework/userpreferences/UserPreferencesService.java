@@ -210,6 +210,83 @@ public class UserPreferencesService
         return aFile;
     }
 
+    /**
+     * @return the maximum number of undo history entries per diagram (the default one if the stored value isn't a
+     *         positive number)
+     */
+    public int getUndoHistoryMaxCount()
+    {
+        String value = this.dao.get(PreferencesConstant.UNDO_HISTORY_MAX_COUNT, "");
+        try
+        {
+            int maxCount = Integer.parseInt(value.trim());
+            return maxCount > 0 ? maxCount : DEFAULT_UNDO_HISTORY_MAX_COUNT;
+        }
+        catch (NumberFormatException e)
+        {
+            return DEFAULT_UNDO_HISTORY_MAX_COUNT;
+        }
+    }
+
+    /**
+     * @return the maximum estimated memory (in bytes) taken by the undo history of a diagram (the default one if the
+     *         stored value isn't a positive number)
+     */
+    public long getUndoHistoryMaxSize()
+    {
+        String value = this.dao.get(PreferencesConstant.UNDO_HISTORY_MAX_SIZE, "");
+        try
+        {
+            long maxSize = Long.parseLong(value.trim());
+            return maxSize > 0 ? maxSize : DEFAULT_UNDO_HISTORY_MAX_SIZE;
+        }
+        catch (NumberFormatException e)
+        {
+            return DEFAULT_UNDO_HISTORY_MAX_SIZE;
+        }
+    }
+
+    /**
+     * @return true if diagram files embed a SVG image rather than a PNG one
+     */
+    public boolean isSvgImageInFiles()
+    {
+        return Boolean.parseBoolean(this.dao.get(PreferencesConstant.FILE_IMAGE_SVG, "").trim());
+    }
+
+    /**
+     * @param isSvgImage true to embed a SVG image rather than a PNG one in diagram files
+     */
+    public void setSvgImageInFiles(boolean isSvgImage)
+    {
+        this.dao.put(PreferencesConstant.FILE_IMAGE_SVG, Boolean.toString(isSvgImage));
+    }
+
+    /**
+     * @return the maximum width and height (in pixels) of the image embedded in diagram files, 0 for a full size image
+     */
+    public int getImageMaxSizeInFiles()
+    {
+        String value = this.dao.get(PreferencesConstant.FILE_IMAGE_MAX_SIZE, "");
+        try
+        {
+            return Math.max(0, Integer.parseInt(value.trim()));
+        }
+        catch (NumberFormatException e)
+        {
+            return 0;
+        }
+    }
+
+    /**
+     * @param maxSize maximum width and height (in pixels) of the image embedded in diagram files, 0 for a full size
+     *            image
+     */
+    public void setImageMaxSizeInFiles(int maxSize)
+    {
+        this.dao.put(PreferencesConstant.FILE_IMAGE_MAX_SIZE, Integer.toString(maxSize));
+    }
+
     /**
      * Clear user preferences
      */
@@ -228,4 +305,14 @@ public class UserPreferencesService
      * Recent opened files list capacity
      */
     private static final int DEFAULT_MAX_RECENT_FILES = 10;
+
+    /**
+     * Undo history capacity (same as the default UndoManager limit)
+     */
+    private static final int DEFAULT_UNDO_HISTORY_MAX_COUNT = 100;
+
+    /**
+     * Undo history memory budget
+     */
+    private static final long DEFAULT_UNDO_HISTORY_MAX_SIZE = 32L * 1024 * 1024;
 }
@@ -0,0 +1,148 @@
+package com.horstmann.violet.framework.util;
+
+import java.awt.Shape;
+import java.awt.geom.Line2D;
+import java.awt.geom.PathIterator;
+import java.awt.geom.Point2D;
+import java.awt.geom.Rectangle2D;
+
+/**
+ * Segments of a shape made of straight lines, to test if a point is near the shape by computing distances instead of
+ * stroking the shape with a fat stroke.
+ */
+public class Polyline
+{
+
+    private Polyline(double[] segments, int segmentCount)
+    {
+        this.segments = segments;
+        this.segmentCount = segmentCount;
+        for (int i = 0; i < segmentCount * 4; i += 2)
+        {
+            this.minX = Math.min(this.minX, segments[i]);
+            this.maxX = Math.max(this.maxX, segments[i]);
+            this.minY = Math.min(this.minY, segments[i + 1]);
+            this.maxY = Math.max(this.maxY, segments[i + 1]);
+        }
+    }
+
+    /**
+     * @param shape
+     * @return the segments of the shape, or null if the shape contains curves
+     */
+    public static Polyline valueOf(Shape shape)
+    {
+        double[] segments = new double[32];
+        int segmentCount = 0;
+        double[] coords = new double[6];
+        double startX = 0;
+        double startY = 0;
+        double lastX = 0;
+        double lastY = 0;
+        for (PathIterator iterator = shape.getPathIterator(null); !iterator.isDone(); iterator.next())
+        {
+            int type = iterator.currentSegment(coords);
+            if (type == PathIterator.SEG_MOVETO)
+            {
+                startX = lastX = coords[0];
+                startY = lastY = coords[1];
+                continue;
+            }
+            if (type == PathIterator.SEG_QUADTO || type == PathIterator.SEG_CUBICTO)
+            {
+                return null;
+            }
+            if (type == PathIterator.SEG_CLOSE)
+            {
+                if (lastX == startX && lastY == startY)
+                {
+                    continue;
+                }
+                coords[0] = startX;
+                coords[1] = startY;
+            }
+            if (segmentCount * 4 == segments.length)
+            {
+                double[] newSegments = new double[segments.length * 2];
+                System.arraycopy(segments, 0, newSegments, 0, segments.length);
+                segments = newSegments;
+            }
+            int offset = segmentCount * 4;
+            segments[offset] = lastX;
+            segments[offset + 1] = lastY;
+            segments[offset + 2] = coords[0];
+            segments[offset + 3] = coords[1];
+            segmentCount++;
+            lastX = coords[0];
+            lastY = coords[1];
+        }
+        return new Polyline(segments, segmentCount);
+    }
+
+    /**
+     * @param aPoint
+     * @param distance
+     * @return true if the point is at the given distance or less from a segment
+     */
+    public boolean isNear(Point2D aPoint, double distance)
+    {
+        double x = aPoint.getX();
+        double y = aPoint.getY();
+        if (x < this.minX - distance || x > this.maxX + distance || y < this.minY - distance || y > this.maxY + distance)
+        {
+            return false;
+        }
+        double squaredDistance = distance * distance;
+        double[] s = this.segments;
+        for (int i = 0; i < this.segmentCount * 4; i += 4)
+        {
+            // Segment bounds first, as edges are mostly made of a few long horizontal and vertical segments
+            if (x < Math.min(s[i], s[i + 2]) - distance || x > Math.max(s[i], s[i + 2]) + distance)
+            {
+                continue;
+            }
+            if (y < Math.min(s[i + 1], s[i + 3]) - distance || y > Math.max(s[i + 1], s[i + 3]) + distance)
+            {
+                continue;
+            }
+            if (Line2D.ptSegDistSq(s[i], s[i + 1], s[i + 2], s[i + 3], x, y) <= squaredDistance)
+            {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * @return the bounds of all segments
+     */
+    public Rectangle2D getBounds()
+    {
+        if (this.segmentCount == 0)
+        {
+            return new Rectangle2D.Double();
+        }
+        return new Rectangle2D.Double(this.minX, this.minY, this.maxX - this.minX, this.maxY - this.minY);
+    }
+
+    public int getSegmentCount()
+    {
+        return this.segmentCount;
+    }
+
+    /**
+     * x1, y1, x2, y2 of each segment
+     */
+    private final double[] segments;
+
+    private final int segmentCount;
+
+    private double minX = Double.POSITIVE_INFINITY;
+
+    private double minY = Double.POSITIVE_INFINITY;
+
+    private double maxX = Double.NEGATIVE_INFINITY;
+
+    private double maxY = Double.NEGATIVE_INFINITY;
+
+}
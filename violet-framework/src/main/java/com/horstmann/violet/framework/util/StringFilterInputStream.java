@@ -0,0 +1,140 @@
+package com.horstmann.violet.framework.util;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * This class is an inputstream filter. It replaces all the key ocurrences issued from a trie by their value while data
+ * is read, without reading the whole inputstream first. Data goes through a StringFilterOutputStream, so both streams
+ * filter the same way.
+ */
+public class StringFilterInputStream extends InputStream
+{
+
+    /**
+     * Default constructor
+     *
+     * @param in inputstream to filter
+     * @param trie keys to filter and their values
+     */
+    public StringFilterInputStream(InputStream in, StringReplacementTrie trie)
+    {
+        super();
+        this.originalInputStream = in;
+        this.filteredBytes = new FilteredBytes();
+        this.filter = new StringFilterOutputStream(this.filteredBytes, trie);
+    }
+
+    /*
+     * (non-Javadoc)
+     *
+     * @see java.io.InputStream#read()
+     */
+    public int read() throws IOException
+    {
+        byte[] b = new byte[1];
+        int count = read(b, 0, 1);
+        return count == -1 ? -1 : b[0] & 0xFF;
+    }
+
+    /*
+     * (non-Javadoc)
+     *
+     * @see java.io.InputStream#read(byte[], int, int)
+     */
+    public int read(byte[] b, int off, int len) throws IOException
+    {
+        if (len == 0)
+        {
+            return 0;
+        }
+        while (this.filteredBytes.available() == 0)
+        {
+            if (this.isEndReached)
+            {
+                return -1;
+            }
+            readAndFilter();
+        }
+        return this.filteredBytes.read(b, off, len);
+    }
+
+    /*
+     * (non-Javadoc)
+     *
+     * @see java.io.InputStream#available()
+     */
+    public int available() throws IOException
+    {
+        return this.filteredBytes.available();
+    }
+
+    /*
+     * (non-Javadoc)
+     *
+     * @see java.io.InputStream#close()
+     */
+    public void close() throws IOException
+    {
+        this.originalInputStream.close();
+    }
+
+    /**
+     * Reads the next bytes of the original inputstream and filters them
+     *
+     * @throws IOException
+     */
+    private void readAndFilter() throws IOException
+    {
+        int count = this.originalInputStream.read(this.readBuffer);
+        if (count == -1)
+        {
+            this.filter.close();
+            this.isEndReached = true;
+            return;
+        }
+        this.filter.write(this.readBuffer, 0, count);
+        this.filter.flush();
+    }
+
+    /**
+     * Bytes filtered but not read yet
+     */
+    private static class FilteredBytes extends ByteArrayOutputStream
+    {
+        private int available()
+        {
+            return this.count - this.position;
+        }
+
+        private int read(byte[] b, int off, int len)
+        {
+            int readCount = Math.min(len, available());
+            System.arraycopy(this.buf, this.position, b, off, readCount);
+            this.position += readCount;
+            if (this.position == this.count)
+            {
+                reset();
+                this.position = 0;
+            }
+            return readCount;
+        }
+
+        private int position;
+    }
+
+    /**
+     * The inputstream to filter
+     */
+    private InputStream originalInputStream;
+
+    private FilteredBytes filteredBytes;
+
+    private StringFilterOutputStream filter;
+
+    private byte[] readBuffer = new byte[8192];
+
+    private boolean isEndReached;
+
+}
@@ -21,25 +21,21 @@
 
 package com.horstmann.violet.framework.util;
 
-import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.OutputStream;
-import java.io.UnsupportedEncodingException;
-import java.util.Iterator;
 import java.util.Map;
-import java.util.Set;
 
 /**
- * This class is an outputstream filter. It means that it will filter the given inputstream and replace all the key ocurrences
+ * This class is an outputstream filter. It means that it will filter the given outputstream and replace all the key ocurrences
  * issued form the map by its value.
  * 
- * Very important note : due to outputstream behaviour, it can be filtered only after having retreived all data. In other words,
- * when close() method is called. So, filtering and writing to outputstream is done during close().
+ * Filtering is done in a single pass while data is written (see StringReplacementTrie). Only the last bytes which may be
+ * the beginning of a key are kept until the next write, or until close() is called.
  * 
  * @author Alexandre de Pellegrin
  * 
  */
-public class StringFilterOutputStream extends ByteArrayOutputStream
+public class StringFilterOutputStream extends OutputStream
 {
 
     /**
@@ -49,60 +45,171 @@ public class StringFilterOutputStream extends ByteArrayOutputStream
      * @param replaceMap pairs of key/value to filter
      */
     public StringFilterOutputStream(OutputStream out, Map<String, String> replaceMap)
+    {
+        this(out, new StringReplacementTrie(replaceMap));
+    }
+
+    /**
+     * Constructor to share a trie between streams
+     * 
+     * @param out outputstream to filter
+     * @param trie keys to filter and their values
+     */
+    public StringFilterOutputStream(OutputStream out, StringReplacementTrie trie)
     {
         super();
-        this.replaceMap = replaceMap;
+        this.trie = trie;
         this.originalOutputStream = out;
+        this.pendingBytes = new byte[Math.max(1, trie.getMaxSearchedLength())];
     }
 
     /*
      * (non-Javadoc)
      * 
-     * @see java.io.ByteArrayOutputStream#close()
+     * @see java.io.OutputStream#write(int)
      */
-    public void close() throws IOException
+    public void write(int b) throws IOException
     {
-        String filteredContent = getFilteredContent(this.toString("UTF-8"), this.replaceMap);
-        try
+        write(new byte[]
         {
-            this.originalOutputStream.write(filteredContent.getBytes("UTF-8"));
+            (byte) b
+        }, 0, 1);
+    }
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see java.io.OutputStream#write(byte[], int, int)
+     */
+    public void write(byte[] b, int off, int len) throws IOException
+    {
+        int end = off + len;
+        while (this.pendingCount > 0 && off < end)
+        {
+            this.pendingBytes[this.pendingCount++] = b[off++];
+            filterPendingBytes(false);
         }
-        catch (UnsupportedEncodingException ex)
+        if (off < end)
         {
-            ex.printStackTrace();
-            this.originalOutputStream.write(filteredContent.getBytes());
+            int unfilteredCount = filter(b, off, end - off, false);
+            System.arraycopy(b, end - unfilteredCount, this.pendingBytes, 0, unfilteredCount);
+            this.pendingCount = unfilteredCount;
         }
+    }
+
+    /**
+     * Flushes filtered bytes. Bytes which may be the beginning of a key are kept.
+     * 
+     * @see java.io.OutputStream#flush()
+     */
+    public void flush() throws IOException
+    {
+        flushBuffer();
+        this.originalOutputStream.flush();
+    }
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see java.io.OutputStream#close()
+     */
+    public void close() throws IOException
+    {
+        filterPendingBytes(true);
+        flushBuffer();
         this.originalOutputStream.close();
-        super.close();
     }
 
     /**
-     * Filters a string and replaces all key courrences issed from the map by its valye
+     * Filters the bytes kept by previous writes, and keeps the ones which still may be the beginning of a key
+     * 
+     * @param isComplete true if no byte will follow
+     * @throws IOException
+     */
+    private void filterPendingBytes(boolean isComplete) throws IOException
+    {
+        int unfilteredCount = filter(this.pendingBytes, 0, this.pendingCount, isComplete);
+        System.arraycopy(this.pendingBytes, this.pendingCount - unfilteredCount, this.pendingBytes, 0, unfilteredCount);
+        this.pendingCount = unfilteredCount;
+    }
+
+    /**
+     * Writes filtered bytes, up to the ones which may be the beginning of a key
      * 
-     * @param input string
-     * @param replaceMap key = searchedString / value = replaceString
-     * @return filtered string
+     * @param bytes
+     * @param offset
+     * @param length
+     * @param isComplete true if no byte will follow
+     * @return the count of bytes left at the end because more bytes are needed to filter them
+     * @throws IOException
      */
-    private String getFilteredContent(String input, Map<String, String> replaceMap)
+    private int filter(byte[] bytes, int offset, int length, boolean isComplete) throws IOException
+    {
+        int end = offset + length;
+        int position = offset;
+        while (position < end)
+        {
+            int matchLength = this.trie.match(bytes, position, end - position, isComplete);
+            if (matchLength == -1)
+            {
+                break;
+            }
+            if (matchLength == 0)
+            {
+                writeToBuffer(bytes[position]);
+                position++;
+                continue;
+            }
+            byte[] replacement = this.trie.getReplacement(bytes, position, matchLength);
+            for (byte b : replacement)
+            {
+                writeToBuffer(b);
+            }
+            position += matchLength;
+        }
+        return end - position;
+    }
+
+    private void writeToBuffer(byte b) throws IOException
     {
-        Set<String> set = replaceMap.keySet();
-        for (Iterator<String> iter = set.iterator(); iter.hasNext();)
+        if (this.bufferCount == this.buffer.length)
         {
-            String searchedStr = iter.next();
-            String replaceStr = replaceMap.get(searchedStr);
-            input = input.replaceAll(searchedStr, replaceStr);
+            flushBuffer();
+        }
+        this.buffer[this.bufferCount++] = b;
+    }
+
+    private void flushBuffer() throws IOException
+    {
+        if (this.bufferCount > 0)
+        {
+            this.originalOutputStream.write(this.buffer, 0, this.bufferCount);
+            this.bufferCount = 0;
         }
-        return input;
     }
 
     /**
-     * Map containing pairs of key/value as searchedString/replaceString
+     * Pairs of key/value as searchedString/replaceString
      */
-    private Map<String, String> replaceMap;
+    private StringReplacementTrie trie;
 
     /**
      * The outputstream to filter
      */
     private OutputStream originalOutputStream;
 
+    /**
+     * Last written bytes, which may be the beginning of a key
+     */
+    private byte[] pendingBytes;
+
+    private int pendingCount;
+
+    /**
+     * Filtered bytes not written yet to the original outputstream
+     */
+    private byte[] buffer = new byte[8192];
+
+    private int bufferCount;
+
 }
@@ -0,0 +1,152 @@
+package com.horstmann.violet.framework.util;
+
+import java.io.UnsupportedEncodingException;
+import java.util.Map;
+
+/**
+ * Trie of the UTF-8 bytes of strings to replace, used by StringFilterOutputStream and StringFilterInputStream to
+ * replace all of them in a single pass.<br/>
+ * Matching is done on bytes : as UTF-8 never uses ascii bytes inside multi-byte characters, a searched string found in
+ * bytes always is the same string in the decoded text. When several searched strings start at the same position, the
+ * longest one is replaced.
+ */
+public class StringReplacementTrie
+{
+
+    /**
+     * @param replaceMap key = searchedString / value = replaceString
+     */
+    public StringReplacementTrie(Map<String, String> replaceMap)
+    {
+        for (Map.Entry<String, String> entry : replaceMap.entrySet())
+        {
+            byte[] searched = getBytes(entry.getKey());
+            if (searched.length == 0)
+            {
+                continue;
+            }
+            Node node = this.root;
+            for (byte b : searched)
+            {
+                Node child = node.getChild(b);
+                if (child == null)
+                {
+                    child = node.addChild(b);
+                }
+                node = child;
+            }
+            node.replacement = getBytes(entry.getValue());
+            this.maxSearchedLength = Math.max(this.maxSearchedLength, searched.length);
+        }
+    }
+
+    /**
+     * @return the length of the longest searched string, in bytes
+     */
+    int getMaxSearchedLength()
+    {
+        return this.maxSearchedLength;
+    }
+
+    /**
+     * Looks for the longest searched string at the beginning of some bytes
+     *
+     * @param bytes
+     * @param offset where to look
+     * @param length count of available bytes
+     * @param isComplete true if no byte will come after the available ones
+     * @return the length of the searched string found (0 if none) or -1 if more bytes are needed to know it
+     */
+    int match(byte[] bytes, int offset, int length, boolean isComplete)
+    {
+        Node node = this.root;
+        int matchLength = 0;
+        for (int i = 0; i < length; i++)
+        {
+            node = node.getChild(bytes[offset + i]);
+            if (node == null)
+            {
+                return matchLength;
+            }
+            if (node.replacement != null)
+            {
+                matchLength = i + 1;
+            }
+        }
+        if (isComplete || node.childLabels.length == 0)
+        {
+            return matchLength;
+        }
+        return -1;
+    }
+
+    /**
+     * @param bytes
+     * @param offset
+     * @param length
+     * @return the replacement of the searched string made of these bytes
+     */
+    byte[] getReplacement(byte[] bytes, int offset, int length)
+    {
+        Node node = this.root;
+        for (int i = 0; i < length; i++)
+        {
+            node = node.getChild(bytes[offset + i]);
+        }
+        return node.replacement;
+    }
+
+    private static byte[] getBytes(String string)
+    {
+        try
+        {
+            return string.getBytes(CHARSET);
+        }
+        catch (UnsupportedEncodingException e)
+        {
+            throw new RuntimeException(e);
+        }
+    }
+
+    /**
+     * Trie node. Children are few (class names share long prefixes), so they are kept in small arrays.
+     */
+    private static class Node
+    {
+        private Node getChild(byte label)
+        {
+            for (int i = 0; i < this.childLabels.length; i++)
+            {
+                if (this.childLabels[i] == label)
+                {
+                    return this.children[i];
+                }
+            }
+            return null;
+        }
+
+        private Node addChild(byte label)
+        {
+            int count = this.childLabels.length;
+            byte[] newLabels = new byte[count + 1];
+            Node[] newChildren = new Node[count + 1];
+            System.arraycopy(this.childLabels, 0, newLabels, 0, count);
+            System.arraycopy(this.children, 0, newChildren, 0, count);
+            Node child = new Node();
+            newLabels[count] = label;
+            newChildren[count] = child;
+            this.childLabels = newLabels;
+            this.children = newChildren;
+            return child;
+        }
+
+        private byte[] childLabels = new byte[0];
+        private Node[] children = new Node[0];
+        private byte[] replacement;
+    }
+
+    private final Node root = new Node();
+    private int maxSearchedLength;
+
+    static final String CHARSET = "UTF-8";
+}
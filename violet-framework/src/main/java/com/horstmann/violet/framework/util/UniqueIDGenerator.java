@@ -1,11 +1,109 @@
 package com.horstmann.violet.framework.util;
 
-import java.util.UUID;
+import java.security.SecureRandom;
+import java.util.concurrent.atomic.AtomicLong;
 
+/**
+ * Generates unique ids without locking. An id is made of a random prefix, drawn once per session, and of a counter
+ * incremented atomically. Written as text, it has the same form as a UUID, as the ids of previous versions.
+ */
 public class UniqueIDGenerator
 {
-    public static synchronized String getNewId()
+    /**
+     * @return a new unique id, as text
+     */
+    public static String getNewId()
     {
-        return UUID.randomUUID().toString();
+        return toString(getSessionPrefix(), getNextSequenceNumber());
     }
+
+    /**
+     * @return the 64 high bits shared by all the ids of this session
+     */
+    public static long getSessionPrefix()
+    {
+        return SESSION_PREFIX;
+    }
+
+    /**
+     * @return the 64 low bits of a new id
+     */
+    public static long getNextSequenceNumber()
+    {
+        return SEQUENCE.incrementAndGet();
+    }
+
+    /**
+     * @param mostSignificantBits
+     * @param leastSignificantBits
+     * @return the id written as a UUID (8-4-4-4-12 lower case hexadecimal digits)
+     */
+    public static String toString(long mostSignificantBits, long leastSignificantBits)
+    {
+        char[] chars = new char[36];
+        writeHexDigits(chars, 0, mostSignificantBits >>> 32, 8);
+        chars[8] = '-';
+        writeHexDigits(chars, 9, mostSignificantBits >>> 16, 4);
+        chars[13] = '-';
+        writeHexDigits(chars, 14, mostSignificantBits, 4);
+        chars[18] = '-';
+        writeHexDigits(chars, 19, leastSignificantBits >>> 48, 4);
+        chars[23] = '-';
+        writeHexDigits(chars, 24, leastSignificantBits, 12);
+        return new String(chars);
+    }
+
+    /**
+     * @param value
+     * @return the two longs of an id written by toString() (high bits first), or null if the value isn't written this
+     *         way (an upper case UUID for example, which wouldn't be written again the same way)
+     */
+    public static long[] parse(String value)
+    {
+        if (value == null || value.length() != 36 || value.charAt(8) != '-' || value.charAt(13) != '-' || value.charAt(18) != '-'
+                || value.charAt(23) != '-')
+        {
+            return null;
+        }
+        long mostSignificantBits = 0;
+        long leastSignificantBits = 0;
+        for (int i = 0; i < 36; i++)
+        {
+            if (i == 8 || i == 13 || i == 18 || i == 23)
+            {
+                continue;
+            }
+            int digit = Character.digit(value.charAt(i), 16);
+            if (digit < 0 || Character.isUpperCase(value.charAt(i)))
+            {
+                return null;
+            }
+            if (i < 18)
+            {
+                mostSignificantBits = (mostSignificantBits << 4) | digit;
+            }
+            else
+            {
+                leastSignificantBits = (leastSignificantBits << 4) | digit;
+            }
+        }
+        return new long[] {
+                mostSignificantBits, leastSignificantBits
+        };
+    }
+
+    private static void writeHexDigits(char[] chars, int offset, long value, int count)
+    {
+        for (int i = count - 1; i >= 0; i--)
+        {
+            chars[offset + i] = HEX_DIGITS[(int) (value & 0xF)];
+            value >>>= 4;
+        }
+    }
+
+    private static final char[] HEX_DIGITS = "0123456789abcdef".toCharArray();
+
+    private static final long SESSION_PREFIX = new SecureRandom().nextLong();
+
+    private static final AtomicLong SEQUENCE = new AtomicLong();
 }
@@ -27,12 +27,22 @@ import java.awt.geom.Point2D;
 import java.awt.geom.Rectangle2D;
 import java.io.Serializable;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.LinkedList;
 import java.util.List;
+import java.util.Map;
 
+import com.horstmann.violet.product.diagram.abstracts.edge.AbstractEdge;
 import com.horstmann.violet.product.diagram.abstracts.edge.IEdge;
+import com.horstmann.violet.product.diagram.abstracts.edge.ShapeEdge;
 import com.horstmann.violet.product.diagram.abstracts.node.INode;
+import com.horstmann.violet.product.diagram.abstracts.spatial.GridSpatialIndex;
+import com.horstmann.violet.product.diagram.abstracts.spatial.ISpatialIndex;
 import com.horstmann.violet.product.diagram.common.node.NoteNode;
 
 /**
@@ -60,57 +70,199 @@ public abstract class AbstractGraph implements Serializable, Cloneable, IGraph
         {
             edge.reconstruction();
         }
+        getNodeIndex().clear();
+        getNodesById().clear();
+        for (INode node : nodes)
+        {
+            indexNode(node);
+        }
+        getEdgesById().clear();
+        this.edgesByNode = null;
+        this.edgeRanks = null;
+        for (IEdge edge : edges)
+        {
+            this.edgesById.put(edge.getId(), edge);
+        }
+        this.isEdgeIndexUpToDate = false;
+        invalidateAllNodes();
     }
 
     @Override
     public INode findNode(Point2D p)
     {
-        for (INode n : getAllNodes())
+        INode result = null;
+        for (INode n : getNodeIndex().query(p))
         {
-            Point2D locationOnGraph = n.getLocationOnGraph();
-            Rectangle2D bounds = n.getBounds();
-            Rectangle2D boundsToCheck = new Rectangle2D.Double(locationOnGraph.getX(), locationOnGraph.getY(), bounds.getWidth(),
-                    bounds.getHeight());
-            if (boundsToCheck.contains(p))
+            if (!getBoundsOnGraph(n).contains(p))
             {
-                return n;
+                continue;
+            }
+            if (result == null || compareNodeOrder(n, result) < 0)
+            {
+                result = n;
             }
         }
-        return null;
+        return result;
     }
 
     @Override
-    public INode findNode(Id id)
+    public Collection<INode> findNodes(Rectangle2D area)
     {
-        for (INode n : getAllNodes())
+        Map<INode, Boolean> candidates = new IdentityHashMap<INode, Boolean>();
+        for (INode n : getNodeIndex().query(area))
         {
-            if (n.getId().equals(id)) return n;
+            if (isOverlapping(getBoundsOnGraph(n), area))
+            {
+                candidates.put(n, Boolean.TRUE);
+            }
         }
-        return null;
+        List<INode> result = new ArrayList<INode>(candidates.keySet());
+        // Keep the same order as getAllNodes()
+        Collections.sort(result, new Comparator<INode>()
+        {
+            @Override
+            public int compare(INode n1, INode n2)
+            {
+                return compareNodeOrder(n1, n2);
+            }
+        });
+        return result;
+    }
+
+    @Override
+    public INode findNode(Id id)
+    {
+        return getNodesById().get(id);
     }
 
     @Override
     public IEdge findEdge(Point2D p)
     {
+        IEdge result = null;
+        int resultRank = 0;
+        List<IEdge> candidates = getEdgeIndex().query(p);
+        Map<IEdge, Integer> ranks = getEdgeRanks();
+        for (IEdge e : candidates)
+        {
+            if (!e.contains(p))
+            {
+                continue;
+            }
+            int rank = ranks.get(e).intValue();
+            if (result == null || rank < resultRank)
+            {
+                result = e;
+                resultRank = rank;
+            }
+        }
+        return result;
+    }
+
+    @Override
+    public Collection<IEdge> findEdges(Rectangle2D area)
+    {
+        Map<IEdge, Boolean> candidates = new IdentityHashMap<IEdge, Boolean>();
+        for (IEdge e : getEdgeIndex().query(area))
+        {
+            if (isOverlapping(e.getBounds(), area))
+            {
+                candidates.put(e, Boolean.TRUE);
+            }
+        }
+        List<IEdge> result = new ArrayList<IEdge>(candidates.size());
+        if (candidates.isEmpty())
+        {
+            return result;
+        }
         for (IEdge e : edges)
         {
-            if (e.contains(p)) return e;
+            if (candidates.containsKey(e))
+            {
+                result.add(e);
+            }
         }
-        return null;
+        return result;
     }
 
     @Override
     public IEdge findEdge(Id id)
     {
-        for (IEdge e : edges)
+        return getEdgesById().get(id);
+    }
+
+    @Override
+    public Rectangle2D getDrawingBounds(Collection<INode> nodes, Collection<IEdge> edges)
+    {
+        Rectangle2D result = null;
+        Map<INode, Boolean> changedNodes = new IdentityHashMap<INode, Boolean>();
+        for (INode aNode : nodes)
+        {
+            addSubtree(aNode, changedNodes);
+        }
+        Map<IEdge, Boolean> changedEdges = new IdentityHashMap<IEdge, Boolean>();
+        for (IEdge anEdge : edges)
+        {
+            changedEdges.put(anEdge, Boolean.TRUE);
+        }
+        for (INode aNode : changedNodes.keySet())
         {
-            if (e.getId().equals(id)) return e;
+            if (!getNodeIndex().contains(aNode))
+            {
+                continue;
+            }
+            result = addBounds(result, getBoundsOnGraph(aNode));
+            for (IEdge anEdge : getConnectedEdges(aNode))
+            {
+                changedEdges.put(anEdge, Boolean.TRUE);
+            }
         }
-        return null;
+        // Connection points are shared out between all the edges of a node
+        Map<IEdge, Boolean> edgesToRepaint = new IdentityHashMap<IEdge, Boolean>(changedEdges);
+        for (IEdge anEdge : changedEdges.keySet())
+        {
+            for (IEdge aNeighbour : getConnectedEdges(anEdge.getStartNode()))
+            {
+                edgesToRepaint.put(aNeighbour, Boolean.TRUE);
+            }
+            for (IEdge aNeighbour : getConnectedEdges(anEdge.getEndNode()))
+            {
+                edgesToRepaint.put(aNeighbour, Boolean.TRUE);
+            }
+        }
+        // Some edge changes (labels for example) can only be noticed here
+        for (IEdge anEdge : edgesToRepaint.keySet())
+        {
+            markEdgeDirty(anEdge);
+        }
+        getEdgeIndex();
+        for (IEdge anEdge : edgesToRepaint.keySet())
+        {
+            if (getEdgesById().get(anEdge.getId()) == anEdge)
+            {
+                result = addBounds(result, anEdge.getDrawingBounds());
+            }
+        }
+        return result;
     }
-    
-    
 
+    private void addSubtree(INode node, Map<INode, Boolean> result)
+    {
+        result.put(node, Boolean.TRUE);
+        for (INode aChild : node.getChildren())
+        {
+            addSubtree(aChild, result);
+        }
+    }
+
+    private Rectangle2D addBounds(Rectangle2D result, Rectangle2D bounds)
+    {
+        if (result == null)
+        {
+            return new Rectangle2D.Double(bounds.getX(), bounds.getY(), bounds.getWidth(), bounds.getHeight());
+        }
+        result.add(bounds);
+        return result;
+    }
 
     @Override
     public void draw(Graphics2D graphics)
@@ -118,38 +270,44 @@ public abstract class AbstractGraph implements Serializable, Cloneable, IGraph
         graphics.setRenderingHint(RenderingHints.KEY_TEXT_ANTIALIASING, RenderingHints.VALUE_TEXT_ANTIALIAS_ON);
         graphics.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
 
-        List<INode> specialNodes = new ArrayList<INode>();
+        // Only what intersects the clip is drawn (the editor clip is already restricted to the visible part of the viewport).
+        // Each element gets its own copy of the graphics context : the colors and fonts it leaves must not change the
+        // look of the next ones, which depend on what is skipped.
+        Rectangle2D area = null;
+        Rectangle2D clip = graphics.getClipBounds();
+        if (clip != null && isCullingSupported())
+        {
+            area = new Rectangle2D.Double(clip.getX() - DRAWING_MARGIN, clip.getY() - DRAWING_MARGIN, clip.getWidth() + 2
+                    * DRAWING_MARGIN, clip.getHeight() + 2 * DRAWING_MARGIN);
+        }
 
-        int count = 0;
-        int z = 0;
-        Collection<INode> nodes = getAllNodes();
-        while (count < nodes.size())
+        List<INode> specialNodes = new ArrayList<INode>();
+        for (INode node : getNodesToDraw(area))
         {
-            for (INode node : nodes)
+            if (node instanceof NoteNode)
+            {
+                specialNodes.add(node);
+            }
+            else
             {
-                if (node.getZ() == z)
+                if(null == node.getParent())
                 {
-                    if (node instanceof NoteNode)
-                    {
-                        specialNodes.add(node);
-                    }
-                    else
-                    {
-                        if(null == node.getParent())
-                        {
-                            node.draw(graphics);
-                        }
-                    }
-                    count++;
+                    Graphics2D nodeGraphics = (Graphics2D) graphics.create();
+                    node.draw(nodeGraphics);
+                    nodeGraphics.dispose();
                 }
             }
-            z++;
         }
 
-        for (int i = 0; i < edges.size(); i++)
+        // Edges are validated and re-indexed first : what is painted is what can be clicked
+        getEdgeIndex();
+        List<IEdge> edgesToDraw = (area == null) ? this.edges : getEdgesToDraw(area);
+        for (int i = 0; i < edgesToDraw.size(); i++)
         {
-            IEdge e = (IEdge) edges.get(i);
-            e.draw(graphics);
+            IEdge e = (IEdge) edgesToDraw.get(i);
+            Graphics2D edgeGraphics = (Graphics2D) graphics.create();
+            e.draw(edgeGraphics);
+            edgeGraphics.dispose();
         }
         // Special node are always drawn upon other elements
         for (INode n : specialNodes)
@@ -159,14 +317,102 @@ public abstract class AbstractGraph implements Serializable, Cloneable, IGraph
             Point2D nodeLocation = n.getLocation();
             Point2D g2Location = new Point2D.Double(nodeLocationOnGraph.getX() - nodeLocation.getX(), nodeLocationOnGraph.getY()
                     - nodeLocation.getY());
-            graphics.translate(g2Location.getX(), g2Location.getY());
-            n.draw(graphics);
-            // Restore graphics original location
-            graphics.translate(-g2Location.getX(), -g2Location.getY());
+            Graphics2D nodeGraphics = (Graphics2D) graphics.create();
+            nodeGraphics.translate(g2Location.getX(), g2Location.getY());
+            n.draw(nodeGraphics);
+            nodeGraphics.dispose();
         }
 
     }
 
+    /**
+     * Gets the nodes to draw, sorted by z-order then in the same order as getAllNodes()
+     * 
+     * @param area the area to draw (absolute location on graph) or null to draw everything
+     * @return the nodes intersecting the area, with their ancestors (which draw them)
+     */
+    private List<INode> getNodesToDraw(Rectangle2D area)
+    {
+        List<INode> result;
+        if (area == null)
+        {
+            result = new ArrayList<INode>(getAllNodes());
+        }
+        else
+        {
+            Map<INode, Boolean> nodesToDraw = new IdentityHashMap<INode, Boolean>();
+            for (INode n : getNodeIndex().query(area))
+            {
+                if (!isOverlapping(getBoundsOnGraph(n), area))
+                {
+                    continue;
+                }
+                for (INode m = n; m != null && !nodesToDraw.containsKey(m); m = m.getParent())
+                {
+                    nodesToDraw.put(m, Boolean.TRUE);
+                }
+            }
+            result = new ArrayList<INode>(nodesToDraw.keySet());
+        }
+        // One sort instead of one pass over all the nodes per z-level
+        Collections.sort(result, new Comparator<INode>()
+        {
+            @Override
+            public int compare(INode n1, INode n2)
+            {
+                int z1 = n1.getZ();
+                int z2 = n2.getZ();
+                if (z1 != z2)
+                {
+                    return z1 < z2 ? -1 : 1;
+                }
+                return compareNodeOrder(n1, n2);
+            }
+        });
+        return result;
+    }
+
+    /**
+     * Gets the edges to draw, in the same order as getAllEdges()
+     * 
+     * @param area the area to draw (absolute location on graph)
+     * @return the edges which can paint something in this area
+     */
+    private List<IEdge> getEdgesToDraw(Rectangle2D area)
+    {
+        List<IEdge> result = new ArrayList<IEdge>();
+        Map<IEdge, Boolean> candidates = new IdentityHashMap<IEdge, Boolean>();
+        for (IEdge e : getEdgeIndex().query(area))
+        {
+            if (!candidates.containsKey(e) && isOverlapping(getIndexBounds(e), area))
+            {
+                candidates.put(e, Boolean.TRUE);
+                result.add(e);
+            }
+        }
+        final Map<IEdge, Integer> ranks = getEdgeRanks();
+        Collections.sort(result, new Comparator<IEdge>()
+        {
+            @Override
+            public int compare(IEdge e1, IEdge e2)
+            {
+                return ranks.get(e1).compareTo(ranks.get(e2));
+            }
+        });
+        return result;
+    }
+
+    /**
+     * Tells if draw() can skip the elements located outside the graphics clip. Override this method to return false
+     * when nodes draw outside their bounds.
+     * 
+     * @return true by default
+     */
+    protected boolean isCullingSupported()
+    {
+        return true;
+    }
+
     /*
      * (non-Javadoc)
      * 
@@ -200,23 +446,39 @@ public abstract class AbstractGraph implements Serializable, Cloneable, IGraph
     @Override
     public abstract List<IEdge> getEdgePrototypes();
 
+    /**
+     * The returned list is cached and shared until the next structural change (node_old added, removed, attached or
+     * detached) so it can be iterated on hot paths without allocating. It is random access : prefer indexed loops.
+     */
     @Override
-    public Collection<INode> getAllNodes()
+    public List<INode> getAllNodes()
     {
-        List<INode> fifo = new ArrayList<INode>();
-        List<INode> allNodes = new ArrayList<INode>();
-        fifo.addAll(nodes);
-        allNodes.addAll(nodes);
-        while (!fifo.isEmpty())
+        if (this.allNodes == null)
         {
-            INode nodeToInspect = fifo.remove(0);
-            List<INode> children = nodeToInspect.getChildren();
-            fifo.addAll(children);
-            allNodes.addAll(children);
+            List<INode> allNodes = new ArrayList<INode>();
+            allNodes.addAll(nodes);
+            // Breadth-first : the list itself is used as the queue
+            for (int i = 0; i < allNodes.size(); i++)
+            {
+                allNodes.addAll(allNodes.get(i).getChildren());
+            }
+            // Let's have children first
+            Collections.reverse(allNodes);
+            Map<INode, Integer> nodeRanks = new IdentityHashMap<INode, Integer>(allNodes.size() * 2);
+            for (int i = 0; i < allNodes.size(); i++)
+            {
+                nodeRanks.put(allNodes.get(i), Integer.valueOf(i));
+            }
+            this.nodeRanks = nodeRanks;
+            this.allNodes = Collections.unmodifiableList(allNodes);
         }
-        // Let's have children first
-        Collections.reverse(allNodes);
-        return Collections.unmodifiableCollection(allNodes);
+        return this.allNodes;
+    }
+
+    @Override
+    public long getNodesVersion()
+    {
+        return this.nodesVersion;
     }
 
     @Override
@@ -225,6 +487,17 @@ public abstract class AbstractGraph implements Serializable, Cloneable, IGraph
         return Collections.unmodifiableCollection(edges);
     }
 
+    @Override
+    public Collection<IEdge> getConnectedEdges(INode node)
+    {
+        List<IEdge> connectedEdges = getEdgesByNode().get(node);
+        if (connectedEdges == null)
+        {
+            return Collections.emptyList();
+        }
+        return Collections.unmodifiableList(connectedEdges);
+    }
+
     @Override
     public boolean addNode(INode newNode, Point2D p)
     {
@@ -235,6 +508,8 @@ public abstract class AbstractGraph implements Serializable, Cloneable, IGraph
         {
             newNode.setLocation(p);
             nodes.add(newNode);
+            indexNode(newNode);
+            invalidateAllNodes();
             return true;
         }
         // Case 2 : attached to an existing node_old
@@ -244,12 +519,20 @@ public abstract class AbstractGraph implements Serializable, Cloneable, IGraph
             Point2D parentLocationOnGraph = potentialParentNode.getLocationOnGraph();
             Point2D relativeLocation = new Point2D.Double(p.getX() - parentLocationOnGraph.getX(), p.getY()
                     - parentLocationOnGraph.getY());
-            return potentialParentNode.addChild(newNode, relativeLocation);
+            boolean isAdded = potentialParentNode.addChild(newNode, relativeLocation);
+            if (isAdded)
+            {
+                indexNode(newNode);
+                invalidateAllNodes();
+            }
+            return isAdded;
         }
         // Case 3 : attached directly to the graph
         newNode.setLocation(p);
         newNode.setParent(null);
         nodes.add(newNode);
+        indexNode(newNode);
+        invalidateAllNodes();
         return true;
     }
 
@@ -263,33 +546,38 @@ public abstract class AbstractGraph implements Serializable, Cloneable, IGraph
             {
                 this.nodes.remove(aNodeToRemove);
             }
+            unindexNode(aNodeToRemove);
         }
+        invalidateAllNodes();
         // Step 1b : Remove node attach to other node as children
-        for (INode aNode : getAllNodes())
+        for (INode aNodeToRemove : nodesToRemove)
         {
-            for (INode aNodeToRemove : nodesToRemove)
+            INode aParent = aNodeToRemove.getParent();
+            if (aParent != null && aParent.getChildren().contains(aNodeToRemove))
             {
-                List<INode> children = aNode.getChildren();
-                if (children.contains(aNodeToRemove))
-                {
-                    aNode.removeChild(aNodeToRemove);
-                }
+                aParent.removeChild(aNodeToRemove);
             }
         }
-        // Step 2 : Disconnect edges
-        List<IEdge> edgesToRemove = new ArrayList<IEdge>();
-        Collection<INode> allNodes = getAllNodes();
-        for (IEdge anEdge : this.edges)
+        // Step 2 : Disconnect edges (only edges connected to removed nodes or to their children can be concerned)
+        Map<IEdge, Boolean> edgesToRemove = new IdentityHashMap<IEdge, Boolean>();
+        List<INode> fifo = new ArrayList<INode>();
+        fifo.addAll(Arrays.asList(nodesToRemove));
+        for (int i = 0; i < fifo.size(); i++)
         {
-            INode startingNode = anEdge.getStartNode();
-            INode endingNode = anEdge.getEndNode();
-            boolean isEdgeStillConnected = (allNodes.contains(startingNode) && allNodes.contains(endingNode));
-            if (!isEdgeStillConnected)
+            INode aRemovedNode = fifo.get(i);
+            fifo.addAll(aRemovedNode.getChildren());
+            for (IEdge anEdge : getConnectedEdges(aRemovedNode))
             {
-                edgesToRemove.add(anEdge);
+                INode startingNode = anEdge.getStartNode();
+                INode endingNode = anEdge.getEndNode();
+                boolean isEdgeStillConnected = (isOnGraph(startingNode) && isOnGraph(endingNode));
+                if (!isEdgeStillConnected)
+                {
+                    edgesToRemove.put(anEdge, Boolean.TRUE);
+                }
             }
         }
-        IEdge[] edgesToRemoveAsArray = edgesToRemove.toArray(new IEdge[edgesToRemove.size()]);
+        IEdge[] edgesToRemoveAsArray = edgesToRemove.keySet().toArray(new IEdge[edgesToRemove.size()]);
         removeEdge(edgesToRemoveAsArray);
     }
 
@@ -297,12 +585,11 @@ public abstract class AbstractGraph implements Serializable, Cloneable, IGraph
     public boolean connect(IEdge e, INode start, Point2D startLocation, INode end, Point2D endLocation, Point2D[] transitionPoints)
     {
         // Step 1 : find if node exist
-        Collection<INode> allNodes = getAllNodes();
-        if (start != null && !allNodes.contains(start))
+        if (start != null && !isOnGraph(start))
         {
             addNode(start, start.getLocation());
         }
-        if (end != null && !allNodes.contains(end))
+        if (end != null && !isOnGraph(end))
         {
             addNode(end, end.getLocation());
         }
@@ -316,6 +603,19 @@ public abstract class AbstractGraph implements Serializable, Cloneable, IGraph
         {
             e.setId(new Id());
             edges.add(e);
+            getEdgesById().put(e.getId(), e);
+            addConnectedEdge(e.getStartNode(), e);
+            if (e.getEndNode() != e.getStartNode())
+            {
+                addConnectedEdge(e.getEndNode(), e);
+            }
+            if (this.edgeRanks != null)
+            {
+                this.edgeRanks.put(e, this.edges.size() - 1);
+            }
+            // Connection points are shared out between all the edges of a node
+            markConnectedEdgesDirty(start);
+            markConnectedEdgesDirty(end);
 
             start.onConnectedEdge(e);
             if(end != null)
@@ -339,7 +639,25 @@ public abstract class AbstractGraph implements Serializable, Cloneable, IGraph
             startingNode.removeConnection(anEdgeToRemove);
             endingNode.removeConnection(anEdgeToRemove);
             this.edges.remove(anEdgeToRemove);
+            removeConnectedEdge(startingNode, anEdgeToRemove);
+            removeConnectedEdge(endingNode, anEdgeToRemove);
+            Id anId = anEdgeToRemove.getId();
+            if (getEdgesById().get(anId) == anEdgeToRemove)
+            {
+                this.edgesById.remove(anId);
+            }
+            if (this.isEdgeIndexUpToDate)
+            {
+                this.edgeIndex.remove(anEdgeToRemove);
+            }
+            if (this.dirtyEdges != null)
+            {
+                this.dirtyEdges.remove(anEdgeToRemove);
+            }
+            markConnectedEdgesDirty(startingNode);
+            markConnectedEdgesDirty(endingNode);
         }
+        this.edgeRanks = null;
     }
 
     @Override
@@ -347,32 +665,519 @@ public abstract class AbstractGraph implements Serializable, Cloneable, IGraph
     {
         if (this.gridSticker == null)
         {
-            return new IGridSticker()
+            return NO_GRID_STICKER;
+        }
+        return this.gridSticker;
+    }
+
+    @Override
+    public void setGridSticker(IGridSticker positionCorrector)
+    {
+        this.gridSticker = positionCorrector;
+    }
+
+    /**
+     * Creates the spatial index used to find nodes and edges. Override this method to plug another implementation (for
+     * example, when elements geometry depends on other elements and can't be tracked incrementally).
+     * 
+     * @return a new empty index
+     */
+    protected <T> ISpatialIndex<T> createSpatialIndex()
+    {
+        return new GridSpatialIndex<T>();
+    }
+
+    /**
+     * Called by nodes when their location or their size changed
+     * 
+     * @param node
+     */
+    public void onNodeGeometryChanged(INode node)
+    {
+        // Bounds are not computed here : some nodes move themselves while computing their bounds
+        if (!this.isRefreshingNodeIndex)
+        {
+            if (this.movedNodes == null)
             {
-                @Override
-                public Rectangle2D snap(Rectangle2D r)
+                this.movedNodes = new IdentityHashMap<INode, Boolean>();
+            }
+            this.movedNodes.put(node, Boolean.TRUE);
+        }
+        markConnectedEdgesDirty(node);
+    }
+
+    /**
+     * Called by nodes when a child node_old is attached to them
+     * 
+     * @param node the new child
+     */
+    public void onNodeAttached(INode node)
+    {
+        INode parent = node.getParent();
+        if (parent != null && getNodeIndex().contains(parent))
+        {
+            indexNode(node);
+        }
+        this.isEdgeIndexUpToDate = false;
+        invalidateAllNodes();
+    }
+
+    /**
+     * Called by nodes when a child node_old is detached from them
+     * 
+     * @param node the removed child
+     */
+    public void onNodeDetached(INode node)
+    {
+        unindexNode(node);
+        this.isEdgeIndexUpToDate = false;
+        invalidateAllNodes();
+    }
+
+    /**
+     * Drops the flattened node_old list. Must be called on every change of the node_old tree structure.
+     */
+    private void invalidateAllNodes()
+    {
+        this.allNodes = null;
+        this.nodeRanks = null;
+        this.nodesVersion++;
+    }
+
+    /**
+     * @return true if the node_old is attached to this graph, directly or as a child of another node_old
+     */
+    private boolean isOnGraph(INode node)
+    {
+        // The spatial index holds exactly the attached nodes and, unlike getAllNodes(), is maintained incrementally
+        return getNodeIndex().contains(node);
+    }
+
+    /**
+     * Adds (or refreshes) a node_old and all its children to the spatial index
+     */
+    private void indexNode(INode node)
+    {
+        ISpatialIndex<INode> nodeIndex = getNodeIndex();
+        nodeIndex.put(node, getBoundsOnGraph(node));
+        getNodesById().put(node.getId(), node);
+        for (INode aChild : node.getChildren())
+        {
+            indexNode(aChild);
+        }
+        markConnectedEdgesDirty(node);
+    }
+
+    /**
+     * Marks the edges of a node_old to be re-indexed, with the edges sharing a node_old with them (because connection
+     * points are shared out between all the edges of a node_old)
+     */
+    private void markConnectedEdgesDirty(INode node)
+    {
+        if (node == null || !this.isEdgeIndexUpToDate)
+        {
+            // Nothing to do when the whole index will be rebuilt anyway
+            return;
+        }
+        for (IEdge anEdge : getConnectedEdges(node))
+        {
+            markEdgeDirty(anEdge);
+            for (IEdge aNeighbour : getConnectedEdges(anEdge.getStartNode()))
+            {
+                markEdgeDirty(aNeighbour);
+            }
+            for (IEdge aNeighbour : getConnectedEdges(anEdge.getEndNode()))
+            {
+                markEdgeDirty(aNeighbour);
+            }
+        }
+    }
+
+    /**
+     * Marks an edge to be validated and re-indexed at the next index query
+     */
+    private void markEdgeDirty(IEdge edge)
+    {
+        if (!this.isEdgeIndexUpToDate)
+        {
+            return;
+        }
+        if (this.dirtyEdges == null)
+        {
+            this.dirtyEdges = new IdentityHashMap<IEdge, Boolean>();
+        }
+        this.dirtyEdges.put(edge, Boolean.TRUE);
+    }
+
+    /**
+     * Removes a node_old and all its children from the spatial index
+     */
+    private void unindexNode(INode node)
+    {
+        getNodeIndex().remove(node);
+        Id anId = node.getId();
+        if (getNodesById().get(anId) == node)
+        {
+            this.nodesById.remove(anId);
+        }
+        for (INode aChild : node.getChildren())
+        {
+            unindexNode(aChild);
+        }
+    }
+
+    private ISpatialIndex<INode> getNodeIndex()
+    {
+        if (this.nodeIndex == null)
+        {
+            this.nodeIndex = createSpatialIndex();
+            for (INode node : this.nodes)
+            {
+                indexNode(node);
+            }
+        }
+        refreshMovedNodes();
+        return this.nodeIndex;
+    }
+
+    /**
+     * Re-indexes nodes which moved or were resized since the last query
+     */
+    private void refreshMovedNodes()
+    {
+        if (this.movedNodes == null || this.movedNodes.isEmpty() || this.isRefreshingNodeIndex)
+        {
+            return;
+        }
+        this.isRefreshingNodeIndex = true;
+        try
+        {
+            INode[] nodesToRefresh = this.movedNodes.keySet().toArray(new INode[this.movedNodes.size()]);
+            this.movedNodes.clear();
+            for (INode node : nodesToRefresh)
+            {
+                if (this.nodeIndex.contains(node))
                 {
-                    return r;
+                    indexNode(node);
                 }
+            }
+        }
+        finally
+        {
+            this.isRefreshingNodeIndex = false;
+        }
+    }
+
+    /**
+     * Nodes are indexed by id when they are attached to the graph (see indexNode()). Ids are not expected to change while
+     * a node_old is on the graph.
+     */
+    private Map<Id, INode> getNodesById()
+    {
+        if (this.nodesById == null)
+        {
+            this.nodesById = new HashMap<Id, INode>();
+            for (INode node : getAllNodes())
+            {
+                this.nodesById.put(node.getId(), node);
+            }
+        }
+        return this.nodesById;
+    }
+
+    /**
+     * Node_old to edges incidence lists. Each list keeps the edges in the same order as the edges list.
+     */
+    private Map<INode, List<IEdge>> getEdgesByNode()
+    {
+        if (this.edgesByNode == null)
+        {
+            this.edgesByNode = new IdentityHashMap<INode, List<IEdge>>();
+            for (IEdge edge : this.edges)
+            {
+                addConnectedEdge(edge.getStartNode(), edge);
+                if (edge.getEndNode() != edge.getStartNode())
+                {
+                    addConnectedEdge(edge.getEndNode(), edge);
+                }
+            }
+        }
+        return this.edgesByNode;
+    }
+
+    private void addConnectedEdge(INode node, IEdge edge)
+    {
+        if (node == null)
+        {
+            return;
+        }
+        Map<INode, List<IEdge>> edgesByNode = getEdgesByNode();
+        List<IEdge> connectedEdges = edgesByNode.get(node);
+        if (connectedEdges == null)
+        {
+            connectedEdges = new ArrayList<IEdge>(4);
+            edgesByNode.put(node, connectedEdges);
+        }
+        connectedEdges.add(edge);
+    }
+
+    private void removeConnectedEdge(INode node, IEdge edge)
+    {
+        if (node == null)
+        {
+            return;
+        }
+        Map<INode, List<IEdge>> edgesByNode = getEdgesByNode();
+        List<IEdge> connectedEdges = edgesByNode.get(node);
+        if (connectedEdges == null)
+        {
+            return;
+        }
+        connectedEdges.remove(edge);
+        if (connectedEdges.isEmpty())
+        {
+            edgesByNode.remove(node);
+        }
+    }
 
+    private Map<Id, IEdge> getEdgesById()
+    {
+        if (this.edgesById == null)
+        {
+            this.edgesById = new HashMap<Id, IEdge>();
+            for (IEdge edge : this.edges)
+            {
+                this.edgesById.put(edge.getId(), edge);
+            }
+        }
+        return this.edgesById;
+    }
+
+    /**
+     * Edge positions in the edges list
+     */
+    private Map<IEdge, Integer> getEdgeRanks()
+    {
+        if (this.edgeRanks == null)
+        {
+            this.edgeRanks = new IdentityHashMap<IEdge, Integer>();
+            for (int i = 0; i < this.edges.size(); i++)
+            {
+                this.edgeRanks.put(this.edges.get(i), i);
+            }
+        }
+        return this.edgeRanks;
+    }
+
+    private ISpatialIndex<IEdge> getEdgeIndex()
+    {
+        if (this.edgeIndex == null)
+        {
+            this.edgeIndex = createSpatialIndex();
+            this.isEdgeIndexUpToDate = false;
+        }
+        // Moved nodes mark their edges as dirty
+        getNodeIndex();
+        boolean isRebuilt = !this.isEdgeIndexUpToDate;
+        if (!isRebuilt && (this.dirtyEdges == null || this.dirtyEdges.isEmpty()))
+        {
+            return this.edgeIndex;
+        }
+        Map<IEdge, Boolean> edgesToIndex = this.dirtyEdges;
+        this.isEdgeIndexUpToDate = true;
+        this.dirtyEdges = null;
+        if (isRebuilt)
+        {
+            // Edges follow their nodes so they are lazily re-indexed after any structural change
+            this.edgeIndex.clear();
+            edgesToIndex = null;
+        }
+        List<IEdge> edgesToValidate;
+        if (edgesToIndex == null)
+        {
+            edgesToValidate = this.edges;
+        }
+        else
+        {
+            final Map<IEdge, Integer> ranks = getEdgeRanks();
+            edgesToValidate = new ArrayList<IEdge>(edgesToIndex.size());
+            for (IEdge e : edgesToIndex.keySet())
+            {
+                // Edges can be marked by getDrawingBounds() while not on the graph
+                if (ranks.containsKey(e))
+                {
+                    edgesToValidate.add(e);
+                }
+            }
+            Collections.sort(edgesToValidate, new Comparator<IEdge>()
+            {
                 @Override
-                public Point2D snap(Point2D p)
+                public int compare(IEdge e1, IEdge e2)
                 {
-                    return p;
+                    return ranks.get(e1).compareTo(ranks.get(e2));
                 }
-            };
+            });
         }
-        return this.gridSticker;
+        for (IEdge e : validateEdges(edgesToValidate))
+        {
+            this.edgeIndex.put(e, getIndexBounds(e));
+        }
+        return this.edgeIndex;
     }
 
-    @Override
-    public void setGridSticker(IGridSticker positionCorrector)
+    /**
+     * Validates edges in the drawing order. Edges take the contact points of the other edges of their nodes into account,
+     * so when the contact points of an edge change, the edges sharing a node_old with it are validated again, once at
+     * most (edges could otherwise keep moving each other).
+     * 
+     * @param edgesToValidate in the drawing order
+     * @return the validated edges
+     */
+    private Collection<IEdge> validateEdges(List<IEdge> edgesToValidate)
     {
-        this.gridSticker = positionCorrector;
+        Map<IEdge, Boolean> validatedEdges = new IdentityHashMap<IEdge, Boolean>();
+        Map<IEdge, Boolean> revalidatedEdges = new IdentityHashMap<IEdge, Boolean>();
+        Map<IEdge, Boolean> pendingEdgeSet = new IdentityHashMap<IEdge, Boolean>();
+        LinkedList<IEdge> pendingEdges = new LinkedList<IEdge>(edgesToValidate);
+        for (IEdge e : edgesToValidate)
+        {
+            pendingEdgeSet.put(e, Boolean.TRUE);
+        }
+        while (!pendingEdges.isEmpty())
+        {
+            IEdge e = pendingEdges.removeFirst();
+            pendingEdgeSet.remove(e);
+            validatedEdges.put(e, Boolean.TRUE);
+            if (!(e instanceof AbstractEdge))
+            {
+                continue;
+            }
+            AbstractEdge anEdge = (AbstractEdge) e;
+            long version = anEdge.getContactPointsVersion();
+            anEdge.validateGeometry();
+            if (anEdge.getContactPointsVersion() == version)
+            {
+                continue;
+            }
+            for (INode aNode : new INode[] { e.getStartNode(), e.getEndNode() })
+            {
+                for (IEdge aNeighbour : getConnectedEdges(aNode))
+                {
+                    if (aNeighbour == e || pendingEdgeSet.containsKey(aNeighbour) || revalidatedEdges.containsKey(aNeighbour))
+                    {
+                        continue;
+                    }
+                    if (validatedEdges.containsKey(aNeighbour))
+                    {
+                        revalidatedEdges.put(aNeighbour, Boolean.TRUE);
+                    }
+                    pendingEdgeSet.put(aNeighbour, Boolean.TRUE);
+                    pendingEdges.add(aNeighbour);
+                }
+            }
+        }
+        return validatedEdges.keySet();
+    }
+
+    /**
+     * @return node_old bounds as used for hit-testing (absolute location on graph)
+     */
+    private Rectangle2D getBoundsOnGraph(INode node)
+    {
+        Point2D locationOnGraph = node.getLocationOnGraph();
+        Rectangle2D bounds = node.getBounds();
+        return new Rectangle2D.Double(locationOnGraph.getX(), locationOnGraph.getY(), bounds.getWidth(), bounds.getHeight());
+    }
+
+    /**
+     * @return edge bounds enlarged by the distance under which a point is still considered on the edge
+     */
+    private Rectangle2D getHitBounds(IEdge edge)
+    {
+        if (edge instanceof ShapeEdge)
+        {
+            // Stroke joins can go much further than the hit distance
+            return ((ShapeEdge) edge).getSensitiveShape().getBounds2D();
+        }
+        Rectangle2D bounds = edge.getBounds();
+        return new Rectangle2D.Double(bounds.getX() - EDGE_HIT_DISTANCE, bounds.getY() - EDGE_HIT_DISTANCE, bounds.getWidth() + 2
+                * EDGE_HIT_DISTANCE, bounds.getHeight() + 2 * EDGE_HIT_DISTANCE);
+    }
+
+    /**
+     * @return the area where an edge can be clicked or painted (absolute location on graph)
+     */
+    private Rectangle2D getIndexBounds(IEdge edge)
+    {
+        Rectangle2D bounds = new Rectangle2D.Double();
+        bounds.setRect(getHitBounds(edge));
+        bounds.add(edge.getDrawingBounds());
+        return bounds;
+    }
+
+    /**
+     * Same as Rectangle2D.intersects() but also accepts flat rectangles (straight edges for example)
+     */
+    private boolean isOverlapping(Rectangle2D r, Rectangle2D area)
+    {
+        return r.getMaxX() >= area.getMinX() && r.getMinX() <= area.getMaxX() && r.getMaxY() >= area.getMinY()
+                && r.getMinY() <= area.getMaxY();
+    }
+
+    /**
+     * Compares two nodes according to their position in getAllNodes() (children first, then reverse breadth-first order)
+     * 
+     * @return a negative number if n1 comes first
+     */
+    private int compareNodeOrder(INode n1, INode n2)
+    {
+        getAllNodes();
+        Integer rank1 = this.nodeRanks.get(n1);
+        Integer rank2 = this.nodeRanks.get(n2);
+        if (rank1 == null || rank2 == null)
+        {
+            return 0;
+        }
+        return rank1.compareTo(rank2);
     }
 
     private ArrayList<INode> nodes;
     private ArrayList<IEdge> edges;
+
+    /** Sticker used when no grid is set (always the same instance so that edges can cache snapped points) */
+    private static final IGridSticker NO_GRID_STICKER = new IGridSticker()
+    {
+        @Override
+        public Rectangle2D snap(Rectangle2D r)
+        {
+            return r;
+        }
+
+        @Override
+        public Point2D snap(Point2D p)
+        {
+            return p;
+        }
+    };
     private transient Rectangle2D minBounds;
     private transient IGridSticker gridSticker;
+    private transient ISpatialIndex<INode> nodeIndex;
+    private transient ISpatialIndex<IEdge> edgeIndex;
+    private transient boolean isEdgeIndexUpToDate;
+    private transient Map<IEdge, Boolean> dirtyEdges;
+    private transient Map<IEdge, Integer> edgeRanks;
+    private transient Map<INode, Boolean> movedNodes;
+    private transient boolean isRefreshingNodeIndex;
+    private transient List<INode> allNodes;
+    private transient Map<INode, Integer> nodeRanks;
+    private transient long nodesVersion;
+    private transient Map<Id, INode> nodesById;
+    private transient Map<Id, IEdge> edgesById;
+    private transient Map<INode, List<IEdge>> edgesByNode;
+
+    /** Distance under which a point is considered on an edge (same as ShapeEdge) */
+    private static final double EDGE_HIT_DISTANCE = 10;
+
+    /** Distance under which a node_old can still paint something out of its bounds (stroke width for example) */
+    private static final double DRAWING_MARGIN = 5;
 }
@@ -37,6 +37,14 @@ public interface IGraph
      */
     public abstract Collection<INode> getAllNodes();
 
+    /**
+     * Gets a counter incremented each time the node tree changes (node added, removed, attached to or detached from
+     * a parent). It allows to cache anything computed from getAllNodes().
+     * 
+     * @return the current structure version
+     */
+    public abstract long getNodesVersion();
+
 
     /**
      * Gets ALL the edges of this graph.
@@ -45,6 +53,14 @@ public interface IGraph
      */
     public abstract Collection<IEdge> getAllEdges();
 
+    /**
+     * Gets the edges starting or ending on a node.
+     * 
+     * @param node
+     * @return an unmodifiable collection of the edges, in the same order as getAllEdges()
+     */
+    public abstract Collection<IEdge> getConnectedEdges(INode node);
+
 
     /**
      * Removes one or more edges from this graph.
@@ -102,6 +118,14 @@ public interface IGraph
      */
     public abstract INode findNode(Point2D p);
 
+    /**
+     * Finds all the node whose bounds intersect the given area.
+     * 
+     * @param area a rectangle (absolute location on graph)
+     * @return found node, in the same order as getAllNodes()
+     */
+    public abstract Collection<INode> findNodes(Rectangle2D area);
+
     /**
      * Finds an adge by its id. This internal method should only be used by network features (for the moment because
      * edge ids are still generated automatically)
@@ -120,6 +144,25 @@ public interface IGraph
      */
     public abstract IEdge findEdge(Point2D p);
 
+    /**
+     * Finds all the edges whose bounds intersect the given area.
+     * 
+     * @param area a rectangle (absolute location on graph)
+     * @return found edges, in the same order as getAllEdges()
+     */
+    public abstract Collection<IEdge> findEdges(Rectangle2D area);
+
+    /**
+     * Gets the area painted by some elements and by everything drawn according to them : children, connected edges and
+     * edges sharing a node with these edges. Call it before and after changing elements to know what to repaint (the
+     * graph also takes this opportunity to catch up with edge changes which don't move any node, labels for example).
+     * 
+     * @param nodes changed node (absolute location on graph)
+     * @param edges changed edges
+     * @return the area to repaint (absolute location on graph) or null if nothing is drawn
+     */
+    public abstract Rectangle2D getDrawingBounds(Collection<INode> nodes, Collection<IEdge> edges);
+
     /**
      * Draws the graph
      * 
@@ -1,17 +1,19 @@
 package com.horstmann.violet.product.diagram.abstracts;
 
 import com.horstmann.violet.framework.util.UniqueIDGenerator;
-import com.thoughtworks.xstream.annotations.XStreamAsAttribute;
 
 /**
  * This class represents an Id. To advantage to transport an id in a specific object rather than in a "standard" object like String
  * or Integer/Long is in the fact that it can be identified by its class. So, it will never be confused with other object attributes
  * (for example, name or age for a person).
- * 
+ *
  * But be careful and don't abuse of this programming pattern
- * 
+ *
+ * An id is kept as two longs, written as a UUID in files. Ids read from files which aren't written this way are kept
+ * as text.
+ *
  * @author Alexandre de Pellegrin
- * 
+ *
  */
 public class Id
 {
@@ -21,7 +23,19 @@ public class Id
      */
     public Id()
     {
-        this.value = UniqueIDGenerator.getNewId();
+        this.mostSignificantBits = UniqueIDGenerator.getSessionPrefix();
+        this.leastSignificantBits = UniqueIDGenerator.getNextSequenceNumber();
+        this.hash = computeHash();
+    }
+
+    /**
+     * Constructs an id read from a file
+     *
+     * @param value id value
+     */
+    public Id(String value)
+    {
+        setValue(value);
     }
 
     /**
@@ -29,57 +43,99 @@ public class Id
      */
     public String getValue()
     {
-        return value;
+        if (this.textValue != null)
+        {
+            return this.textValue;
+        }
+        return UniqueIDGenerator.toString(this.mostSignificantBits, this.leastSignificantBits);
     }
 
     /**
      * Sets id value
-     * 
+     *
      * @param value v
      */
     public void setValue(String value)
     {
-        this.value = value;
+        long[] bits = UniqueIDGenerator.parse(value);
+        if (bits != null)
+        {
+            this.mostSignificantBits = bits[0];
+            this.leastSignificantBits = bits[1];
+            this.textValue = null;
+        }
+        else
+        {
+            this.mostSignificantBits = 0;
+            this.leastSignificantBits = 0;
+            this.textValue = value;
+        }
+        this.hash = computeHash();
     }
 
     @Override
     public boolean equals(Object obj)
     {
-        if (obj == null) return false;
-        if (value != null) return value.equals(((Id) obj).value);
-        return false;
+        if (this == obj) return true;
+        if (!(obj instanceof Id)) return false;
+        Id other = (Id) obj;
+        if (this.hash != other.hash) return false;
+        if (this.textValue != null) return this.textValue.equals(other.textValue);
+        return other.textValue == null && this.mostSignificantBits == other.mostSignificantBits
+                && this.leastSignificantBits == other.leastSignificantBits;
     }
 
     @Override
     public int hashCode()
     {
-        if (value != null)
-        {
-            return value.hashCode();
-        }
-        return super.hashCode();
+        return this.hash;
     }
 
     @Override
     public String toString()
     {
-        if (value != null)
-        {
-            return value;
-        }
-        return super.toString();
+        return getValue();
     }
-    
+
     @Override
     public Id clone() throws CloneNotSupportedException {
-    	Id clone = new Id();
-    	clone.value = this.value + "";
+    	Id clone = new Id(this);
     	return clone;
     }
 
+    /**
+     * Copy constructor
+     *
+     * @param id
+     */
+    private Id(Id id)
+    {
+        this.mostSignificantBits = id.mostSignificantBits;
+        this.leastSignificantBits = id.leastSignificantBits;
+        this.textValue = id.textValue;
+        this.hash = id.hash;
+    }
+
+    private int computeHash()
+    {
+        if (this.textValue != null)
+        {
+            return this.textValue.hashCode();
+        }
+        long bits = this.mostSignificantBits ^ this.leastSignificantBits;
+        return (int) (bits >> 32) ^ (int) bits;
+    }
+
     /**
      * Id value
      */
-    @XStreamAsAttribute
-    private String value;
+    private long mostSignificantBits;
+    private long leastSignificantBits;
+
+    /**
+     * Id value when it can't be kept as two longs (null otherwise)
+     */
+    private String textValue;
+
+    private int hash;
 }
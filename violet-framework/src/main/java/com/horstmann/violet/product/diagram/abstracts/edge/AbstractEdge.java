@@ -24,6 +24,7 @@ package com.horstmann.violet.product.diagram.abstracts.edge;
 import java.awt.geom.Line2D;
 import java.awt.geom.Point2D;
 import java.awt.geom.Rectangle2D;
+import java.util.Arrays;
 
 import com.horstmann.violet.product.diagram.abstracts.Direction;
 import com.horstmann.violet.product.diagram.abstracts.IGraph;
@@ -207,6 +208,12 @@ public abstract class AbstractEdge implements IEdge
         return r;
     }
     
+    @Override
+    public Rectangle2D getDrawingBounds()
+    {
+        return getBounds();
+    }
+
     @Override
     public Direction getDirection(INode node)
     {
@@ -318,13 +325,151 @@ public abstract class AbstractEdge implements IEdge
     {
         if(null != startNode && null != endNode && null != startLocation && null != endLocation)
         {
-            updateContactPoints();
+            recomputeContactPoints();
+            isGeometryStampValid = false;
+        }
+    }
+
+    /**
+     * Updates contact points only if something they depend on changed since they were computed : location, size or
+     * parent of the nodes, edges sharing these nodes, transition points or grid. Call it before drawing instead of
+     * updateContactPoints().
+     */
+    protected final void validateContactPoints()
+    {
+        if(null == startNode || null == endNode || null == startLocation || null == endLocation)
+        {
+            return;
+        }
+        long stamp = getGeometryStamp();
+        if(null != contactPoints && isGeometryStampValid && stamp == geometryStamp)
+        {
+            return;
+        }
+        recomputeContactPoints();
+        geometryStamp = stamp;
+        isGeometryStampValid = true;
+    }
+
+    /**
+     * Computes a value which changes each time something used to compute contact points changes. Override it to add
+     * edge specific parameters (bent style for example).
+     * 
+     * @return the current geometry stamp
+     */
+    protected long getGeometryStamp()
+    {
+        long stamp = mixStamp(STAMP_SEED, System.identityHashCode(startNode.getGraph().getGridSticker()));
+        stamp = mixNodeAndEdges(stamp, startNode);
+        if (endNode != startNode)
+        {
+            stamp = mixNodeAndEdges(stamp, endNode);
+        }
+        for (Point2D aTransitionPoint : transitionPoints)
+        {
+            stamp = mixStamp(stamp, aTransitionPoint.getX());
+            stamp = mixStamp(stamp, aTransitionPoint.getY());
+        }
+        return stamp;
+    }
+
+    protected static long mixStamp(long stamp, long value)
+    {
+        return (stamp ^ value) * 0x9E3779B97F4A7C15L;
+    }
+
+    protected static long mixStamp(long stamp, double value)
+    {
+        return mixStamp(stamp, Double.doubleToLongBits(value));
+    }
+
+    /**
+     * Connection points of a node depend on the node geometry and on the directions of all the edges connected to it,
+     * so every one of them takes part in the stamp.
+     */
+    private long mixNodeAndEdges(long stamp, INode node)
+    {
+        stamp = mixNode(stamp, node);
+        IGraph graph = node.getGraph();
+        if (null == graph)
+        {
+            return mixStamp(stamp, ++untrackedCount);
+        }
+        for (IEdge anEdge : graph.getConnectedEdges(node))
+        {
+            stamp = mixStamp(stamp, System.identityHashCode(anEdge));
+            if (!(anEdge instanceof AbstractEdge))
+            {
+                stamp = mixStamp(stamp, ++untrackedCount);
+                continue;
+            }
+            stamp = mixStamp(stamp, ((AbstractEdge) anEdge).contactPointsVersion);
+            INode otherNode = (anEdge.getStartNode() == node) ? anEdge.getEndNode() : anEdge.getStartNode();
+            if (null != otherNode && otherNode != node)
+            {
+                stamp = mixNode(stamp, otherNode);
+            }
+        }
+        return stamp;
+    }
+
+    private static long mixNode(long stamp, INode node)
+    {
+        stamp = mixStamp(stamp, System.identityHashCode(node));
+        stamp = mixStamp(stamp, node.getGeometryVersion());
+        // Some nodes compute their location or their size from other elements, so values are checked too
+        Point2D locationOnGraph = node.getLocationOnGraph();
+        Rectangle2D bounds = node.getBounds();
+        stamp = mixStamp(stamp, locationOnGraph.getX());
+        stamp = mixStamp(stamp, locationOnGraph.getY());
+        stamp = mixStamp(stamp, bounds.getWidth());
+        stamp = mixStamp(stamp, bounds.getHeight());
+        return stamp;
+    }
+
+    /**
+     * Brings the geometry of this edge up to date, as done before drawing it. Graphs call it on all their edges, in the
+     * drawing order, when nodes changed. Does nothing by default.
+     */
+    public void validateGeometry()
+    {
+        // Nothing to do by default
+    }
+
+    /**
+     * @return a counter incremented each time contact points change
+     */
+    public final long getContactPointsVersion()
+    {
+        return contactPointsVersion;
+    }
+
+    private void recomputeContactPoints()
+    {
+        Point2D[] oldContactPoints = contactPoints;
+        updateContactPoints();
+        if (!Arrays.equals(oldContactPoints, contactPoints))
+        {
+            ++contactPointsVersion;
         }
     }
 
     /** Points of contact path */
     protected transient Point2D[] contactPoints;
 
+    /** Incremented each time contact points change (other edges of the same nodes depend on them) */
+    private transient long contactPointsVersion;
+
+    /** Geometry stamp of the last contact points computation */
+    private transient long geometryStamp;
+
+    private transient boolean isGeometryStampValid;
+
+    /** Mixed into stamps when something can't be tracked to force a new computation */
+    private transient long untrackedCount;
+
+    private static final long STAMP_SEED = 0xCBF29CE484222325L;
+
     /** Edge's current id (unique in all the graph) */
     private Id id;
 
@@ -137,6 +137,14 @@ public interface IEdge extends Serializable, Cloneable, IIdentifiable
      * @return the bounding rectangle
      */
     Rectangle2D getBounds();
+
+    /**
+     * Gets the area painted when this edge is drawn (stroke, arrowheads and labels included). The geometry is brought up
+     * to date first, so it can be called just after a change to know what to repaint.
+     * 
+     * @return the drawing bounds
+     */
+    Rectangle2D getDrawingBounds();
     
     
     /**
@@ -27,12 +27,14 @@ import java.awt.geom.Line2D;
 import java.awt.geom.Point2D;
 import java.awt.geom.Rectangle2D;
 
+import com.horstmann.violet.framework.util.Polyline;
 import com.horstmann.violet.product.diagram.common.edge.ColorableEdge;
 
 /**
  * A class that assumes that an edge can yield its shape and then takes advantage of the fact that containment testing can be done
  * by stroking the shape with a fat stroke. NOTE: Ideally, you should be able to draw the same shape that is used for containment
  * testing. However, in JDK 1.4, BasicStroke.createStrokedShape returns shitty-looking shapes.
+ * Shapes made of straight lines are tested faster by measuring the distance to their segments.
  */
 public abstract class ShapeEdge extends ColorableEdge
 {
@@ -49,6 +51,15 @@ public abstract class ShapeEdge extends ColorableEdge
         return getShape().getBounds();
     }
 
+    @Override
+    public Rectangle2D getDrawingBounds()
+    {
+        // The fat stroke also covers the line width, the joins and the arrowheads
+        Rectangle2D r = getSensitiveShape().getBounds2D();
+        r.add(getBounds());
+        return r;
+    }
+
     public boolean contains(Point2D aPoint)
     {
         final double MAX_DIST = 10;
@@ -59,8 +70,39 @@ public abstract class ShapeEdge extends ColorableEdge
         if (aPoint.distance(conn.getP1()) <= MAX_DIST || aPoint.distance(conn.getP2()) <= MAX_DIST) return false;
 
         Shape p = getShape();
-        BasicStroke fatStroke = new BasicStroke((float) (2 * MAX_DIST));
-        Shape fatPath = fatStroke.createStrokedShape(p);
-        return fatPath.contains(aPoint);
+        if (p != polylineSource)
+        {
+            // Null for curved shapes, which are still tested with the fat stroke
+            polyline = Polyline.valueOf(p);
+            polylineSource = p;
+        }
+        if (null != polyline)
+        {
+            return polyline.isNear(aPoint, MAX_DIST);
+        }
+        return getSensitiveShape().contains(aPoint);
     }
+
+    /**
+     * @return the area where a point is considered on this edge (the shape stroked with a fat stroke)
+     */
+    public Shape getSensitiveShape()
+    {
+        final double MAX_DIST = 10;
+
+        Shape p = getShape();
+        if (null == sensitiveShape || p != sensitiveShapeSource)
+        {
+            BasicStroke fatStroke = new BasicStroke((float) (2 * MAX_DIST));
+            sensitiveShape = fatStroke.createStrokedShape(p);
+            // Kept while getShape() returns the same (cached) instance
+            sensitiveShapeSource = p;
+        }
+        return sensitiveShape;
+    }
+
+    private transient Shape sensitiveShape;
+    private transient Shape sensitiveShapeSource;
+    private transient Polyline polyline;
+    private transient Shape polylineSource;
 }
@@ -30,6 +30,7 @@ import java.util.Comparator;
 import java.util.List;
 
 import com.horstmann.violet.framework.graphics.content.Content;
+import com.horstmann.violet.framework.graphics.content.ContentResizeListener;
 import com.horstmann.violet.product.diagram.abstracts.AbstractGraph;
 import com.horstmann.violet.product.diagram.abstracts.Direction;
 import com.horstmann.violet.product.diagram.abstracts.IGraph;
@@ -150,16 +151,8 @@ public abstract class AbstractNode implements INode
      */
     protected List<IEdge> getConnectedEdges()
     {
-        List<IEdge> connectedEdges = new ArrayList<IEdge>();
         IGraph currentGraph = getGraph();
-        for (IEdge anEdge : currentGraph.getAllEdges()) {
-            INode start = anEdge.getStartNode();
-            INode end = anEdge.getEndNode();
-            if (this.equals(start) || this.equals(end)) {
-                connectedEdges.add(anEdge);
-            }
-        }
-        return connectedEdges;
+        return new ArrayList<IEdge>(currentGraph.getConnectedEdges(this));
     }
 
     @Override
@@ -196,11 +189,31 @@ public abstract class AbstractNode implements INode
                 ((AbstractNode) parent).onChildChangeLocation(this);
             }
         }
+        fireGeometryChanged();
     }
 
     protected void onChildChangeLocation(INode child) {
     }
 
+    /**
+     * Informs the graph that the location or the size of this node_old changed
+     * (used to keep the graph spatial index up to date)
+     */
+    protected void fireGeometryChanged()
+    {
+        ++geometryVersion;
+        if (graph instanceof AbstractGraph)
+        {
+            ((AbstractGraph) graph).onNodeGeometryChanged(this);
+        }
+    }
+
+    @Override
+    public long getGeometryVersion()
+    {
+        return geometryVersion;
+    }
+
     @Override
     public Id getId() {
         return this.id;
@@ -343,6 +356,10 @@ public abstract class AbstractNode implements INode
     {
         if (node.getParent() != this) return;
         getChildren().remove(node);
+        if (graph instanceof AbstractGraph)
+        {
+            ((AbstractGraph) graph).onNodeDetached(node);
+        }
     }
 
     @Override
@@ -375,6 +392,7 @@ public abstract class AbstractNode implements INode
     public void setParent(INode node)
     {
         parent = node;
+        ++geometryVersion;
     }
 
     @Override
@@ -391,6 +409,10 @@ public abstract class AbstractNode implements INode
         getChildren().add(index, node);
         node.setParent(this);
         node.setGraph(getGraph());
+        if (graph instanceof AbstractGraph)
+        {
+            ((AbstractGraph) graph).onNodeAttached(node);
+        }
         return true;
     }
 
@@ -452,12 +474,24 @@ public abstract class AbstractNode implements INode
     protected final void setContent(Content content)
     {
         this.content = content;
+        if(null != content)
+        {
+            content.addResizeListener(new ContentResizeListener()
+            {
+                @Override
+                public void onContentResized(Content resizedContent)
+                {
+                    fireGeometryChanged();
+                }
+            });
+        }
     }
 
     private transient Content content;
 
     private transient IGraph graph;
     private transient int z;
+    private transient long geometryVersion;
 
     /** Node's current id (unique in all the graph) */
     private Id id;
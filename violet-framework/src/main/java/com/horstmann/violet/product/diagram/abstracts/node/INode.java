@@ -172,6 +172,14 @@ public interface INode extends Serializable, Cloneable, IIdentifiable, Connected
      */
     Rectangle2D getBounds();
 
+    /**
+     * Gets a counter incremented each time the location, the size or the parent of this node_old changes. It allows to
+     * cache values computed from the node_old geometry (edge contact points for example).
+     * 
+     * @return the current geometry version
+     */
+    long getGeometryVersion();
+
     /**
      * Draw the node_old.
      * 
@@ -0,0 +1,281 @@
+package com.horstmann.violet.product.diagram.abstracts.spatial;
+
+import java.awt.geom.Point2D;
+import java.awt.geom.Rectangle2D;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Spatial index which splits the graph into square buckets. Each element is registered in all the buckets its bounds overlap,
+ * so that a point query only looks at one bucket and an area query only looks at the buckets covered by this area.
+ * 
+ * Elements are compared by identity.
+ * 
+ * @param <T> indexed element type
+ */
+public class GridSpatialIndex<T> implements ISpatialIndex<T>
+{
+
+    /**
+     * Default constructor
+     */
+    public GridSpatialIndex()
+    {
+        this(DEFAULT_CELL_SIZE);
+    }
+
+    /**
+     * @param cellSize width and height of each bucket
+     */
+    public GridSpatialIndex(double cellSize)
+    {
+        if (cellSize <= 0)
+        {
+            throw new IllegalArgumentException("cell size can only be a positive number");
+        }
+        this.cellSize = cellSize;
+    }
+
+    @Override
+    public void put(T element, Rectangle2D bounds)
+    {
+        if (null == element || null == bounds)
+        {
+            throw new NullPointerException("element and bounds can't be null");
+        }
+        Rectangle2D indexedBounds = this.boundsByElement.get(element);
+        if (indexedBounds != null)
+        {
+            if (isSameCells(indexedBounds, bounds) && !this.oversizedElements.contains(element))
+            {
+                indexedBounds.setRect(bounds);
+                return;
+            }
+            remove(element);
+        }
+        indexedBounds = new Rectangle2D.Double(bounds.getX(), bounds.getY(), bounds.getWidth(), bounds.getHeight());
+        this.boundsByElement.put(element, indexedBounds);
+        if (isOversized(indexedBounds))
+        {
+            this.oversizedElements.add(element);
+            return;
+        }
+        int minCol = getCellIndex(indexedBounds.getMinX());
+        int maxCol = getCellIndex(indexedBounds.getMaxX());
+        int minRow = getCellIndex(indexedBounds.getMinY());
+        int maxRow = getCellIndex(indexedBounds.getMaxY());
+        for (int col = minCol; col <= maxCol; col++)
+        {
+            for (int row = minRow; row <= maxRow; row++)
+            {
+                Long key = getCellKey(col, row);
+                List<T> cell = this.cells.get(key);
+                if (cell == null)
+                {
+                    cell = new ArrayList<T>(4);
+                    this.cells.put(key, cell);
+                }
+                cell.add(element);
+            }
+        }
+    }
+
+    @Override
+    public void remove(T element)
+    {
+        Rectangle2D indexedBounds = this.boundsByElement.remove(element);
+        if (indexedBounds == null)
+        {
+            return;
+        }
+        if (this.oversizedElements.remove(element))
+        {
+            return;
+        }
+        int minCol = getCellIndex(indexedBounds.getMinX());
+        int maxCol = getCellIndex(indexedBounds.getMaxX());
+        int minRow = getCellIndex(indexedBounds.getMinY());
+        int maxRow = getCellIndex(indexedBounds.getMaxY());
+        for (int col = minCol; col <= maxCol; col++)
+        {
+            for (int row = minRow; row <= maxRow; row++)
+            {
+                Long key = getCellKey(col, row);
+                List<T> cell = this.cells.get(key);
+                if (cell == null)
+                {
+                    continue;
+                }
+                for (int i = cell.size() - 1; i >= 0; i--)
+                {
+                    if (cell.get(i) == element)
+                    {
+                        cell.remove(i);
+                        break;
+                    }
+                }
+                if (cell.isEmpty())
+                {
+                    this.cells.remove(key);
+                }
+            }
+        }
+    }
+
+    @Override
+    public boolean contains(T element)
+    {
+        return this.boundsByElement.containsKey(element);
+    }
+
+    @Override
+    public void clear()
+    {
+        this.boundsByElement.clear();
+        this.cells.clear();
+        this.oversizedElements.clear();
+    }
+
+    @Override
+    public int size()
+    {
+        return this.boundsByElement.size();
+    }
+
+    @Override
+    public List<T> query(Point2D p)
+    {
+        List<T> result = new ArrayList<T>();
+        List<T> cell = this.cells.get(getCellKey(getCellIndex(p.getX()), getCellIndex(p.getY())));
+        if (cell != null)
+        {
+            for (T anElement : cell)
+            {
+                if (this.boundsByElement.get(anElement).contains(p))
+                {
+                    result.add(anElement);
+                }
+            }
+        }
+        for (T anElement : this.oversizedElements)
+        {
+            if (this.boundsByElement.get(anElement).contains(p))
+            {
+                result.add(anElement);
+            }
+        }
+        return result;
+    }
+
+    @Override
+    public List<T> query(Rectangle2D area)
+    {
+        List<T> result = new ArrayList<T>();
+        int minCol = getCellIndex(area.getMinX());
+        int maxCol = getCellIndex(area.getMaxX());
+        int minRow = getCellIndex(area.getMinY());
+        int maxRow = getCellIndex(area.getMaxY());
+        long cellCount = ((long) maxCol - minCol + 1) * ((long) maxRow - minRow + 1);
+        if (cellCount > this.cells.size())
+        {
+            // Cheaper to look at each element than at each bucket
+            for (Map.Entry<T, Rectangle2D> anEntry : this.boundsByElement.entrySet())
+            {
+                if (intersects(anEntry.getValue(), area))
+                {
+                    result.add(anEntry.getKey());
+                }
+            }
+            return result;
+        }
+        Map<T, Boolean> alreadyFound = new IdentityHashMap<T, Boolean>();
+        for (int col = minCol; col <= maxCol; col++)
+        {
+            for (int row = minRow; row <= maxRow; row++)
+            {
+                List<T> cell = this.cells.get(getCellKey(col, row));
+                if (cell == null)
+                {
+                    continue;
+                }
+                for (T anElement : cell)
+                {
+                    if (!alreadyFound.containsKey(anElement) && intersects(this.boundsByElement.get(anElement), area))
+                    {
+                        alreadyFound.put(anElement, Boolean.TRUE);
+                        result.add(anElement);
+                    }
+                }
+            }
+        }
+        for (T anElement : this.oversizedElements)
+        {
+            if (intersects(this.boundsByElement.get(anElement), area))
+            {
+                result.add(anElement);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Same as Rectangle2D.intersects() but also matches empty rectangles (a node without content or a straight edge has no
+     * width or no height)
+     */
+    private boolean intersects(Rectangle2D r, Rectangle2D area)
+    {
+        return r.getMaxX() >= area.getMinX() && r.getMinX() <= area.getMaxX() && r.getMaxY() >= area.getMinY()
+                && r.getMinY() <= area.getMaxY();
+    }
+
+    private boolean isSameCells(Rectangle2D r1, Rectangle2D r2)
+    {
+        return getCellIndex(r1.getMinX()) == getCellIndex(r2.getMinX()) && getCellIndex(r1.getMaxX()) == getCellIndex(r2.getMaxX())
+                && getCellIndex(r1.getMinY()) == getCellIndex(r2.getMinY())
+                && getCellIndex(r1.getMaxY()) == getCellIndex(r2.getMaxY());
+    }
+
+    private boolean isOversized(Rectangle2D r)
+    {
+        if (Double.isNaN(r.getWidth()) || Double.isNaN(r.getHeight()) || Double.isInfinite(r.getWidth())
+                || Double.isInfinite(r.getHeight()))
+        {
+            return true;
+        }
+        long columns = (long) getCellIndex(r.getMaxX()) - getCellIndex(r.getMinX()) + 1;
+        long rows = (long) getCellIndex(r.getMaxY()) - getCellIndex(r.getMinY()) + 1;
+        return columns * rows > MAX_CELLS_PER_ELEMENT;
+    }
+
+    private int getCellIndex(double coordinate)
+    {
+        return (int) Math.floor(coordinate / this.cellSize);
+    }
+
+    private Long getCellKey(int col, int row)
+    {
+        return Long.valueOf(((long) col << 32) | (row & 0xFFFFFFFFL));
+    }
+
+    /** Buckets content */
+    private Map<Long, List<T>> cells = new HashMap<Long, List<T>>();
+
+    /** Bounds used to register each element */
+    private Map<T, Rectangle2D> boundsByElement = new IdentityHashMap<T, Rectangle2D>();
+
+    /** Elements too large to be stored in buckets. They are checked on each query */
+    private List<T> oversizedElements = new ArrayList<T>();
+
+    /** Bucket width and height */
+    private final double cellSize;
+
+    /** Default bucket size (roughly the size of a class node) */
+    public static final double DEFAULT_CELL_SIZE = 128;
+
+    /** Above this number of buckets, an element is considered as oversized */
+    private static final int MAX_CELLS_PER_ELEMENT = 1024;
+
+}
@@ -0,0 +1,61 @@
+package com.horstmann.violet.product.diagram.abstracts.spatial;
+
+import java.awt.geom.Point2D;
+import java.awt.geom.Rectangle2D;
+import java.util.List;
+
+/**
+ * Index used by graphs to find quickly the elements located around a point or inside an area. Returned elements are only
+ * candidates : their indexed bounds match the query but callers are still responsible for checking their real shape.
+ * 
+ * @param <T> indexed element type (node or edge)
+ */
+public interface ISpatialIndex<T>
+{
+    /**
+     * Adds an element to this index or updates its bounds if it is already indexed
+     * 
+     * @param element
+     * @param bounds the area covered by this element (absolute location on graph)
+     */
+    void put(T element, Rectangle2D bounds);
+
+    /**
+     * Removes an element from this index (does nothing if this element isn't indexed)
+     * 
+     * @param element
+     */
+    void remove(T element);
+
+    /**
+     * @param element
+     * @return true if this element is currently indexed
+     */
+    boolean contains(T element);
+
+    /**
+     * Removes all the indexed elements
+     */
+    void clear();
+
+    /**
+     * @return the number of indexed elements
+     */
+    int size();
+
+    /**
+     * Finds elements whose indexed bounds contain the given point.
+     * 
+     * @param p a point (absolute location on graph)
+     * @return a new list of candidates (never null)
+     */
+    List<T> query(Point2D p);
+
+    /**
+     * Finds elements whose indexed bounds intersect the given area.
+     * 
+     * @param area an area (absolute location on graph)
+     * @return a new list of candidates (never null)
+     */
+    List<T> query(Rectangle2D area);
+}
@@ -0,0 +1,68 @@
+package com.horstmann.violet.product.diagram.abstracts.spatial;
+
+import java.awt.geom.Point2D;
+import java.awt.geom.Rectangle2D;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Spatial index which doesn't trust bounds and returns all its elements as candidates. It is intended for graphs where the
+ * geometry of an element depends on other elements (for example, when a node resizes itself according to its neighbours) and
+ * therefore cannot be kept up to date incrementally.
+ * 
+ * @param <T> indexed element type
+ */
+public class LinearSpatialIndex<T> implements ISpatialIndex<T>
+{
+
+    @Override
+    public void put(T element, Rectangle2D bounds)
+    {
+        if (null == element)
+        {
+            throw new NullPointerException("element can't be null");
+        }
+        this.elements.add(element);
+    }
+
+    @Override
+    public void remove(T element)
+    {
+        this.elements.remove(element);
+    }
+
+    @Override
+    public boolean contains(T element)
+    {
+        return this.elements.contains(element);
+    }
+
+    @Override
+    public void clear()
+    {
+        this.elements.clear();
+    }
+
+    @Override
+    public int size()
+    {
+        return this.elements.size();
+    }
+
+    @Override
+    public List<T> query(Point2D p)
+    {
+        return new ArrayList<T>(this.elements);
+    }
+
+    @Override
+    public List<T> query(Rectangle2D area)
+    {
+        return new ArrayList<T>(this.elements);
+    }
+
+    private Set<T> elements = new LinkedHashSet<T>();
+
+}
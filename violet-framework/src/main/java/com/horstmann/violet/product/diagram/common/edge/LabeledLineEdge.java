@@ -105,6 +105,27 @@ public class LabeledLineEdge extends ArrowheadEdge
         drawContent(graphics, endTextContent, contactPoints[contactPoints.length-1], contactPoints[contactPoints.length-2], false);
     }
 
+    @Override
+    public Rectangle2D getDrawingBounds()
+    {
+        Rectangle2D r = super.getDrawingBounds();
+        addContentBounds(r, startTextContent, contactPoints[0], contactPoints[0]);
+        addContentBounds(r, centerTextContent, contactPoints[contactPoints.length/2-1], contactPoints[contactPoints.length/2]);
+        addContentBounds(r, endTextContent, contactPoints[contactPoints.length-1], contactPoints[contactPoints.length-1]);
+        return r;
+    }
+
+    /**
+     * Adds the area where a label can be drawn around its anchor whatever its direction (labels may be rotated)
+     */
+    private void addContentBounds(Rectangle2D r, TextContent textContent, Point2D startPoint, Point2D endPoint)
+    {
+        double radius = LABEL_GAP + textContent.getWidth() + textContent.getHeight();
+        double x = (startPoint.getX() + endPoint.getX()) / 2;
+        double y = (startPoint.getY() + endPoint.getY()) / 2;
+        r.add(new Rectangle2D.Double(x - radius, y - radius, 2 * radius, 2 * radius));
+    }
+
     private void drawContent(Graphics2D graphics, TextContent textContent, Point2D startPoint, Point2D endPoint, boolean center)
     {
         Rectangle2D textBounds = textContent.getBounds();
@@ -80,7 +80,7 @@ public abstract class LineEdge extends ShapeEdge
      */
     public void draw(Graphics2D graphics)
     {
-        updateContactPoints();
+        validateContactPoints();
 
         Color oldColor = graphics.getColor();
         Stroke oldStroke = graphics.getStroke();
@@ -98,18 +98,48 @@ public abstract class LineEdge extends ShapeEdge
         return getPath();
     }
 
-    protected GeneralPath getPath()
+    @Override
+    public Rectangle2D getDrawingBounds()
     {
-        GeneralPath path = new GeneralPath();
-        path.moveTo(contactPoints[0].getX(), contactPoints[0].getY());
+        validateContactPoints();
+        return super.getDrawingBounds();
+    }
 
-        for (int i = 1; i < contactPoints.length; ++i)
+    @Override
+    public void validateGeometry()
+    {
+        validateContactPoints();
+    }
+
+    /**
+     * Gets the path through the contact points. The path is kept until contact points change, so it must not be
+     * modified by callers.
+     *
+     * @return the edge path
+     */
+    protected GeneralPath getPath()
+    {
+        if (null == path || pathContactPoints != contactPoints)
         {
-            path.lineTo(contactPoints[i].getX(), contactPoints[i].getY());
+            GeneralPath newPath = new GeneralPath();
+            newPath.moveTo(contactPoints[0].getX(), contactPoints[0].getY());
+
+            for (int i = 1; i < contactPoints.length; ++i)
+            {
+                newPath.lineTo(contactPoints[i].getX(), contactPoints[i].getY());
+            }
+            path = newPath;
+            pathContactPoints = contactPoints;
         }
         return path;
     }
 
+    @Override
+    protected long getGeometryStamp()
+    {
+        return mixStamp(super.getGeometryStamp(), bentStyleChoiceList.getSelectedPos());
+    }
+
     protected void updateContactPoints()
     {
         Line2D connectionPoints = getConnectionPoints();
@@ -252,6 +282,9 @@ public abstract class LineEdge extends ShapeEdge
     private transient LineStyleChoiceList lineStyleChoiceList;
     private transient BentStyleChoiceList bentStyleChoiceList;
 
+    private transient GeneralPath path;
+    private transient Point2D[] pathContactPoints;
+
     private int selectedBentStyle;
     private int selectedLineStyle;
 
@@ -136,6 +136,7 @@ public class DiagramLinkNode extends ColorableNode
     public void setDiagramLink(DiagramLink fLink)
     {
         this.diagramLink = fLink;
+        fireGeometryChanged();
     }
 
     private MultiLineText getLabel()
@@ -151,7 +152,12 @@ public class DiagramLinkNode extends ColorableNode
                     .append(
                             ResourceBundle.getBundle(ResourceBundleConstant.OTHER_STRINGS, Locale.getDefault()).getString(
                                     "file.link.text")).append(" ").append(dl.getFile().getFilename());
-            this.label.setText( linktext.toString() );
+            if (!linktext.toString().equals(this.label.toEdit()))
+            {
+                // The label gives the node size
+                this.label.setText( linktext.toString() );
+                fireGeometryChanged();
+            }
         }
         return this.label;
     }
@@ -26,19 +26,27 @@ import java.awt.Color;
 import java.awt.Graphics2D;
 import java.awt.Image;
 import java.awt.Shape;
-import java.awt.Toolkit;
 import java.awt.geom.GeneralPath;
 import java.awt.geom.Point2D;
 import java.awt.geom.Rectangle2D;
-import java.awt.image.MemoryImageSource;
-import java.awt.image.PixelGrabber;
-import java.util.StringTokenizer;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.LinkedHashMap;
+import java.util.Map;
 
+import javax.imageio.ImageIO;
 import javax.swing.ImageIcon;
 
+import org.apache.commons.codec.binary.Base64;
+
 import com.horstmann.violet.framework.injection.resources.ResourceBundleInjector;
 import com.horstmann.violet.framework.injection.resources.annotation.ResourceBundleBean;
 import com.horstmann.violet.product.diagram.abstracts.edge.IEdge;
+import com.horstmann.violet.product.diagram.property.text.LineText;
 import com.horstmann.violet.product.diagram.property.text.MultiLineText;
 
 /**
@@ -51,7 +59,7 @@ public class ImageNode extends ColorableNode
      */
     public ImageNode(Image img)
     {
-        text = new MultiLineText();
+        setText(new MultiLineText());
 //        text.setAlignment(MultiLineText.RIGHT);
         this.setImage(img);
     }
@@ -62,10 +70,18 @@ public class ImageNode extends ColorableNode
     public ImageNode()
     {
     	ResourceBundleInjector.getInjector().inject(this);
-    	text = new MultiLineText();
+    	setText(new MultiLineText());
 //        text.setAlignment(MultiLineText.RIGHT);
     }
 
+    @Override
+    protected void beforeReconstruction()
+    {
+        super.beforeReconstruction();
+        // Listeners are not saved with the text
+        listenToText();
+    }
+
     /**
      * Sets current image
      * 
@@ -73,7 +89,50 @@ public class ImageNode extends ColorableNode
      */
     public void setImage(Image img)
     {
-        this.imageIcon = new ImageIcon(img);
+        BufferedImage bufferedImage = toBufferedImage(img);
+        this.imageData = encode(bufferedImage);
+        this.imageWidth = bufferedImage.getWidth();
+        this.imageHeight = bufferedImage.getHeight();
+        this.imageIcon = null;
+        this.image = bufferedImage;
+        putCachedImage(getDigest(this.imageData), bufferedImage);
+        fireGeometryChanged();
+    }
+
+    /**
+     * @return current image, decoded from the encoded pixels the first time it is needed
+     */
+    private BufferedImage getImage()
+    {
+        if (this.image != null)
+        {
+            return this.image;
+        }
+        if (this.imageData == null && this.imageIcon == null)
+        {
+            ResourceBundleInjector.getInjector().inject(this);
+        }
+        if (this.imageData == null)
+        {
+            // Icon from a file saved before pixels were encoded (or default icon) : encoded once to be saved as PNG
+            setImage(this.imageIcon.getImage());
+            return this.image;
+        }
+        String digest = getDigest(this.imageData);
+        BufferedImage cachedImage = getCachedImage(digest);
+        if (cachedImage == null)
+        {
+            cachedImage = decode(this.imageData);
+            putCachedImage(digest, cachedImage);
+        }
+        this.image = cachedImage;
+        if (this.imageWidth != cachedImage.getWidth() || this.imageHeight != cachedImage.getHeight())
+        {
+            this.imageWidth = cachedImage.getWidth();
+            this.imageHeight = cachedImage.getHeight();
+            fireGeometryChanged();
+        }
+        return this.image;
     }
 
     @Override
@@ -83,8 +142,8 @@ public class ImageNode extends ColorableNode
         Point2D currentLocation = getLocation();
         double x = currentLocation.getX();
         double y = currentLocation.getY();
-        double w = Math.max(b.getWidth(), this.imageIcon.getIconWidth());
-        double h = b.getHeight() + this.imageIcon.getIconHeight();
+        double w = Math.max(b.getWidth(), getImageWidth());
+        double h = b.getHeight() + getImageHeight();
         Rectangle2D currentBounds = new Rectangle2D.Double(x, y, w, h);
         Rectangle2D snapperBounds = getGraph().getGridSticker().snap(currentBounds);
         return snapperBounds;
@@ -120,16 +179,44 @@ public class ImageNode extends ColorableNode
     public void setText(MultiLineText newValue)
     {
         text = newValue;
+        listenToText();
+        fireGeometryChanged();
+    }
+
+    /**
+     * Updates the node bounds in the graph when the text is edited, as it is not drawn through a content
+     */
+    private void listenToText()
+    {
+        if (this.listenedText == this.text)
+        {
+            return;
+        }
+        this.listenedText = this.text;
+        this.text.addChangeListener(new LineText.ChangeListener()
+        {
+            @Override
+            public void onChange()
+            {
+                fireGeometryChanged();
+            }
+        });
     }
     
     
-    public ImageIcon getImageIcon() {
-		return imageIcon;
-	}
+    /**
+     * @return a new icon showing the current image (the image itself may be shared with other nodes, so it must not be
+     *         changed through this icon)
+     */
+    public ImageIcon getImageIcon()
+    {
+        return new ImageIcon(getImage());
+    }
 
-	public void setImageIcon(ImageIcon imageIcon) {
-		this.imageIcon = imageIcon;
-	}
+    public void setImageIcon(ImageIcon imageIcon)
+    {
+        setImage(imageIcon.getImage());
+    }
 
 	/*
      * (non-Javadoc)
@@ -142,12 +229,12 @@ public class ImageNode extends ColorableNode
         Color oldColor = graphics.getColor();
         // Draw image
         Rectangle2D bounds = getBounds();
-        graphics.drawImage(this.imageIcon.getImage(), (int) bounds.getCenterX() - this.imageIcon.getIconWidth() / 2, (int) bounds.getY(),
-                this.imageIcon.getImageObserver());
+        BufferedImage currentImage = getImage();
+        graphics.drawImage(currentImage, (int) bounds.getCenterX() - currentImage.getWidth() / 2, (int) bounds.getY(), null);
         // Draw text
         graphics.setColor(getTextColor());
         Rectangle2D b = text.getBounds();
-        Rectangle2D textBounds = new Rectangle2D.Double(bounds.getX(), bounds.getY() + this.imageIcon.getIconHeight(),
+        Rectangle2D textBounds = new Rectangle2D.Double(bounds.getX(), bounds.getY() + currentImage.getHeight(),
                 b.getWidth(), b.getHeight());
         text.draw(graphics, textBounds);
         // Restore first color
@@ -175,24 +262,15 @@ public class ImageNode extends ColorableNode
     /**
      * This method should be kept as private as long as it is used for serialization purpose
      * 
-     * @return image content as an array
-     * @throws InterruptedException
+     * @return image content as a base64 encoded PNG
      */
-    public String getImageContent() throws InterruptedException
+    public String getImageContent()
     {
-        Image img = this.imageIcon.getImage();
-        int width = this.imageIcon.getIconWidth();
-        int height = this.imageIcon.getIconHeight();
-        int[] pixels = new int[width * height];
-        PixelGrabber pg = new PixelGrabber(img, 0, 0, width, height, pixels, 0, width);
-        pg.grabPixels();
-        StringBuilder result = new StringBuilder();
-        for (int i : pixels)
+        if (this.imageData == null)
         {
-            result.append(i).append(PIXEL_SEPARATOR);
+            getImage();
         }
-        result.deleteCharAt(result.length() - 1);
-        return result.toString();
+        return this.imageData;
     }
     
     
@@ -201,7 +279,11 @@ public class ImageNode extends ColorableNode
      */
     public int getImageWidth()
     {
-        return this.imageIcon.getIconWidth();
+        if (this.imageWidth <= 0)
+        {
+            getImage();
+        }
+        return this.imageWidth;
     }
 
     /**
@@ -209,33 +291,154 @@ public class ImageNode extends ColorableNode
      */
     public int getImageHeight()
     {
-        return this.imageIcon.getIconHeight();
+        if (this.imageHeight <= 0)
+        {
+            getImage();
+        }
+        return this.imageHeight;
     }
 
     /**
-     * This method should be kept as private as long as it is used for serialization purpose. Replaces current imageIcon by a new
-     * one created with the image content guven is parameters
+     * This method should be kept as private as long as it is used for serialization purpose. Replaces current image by
+     * the one given in parameters. The image is decoded when it is drawn for the first time.
      * 
-     * @param pixels image content
+     * @param imageContent image content, as a base64 encoded PNG or as pixels separated by PIXEL_SEPARATOR (old files)
      * @param width image width
      * @param height image height
      */
-    @SuppressWarnings("unused")
     public void setImageContent(String imageContent, int width, int height)
     {
-        StringTokenizer tokenizer = new StringTokenizer(imageContent, PIXEL_SEPARATOR);
-        int[] pixels = new int[tokenizer.countTokens()];
-        int counter = 0;
-        while (tokenizer.hasMoreTokens())
+        if (!imageContent.startsWith(PNG_BASE64_PREFIX))
         {
-            String aPixel = tokenizer.nextToken();
-            pixels[counter] = Integer.parseInt(aPixel);
-            counter++;
+            setImage(decodePixels(imageContent, width, height));
+            return;
+        }
+        this.imageData = imageContent;
+        this.imageWidth = width;
+        this.imageHeight = height;
+        this.imageIcon = null;
+        this.image = null;
+        fireGeometryChanged();
+    }
+
+    /**
+     * @param img
+     * @return img as a buffered image (an empty one if img cannot be loaded)
+     */
+    private static BufferedImage toBufferedImage(Image img)
+    {
+        if (img instanceof BufferedImage)
+        {
+            return (BufferedImage) img;
+        }
+        // Waits for the image to be loaded
+        ImageIcon loadedIcon = new ImageIcon(img);
+        int width = Math.max(1, loadedIcon.getIconWidth());
+        int height = Math.max(1, loadedIcon.getIconHeight());
+        BufferedImage bufferedImage = new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB);
+        Graphics2D g2 = bufferedImage.createGraphics();
+        g2.drawImage(loadedIcon.getImage(), 0, 0, null);
+        g2.dispose();
+        return bufferedImage;
+    }
+
+    /**
+     * @param pixels pixels separated by PIXEL_SEPARATOR, as saved by older versions
+     * @param width
+     * @param height
+     * @return the decoded image
+     */
+    private static BufferedImage decodePixels(String pixels, int width, int height)
+    {
+        int[] rgbArray = new int[width * height];
+        int start = 0;
+        for (int i = 0; i < rgbArray.length && start < pixels.length(); i++)
+        {
+            int end = pixels.indexOf(PIXEL_SEPARATOR, start);
+            if (end == -1)
+            {
+                end = pixels.length();
+            }
+            rgbArray[i] = Integer.parseInt(pixels.substring(start, end));
+            start = end + PIXEL_SEPARATOR.length();
+        }
+        BufferedImage bufferedImage = new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB);
+        bufferedImage.setRGB(0, 0, width, height, rgbArray, 0, width);
+        return bufferedImage;
+    }
+
+    private static String encode(BufferedImage bufferedImage)
+    {
+        try
+        {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            ImageIO.write(bufferedImage, "png", out);
+            return Base64.encodeBase64String(out.toByteArray());
+        }
+        catch (IOException e)
+        {
+            throw new RuntimeException("Error while encoding image", e);
+        }
+    }
+
+    private static BufferedImage decode(String imageData)
+    {
+        try
+        {
+            BufferedImage bufferedImage = ImageIO.read(new ByteArrayInputStream(Base64.decodeBase64(imageData)));
+            if (bufferedImage == null)
+            {
+                throw new IOException("Unreadable image");
+            }
+            return bufferedImage;
+        }
+        catch (IOException e)
+        {
+            throw new RuntimeException("Error while decoding image", e);
+        }
+    }
+
+    /**
+     * @param imageData
+     * @return a hash of the encoded image, to share decoded images between nodes showing the same one
+     */
+    private static String getDigest(String imageData)
+    {
+        try
+        {
+            MessageDigest messageDigest = MessageDigest.getInstance("SHA-1");
+            byte[] digest = messageDigest.digest(imageData.getBytes("US-ASCII"));
+            StringBuilder result = new StringBuilder();
+            for (byte b : digest)
+            {
+                result.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+            }
+            return result.toString();
+        }
+        catch (NoSuchAlgorithmException e)
+        {
+            throw new RuntimeException(e);
+        }
+        catch (IOException e)
+        {
+            throw new RuntimeException(e);
+        }
+    }
+
+    private static BufferedImage getCachedImage(String digest)
+    {
+        synchronized (IMAGE_CACHE)
+        {
+            return IMAGE_CACHE.get(digest);
+        }
+    }
+
+    private static void putCachedImage(String digest, BufferedImage bufferedImage)
+    {
+        synchronized (IMAGE_CACHE)
+        {
+            IMAGE_CACHE.put(digest, bufferedImage);
         }
-        MemoryImageSource mis = new MemoryImageSource(width, height, pixels, 0, width);
-        Toolkit tk = Toolkit.getDefaultToolkit();
-        Image img = tk.createImage(mis);
-        this.setImage(img);
     }
 
     /*
@@ -261,8 +464,35 @@ public class ImageNode extends ColorableNode
 
     private static final String PIXEL_SEPARATOR = ":";
 
+    /** Start of any base64 encoded PNG (its signature) */
+    private static final String PNG_BASE64_PREFIX = "iVBORw0KGgo";
+
+    private static final int IMAGE_CACHE_SIZE = 32;
+
+    /** Decoded images by hash of their encoded content, least recently used first */
+    private static final Map<String, BufferedImage> IMAGE_CACHE = new LinkedHashMap<String, BufferedImage>(16, 0.75f, true)
+    {
+        protected boolean removeEldestEntry(Map.Entry<String, BufferedImage> eldest)
+        {
+            return size() > IMAGE_CACHE_SIZE;
+        }
+    };
+
+    /** Default icon and icon of files saved before pixels were encoded. Replaced by imageData as soon as it is used. */
     @ResourceBundleBean(key = "imagenode.icon")
     private ImageIcon imageIcon;
 
+    /** Image as a base64 encoded PNG */
+    private String imageData;
+
+    private int imageWidth;
+
+    private int imageHeight;
+
+    private transient BufferedImage image;
+
     private MultiLineText text;
+
+    /** Text whose changes are listened to */
+    private transient MultiLineText listenedText;
 }
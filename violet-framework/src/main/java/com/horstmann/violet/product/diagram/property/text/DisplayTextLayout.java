@@ -0,0 +1,509 @@
+package com.horstmann.violet.product.diagram.property.text;
+
+import java.awt.Font;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.font.FontRenderContext;
+import java.awt.font.LineMetrics;
+import java.awt.font.TextLayout;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * This class lays out a display text (the html produced by the decorators : b, i, u, font size, center and br tags)
+ * once, as lines of TextLayout runs, so that it can be measured and drawn without any Swing component. Sizes and
+ * positions follow the ones of a JLabel showing the same html. A layout never changes once made, so it can be shared
+ * by all the texts showing the same display text (see DisplayTextLayoutCache).
+ */
+public class DisplayTextLayout
+{
+    /**
+     * Rendering hint set to Boolean.TRUE by graphics which keep strings as text (as SVG documents) : runs are then
+     * drawn with drawString() rather than as glyphs.
+     */
+    public static final RenderingHints.Key KEY_TEXT_AS_STRINGS = new RenderingHints.Key(0)
+    {
+        @Override
+        public boolean isCompatibleValue(Object value)
+        {
+            return value instanceof Boolean;
+        }
+    };
+
+    /**
+     * @param text display text
+     * @param font base font (as the font of a label)
+     */
+    public DisplayTextLayout(String text, Font font)
+    {
+        this.text = text;
+        this.font = font;
+        parse();
+    }
+
+    /**
+     * @param text display text
+     * @param font base font
+     * @return true if this layout was made for this text and this font
+     */
+    public final boolean isLayoutOf(String text, Font font)
+    {
+        return this.text.equals(text) && this.font.equals(font);
+    }
+
+    /**
+     * @return display text
+     */
+    public final String getText()
+    {
+        return text;
+    }
+
+    /**
+     * @return base font
+     */
+    public final Font getFont()
+    {
+        return font;
+    }
+
+    /**
+     * @return width of the widest line
+     */
+    public final int getWidth()
+    {
+        return width;
+    }
+
+    /**
+     * @return height of all lines
+     */
+    public final int getHeight()
+    {
+        return height;
+    }
+
+    /**
+     * Draws text in a box of getWidth() x getHeight() (with the current color of graphics)
+     * @param graphics
+     * @param x left of the box
+     * @param y top of the box
+     */
+    public final void draw(Graphics2D graphics, int x, int y)
+    {
+        int lineY = y;
+        for (Line line : lines)
+        {
+            int runX = x;
+            if (line.centered)
+            {
+                runX += (width - line.width) / 2;
+            }
+            for (Run run : line.runs)
+            {
+                if (Boolean.TRUE.equals(graphics.getRenderingHint(KEY_TEXT_AS_STRINGS)))
+                {
+                    Font oldFont = graphics.getFont();
+                    graphics.setFont(run.font);
+                    graphics.drawString(run.text, runX, lineY + line.ascent);
+                    graphics.setFont(oldFont);
+                }
+                else
+                {
+                    run.layout.draw(graphics, runX, lineY + line.ascent);
+                }
+                if (run.underlined)
+                {
+                    graphics.drawLine(runX, lineY + line.ascent + 1, runX + run.width, lineY + line.ascent + 1);
+                }
+                runX += run.width;
+            }
+            lineY += line.ascent + line.descent;
+        }
+    }
+
+    /**
+     * Splits text into lines of runs and measures them
+     */
+    private void parse()
+    {
+        newLine(false, false);
+        int index = 0;
+        while (index < text.length())
+        {
+            char c = text.charAt(index);
+            if ('<' == c && text.indexOf('>', index) > 0)
+            {
+                int end = text.indexOf('>', index);
+                parseTag(text.substring(index + 1, end).trim().toLowerCase());
+                index = end + 1;
+            }
+            else if ('&' == c && text.indexOf(';', index) > 0 && text.indexOf(';', index) - index <= MAX_ENTITY_LENGTH)
+            {
+                int end = text.indexOf(';', index);
+                String entity = text.substring(index + 1, end);
+                String character = decodeEntity(entity);
+                if (null == character)
+                {
+                    append("&");
+                    index++;
+                }
+                else
+                {
+                    append(character);
+                    index = end + 1;
+                }
+            }
+            else
+            {
+                append(String.valueOf(c));
+                index++;
+            }
+        }
+        endLine(false);
+
+        for (Line line : lines)
+        {
+            width = Math.max(width, line.width);
+            height += line.ascent + line.descent;
+        }
+    }
+
+    /**
+     * Applies a tag to the following characters
+     * @param tag tag content without brackets
+     */
+    private void parseTag(String tag)
+    {
+        boolean closing = tag.startsWith("/");
+        String name = closing ? tag.substring(1).trim() : tag;
+        int nameEnd = 0;
+        while (nameEnd < name.length() && Character.isLetterOrDigit(name.charAt(nameEnd)))
+        {
+            nameEnd++;
+        }
+        String attributes = name.substring(nameEnd);
+        name = name.substring(0, nameEnd);
+
+        if ("b".equals(name))
+        {
+            bold += closing ? -1 : 1;
+        }
+        else if ("i".equals(name))
+        {
+            italic += closing ? -1 : 1;
+        }
+        else if ("u".equals(name))
+        {
+            underline += closing ? -1 : 1;
+        }
+        else if ("font".equals(name))
+        {
+            if (closing)
+            {
+                if (!sizes.isEmpty())
+                {
+                    sizes.remove(sizes.size() - 1);
+                }
+            }
+            else
+            {
+                sizes.add(parseSize(attributes));
+            }
+        }
+        else if ("br".equals(name))
+        {
+            current.breakWidth = (int) Math.round(getCurrentFont().getStringBounds(" ", FONT_RENDER_CONTEXT).getWidth());
+            endLine(true);
+            newLine(centered, true);
+        }
+        else if ("center".equals(name))
+        {
+            centered = !closing;
+            if (isEmpty(current) && !current.startedByBreak)
+            {
+                current.centered = centered;
+            }
+            else
+            {
+                endLine(false);
+                newLine(centered, false);
+            }
+        }
+        bold = Math.max(0, bold);
+        italic = Math.max(0, italic);
+        underline = Math.max(0, underline);
+    }
+
+    /**
+     * @param attributes attributes of a font tag
+     * @return point size of the font or the one of the enclosing text when there's no size
+     */
+    private float parseSize(String attributes)
+    {
+        float enclosingSize = sizes.isEmpty() ? font.getSize2D() : sizes.get(sizes.size() - 1);
+        int index = attributes.indexOf("size");
+        if (-1 == index)
+        {
+            return enclosingSize;
+        }
+        String value = attributes.substring(index + "size".length()).replace("=", " ").replace("\"", " ").replace("'", " ").trim();
+        int valueEnd = 0;
+        while (valueEnd < value.length() && (Character.isDigit(value.charAt(valueEnd)) || (0 == valueEnd && "+-".indexOf(value.charAt(0)) >= 0)))
+        {
+            valueEnd++;
+        }
+        try
+        {
+            int size = Integer.parseInt(value.substring(value.startsWith("+") ? 1 : 0, valueEnd));
+            if (value.startsWith("+") || value.startsWith("-"))
+            {
+                size += BASE_FONT_SIZE;
+            }
+            size = Math.max(1, Math.min(FONT_SIZES.length, size));
+            return FONT_SIZES[size - 1];
+        }
+        catch (NumberFormatException e)
+        {
+            return enclosingSize;
+        }
+    }
+
+    /**
+     * @param entity entity name without & and ;
+     * @return the character or null if the entity is unknown
+     */
+    private static String decodeEntity(String entity)
+    {
+        try
+        {
+            if (entity.startsWith("#x") || entity.startsWith("#X"))
+            {
+                return String.valueOf((char) Integer.parseInt(entity.substring(2), 16));
+            }
+            if (entity.startsWith("#"))
+            {
+                return String.valueOf((char) Integer.parseInt(entity.substring(1)));
+            }
+        }
+        catch (NumberFormatException e)
+        {
+            return null;
+        }
+        return ENTITIES.get(entity);
+    }
+
+    /**
+     * Adds characters to the current line, with the current style (white spaces are collapsed as in html)
+     * @param characters
+     */
+    private void append(String characters)
+    {
+        if (Character.isWhitespace(characters.charAt(0)) && !NON_BREAKING_SPACE.equals(characters))
+        {
+            if (null == pendingSpaceFont && !isEmpty(current))
+            {
+                pendingSpaceFont = getCurrentFont();
+            }
+            return;
+        }
+        if (null != pendingSpaceFont)
+        {
+            appendToRun(" ", pendingSpaceFont);
+            pendingSpaceFont = null;
+        }
+        appendToRun(characters, getCurrentFont());
+    }
+
+    /**
+     * @param characters
+     * @param runFont
+     */
+    private void appendToRun(String characters, Font runFont)
+    {
+        boolean runUnderlined = underline > 0;
+        if (!runFont.equals(this.runFont) || runUnderlined != this.runUnderlined)
+        {
+            endRun();
+            this.runFont = runFont;
+            this.runUnderlined = runUnderlined;
+        }
+        runText.append(characters);
+    }
+
+    /**
+     * Closes the run of characters having the same font
+     */
+    private void endRun()
+    {
+        if (runText.length() > 0)
+        {
+            String text = runText.toString();
+            Run run = new Run(text, runFont, new TextLayout(text, runFont, FONT_RENDER_CONTEXT), runUnderlined);
+            current.runs.add(run);
+            current.width += run.width;
+            measure(runFont);
+            runText.setLength(0);
+        }
+    }
+
+    /**
+     * Starts a new line
+     * @param centered true if the line is centered
+     * @param startedByBreak true if the line follows a line break
+     */
+    private void newLine(boolean centered, boolean startedByBreak)
+    {
+        current = new Line();
+        current.centered = centered;
+        current.startedByBreak = startedByBreak;
+        pendingSpaceFont = null;
+        lines.add(current);
+    }
+
+    /**
+     * Ends the current line. As in a label, a line break followed by nothing on its line takes the room of a space
+     * and only makes an empty line when another line break follows.
+     * 
+     * @param byBreak true if the line ends with a line break
+     */
+    private void endLine(boolean byBreak)
+    {
+        endRun();
+        if (!isEmpty(current))
+        {
+            return;
+        }
+        if (current.startedByBreak)
+        {
+            Line previous = lines.get(lines.size() - 2);
+            previous.width += previous.breakWidth;
+        }
+        if (byBreak)
+        {
+            measure(getCurrentFont());
+        }
+        else
+        {
+            lines.remove(current);
+        }
+    }
+
+    /**
+     * @param line
+     * @return true if nothing has been added to the line
+     */
+    private boolean isEmpty(Line line)
+    {
+        return line.runs.isEmpty() && (line != current || 0 == runText.length());
+    }
+
+    /**
+     * Adapts the current line height to a font
+     * @param lineFont
+     */
+    private void measure(Font lineFont)
+    {
+        LineMetrics metrics = lineFont.getLineMetrics("", FONT_RENDER_CONTEXT);
+        int ascent = (int) (ROUNDING_UP + metrics.getAscent());
+        int descent = (int) (ROUNDING_UP + metrics.getDescent());
+        int leading = (int) (ROUNDING_UP + metrics.getDescent() + metrics.getLeading()) - descent;
+        current.ascent = Math.max(current.ascent, ascent);
+        current.descent = Math.max(current.descent, descent + leading);
+    }
+
+    /**
+     * @return font for the current style
+     */
+    private Font getCurrentFont()
+    {
+        int style = font.getStyle();
+        if (bold > 0)
+        {
+            style |= Font.BOLD;
+        }
+        if (italic > 0)
+        {
+            style |= Font.ITALIC;
+        }
+        float size = sizes.isEmpty() ? font.getSize2D() : sizes.get(sizes.size() - 1);
+        return font.deriveFont(style, size);
+    }
+
+    /**
+     * Line of text
+     */
+    private static class Line
+    {
+        private List<Run> runs = new ArrayList<Run>();
+        private int width;
+        private int ascent;
+        private int descent;
+        private boolean centered;
+        private boolean startedByBreak;
+        private int breakWidth;
+    }
+
+    /**
+     * Characters drawn with the same font
+     */
+    private static class Run
+    {
+        private Run(String text, Font font, TextLayout layout, boolean underlined)
+        {
+            this.text = text;
+            this.font = font;
+            this.layout = layout;
+            this.width = Math.round(layout.getAdvance());
+            this.underlined = underlined;
+        }
+
+        private String text;
+        private Font font;
+        private TextLayout layout;
+        private int width;
+        private boolean underlined;
+    }
+
+    private final String text;
+    private final Font font;
+    private final List<Line> lines = new ArrayList<Line>();
+    private int width;
+    private int height;
+
+    // parsing state
+    private Line current;
+    private StringBuilder runText = new StringBuilder();
+    private Font runFont;
+    private boolean runUnderlined;
+    private Font pendingSpaceFont;
+    private boolean centered;
+    private int bold;
+    private int italic;
+    private int underline;
+    private List<Float> sizes = new ArrayList<Float>();
+
+    /**
+     * Font sizes of html (font tag size attribute from 1 to 7)
+     */
+    private static final float[] FONT_SIZES = {8, 10, 12, 14, 18, 24, 36};
+    private static final int BASE_FONT_SIZE = 4;
+    private static final float ROUNDING_UP = 0.95f;
+    private static final int MAX_ENTITY_LENGTH = 10;
+    private static final String NON_BREAKING_SPACE = "\u00a0";
+    private static final FontRenderContext FONT_RENDER_CONTEXT = new FontRenderContext(null, true, false);
+    private static final Map<String, String> ENTITIES = new HashMap<String, String>();
+    static
+    {
+        ENTITIES.put("amp", "&");
+        ENTITIES.put("lt", "<");
+        ENTITIES.put("gt", ">");
+        ENTITIES.put("quot", "\"");
+        ENTITIES.put("apos", "'");
+        ENTITIES.put("nbsp", NON_BREAKING_SPACE);
+        ENTITIES.put("laquo", "«");
+        ENTITIES.put("raquo", "»");
+    }
+}
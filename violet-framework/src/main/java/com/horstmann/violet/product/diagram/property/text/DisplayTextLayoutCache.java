@@ -0,0 +1,144 @@
+package com.horstmann.violet.product.diagram.property.text;
+
+import java.awt.Font;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Process-wide cache of text layouts. The same labels (stereotypes, methods, role names...) come back in every diagram
+ * and again each time a diagram is loaded, so they are parsed and measured once. Layouts are immutable and shared by
+ * all the texts showing them. The least recently used layouts are dropped beyond a fixed number of entries.
+ */
+public class DisplayTextLayoutCache
+{
+    /**
+     * Singleton constructor
+     */
+    private DisplayTextLayoutCache()
+    {
+        // Singleton
+    }
+
+    /**
+     * @return cache instance
+     */
+    public static DisplayTextLayoutCache getInstance()
+    {
+        return INSTANCE;
+    }
+
+    /**
+     * Gets the layout of a display text, made on the first request (all layouts are measured with the same font render
+     * context, so text and font are enough to find them). Layouts are made out of the lock, so threads rendering
+     * diagrams in parallel don't wait for each other : two threads may make the same layout, the first one is kept.
+     *
+     * @param text display text
+     * @param font base font
+     * @return shared layout
+     */
+    public DisplayTextLayout getLayout(String text, Font font)
+    {
+        Key key = new Key(text, font);
+        synchronized (this)
+        {
+            DisplayTextLayout layout = layouts.get(key);
+            if (null != layout)
+            {
+                hitCount++;
+                return layout;
+            }
+            missCount++;
+        }
+        DisplayTextLayout newLayout = new DisplayTextLayout(text, font);
+        synchronized (this)
+        {
+            DisplayTextLayout layout = layouts.get(key);
+            if (null != layout)
+            {
+                return layout;
+            }
+            layouts.put(key, newLayout);
+            return newLayout;
+        }
+    }
+
+    /**
+     * @return number of requests answered from the cache
+     */
+    public synchronized long getHitCount()
+    {
+        return hitCount;
+    }
+
+    /**
+     * @return number of requests which needed a new layout
+     */
+    public synchronized long getMissCount()
+    {
+        return missCount;
+    }
+
+    /**
+     * @return number of layouts currently kept
+     */
+    public synchronized int getSize()
+    {
+        return layouts.size();
+    }
+
+    /**
+     * Removes all layouts and resets counters
+     */
+    public synchronized void clear()
+    {
+        layouts.clear();
+        hitCount = 0;
+        missCount = 0;
+    }
+
+    /**
+     * Text and font of a layout
+     */
+    private static class Key
+    {
+        private Key(String text, Font font)
+        {
+            this.text = text;
+            this.font = font;
+        }
+
+        @Override
+        public boolean equals(Object obj)
+        {
+            if (!(obj instanceof Key))
+            {
+                return false;
+            }
+            Key key = (Key) obj;
+            return text.equals(key.text) && font.equals(key.font);
+        }
+
+        @Override
+        public int hashCode()
+        {
+            return 31 * text.hashCode() + font.hashCode();
+        }
+
+        private final String text;
+        private final Font font;
+    }
+
+    private final Map<Key, DisplayTextLayout> layouts = new LinkedHashMap<Key, DisplayTextLayout>(16, 0.75f, true)
+    {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Key, DisplayTextLayout> eldest)
+        {
+            return size() > MAX_SIZE;
+        }
+    };
+    private long hitCount;
+    private long missCount;
+
+    private static final int MAX_SIZE = 4096;
+    private static final DisplayTextLayoutCache INSTANCE = new DisplayTextLayoutCache();
+}
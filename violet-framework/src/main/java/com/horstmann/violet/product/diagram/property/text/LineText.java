@@ -3,7 +3,6 @@ package com.horstmann.violet.product.diagram.property.text;
 import com.horstmann.violet.product.diagram.property.text.decorator.OneLineText;
 
 import javax.swing.*;
-import javax.swing.border.EmptyBorder;
 import java.awt.*;
 import java.awt.geom.Point2D;
 import java.awt.geom.Rectangle2D;
@@ -47,12 +46,13 @@ public abstract class LineText implements Serializable, Cloneable, EditableText
 
     protected LineText(LineText lineText) throws CloneNotSupportedException
     {
-        getLabel().setHorizontalAlignment(lineText.getLabel().getHorizontalAlignment());
-        getLabel().setVerticalAlignment(lineText.getLabel().getVerticalAlignment());
-        getLabel().setForeground(lineText.getLabel().getForeground());
-        getLabel().setBorder(lineText.getLabel().getBorder());
-        getLabel().setText(lineText.getLabel().getText());
+        alignment = lineText.alignment;
+        textColor = lineText.textColor;
+        padding = lineText.padding;
+        displayText = lineText.displayText;
+        layout = lineText.layout;
         converter = lineText.converter;
+        refresh();
     }
 
     public final void reconstruction()
@@ -111,7 +111,11 @@ public abstract class LineText implements Serializable, Cloneable, EditableText
      */
     public final Color getTextColor()
     {
-        return getLabel().getForeground();
+        if (null == textColor)
+        {
+            textColor = UIManager.getColor("Label.foreground");
+        }
+        return textColor;
     }
 
     /**
@@ -120,7 +124,7 @@ public abstract class LineText implements Serializable, Cloneable, EditableText
      */
     public final void setTextColor(Color color)
     {
-        getLabel().setForeground(color);
+        textColor = color;
     }
 
     /**
@@ -151,7 +155,7 @@ public abstract class LineText implements Serializable, Cloneable, EditableText
      */
     public final void setPadding(int top, int left, int bottom, int right)
     {
-        getLabel().setBorder(new EmptyBorder(top, left, bottom, right));
+        padding = new Insets(top, left, bottom, right);
         refresh();
     }
 
@@ -164,7 +168,11 @@ public abstract class LineText implements Serializable, Cloneable, EditableText
      */
     public final void setAlignment(int flag)
     {
-        getLabel().setHorizontalAlignment(flag);
+        if (LEFT != flag && CENTER != flag && RIGHT != flag && SwingConstants.LEADING != flag && SwingConstants.TRAILING != flag)
+        {
+            throw new IllegalArgumentException("alignment");
+        }
+        alignment = flag;
         refresh();
     }
 
@@ -173,7 +181,11 @@ public abstract class LineText implements Serializable, Cloneable, EditableText
      */
     public final int getAlignment()
     {
-        return getLabel().getHorizontalAlignment();
+        if (null == alignment)
+        {
+            return SwingConstants.LEADING;
+        }
+        return alignment;
     }
 
     /**
@@ -183,8 +195,7 @@ public abstract class LineText implements Serializable, Cloneable, EditableText
      */
     public final void draw(Graphics2D graphics, Rectangle2D rect)
     {
-        getLabel().setBounds(0, 0, (int) rect.getWidth(), (int) rect.getHeight());
-        draw(graphics, new Point2D.Double(rect.getX(), rect.getY()));
+        draw(graphics, rect.getX(), rect.getY(), (int) rect.getWidth(), (int) rect.getHeight());
     }
 
     /**
@@ -194,9 +205,7 @@ public abstract class LineText implements Serializable, Cloneable, EditableText
      */
     public final void draw(Graphics2D graphics, Point2D point)
     {
-        graphics.translate(point.getX(), point.getY());
-        getLabel().paint(graphics);
-        graphics.translate(-point.getX(), -point.getY());
+        draw(graphics, point.getX(), point.getY(), (int) getBounds().getWidth(), (int) getBounds().getHeight());
     }
 
     /**
@@ -205,7 +214,6 @@ public abstract class LineText implements Serializable, Cloneable, EditableText
      */
     public final void draw(Graphics2D graphics)
     {
-        getLabel().setBounds(0, 0, (int) getBounds().getWidth(), (int) getBounds().getHeight());
         draw(graphics, new Point2D.Double(0, 0));
     }
 
@@ -239,16 +247,57 @@ public abstract class LineText implements Serializable, Cloneable, EditableText
      */
     protected final void setLabelText(String text)
     {
-        if(text.isEmpty())
+        displayText = text;
+        refresh();
+    }
+
+    /**
+     * Draws text in a box placed as a label would be (aligned horizontally, centered vertically, within padding)
+     * @param graphics
+     * @param x left of the box
+     * @param y top of the box
+     * @param width width of the box
+     * @param height height of the box
+     */
+    private void draw(Graphics2D graphics, double x, double y, int width, int height)
+    {
+        if (null == displayText || displayText.isEmpty())
         {
-            getLabel().setText("");
+            return;
         }
-        else
+        DisplayTextLayout layout = (null == this.layout) ? getLayout() : this.layout;
+        Insets padding = getPadding();
+        int innerWidth = width - padding.left - padding.right;
+        int innerHeight = height - padding.top - padding.bottom;
+        int textX = padding.left;
+        int textY = padding.top + innerHeight / 2 - layout.getHeight() / 2;
+        int alignment = getAlignment();
+        if (CENTER == alignment)
         {
-            getLabel().setText("<html>"+text+"<html>");
+            textX += innerWidth / 2 - layout.getWidth() / 2;
+        }
+        else if (RIGHT == alignment || SwingConstants.TRAILING == alignment)
+        {
+            textX += innerWidth - layout.getWidth();
         }
 
-        refresh();
+        Color oldColor = graphics.getColor();
+        Shape oldClip = null;
+        boolean overflows = textX < 0 || textY < 0 || textX + layout.getWidth() > width || textY + layout.getHeight() > height;
+        graphics.translate(x, y);
+        if (overflows)
+        {
+            oldClip = graphics.getClip();
+            graphics.clipRect(0, 0, width, height);
+        }
+        graphics.setColor(getTextColor());
+        layout.draw(graphics, textX, textY);
+        if (overflows)
+        {
+            graphics.setClip(oldClip);
+        }
+        graphics.translate(-x, -y);
+        graphics.setColor(oldColor);
     }
 
     /**
@@ -256,28 +305,43 @@ public abstract class LineText implements Serializable, Cloneable, EditableText
      */
     private void refresh()
     {
-        if(getLabel().getText().isEmpty())
+        if(null == displayText || displayText.isEmpty())
         {
             this.bounds = new Rectangle2D.Double(0, 0, 0, 0);
         }
         else
         {
-            Dimension dimension = getLabel().getPreferredSize();
-            this.bounds = new Rectangle2D.Double(0, 0, dimension.getWidth(), dimension.getHeight());
+            DisplayTextLayout layout = getLayout();
+            Insets padding = getPadding();
+            this.bounds = new Rectangle2D.Double(0, 0, layout.getWidth() + padding.left + padding.right, layout.getHeight()
+                    + padding.top + padding.bottom);
+        }
+    }
+
+    /**
+     * @return layout of the display text, looked up again only when the text or the label font of the theme changed
+     * @see DisplayTextLayoutCache
+     */
+    private DisplayTextLayout getLayout()
+    {
+        Font font = UIManager.getFont("Label.font");
+        if (null == layout || !layout.isLayoutOf(displayText, font))
+        {
+            layout = DisplayTextLayoutCache.getInstance().getLayout(displayText, font);
         }
+        return layout;
     }
 
     /**
-     * @return label
-     * @see JLabel
+     * @return label padding
      */
-    private JLabel getLabel()
+    private Insets getPadding()
     {
-        if (null == label || null == label.getText())
+        if (null == padding)
         {
-            label = new JLabel("");
+            padding = new Insets(0, 0, 0, 0);
         }
-        return label;
+        return padding;
     }
 
     /**
@@ -306,7 +370,11 @@ public abstract class LineText implements Serializable, Cloneable, EditableText
     public static final int RIGHT = SwingConstants.RIGHT;
 
     protected transient Converter converter;
-    private transient JLabel label;
+    private transient String displayText;
+    private transient DisplayTextLayout layout;
+    private transient Integer alignment;
+    private transient Color textColor;
+    private transient Insets padding;
     private transient Rectangle2D bounds;
 
     private transient List<ChangeListener> changeListeners;
@@ -111,7 +111,12 @@ public class Workspace implements IWorkspace
             public void onFileSaved()
             {
                 setTitle(getGraphName());
-            	updateTitle(false);
+            	updateTitle(graphFile.isSaveRequired());
+            }
+
+            public void onFileSaveFailed(Exception e)
+            {
+                updateTitle(graphFile.isSaveRequired());
             }
         });
         getAWTComponent().prepareLayout();
@@ -0,0 +1,89 @@
+package com.horstmann.violet.workspace.editorpart;
+
+import com.horstmann.violet.workspace.editorpart.behavior.IEditorPartBehavior;
+
+/**
+ * Time spent by a behavior on one kind of event
+ */
+class BehaviorLatency
+{
+
+    /**
+     * @param behavior
+     * @param eventName name of the IEditorPartBehavior method called for this event
+     */
+    BehaviorLatency(IEditorPartBehavior behavior, String eventName)
+    {
+        this.behaviorName = behavior.getClass().getName();
+        this.eventName = eventName;
+    }
+
+    /**
+     * @return behavior class name
+     */
+    public String getBehaviorName()
+    {
+        return this.behaviorName;
+    }
+
+    public String getEventName()
+    {
+        return this.eventName;
+    }
+
+    public long getCallCount()
+    {
+        return this.callCount;
+    }
+
+    public long getTotalNanos()
+    {
+        return this.totalNanos;
+    }
+
+    public long getMaxNanos()
+    {
+        return this.maxNanos;
+    }
+
+    void add(long nanos)
+    {
+        this.callCount++;
+        this.totalNanos += nanos;
+        if (nanos > this.maxNanos)
+        {
+            this.maxNanos = nanos;
+        }
+    }
+
+    void reset()
+    {
+        this.callCount = 0;
+        this.totalNanos = 0;
+        this.maxNanos = 0;
+    }
+
+    @Override
+    public String toString()
+    {
+        String simpleName = this.behaviorName.substring(this.behaviorName.lastIndexOf('.') + 1);
+        return simpleName + "." + this.eventName + " : " + this.callCount + " calls, " + toMillis(this.totalNanos) + " ms total, "
+                + toMillis(this.maxNanos) + " ms max";
+    }
+
+    private static String toMillis(long nanos)
+    {
+        return String.valueOf(nanos / 1000 / 1000.0);
+    }
+
+    private final String behaviorName;
+
+    private final String eventName;
+
+    private long callCount;
+
+    private long totalNanos;
+
+    private long maxNanos;
+
+}
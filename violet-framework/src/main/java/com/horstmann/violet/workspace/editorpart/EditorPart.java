@@ -21,9 +21,11 @@
 
 package com.horstmann.violet.workspace.editorpart;
 
+import java.awt.Color;
 import java.awt.Dimension;
 import java.awt.Graphics;
 import java.awt.Graphics2D;
+import java.awt.Rectangle;
 import java.awt.RenderingHints;
 import java.awt.event.MouseAdapter;
 import java.awt.event.MouseEvent;
@@ -37,10 +39,10 @@ import java.util.List;
 import javax.swing.JComponent;
 import javax.swing.JPanel;
 
+import com.horstmann.violet.framework.util.GrabberUtils;
 import com.horstmann.violet.product.diagram.abstracts.IGraph;
 import com.horstmann.violet.product.diagram.abstracts.edge.IEdge;
 import com.horstmann.violet.product.diagram.abstracts.node.INode;
-import com.horstmann.violet.workspace.editorpart.behavior.IEditorPartBehavior;
 
 /**
  * Graph editor
@@ -231,6 +233,33 @@ public class EditorPart extends JPanel implements IEditorPart
     {
         return this;
     }
+
+    @Override
+    public void repaintArea(Rectangle2D... areas)
+    {
+        Rectangle2D area = null;
+        for (Rectangle2D anArea : areas)
+        {
+            if (anArea == null)
+            {
+                continue;
+            }
+            if (area == null) area = new Rectangle2D.Double(anArea.getX(), anArea.getY(), anArea.getWidth(), anArea.getHeight());
+            else area.add(anArea);
+        }
+        if (area == null)
+        {
+            return;
+        }
+        // Selection grabbers and antialiasing go a little beyond elements bounds
+        double margin = GrabberUtils.GRABBER_WIDTH + 2;
+        int x = (int) Math.floor((area.getMinX() - margin) * zoom);
+        int y = (int) Math.floor((area.getMinY() - margin) * zoom);
+        int maxX = (int) Math.ceil((area.getMaxX() + margin) * zoom);
+        int maxY = (int) Math.ceil((area.getMaxY() + margin) * zoom);
+        invalidate();
+        repaint(x, y, maxX - x, maxY - y);
+    }
     
     
     @Override
@@ -251,15 +280,21 @@ public class EditorPart extends JPanel implements IEditorPart
         }
         getSwingComponent().revalidate(); // to inform parent scrollpane container
         Graphics2D g2 = (Graphics2D) g;
+        // Only the clip is painted when a part of the editor is repainted, so it has to be cleared first
+        Rectangle clip = g2.getClipBounds();
+        if (clip != null)
+        {
+            Color oldColor = g2.getColor();
+            g2.setColor(getBackground());
+            g2.fill(clip);
+            g2.setColor(oldColor);
+        }
         g2.scale(zoom, zoom);
         g2.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_OFF);
         if (grid.isVisible()) grid.paint(g2);
         g2.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
         graph.draw(g2);
-        for (IEditorPartBehavior behavior : this.behaviorManager.getBehaviors())
-        {
-            behavior.onPaint(g2);
-        }
+        this.behaviorManager.fireOnPaint(g2);
     }
     
     
@@ -1,30 +1,75 @@
 package com.horstmann.violet.workspace.editorpart;
 
+import java.awt.Graphics2D;
 import java.awt.event.MouseEvent;
 import java.awt.event.MouseWheelEvent;
 import java.awt.geom.Point2D;
 import java.beans.PropertyChangeEvent;
+import java.lang.reflect.Method;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
 import java.util.List;
 
 import com.horstmann.violet.product.diagram.abstracts.IColorable;
 import com.horstmann.violet.product.diagram.abstracts.edge.IEdge;
 import com.horstmann.violet.product.diagram.abstracts.node.INode;
+import com.horstmann.violet.workspace.editorpart.behavior.AbstractEditorPartBehavior;
 import com.horstmann.violet.workspace.editorpart.behavior.IEditorPartBehavior;
 
+/**
+ * Dispatches editor events to behaviors. When a behavior is added, the events it handles are found once (the methods
+ * it overrides from AbstractEditorPartBehavior), so that each event only goes to the behaviors handling it, in the
+ * order they were added. A behavior can stop the dispatch of a mouse event by consuming it.
+ *
+ * When the violet.profile.behaviors system property is set to true, the time spent by each behavior on each event is
+ * recorded, then printed (the slowest first) and reset at each mouse release.
+ */
 public class EditorPartBehaviorManager implements IEditorPartBehaviorManager
 {
 
-    private List<IEditorPartBehavior> behaviors = new ArrayList<IEditorPartBehavior>();
+    public EditorPartBehaviorManager()
+    {
+        this(Boolean.getBoolean(PROFILING_PROPERTY));
+    }
+
+    /**
+     * @param isProfiling true to record the time spent by behaviors
+     */
+    EditorPartBehaviorManager(boolean isProfiling)
+    {
+        this.isProfiling = isProfiling;
+        for (Event anEvent : Event.values())
+        {
+            this.handlers[anEvent.ordinal()] = new IEditorPartBehavior[0];
+            this.latencies[anEvent.ordinal()] = new BehaviorLatency[0];
+        }
+    }
 
     public void addBehavior(IEditorPartBehavior newBehavior)
     {
         this.behaviors.add(newBehavior);
+        for (Event anEvent : Event.values())
+        {
+            if (isHandled(newBehavior, anEvent))
+            {
+                int index = anEvent.ordinal();
+                int count = this.handlers[index].length;
+                IEditorPartBehavior[] newHandlers = new IEditorPartBehavior[count + 1];
+                BehaviorLatency[] newLatencies = new BehaviorLatency[count + 1];
+                System.arraycopy(this.handlers[index], 0, newHandlers, 0, count);
+                System.arraycopy(this.latencies[index], 0, newLatencies, 0, count);
+                newHandlers[count] = newBehavior;
+                newLatencies[count] = new BehaviorLatency(newBehavior, anEvent.methodName);
+                this.handlers[index] = newHandlers;
+                this.latencies[index] = newLatencies;
+            }
+        }
     }
 
     public List<IEditorPartBehavior> getBehaviors()
     {
-        return this.behaviors;
+        return Collections.unmodifiableList(this.behaviors);
     }
 
     @Override
@@ -41,174 +86,520 @@ public class EditorPartBehaviorManager implements IEditorPartBehaviorManager
         return result;
     }
 
+    /**
+     * @return the time spent by behaviors on each event they handle since the last reset, the slowest first
+     */
+    List<BehaviorLatency> getHandlerLatencies()
+    {
+        List<BehaviorLatency> result = new ArrayList<BehaviorLatency>();
+        for (BehaviorLatency[] eventLatencies : this.latencies)
+        {
+            for (BehaviorLatency aLatency : eventLatencies)
+            {
+                if (aLatency.getCallCount() > 0)
+                {
+                    result.add(aLatency);
+                }
+            }
+        }
+        Collections.sort(result, new Comparator<BehaviorLatency>()
+        {
+            @Override
+            public int compare(BehaviorLatency l1, BehaviorLatency l2)
+            {
+                return l1.getTotalNanos() < l2.getTotalNanos() ? 1 : (l1.getTotalNanos() > l2.getTotalNanos() ? -1 : 0);
+            }
+        });
+        return result;
+    }
+
+    void resetHandlerLatencies()
+    {
+        for (BehaviorLatency[] eventLatencies : this.latencies)
+        {
+            for (BehaviorLatency aLatency : eventLatencies)
+            {
+                aLatency.reset();
+            }
+        }
+    }
+
     @Override
     public void fireOnMousePressed(MouseEvent event)
     {
-        for (IEditorPartBehavior aBehavior : this.behaviors)
-            aBehavior.onMousePressed(event);
+        fire(Event.ON_MOUSE_PRESSED, event, null, null);
     }
 
     @Override
     public void fireOnMouseDragged(MouseEvent event)
     {
-        for (IEditorPartBehavior aBehavior : this.behaviors)
-            aBehavior.onMouseDragged(event);
+        fire(Event.ON_MOUSE_DRAGGED, event, null, null);
     }
 
     @Override
     public void fireOnMouseReleased(MouseEvent event)
     {
-        for (IEditorPartBehavior aBehavior : this.behaviors)
-            aBehavior.onMouseReleased(event);
+        fire(Event.ON_MOUSE_RELEASED, event, null, null);
     }
 
     @Override
     public void fireOnMouseClicked(MouseEvent event)
     {
-        for (IEditorPartBehavior aBehavior : this.behaviors)
-            aBehavior.onMouseClicked(event);
+        fire(Event.ON_MOUSE_CLICKED, event, null, null);
     }
 
     @Override
     public void fireOnMouseMoved(MouseEvent event)
     {
-        for (IEditorPartBehavior aBehavior : this.behaviors)
-            aBehavior.onMouseMoved(event);
+        fire(Event.ON_MOUSE_MOVED, event, null, null);
     }
 
     @Override
     public void fireOnMouseWheelMoved(MouseWheelEvent event)
     {
-        for (IEditorPartBehavior aBehavior : this.behaviors)
-            aBehavior.onMouseWheelMoved(event);
+        fire(Event.ON_MOUSE_WHEEL_MOVED, event, null, null);
     }
 
     @Override
     public void fireBeforeEditingNode(INode node)
     {
-        for (IEditorPartBehavior aBehavior : this.behaviors)
-            aBehavior.beforeEditingNode(node);
+        fire(Event.BEFORE_EDITING_NODE, node, null, null);
     }
 
     @Override
     public void fireWhileEditingNode(INode node, PropertyChangeEvent event)
     {
-        for (IEditorPartBehavior aBehavior : this.behaviors)
-            aBehavior.whileEditingNode(node, event);
+        fire(Event.WHILE_EDITING_NODE, node, event, null);
     }
 
     @Override
     public void fireAfterEditingNode(INode node)
     {
-        for (IEditorPartBehavior aBehavior : this.behaviors)
-            aBehavior.afterEditingNode(node);
+        fire(Event.AFTER_EDITING_NODE, node, null, null);
     }
 
     @Override
     public void fireBeforeEditingEdge(IEdge edge)
     {
-        for (IEditorPartBehavior aBehavior : this.behaviors)
-            aBehavior.beforeEditingEdge(edge);
+        fire(Event.BEFORE_EDITING_EDGE, edge, null, null);
     }
 
     @Override
     public void fireWhileEditingEdge(IEdge edge, PropertyChangeEvent event)
     {
-        for (IEditorPartBehavior aBehavior : this.behaviors)
-            aBehavior.whileEditingEdge(edge, event);
+        fire(Event.WHILE_EDITING_EDGE, edge, event, null);
     }
 
     @Override
     public void fireAfterEditingEdge(IEdge edge)
     {
-        for (IEditorPartBehavior aBehavior : this.behaviors)
-            aBehavior.afterEditingEdge(edge);
+        fire(Event.AFTER_EDITING_EDGE, edge, null, null);
     }
 
     @Override
     public void fireBeforeRemovingSelectedElements()
     {
-        for (IEditorPartBehavior aBehavior : this.behaviors)
-            aBehavior.beforeRemovingSelectedElements();
+        fire(Event.BEFORE_REMOVING_SELECTED_ELEMENTS, null, null, null);
     }
 
     @Override
     public void fireAfterRemovingSelectedElements()
     {
-        for (IEditorPartBehavior aBehavior : this.behaviors)
-            aBehavior.afterRemovingSelectedElements();
+        fire(Event.AFTER_REMOVING_SELECTED_ELEMENTS, null, null, null);
     }
 
     @Override
     public void fireBeforeAddingNodeAtPoint(INode node, Point2D location)
     {
-        for (IEditorPartBehavior aBehavior : this.behaviors)
-            aBehavior.beforeAddingNodeAtPoint(node, location);
+        fire(Event.BEFORE_ADDING_NODE_AT_POINT, node, location, null);
     }
 
     @Override
     public void fireAfterAddingNodeAtPoint(INode node, Point2D location)
     {
-        for (IEditorPartBehavior aBehavior : this.behaviors)
-            aBehavior.afterAddingNodeAtPoint(node, location);
+        fire(Event.AFTER_ADDING_NODE_AT_POINT, node, location, null);
     }
 
     @Override
     public void fireBeforeAddingEdgeAtPoints(IEdge edge, Point2D startPoint, Point2D endPoint)
     {
-        for (IEditorPartBehavior aBehavior : this.behaviors)
-            aBehavior.beforeAddingEdgeAtPoints(edge, startPoint, endPoint);
+        fire(Event.BEFORE_ADDING_EDGE_AT_POINTS, edge, startPoint, endPoint);
     }
 
     @Override
     public void fireAfterAddingEdgeAtPoints(IEdge edge, Point2D startPoint, Point2D endPoint)
     {
-        for (IEditorPartBehavior aBehavior : this.behaviors)
-            aBehavior.afterAddingEdgeAtPoints(edge, startPoint, endPoint);
+        fire(Event.AFTER_ADDING_EDGE_AT_POINTS, edge, startPoint, endPoint);
     }
 
     @Override
     public void fireOnEdgeSelected(IEdge edge)
     {
-        for (IEditorPartBehavior aBehavior : this.behaviors)
-            aBehavior.onEdgeSelected(edge);
+        fire(Event.ON_EDGE_SELECTED, edge, null, null);
     }
 
     @Override
     public void fireOnNodeSelected(INode node)
     {
-        for (IEditorPartBehavior aBehavior : this.behaviors)
-            aBehavior.onNodeSelected(node);
+        fire(Event.ON_NODE_SELECTED, node, null, null);
     }
-    
+
     @Override
     public void fireBeforeChangingTransitionPointsOnEdge(IEdge edge)
     {
-        for (IEditorPartBehavior aBehavior : this.behaviors)
-            aBehavior.beforeChangingTransitionPointsOnEdge(edge);
+        fire(Event.BEFORE_CHANGING_TRANSITION_POINTS_ON_EDGE, edge, null, null);
     }
-    
+
     @Override
     public void fireAfterChangingTransitionPointsOnEdge(IEdge edge)
     {
-        for (IEditorPartBehavior aBehavior : this.behaviors)
-            aBehavior.afterChangingTransitionPointsOnEdge(edge);
+        fire(Event.AFTER_CHANGING_TRANSITION_POINTS_ON_EDGE, edge, null, null);
     }
-    
-    
+
     @Override
     public void fireBeforeChangingColorOnElement(IColorable element)
     {
-        for (IEditorPartBehavior aBehavior : this.behaviors)
-            aBehavior.beforeChangingColorOnElement(element);
+        fire(Event.BEFORE_CHANGING_COLOR_ON_ELEMENT, element, null, null);
     }
-    
+
     @Override
     public void fireAfterChangingColorOnElement(IColorable element)
     {
-        for (IEditorPartBehavior aBehavior : this.behaviors)
-            aBehavior.afterChangingColorOnElement(element);
+        fire(Event.AFTER_CHANGING_COLOR_ON_ELEMENT, element, null, null);
+    }
+
+    @Override
+    public void fireOnElementsChanged(List<INode> nodes, List<IEdge> edges)
+    {
+        fire(Event.ON_ELEMENTS_CHANGED, nodes, edges, null);
+    }
+
+    @Override
+    public void fireOnPaint(Graphics2D g2)
+    {
+        fire(Event.ON_PAINT, g2, null, null);
+    }
+
+    /**
+     * Calls the behaviors handling an event and records the time each one takes. A consumed mouse event isn't
+     * dispatched to the next behaviors.
+     *
+     * @param event
+     * @param arg1 first argument of the event method (null if unused)
+     * @param arg2 second argument (null if unused)
+     * @param arg3 third argument (null if unused)
+     */
+    private void fire(Event event, Object arg1, Object arg2, Object arg3)
+    {
+        IEditorPartBehavior[] eventHandlers = this.handlers[event.ordinal()];
+        BehaviorLatency[] eventLatencies = this.latencies[event.ordinal()];
+        MouseEvent mouseEvent = arg1 instanceof MouseEvent ? (MouseEvent) arg1 : null;
+        boolean wasConsumed = mouseEvent != null && mouseEvent.isConsumed();
+        for (int i = 0; i < eventHandlers.length; i++)
+        {
+            long start = this.isProfiling ? System.nanoTime() : 0;
+            event.dispatch(eventHandlers[i], arg1, arg2, arg3);
+            if (this.isProfiling)
+            {
+                eventLatencies[i].add(System.nanoTime() - start);
+            }
+            if (mouseEvent != null && !wasConsumed && mouseEvent.isConsumed())
+            {
+                break;
+            }
+        }
+        if (this.isProfiling && event == Event.ON_MOUSE_RELEASED)
+        {
+            printHandlerLatencies();
+        }
     }
-    
+
+    /**
+     * Prints the time spent by behaviors since the last report, then resets it
+     */
+    private void printHandlerLatencies()
+    {
+        List<BehaviorLatency> handlerLatencies = getHandlerLatencies();
+        if (handlerLatencies.isEmpty())
+        {
+            return;
+        }
+        StringBuilder report = new StringBuilder("Behavior latencies :");
+        for (BehaviorLatency aLatency : handlerLatencies)
+        {
+            report.append("\n  ").append(aLatency);
+        }
+        System.out.println(report);
+        resetHandlerLatencies();
+    }
+
+    /**
+     * @param behavior
+     * @param event
+     * @return false if the behavior inherits the empty method of AbstractEditorPartBehavior for this event
+     */
+    private static boolean isHandled(IEditorPartBehavior behavior, Event event)
+    {
+        try
+        {
+            Method method = behavior.getClass().getMethod(event.methodName, event.parameterTypes);
+            return !AbstractEditorPartBehavior.class.equals(method.getDeclaringClass());
+        }
+        catch (NoSuchMethodException e)
+        {
+            return true;
+        }
+    }
+
+    /**
+     * Events dispatched to behaviors, with the matching IEditorPartBehavior method
+     */
+    private enum Event
+    {
+
+        ON_MOUSE_PRESSED("onMousePressed", MouseEvent.class)
+        {
+            @Override
+            void dispatch(IEditorPartBehavior behavior, Object arg1, Object arg2, Object arg3)
+            {
+                behavior.onMousePressed((MouseEvent) arg1);
+            }
+        },
+        ON_MOUSE_DRAGGED("onMouseDragged", MouseEvent.class)
+        {
+            @Override
+            void dispatch(IEditorPartBehavior behavior, Object arg1, Object arg2, Object arg3)
+            {
+                behavior.onMouseDragged((MouseEvent) arg1);
+            }
+        },
+        ON_MOUSE_RELEASED("onMouseReleased", MouseEvent.class)
+        {
+            @Override
+            void dispatch(IEditorPartBehavior behavior, Object arg1, Object arg2, Object arg3)
+            {
+                behavior.onMouseReleased((MouseEvent) arg1);
+            }
+        },
+        ON_MOUSE_CLICKED("onMouseClicked", MouseEvent.class)
+        {
+            @Override
+            void dispatch(IEditorPartBehavior behavior, Object arg1, Object arg2, Object arg3)
+            {
+                behavior.onMouseClicked((MouseEvent) arg1);
+            }
+        },
+        ON_MOUSE_MOVED("onMouseMoved", MouseEvent.class)
+        {
+            @Override
+            void dispatch(IEditorPartBehavior behavior, Object arg1, Object arg2, Object arg3)
+            {
+                behavior.onMouseMoved((MouseEvent) arg1);
+            }
+        },
+        ON_MOUSE_WHEEL_MOVED("onMouseWheelMoved", MouseWheelEvent.class)
+        {
+            @Override
+            void dispatch(IEditorPartBehavior behavior, Object arg1, Object arg2, Object arg3)
+            {
+                behavior.onMouseWheelMoved((MouseWheelEvent) arg1);
+            }
+        },
+        BEFORE_EDITING_NODE("beforeEditingNode", INode.class)
+        {
+            @Override
+            void dispatch(IEditorPartBehavior behavior, Object arg1, Object arg2, Object arg3)
+            {
+                behavior.beforeEditingNode((INode) arg1);
+            }
+        },
+        WHILE_EDITING_NODE("whileEditingNode", INode.class, PropertyChangeEvent.class)
+        {
+            @Override
+            void dispatch(IEditorPartBehavior behavior, Object arg1, Object arg2, Object arg3)
+            {
+                behavior.whileEditingNode((INode) arg1, (PropertyChangeEvent) arg2);
+            }
+        },
+        AFTER_EDITING_NODE("afterEditingNode", INode.class)
+        {
+            @Override
+            void dispatch(IEditorPartBehavior behavior, Object arg1, Object arg2, Object arg3)
+            {
+                behavior.afterEditingNode((INode) arg1);
+            }
+        },
+        BEFORE_EDITING_EDGE("beforeEditingEdge", IEdge.class)
+        {
+            @Override
+            void dispatch(IEditorPartBehavior behavior, Object arg1, Object arg2, Object arg3)
+            {
+                behavior.beforeEditingEdge((IEdge) arg1);
+            }
+        },
+        WHILE_EDITING_EDGE("whileEditingEdge", IEdge.class, PropertyChangeEvent.class)
+        {
+            @Override
+            void dispatch(IEditorPartBehavior behavior, Object arg1, Object arg2, Object arg3)
+            {
+                behavior.whileEditingEdge((IEdge) arg1, (PropertyChangeEvent) arg2);
+            }
+        },
+        AFTER_EDITING_EDGE("afterEditingEdge", IEdge.class)
+        {
+            @Override
+            void dispatch(IEditorPartBehavior behavior, Object arg1, Object arg2, Object arg3)
+            {
+                behavior.afterEditingEdge((IEdge) arg1);
+            }
+        },
+        BEFORE_REMOVING_SELECTED_ELEMENTS("beforeRemovingSelectedElements")
+        {
+            @Override
+            void dispatch(IEditorPartBehavior behavior, Object arg1, Object arg2, Object arg3)
+            {
+                behavior.beforeRemovingSelectedElements();
+            }
+        },
+        AFTER_REMOVING_SELECTED_ELEMENTS("afterRemovingSelectedElements")
+        {
+            @Override
+            void dispatch(IEditorPartBehavior behavior, Object arg1, Object arg2, Object arg3)
+            {
+                behavior.afterRemovingSelectedElements();
+            }
+        },
+        BEFORE_ADDING_NODE_AT_POINT("beforeAddingNodeAtPoint", INode.class, Point2D.class)
+        {
+            @Override
+            void dispatch(IEditorPartBehavior behavior, Object arg1, Object arg2, Object arg3)
+            {
+                behavior.beforeAddingNodeAtPoint((INode) arg1, (Point2D) arg2);
+            }
+        },
+        AFTER_ADDING_NODE_AT_POINT("afterAddingNodeAtPoint", INode.class, Point2D.class)
+        {
+            @Override
+            void dispatch(IEditorPartBehavior behavior, Object arg1, Object arg2, Object arg3)
+            {
+                behavior.afterAddingNodeAtPoint((INode) arg1, (Point2D) arg2);
+            }
+        },
+        BEFORE_ADDING_EDGE_AT_POINTS("beforeAddingEdgeAtPoints", IEdge.class, Point2D.class, Point2D.class)
+        {
+            @Override
+            void dispatch(IEditorPartBehavior behavior, Object arg1, Object arg2, Object arg3)
+            {
+                behavior.beforeAddingEdgeAtPoints((IEdge) arg1, (Point2D) arg2, (Point2D) arg3);
+            }
+        },
+        AFTER_ADDING_EDGE_AT_POINTS("afterAddingEdgeAtPoints", IEdge.class, Point2D.class, Point2D.class)
+        {
+            @Override
+            void dispatch(IEditorPartBehavior behavior, Object arg1, Object arg2, Object arg3)
+            {
+                behavior.afterAddingEdgeAtPoints((IEdge) arg1, (Point2D) arg2, (Point2D) arg3);
+            }
+        },
+        ON_EDGE_SELECTED("onEdgeSelected", IEdge.class)
+        {
+            @Override
+            void dispatch(IEditorPartBehavior behavior, Object arg1, Object arg2, Object arg3)
+            {
+                behavior.onEdgeSelected((IEdge) arg1);
+            }
+        },
+        ON_NODE_SELECTED("onNodeSelected", INode.class)
+        {
+            @Override
+            void dispatch(IEditorPartBehavior behavior, Object arg1, Object arg2, Object arg3)
+            {
+                behavior.onNodeSelected((INode) arg1);
+            }
+        },
+        BEFORE_CHANGING_TRANSITION_POINTS_ON_EDGE("beforeChangingTransitionPointsOnEdge", IEdge.class)
+        {
+            @Override
+            void dispatch(IEditorPartBehavior behavior, Object arg1, Object arg2, Object arg3)
+            {
+                behavior.beforeChangingTransitionPointsOnEdge((IEdge) arg1);
+            }
+        },
+        AFTER_CHANGING_TRANSITION_POINTS_ON_EDGE("afterChangingTransitionPointsOnEdge", IEdge.class)
+        {
+            @Override
+            void dispatch(IEditorPartBehavior behavior, Object arg1, Object arg2, Object arg3)
+            {
+                behavior.afterChangingTransitionPointsOnEdge((IEdge) arg1);
+            }
+        },
+        BEFORE_CHANGING_COLOR_ON_ELEMENT("beforeChangingColorOnElement", IColorable.class)
+        {
+            @Override
+            void dispatch(IEditorPartBehavior behavior, Object arg1, Object arg2, Object arg3)
+            {
+                behavior.beforeChangingColorOnElement((IColorable) arg1);
+            }
+        },
+        AFTER_CHANGING_COLOR_ON_ELEMENT("afterChangingColorOnElement", IColorable.class)
+        {
+            @Override
+            void dispatch(IEditorPartBehavior behavior, Object arg1, Object arg2, Object arg3)
+            {
+                behavior.afterChangingColorOnElement((IColorable) arg1);
+            }
+        },
+        ON_ELEMENTS_CHANGED("onElementsChanged", List.class, List.class)
+        {
+            @Override
+            @SuppressWarnings("unchecked")
+            void dispatch(IEditorPartBehavior behavior, Object arg1, Object arg2, Object arg3)
+            {
+                behavior.onElementsChanged((List<INode>) arg1, (List<IEdge>) arg2);
+            }
+        },
+        ON_PAINT("onPaint", Graphics2D.class)
+        {
+            @Override
+            void dispatch(IEditorPartBehavior behavior, Object arg1, Object arg2, Object arg3)
+            {
+                behavior.onPaint((Graphics2D) arg1);
+            }
+        };
+
+        private Event(String methodName, Class<?>... parameterTypes)
+        {
+            this.methodName = methodName;
+            this.parameterTypes = parameterTypes;
+        }
+
+        /**
+         * Calls the method of this event on a behavior
+         */
+        abstract void dispatch(IEditorPartBehavior behavior, Object arg1, Object arg2, Object arg3);
+
+        private final String methodName;
+
+        private final Class<?>[] parameterTypes;
+    }
+
+    private final List<IEditorPartBehavior> behaviors = new ArrayList<IEditorPartBehavior>();
+
+    /**
+     * True when the time spent by behaviors is recorded
+     */
+    private final boolean isProfiling;
+
+    /**
+     * Behaviors handling each event (indexed by event ordinal)
+     */
+    private final IEditorPartBehavior[][] handlers = new IEditorPartBehavior[Event.values().length][];
+
+    /**
+     * Latencies of these behaviors
+     */
+    private final BehaviorLatency[][] latencies = new BehaviorLatency[Event.values().length][];
+
+    private static final String PROFILING_PROPERTY = "violet.profile.behaviors";
 
 }
@@ -1,134 +1,223 @@
 package com.horstmann.violet.workspace.editorpart;
 
+import java.util.AbstractList;
 import java.util.ArrayList;
-import java.util.Collections;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.RandomAccess;
+import java.util.Set;
 
 import com.horstmann.violet.product.diagram.abstracts.edge.IEdge;
 import com.horstmann.violet.product.diagram.abstracts.node.INode;
 import com.horstmann.violet.workspace.sidebar.graphtools.GraphTool;
 
+/**
+ * Keeps selected elements in hash sets ordered by selection, so that testing if an element is selected doesn't depend
+ * on the selection size. Listeners are notified once per change, or once per group of changes made between
+ * beginSelectionChanges() and endSelectionChanges().
+ */
 public class EditorPartSelectionHandler implements IEditorPartSelectionHandler
 {
 
     public void setSelectedElement(INode node)
     {
-        this.selectedNodes.clear();
-        this.selectedEdges.clear();
-        addSelectedElement(node);
+        beginSelectionChanges();
+        try
+        {
+            clearSelection();
+            addSelectedElement(node);
+        }
+        finally
+        {
+            endSelectionChanges();
+        }
     }
 
     public void setSelectedElement(IEdge edge)
     {
-        this.selectedNodes.clear();
-        this.selectedEdges.clear();
-        addSelectedElement(edge);
+        beginSelectionChanges();
+        try
+        {
+            clearSelection();
+            addSelectedElement(edge);
+        }
+        finally
+        {
+            endSelectionChanges();
+        }
     }
 
     public void updateSelectedElements(INode[] nodes)
     {
-        for (int i = 0; i < nodes.length; i++)
+        beginSelectionChanges();
+        try
         {
-            if (isElementAlreadySelected(nodes[i]))
+            for (int i = 0; i < nodes.length; i++)
             {
-                addSelectedElement(nodes[i]);
+                if (isElementAlreadySelected(nodes[i]))
+                {
+                    addSelectedElement(nodes[i]);
+                }
             }
         }
+        finally
+        {
+            endSelectionChanges();
+        }
     }
 
     public void updateSelectedElements(IEdge[] edges)
     {
-        for (int i = 0; i < edges.length; i++)
+        beginSelectionChanges();
+        try
         {
-            if (isElementAlreadySelected(edges[i]))
+            for (int i = 0; i < edges.length; i++)
             {
-                addSelectedElement(edges[i]);
+                if (isElementAlreadySelected(edges[i]))
+                {
+                    addSelectedElement(edges[i]);
+                }
             }
         }
+        finally
+        {
+            endSelectionChanges();
+        }
     }
 
     public void addSelectedElement(INode node)
     {
-        if (this.selectedNodes.contains(node))
+        this.selectedNodes.addLast(node);
+        fireSelectionChanged();
+    }
+
+    public void addSelectedElement(IEdge edge)
+    {
+        this.selectedEdges.addLast(edge);
+        fireSelectionChanged();
+    }
+
+    @Override
+    public void addSelectedElements(Collection<? extends INode> nodes, Collection<? extends IEdge> edges)
+    {
+        boolean isNodeAdded = this.selectedNodes.addAll(nodes);
+        boolean isEdgeAdded = this.selectedEdges.addAll(edges);
+        if (isNodeAdded || isEdgeAdded)
         {
-            this.removeElementFromSelection(node);
+            fireSelectionChanged();
         }
-        this.selectedNodes.add(node);
     }
 
-    public void addSelectedElement(IEdge edge)
+    @Override
+    public void retainOnlySelectedElements(Collection<? extends INode> nodes, Collection<? extends IEdge> edges)
     {
-        if (this.selectedEdges.contains(edge))
+        boolean isNodeRemoved = this.selectedNodes.retainAll(nodes);
+        boolean isEdgeRemoved = this.selectedEdges.retainAll(edges);
+        if (isNodeRemoved || isEdgeRemoved)
         {
-            this.removeElementFromSelection(edge);
+            fireSelectionChanged();
         }
-        this.selectedEdges.add(edge);
     }
 
     public void removeElementFromSelection(INode node)
     {
-        if (this.selectedNodes.contains(node))
+        if (this.selectedNodes.remove(node))
         {
-            int i = this.selectedNodes.indexOf(node);
-            this.selectedNodes.remove(i);
+            fireSelectionChanged();
         }
     }
 
     public void removeElementFromSelection(IEdge edge)
     {
-        if (this.selectedEdges.contains(edge))
+        if (this.selectedEdges.remove(edge))
         {
-            int i = this.selectedEdges.indexOf(edge);
-            this.selectedEdges.remove(i);
+            fireSelectionChanged();
         }
     }
 
     public boolean isElementAlreadySelected(INode node)
     {
-        if (this.selectedNodes.contains(node)) return true;
-        return false;
+        return this.selectedNodes.contains(node);
     }
 
     public boolean isElementAlreadySelected(IEdge edge)
     {
-        if (this.selectedEdges.contains(edge)) return true;
-        return false;
+        return this.selectedEdges.contains(edge);
     }
 
     public void clearSelection()
     {
+        if (this.selectedNodes.isEmpty() && this.selectedEdges.isEmpty())
+        {
+            return;
+        }
         this.selectedNodes.clear();
         this.selectedEdges.clear();
+        fireSelectionChanged();
     }
 
     public INode getLastSelectedNode()
     {
-        return getLastElement(this.selectedNodes);
+        return this.selectedNodes.getLast();
     }
 
     public IEdge getLastSelectedEdge()
     {
-        return getLastElement(this.selectedEdges);
+        return this.selectedEdges.getLast();
     }
 
     public boolean isNodeSelectedAtLeast()
     {
-        return this.selectedNodes.size() > 0;
+        return !this.selectedNodes.isEmpty();
     }
 
     public boolean isEdgeSelectedAtLeast()
     {
-        return this.selectedEdges.size() > 0;
+        return !this.selectedEdges.isEmpty();
     }
 
     public List<INode> getSelectedNodes()
     {
-        return Collections.unmodifiableList(selectedNodes);
+        return this.selectedNodes.asList();
     }
 
     public List<IEdge> getSelectedEdges()
     {
-        return Collections.unmodifiableList(selectedEdges);
+        return this.selectedEdges.asList();
+    }
+
+    @Override
+    public void beginSelectionChanges()
+    {
+        this.changesDepth++;
+    }
+
+    @Override
+    public void endSelectionChanges()
+    {
+        if (this.changesDepth == 0)
+        {
+            return;
+        }
+        this.changesDepth--;
+        if (this.changesDepth == 0 && this.isChangePending)
+        {
+            fireSelectionChanged();
+        }
+    }
+
+    @Override
+    public void addSelectionListener(IEditorPartSelectionListener listener)
+    {
+        this.listeners.add(listener);
+    }
+
+    @Override
+    public void removeSelectionListener(IEditorPartSelectionListener listener)
+    {
+        this.listeners.remove(listener);
     }
 
     @Override
@@ -142,20 +231,172 @@ public class EditorPartSelectionHandler implements IEditorPartSelectionHandler
     {
         this.selectedTool = graphTool;
     }
-    
-    private <T> T getLastElement(List<T> list)
+
+    /**
+     * Notifies listeners, unless changes are grouped
+     */
+    private void fireSelectionChanged()
+    {
+        if (this.changesDepth > 0)
+        {
+            this.isChangePending = true;
+            return;
+        }
+        this.isChangePending = false;
+        for (IEditorPartSelectionListener aListener : new ArrayList<IEditorPartSelectionListener>(this.listeners))
+        {
+            aListener.onSelectionChanged();
+        }
+    }
+
+    /**
+     * Selected elements of one kind, in selection order
+     */
+    private static class Selection<T>
+    {
+        /**
+         * Adds an element, or moves it to the end if it is already selected
+         *
+         * @param element
+         */
+        public void addLast(T element)
+        {
+            this.elements.remove(element);
+            this.elements.add(element);
+            this.list = null;
+        }
+
+        /**
+         * Adds the elements which aren't selected yet (the ones already selected keep their place)
+         *
+         * @param toAdd
+         * @return true if an element was added
+         */
+        public boolean addAll(Collection<? extends T> toAdd)
+        {
+            boolean isChanged = this.elements.addAll(toAdd);
+            if (isChanged)
+            {
+                this.list = null;
+            }
+            return isChanged;
+        }
+
+        /**
+         * Removes the selected elements which aren't in the given ones
+         *
+         * @param toKeep
+         * @return true if an element was removed
+         */
+        public boolean retainAll(Collection<?> toKeep)
+        {
+            if (this.elements.isEmpty())
+            {
+                return false;
+            }
+            Collection<?> keptElements = toKeep instanceof Set<?> ? toKeep : new HashSet<Object>(toKeep);
+            boolean isChanged = this.elements.retainAll(keptElements);
+            if (isChanged)
+            {
+                this.list = null;
+            }
+            return isChanged;
+        }
+
+        public boolean remove(T element)
+        {
+            boolean isChanged = this.elements.remove(element);
+            if (isChanged)
+            {
+                this.list = null;
+            }
+            return isChanged;
+        }
+
+        public boolean contains(T element)
+        {
+            return this.elements.contains(element);
+        }
+
+        public boolean isEmpty()
+        {
+            return this.elements.isEmpty();
+        }
+
+        public void clear()
+        {
+            this.elements.clear();
+            this.list = null;
+        }
+
+        public T getLast()
+        {
+            List<T> currentList = asList();
+            int size = currentList.size();
+            return size > 0 ? currentList.get(size - 1) : null;
+        }
+
+        /**
+         * @return the selected elements, as they are now (the list is kept until the selection changes)
+         */
+        public List<T> asList()
+        {
+            if (this.list == null)
+            {
+                this.list = new SnapshotList<T>(this.elements);
+            }
+            return this.list;
+        }
+
+        private final Set<T> elements = new LinkedHashSet<T>();
+
+        private List<T> list;
+    }
+
+    /**
+     * Unmodifiable copy of a selection, searched with a hash set built when contains() is first called
+     */
+    private static class SnapshotList<T> extends AbstractList<T> implements RandomAccess
     {
-        int size = list.size();
-        if (size <= 0)
+        public SnapshotList(Collection<T> elements)
+        {
+            this.elements = new ArrayList<T>(elements);
+        }
+
+        @Override
+        public T get(int index)
+        {
+            return this.elements.get(index);
+        }
+
+        @Override
+        public int size()
+        {
+            return this.elements.size();
+        }
+
+        @Override
+        public boolean contains(Object o)
         {
-            return null;
+            if (this.elementSet == null)
+            {
+                this.elementSet = new HashSet<T>(this.elements);
+            }
+            return this.elementSet.contains(o);
         }
-        return list.get(size - 1);
+
+        private final List<T> elements;
+
+        private Set<T> elementSet;
     }
 
-    private List<INode> selectedNodes = new ArrayList<INode>();
-    private List<IEdge> selectedEdges = new ArrayList<IEdge>();
-    
+    private final Selection<INode> selectedNodes = new Selection<INode>();
+    private final Selection<IEdge> selectedEdges = new Selection<IEdge>();
+
+    private final List<IEditorPartSelectionListener> listeners = new ArrayList<IEditorPartSelectionListener>();
+    private int changesDepth = 0;
+    private boolean isChangePending = false;
+
     private GraphTool selectedTool;
 
 }
@@ -9,7 +9,6 @@ import javax.swing.JComponent;
 import javax.swing.plaf.PanelUI;
 
 import com.horstmann.violet.product.diagram.abstracts.IGraph;
-import com.horstmann.violet.workspace.editorpart.behavior.IEditorPartBehavior;
 
 public class EditorPartUI extends PanelUI
 {
@@ -39,9 +38,7 @@ public class EditorPartUI extends PanelUI
         g2.scale(zoom, zoom);
         g2.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
         graph.draw(g2);
-        for (IEditorPartBehavior paintableBehaviour : editor.getBehaviorManager().getBehaviors()) {
-            paintableBehaviour.onPaint(g2);
-        }
+        editor.getBehaviorManager().fireOnPaint(g2);
     }
 
     
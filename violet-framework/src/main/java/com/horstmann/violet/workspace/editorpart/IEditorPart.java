@@ -1,5 +1,6 @@
 package com.horstmann.violet.workspace.editorpart;
 
+import java.awt.geom.Rectangle2D;
 import java.util.List;
 
 import javax.swing.JComponent;
@@ -71,6 +72,14 @@ public interface IEditorPart
      */
     public void clipDrawingArea();
 
+    /**
+     * Repaints only the given areas instead of the whole editor (for example the old and new drawing bounds of elements
+     * which changed, see IGraph.getDrawingBounds())
+     * 
+     * @param areas areas to repaint (absolute location on graph, without zoom). Null areas are ignored.
+     */
+    public void repaintArea(Rectangle2D... areas);
+
     /**
      * @return the awt object displaying this editor part
      */
@@ -1,5 +1,6 @@
 package com.horstmann.violet.workspace.editorpart;
 
+import java.awt.Graphics2D;
 import java.awt.event.MouseEvent;
 import java.awt.event.MouseWheelEvent;
 import java.awt.geom.Point2D;
@@ -68,6 +69,10 @@ public interface IEditorPartBehaviorManager
 
     public abstract void fireAfterChangingColorOnElement(IColorable element);
 
+    public abstract void fireOnElementsChanged(List<INode> nodes, List<IEdge> edges);
+
+    public abstract void fireOnPaint(Graphics2D g2);
+
     
     
 
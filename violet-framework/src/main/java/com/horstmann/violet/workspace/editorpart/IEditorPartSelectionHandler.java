@@ -1,5 +1,6 @@
 package com.horstmann.violet.workspace.editorpart;
 
+import java.util.Collection;
 import java.util.List;
 
 import com.horstmann.violet.product.diagram.abstracts.edge.IEdge;
@@ -16,6 +17,22 @@ public interface IEditorPartSelectionHandler {
 
 	public abstract void addSelectedElement(IEdge edge);
 
+	/**
+	 * Adds the elements which aren't selected yet, after the selected ones (which keep their order)
+	 * 
+	 * @param nodes
+	 * @param edges
+	 */
+	public abstract void addSelectedElements(Collection<? extends INode> nodes, Collection<? extends IEdge> edges);
+
+	/**
+	 * Removes from the selection the elements which aren't among the given ones
+	 * 
+	 * @param nodes
+	 * @param edges
+	 */
+	public abstract void retainOnlySelectedElements(Collection<? extends INode> nodes, Collection<? extends IEdge> edges);
+
 	public abstract void removeElementFromSelection(INode node);
 
 	public abstract void removeElementFromSelection(IEdge edge);
@@ -38,6 +55,17 @@ public interface IEditorPartSelectionHandler {
 
 	public abstract List<IEdge> getSelectedEdges();
 	
+	/**
+	 * Groups the next selection changes : listeners are notified once, by the matching endSelectionChanges() call
+	 */
+	public abstract void beginSelectionChanges();
+
+	public abstract void endSelectionChanges();
+
+	public abstract void addSelectionListener(IEditorPartSelectionListener listener);
+
+	public abstract void removeSelectionListener(IEditorPartSelectionListener listener);
+
 	public abstract void setSelectedTool(GraphTool graphTool);
 	
 	public abstract GraphTool getSelectedTool();
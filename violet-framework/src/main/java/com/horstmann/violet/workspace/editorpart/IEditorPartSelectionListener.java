@@ -0,0 +1,14 @@
+package com.horstmann.violet.workspace.editorpart;
+
+/**
+ * Listener to the selection of an editor part
+ */
+public interface IEditorPartSelectionListener
+{
+
+    /**
+     * Called once the selection has changed (once for all the changes of a gesture or of a bulk operation)
+     */
+    public void onSelectionChanged();
+
+}
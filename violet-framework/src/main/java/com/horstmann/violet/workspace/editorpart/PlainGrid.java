@@ -85,6 +85,8 @@ public class PlainGrid implements IGrid
             snappingWidth /= FACTOR;
             snappingHeight /= FACTOR;
         }
+        // A new sticker instance tells edges that their cached snapped points are obsolete
+        editorPart.getGraph().setGridSticker(getGridSticker());
     }
 
     /**
@@ -5,6 +5,7 @@ import java.awt.event.MouseEvent;
 import java.awt.event.MouseWheelEvent;
 import java.awt.geom.Point2D;
 import java.beans.PropertyChangeEvent;
+import java.util.List;
 
 import com.horstmann.violet.product.diagram.abstracts.IColorable;
 import com.horstmann.violet.product.diagram.abstracts.edge.IEdge;
@@ -189,6 +190,12 @@ public abstract class AbstractEditorPartBehavior implements IEditorPartBehavior
         
     }
     
+    @Override
+    public void onElementsChanged(List<INode> nodes, List<IEdge> edges)
+    {
+        // Nothing to do by default
+    }
+    
     
     @Override
     public void onPaint(Graphics2D g2)
@@ -0,0 +1,172 @@
+package com.horstmann.violet.workspace.editorpart.behavior;
+
+import java.util.IdentityHashMap;
+import java.util.Map;
+
+import javax.swing.undo.UndoManager;
+import javax.swing.undo.UndoableEdit;
+
+import com.horstmann.violet.product.diagram.abstracts.node.INode;
+
+/**
+ * Undo manager keeping its history under a number of edits (see setLimit()) and under an estimated memory size. The
+ * oldest edits are discarded first. The last edit is always kept, even if it is bigger than the budget.
+ */
+public class BoundedUndoManager extends UndoManager
+{
+
+    /**
+     * @param maxSize maximum estimated memory (in bytes) of the history
+     */
+    public BoundedUndoManager(long maxSize)
+    {
+        this.maxSize = maxSize;
+    }
+
+    @Override
+    public synchronized boolean addEdit(UndoableEdit anEdit)
+    {
+        long size = estimateSize(anEdit);
+        boolean isAdded = super.addEdit(anEdit);
+        // The edit may have been merged into the previous one
+        if (isAdded && this.edits.contains(anEdit))
+        {
+            this.sizes.put(anEdit, Long.valueOf(size));
+            this.estimatedSize += size;
+            trimForSize();
+        }
+        return isAdded;
+    }
+
+    @Override
+    protected void trimEdits(int from, int to)
+    {
+        for (int i = from; i <= to; i++)
+        {
+            Long size = this.sizes.remove(this.edits.get(i));
+            if (size != null)
+            {
+                this.estimatedSize -= size.longValue();
+            }
+        }
+        super.trimEdits(from, to);
+    }
+
+    @Override
+    public synchronized void discardAllEdits()
+    {
+        super.discardAllEdits();
+        this.sizes.clear();
+        this.estimatedSize = 0;
+    }
+
+    /**
+     * @param maxSize maximum estimated memory (in bytes) of the history
+     */
+    public synchronized void setMaxSize(long maxSize)
+    {
+        this.maxSize = maxSize;
+        trimForSize();
+    }
+
+    public synchronized long getMaxSize()
+    {
+        return this.maxSize;
+    }
+
+    /**
+     * @return estimated memory (in bytes) of the history
+     */
+    public synchronized long getEstimatedSize()
+    {
+        return this.estimatedSize;
+    }
+
+    /**
+     * @return number of edits in the history (undoable and redoable ones)
+     */
+    public synchronized int getEditCount()
+    {
+        return this.edits.size();
+    }
+
+    private void trimForSize()
+    {
+        while (this.estimatedSize > this.maxSize && this.edits.size() > 1)
+        {
+            trimEdits(0, 0);
+        }
+    }
+
+    private static long estimateSize(UndoableEdit edit)
+    {
+        if (edit instanceof ISizedUndoableEdit)
+        {
+            return ((ISizedUndoableEdit) edit).getEstimatedSize();
+        }
+        return EDIT_SIZE;
+    }
+
+    /**
+     * @param node
+     * @return estimated memory of a node and its children
+     */
+    static long estimateNodeSize(INode node)
+    {
+        long size = NODE_SIZE;
+        for (INode aChild : node.getChildren())
+        {
+            size += estimateNodeSize(aChild);
+        }
+        return size;
+    }
+
+    /**
+     * @param value a property value
+     * @return estimated memory of the value (from its text for other objects than strings)
+     */
+    static long estimateValueSize(Object value)
+    {
+        if (value == null)
+        {
+            return 0;
+        }
+        if (value instanceof String)
+        {
+            return STRING_SIZE + 2L * ((String) value).length();
+        }
+        String text = value.toString();
+        return OBJECT_SIZE + STRING_SIZE + 2L * (text == null ? 0 : text.length());
+    }
+
+    /**
+     * Estimated memory of an edit without details
+     */
+    static final long EDIT_SIZE = 48;
+
+    /**
+     * Estimated memory of a reference kept in a list
+     */
+    static final long REFERENCE_SIZE = 8;
+
+    /**
+     * Estimated memory of a node without children (with its texts, bounds and property lists)
+     */
+    static final long NODE_SIZE = 1024;
+
+    /**
+     * Estimated memory of an edge (with its label texts, points and property lists)
+     */
+    static final long EDGE_SIZE = 512;
+
+    private static final long STRING_SIZE = 40;
+
+    private static final long OBJECT_SIZE = 64;
+
+    private final Map<UndoableEdit, Long> sizes = new IdentityHashMap<UndoableEdit, Long>();
+
+    private long estimatedSize;
+
+    private long maxSize;
+
+}
@@ -81,9 +81,8 @@ public class CutCopyPasteBehavior extends AbstractEditorPartBehavior
     public void cut()
     {
         copy();
+        // Repainted by the behaviors notified of the removal
         editorPart.removeSelected();
-        editorPart.getSwingComponent().invalidate();
-        editorPart.getSwingComponent().repaint();
     }
 
     /**
@@ -190,11 +189,12 @@ public class CutCopyPasteBehavior extends AbstractEditorPartBehavior
                 }
             }
 
+            IEditorPartSelectionHandler selectionHandler = this.editorPart.getSelectionHandler();
+            Rectangle2D previousSelectionArea = graph.getDrawingBounds(selectionHandler.getSelectedNodes(), selectionHandler.getSelectedEdges());
             addUndoRedoSupport(nodesReallyPasted, edgesReallyPasted);
             selectPastedElements(nodesReallyPasted, edgesReallyPasted);
 
-            editorPart.getSwingComponent().invalidate();
-            editorPart.getSwingComponent().repaint();
+            editorPart.repaintArea(previousSelectionArea, graph.getDrawingBounds(nodesReallyPasted, edgesReallyPasted));
         }
         catch (IOException e)
         {
@@ -219,6 +219,7 @@ public class CutCopyPasteBehavior extends AbstractEditorPartBehavior
         UndoRedoCompoundBehavior undoRedoBehavior = found.get(0);
 
         undoRedoBehavior.startHistoryCapture();
+        undoRedoBehavior.addChangedElements(nodesPasted, edgesPasted);
         CompoundEdit capturedEdit = undoRedoBehavior.getCurrentCapturedEdit();
         for (final INode aNode : nodesPasted)
         {
@@ -4,8 +4,10 @@ import java.awt.Cursor;
 import java.awt.event.MouseEvent;
 import java.awt.geom.Point2D;
 import java.awt.geom.Rectangle2D;
-import java.util.Iterator;
+import java.util.Collections;
+import java.util.IdentityHashMap;
 import java.util.List;
+import java.util.Map;
 
 import com.horstmann.violet.product.diagram.abstracts.IGraph;
 import com.horstmann.violet.product.diagram.abstracts.IGridSticker;
@@ -87,10 +89,11 @@ public class DragSelectedBehavior extends AbstractEditorPartBehavior {
         dx = Math.max(dx, -bounds.getX());
         dy = Math.max(dy, -bounds.getY());
 
+        Rectangle2D areaBeforeMove = graph.getDrawingBounds(selectedNodes, Collections.<IEdge>emptyList());
         boolean isAtLeastOneNodeMoved = false;
         IGridSticker gridSticker = graph.getGridSticker();
         for (INode n : selectedNodes) {
-            if (selectedNodes.contains(n.getParent())) continue; // parents are responsible for translating their
+            if (selectionHandler.isElementAlreadySelected(n.getParent())) continue; // parents are responsible for translating their
             // children
             Point2D currentNodeLocation = n.getLocation();
             Point2D futureNodeLocation = new Point2D.Double(currentNodeLocation.getX() + dx, currentNodeLocation.getY() + dy);
@@ -101,30 +104,32 @@ public class DragSelectedBehavior extends AbstractEditorPartBehavior {
             }
         }
 
-        // Drag transition points on edges
-        Iterator<IEdge> iterOnEdges = graph.getAllEdges().iterator();
-        while (iterOnEdges.hasNext()) {
-            IEdge e = (IEdge) iterOnEdges.next();
-            INode startingNode = e.getStartNode();
-            INode endinNode = e.getEndNode();
-            if (selectedNodes.contains(startingNode) && selectedNodes.contains(endinNode)) {
-                Point2D[] transitionPoints = e.getTransitionPoints();
-                for (Point2D aTransitionPoint : transitionPoints) {
-                    double newTransitionPointLocationX = aTransitionPoint.getX() + dx;
-                    double newTransitionPointLocationY = aTransitionPoint.getY() + dy;
-                    aTransitionPoint.setLocation(newTransitionPointLocationX, newTransitionPointLocationY);
-                    aTransitionPoint = gridSticker.snap(aTransitionPoint);
+        // Drag transition points on edges (only the edges connected to selected nodes are searched)
+        Map<IEdge, Boolean> draggedEdges = new IdentityHashMap<IEdge, Boolean>();
+        for (INode n : selectedNodes) {
+            for (IEdge e : graph.getConnectedEdges(n)) {
+                if (selectionHandler.isElementAlreadySelected(e.getStartNode()) && selectionHandler.isElementAlreadySelected(e.getEndNode())) {
+                    draggedEdges.put(e, Boolean.TRUE);
                 }
-                e.setTransitionPoints(transitionPoints);
             }
         }
+        for (IEdge e : draggedEdges.keySet()) {
+            Point2D[] transitionPoints = e.getTransitionPoints();
+            for (Point2D aTransitionPoint : transitionPoints) {
+                double newTransitionPointLocationX = aTransitionPoint.getX() + dx;
+                double newTransitionPointLocationY = aTransitionPoint.getY() + dy;
+                aTransitionPoint.setLocation(newTransitionPointLocationX, newTransitionPointLocationY);
+                aTransitionPoint = gridSticker.snap(aTransitionPoint);
+            }
+            e.setTransitionPoints(transitionPoints);
+        }
 
         // Save mouse location for next dragging sequence
         if (isAtLeastOneNodeMoved) {
             Point2D snappedMousePoint = gridSticker.snap(mousePoint);
             if (!snappedMousePoint.equals(lastMousePoint)) {
-                editorPart.getSwingComponent().invalidate();
-                editorPart.getSwingComponent().repaint();
+                Rectangle2D areaAfterMove = graph.getDrawingBounds(selectedNodes, Collections.<IEdge>emptyList());
+                editorPart.repaintArea(areaBeforeMove, areaAfterMove);
             }
             lastMousePoint = snappedMousePoint;
         }
@@ -148,10 +153,8 @@ public class DragSelectedBehavior extends AbstractEditorPartBehavior {
         if (node == null) {
             return;
         }
-        List<INode> selectedNodes = this.selectionHandler.getSelectedNodes();
-        if (!selectedNodes.contains(node)) {
-            this.selectionHandler.clearSelection();
-            this.selectionHandler.addSelectedElement(node);
+        if (!this.selectionHandler.isElementAlreadySelected(node)) {
+            this.selectionHandler.setSelectedElement(node);
         }
     }
 
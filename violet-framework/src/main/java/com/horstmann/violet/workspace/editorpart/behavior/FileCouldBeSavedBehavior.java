@@ -2,6 +2,7 @@ package com.horstmann.violet.workspace.editorpart.behavior;
 
 import java.awt.event.MouseEvent;
 import java.awt.geom.Point2D;
+import java.util.List;
 
 import com.horstmann.violet.framework.file.IGraphFile;
 import com.horstmann.violet.product.diagram.abstracts.edge.IEdge;
@@ -46,6 +47,12 @@ public class FileCouldBeSavedBehavior extends AbstractEditorPartBehavior
     }
 
 
+    @Override
+    public void onElementsChanged(List<INode> nodes, List<IEdge> edges)
+    {
+        graphFile.journalChanges(nodes, edges);
+    }
+
     @Override
     public void onMouseDragged(MouseEvent event)
     {
@@ -5,6 +5,7 @@ import java.awt.event.MouseEvent;
 import java.awt.event.MouseWheelEvent;
 import java.awt.geom.Point2D;
 import java.beans.PropertyChangeEvent;
+import java.util.List;
 
 import com.horstmann.violet.product.diagram.abstracts.IColorable;
 import com.horstmann.violet.product.diagram.abstracts.edge.IEdge;
@@ -64,6 +65,14 @@ public interface IEditorPartBehavior
 
     public void afterChangingColorOnElement(IColorable element);
     
+    /**
+     * Called once an undoable action (or its undo/redo) has changed some elements of the graph
+     * 
+     * @param nodes nodes added, removed or modified
+     * @param edges edges added, removed or modified
+     */
+    public void onElementsChanged(List<INode> nodes, List<IEdge> edges);
+    
     public void onPaint(Graphics2D g2);
     
 }
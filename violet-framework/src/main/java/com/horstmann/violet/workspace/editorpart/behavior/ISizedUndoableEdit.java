@@ -0,0 +1,16 @@
+package com.horstmann.violet.workspace.editorpart.behavior;
+
+import javax.swing.undo.UndoableEdit;
+
+/**
+ * Undoable edit which can estimate the memory it keeps, so that the undo history can stay in a memory budget
+ */
+public interface ISizedUndoableEdit extends UndoableEdit
+{
+
+    /**
+     * @return estimated memory (in bytes) kept by this edit, including the objects only this edit refers to
+     */
+    long getEstimatedSize();
+
+}
@@ -34,16 +34,23 @@ public class SelectAllBehavior extends AbstractEditorPartBehavior
         selectables.addAll(graph.getAllNodes());
         selectables.addAll(graph.getAllEdges());
         if (selectables.size() == 0) return;
-        selectionHandler.clearSelection();
+        selectionHandler.beginSelectionChanges();
+        try
+        {
+            selectionHandler.clearSelection();
+            selectionHandler.addSelectedElements(graph.getAllNodes(), graph.getAllEdges());
+        }
+        finally
+        {
+            selectionHandler.endSelectionChanges();
+        }
         for (Object toSelect : selectables) {
         	if (toSelect instanceof INode)
             {
-                selectionHandler.addSelectedElement((INode) toSelect);
                 behaviorManager.fireOnNodeSelected((INode) toSelect);
             }
             if (toSelect instanceof IEdge)
             {
-                selectionHandler.addSelectedElement((IEdge) toSelect);
                 behaviorManager.fireOnEdgeSelected((IEdge) toSelect);
             }
         }
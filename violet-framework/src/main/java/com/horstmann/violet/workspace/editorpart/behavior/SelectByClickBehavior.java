@@ -48,20 +48,28 @@ public class SelectByClickBehavior extends AbstractEditorPartBehavior
         Point2D mousePoint = new Point2D.Double(event.getX() / zoom, event.getY() / zoom);
         boolean isCtrl = KeyModifierUtil.isCtrl(event);
         boolean isOnNodeOrEdge = isMouseOnNodeOrEdge(mousePoint);
-        if (!isOnNodeOrEdge && !isCtrl)
+        this.selectionHandler.beginSelectionChanges();
+        try
         {
-            resetSelectedElements();
-            return;
-        }
-        if (isOnNodeOrEdge && !isCtrl)
-        {
-            processSelection(mousePoint, true);
-            return;
+            if (!isOnNodeOrEdge && !isCtrl)
+            {
+                resetSelectedElements();
+                return;
+            }
+            if (isOnNodeOrEdge && !isCtrl)
+            {
+                processSelection(mousePoint, true);
+                return;
+            }
+            if (isOnNodeOrEdge && isCtrl)
+            {
+                processSelection(mousePoint, false);
+                return;
+            }
         }
-        if (isOnNodeOrEdge && isCtrl)
+        finally
         {
-            processSelection(mousePoint, false);
-            return;
+            this.selectionHandler.endSelectionChanges();
         }
     }
 
@@ -84,10 +92,15 @@ public class SelectByClickBehavior extends AbstractEditorPartBehavior
         if (this.isDragGesture) {
             return;
         }
-        if (KeyModifierUtil.isCtrl(event)) {
-            processSelectionInConflictWithDraggingEvents(false);
-        } else {
-            processSelectionInConflictWithDraggingEvents(true);
+        this.selectionHandler.beginSelectionChanges();
+        try {
+            if (KeyModifierUtil.isCtrl(event)) {
+                processSelectionInConflictWithDraggingEvents(false);
+            } else {
+                processSelectionInConflictWithDraggingEvents(true);
+            }
+        } finally {
+            this.selectionHandler.endSelectionChanges();
         }
         this.editorPart.getSwingComponent().invalidate();
     }
@@ -207,7 +220,7 @@ public class SelectByClickBehavior extends AbstractEditorPartBehavior
         List<INode> nodes = selectionHandler.getSelectedNodes();
         for (INode n : nodes)
         {
-            if (graph.getAllNodes().contains(n))
+            if (graph.findNode(n.getId()) == n)
             {
                 Point2D nodeLocationOnGraph = n.getLocationOnGraph();
                 Rectangle2D nodeBounds = n.getBounds();
@@ -220,7 +233,7 @@ public class SelectByClickBehavior extends AbstractEditorPartBehavior
         List<IEdge> edges = selectionHandler.getSelectedEdges();
         for (IEdge e : edges)
         {
-            if (graph.getAllEdges().contains(e))
+            if (graph.findEdge(e.getId()) == e)
             {
                 Line2D line = e.getConnectionPoints();
                 GrabberUtils.drawPurpleGrabber(g2, line.getX1(), line.getY1());
@@ -5,7 +5,10 @@ import java.awt.Graphics2D;
 import java.awt.event.MouseEvent;
 import java.awt.geom.Point2D;
 import java.awt.geom.Rectangle2D;
-import java.util.Iterator;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
 
 import com.horstmann.violet.framework.util.KeyModifierUtil;
 import com.horstmann.violet.product.diagram.abstracts.IGraph;
@@ -44,6 +47,10 @@ public class SelectByLassoBehavior extends AbstractEditorPartBehavior
         final Point2D mousePoint = new Point2D.Double(event.getX() / zoom, event.getY() / zoom);
         if (!isMouseOnNodeOrEdge(mousePoint))
         {
+            endSelectionGesture();
+            // Listeners are notified once, when the lasso is released
+            this.selectionHandler.beginSelectionChanges();
+            this.isSelectionGestureInProgress = true;
             resetSelectedElements();
             mouseDownPoint = mousePoint;
             lastMousePoint = mousePoint;
@@ -73,37 +80,53 @@ public class SelectByLassoBehavior extends AbstractEditorPartBehavior
         double x2 = mousePoint.getX();
         double y2 = mousePoint.getY();
         Rectangle2D.Double lasso = new Rectangle2D.Double(Math.min(x1, x2), Math.min(y1, y2), Math.abs(x1 - x2), Math.abs(y1 - y2));
-        Iterator<INode> iterOnNodes = graph.getAllNodes().iterator();
-        while (iterOnNodes.hasNext())
+        // Only the lassos and the elements whose selection changed need to be repainted
+        List<INode> changedNodes = new ArrayList<INode>();
+        List<IEdge> changedEdges = new ArrayList<IEdge>();
+        // Elements outside the lasso are only searched among the selected ones
+        Set<INode> nodesInLasso = new LinkedHashSet<INode>();
+        Set<IEdge> edgesInLasso = new LinkedHashSet<IEdge>();
+        for (INode n : graph.findNodes(lasso))
         {
-            INode n = (INode) iterOnNodes.next();
-            Rectangle2D bounds = n.getBounds();
-            if (!lasso.contains(bounds))
+            if (lasso.contains(n.getBounds()))
             {
-                selectionHandler.removeElementFromSelection(n);
+                nodesInLasso.add(n);
+                if (!selectionHandler.isElementAlreadySelected(n))
+                {
+                    changedNodes.add(n);
+                }
             }
-            else if (lasso.contains(bounds))
+        }
+        for (IEdge e : graph.findEdges(lasso))
+        {
+            if (lasso.contains(e.getBounds()))
             {
-                selectionHandler.addSelectedElement(n);
+                edgesInLasso.add(e);
+                if (!selectionHandler.isElementAlreadySelected(e))
+                {
+                    changedEdges.add(e);
+                }
             }
         }
-        Iterator<IEdge> iterOnEdges = graph.getAllEdges().iterator();
-        while (iterOnEdges.hasNext())
+        for (INode n : selectionHandler.getSelectedNodes())
         {
-            IEdge e = (IEdge) iterOnEdges.next();
-            Rectangle2D bounds = e.getBounds();
-            if (!lasso.contains(bounds))
+            if (!nodesInLasso.contains(n))
             {
-                selectionHandler.removeElementFromSelection(e);
+                changedNodes.add(n);
             }
-            else if (lasso.contains(bounds))
+        }
+        for (IEdge e : selectionHandler.getSelectedEdges())
+        {
+            if (!edgesInLasso.contains(e))
             {
-                selectionHandler.addSelectedElement(e);
+                changedEdges.add(e);
             }
         }
+        selectionHandler.retainOnlySelectedElements(nodesInLasso, edgesInLasso);
+        selectionHandler.addSelectedElements(nodesInLasso, edgesInLasso);
         if (!snappedMousePoint.equals(lastMousePoint)) {
-            this.editorPart.getSwingComponent().invalidate();
-            this.editorPart.getSwingComponent().repaint();
+            Rectangle2D selectionArea = graph.getDrawingBounds(changedNodes, changedEdges);
+            this.editorPart.repaintArea(getLasso(mouseDownPoint, lastMousePoint), getLasso(mouseDownPoint, snappedMousePoint), selectionArea);
         }
         this.lastMousePoint = snappedMousePoint;
     }
@@ -111,10 +134,34 @@ public class SelectByLassoBehavior extends AbstractEditorPartBehavior
     @Override
     public void onMouseReleased(MouseEvent event)
     {
+        if (mouseDownPoint != null && lastMousePoint != null)
+        {
+            this.editorPart.repaintArea(getLasso(mouseDownPoint, lastMousePoint));
+        }
         mouseDownPoint = null;
         lastMousePoint = null;
-        this.editorPart.getSwingComponent().invalidate();
-        this.editorPart.getSwingComponent().repaint();
+        endSelectionGesture();
+    }
+
+    /**
+     * Notifies the selection changes made since the lasso was started
+     */
+    private void endSelectionGesture()
+    {
+        if (this.isSelectionGestureInProgress)
+        {
+            this.isSelectionGestureInProgress = false;
+            this.selectionHandler.endSelectionChanges();
+        }
+    }
+
+    private Rectangle2D getLasso(Point2D p1, Point2D p2)
+    {
+        double x1 = p1.getX();
+        double y1 = p1.getY();
+        double x2 = p2.getX();
+        double y2 = p2.getY();
+        return new Rectangle2D.Double(Math.min(x1, x2), Math.min(y1, y2), Math.abs(x1 - x2), Math.abs(y1 - y2));
     }
 
     private boolean isMouseOnNodeOrEdge(Point2D mouseLocation)
@@ -143,12 +190,7 @@ public class SelectByLassoBehavior extends AbstractEditorPartBehavior
         }
         Color oldColor = g2.getColor();
         g2.setColor(PURPLE);
-        double x1 = mouseDownPoint.getX();
-        double y1 = mouseDownPoint.getY();
-        double x2 = lastMousePoint.getX();
-        double y2 = lastMousePoint.getY();
-        Rectangle2D.Double lasso = new Rectangle2D.Double(Math.min(x1, x2), Math.min(y1, y2), Math.abs(x1 - x2), Math.abs(y1 - y2));
-        g2.draw(lasso);
+        g2.draw(getLasso(mouseDownPoint, lastMousePoint));
         g2.setColor(oldColor);
     }
 
@@ -158,6 +200,8 @@ public class SelectByLassoBehavior extends AbstractEditorPartBehavior
 
     private Point2D lastMousePoint = null;
 
+    private boolean isSelectionGestureInProgress = false;
+
     private IGraph graph;
 
     private IEditorPartSelectionHandler selectionHandler;
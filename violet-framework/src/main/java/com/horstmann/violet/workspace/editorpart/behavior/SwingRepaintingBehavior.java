@@ -1,18 +1,24 @@
 package com.horstmann.violet.workspace.editorpart.behavior;
 
-import java.awt.Graphics2D;
-import java.awt.event.MouseEvent;
-import java.awt.event.MouseWheelEvent;
 import java.awt.geom.Point2D;
+import java.awt.geom.Rectangle2D;
 import java.beans.PropertyChangeEvent;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
 
 import com.horstmann.violet.product.diagram.abstracts.IColorable;
+import com.horstmann.violet.product.diagram.abstracts.IGraph;
 import com.horstmann.violet.product.diagram.abstracts.edge.IEdge;
 import com.horstmann.violet.product.diagram.abstracts.node.INode;
 import com.horstmann.violet.workspace.editorpart.IEditorPart;
-import com.horstmann.violet.workspace.sidebar.graphtools.GraphTool;
+import com.horstmann.violet.workspace.editorpart.IEditorPartSelectionHandler;
+import com.horstmann.violet.workspace.editorpart.IEditorPartSelectionListener;
 
-public class SwingRepaintingBehavior implements IEditorPartBehavior
+public class SwingRepaintingBehavior extends AbstractEditorPartBehavior
 {
 
     private IEditorPart editorPart;
@@ -21,176 +27,232 @@ public class SwingRepaintingBehavior implements IEditorPartBehavior
     public SwingRepaintingBehavior(IEditorPart editorPart)
     {
         this.editorPart = editorPart;
-    }
-
-    @Override
-    public void onToolSelected(GraphTool selectedTool)
-    {
-        //this.editorPart.getSwingComponent().repaint();
-    }
-
-    @Override
-    public void onMouseReleased(MouseEvent event)
-    {
-        //this.editorPart.getSwingComponent().repaint();
-    }
-    
-    @Override
-    public void onMouseClicked(MouseEvent event)
-    {
-        this.editorPart.getSwingComponent().repaint();
-    }
-
-    @Override
-    public void onMousePressed(MouseEvent event)
-    {
-        //this.editorPart.getSwingComponent().repaint();
-    }
-
-    @Override
-    public void onMouseDragged(MouseEvent event)
-    {
-        //this.editorPart.getSwingComponent().repaint();
-    }
-    
-    @Override
-    public void onMouseMoved(MouseEvent event)
-    {
-        // Nothing to do
-    }
-    
-    @Override
-    public void onMouseWheelMoved(MouseWheelEvent event)
-    {
-        // Nothing to do
+        // Selection changes are repainted once per gesture rather than on each mouse event
+        editorPart.getSelectionHandler().addSelectionListener(new IEditorPartSelectionListener()
+        {
+            @Override
+            public void onSelectionChanged()
+            {
+                repaintSelectionChanges();
+            }
+        });
     }
 
     @Override
     public void beforeRemovingSelectedElements()
     {
-        // Nothing to do
+        IEditorPartSelectionHandler selectionHandler = this.editorPart.getSelectionHandler();
+        List<INode> selectedNodes = selectionHandler.getSelectedNodes();
+        List<IEdge> selectedEdges = selectionHandler.getSelectedEdges();
+        this.nodesAroundChange = getNodesAround(selectedNodes, selectedEdges);
+        this.areaBeforeChange = getGraph().getDrawingBounds(this.nodesAroundChange, selectedEdges);
     }
 
     @Override
     public void beforeEditingNode(INode node)
     {
-        // nothing to do
+        this.nodesAroundChange = getNodesAround(Collections.singletonList(node), Collections.<IEdge>emptyList());
+        this.areaBeforeChange = getGraph().getDrawingBounds(this.nodesAroundChange, Collections.<IEdge>emptyList());
     }
 
     @Override
     public void beforeEditingEdge(IEdge edge)
     {
-        // nothing to do
+        List<IEdge> edges = Collections.singletonList(edge);
+        this.nodesAroundChange = getNodesAround(Collections.<INode>emptyList(), edges);
+        this.areaBeforeChange = getGraph().getDrawingBounds(this.nodesAroundChange, edges);
     }
 
     @Override
-    public void beforeAddingNodeAtPoint(INode node, Point2D location)
+    public void beforeChangingColorOnElement(IColorable element)
     {
-        // nothing to do
+        if (element instanceof INode)
+        {
+            beforeEditingNode((INode) element);
+        }
+        else if (element instanceof IEdge)
+        {
+            beforeEditingEdge((IEdge) element);
+        }
     }
 
     @Override
-    public void beforeAddingEdgeAtPoints(IEdge edge, Point2D startPoint, Point2D endPoint)
+    public void afterRemovingSelectedElements()
     {
-        // nothing to do
+        repaintChanges(Collections.<IEdge>emptyList());
+        this.nodesAroundChange = null;
+        this.areaBeforeChange = null;
+        repaintSelectionChanges();
     }
 
     @Override
-    public void afterRemovingSelectedElements()
+    public void afterEditingNode(INode node)
     {
-        this.editorPart.getSwingComponent().invalidate();
-        this.editorPart.getSwingComponent().repaint();
+        repaintChanges(Collections.<IEdge>emptyList());
+        this.nodesAroundChange = null;
+        this.areaBeforeChange = null;
     }
 
     @Override
-    public void afterEditingNode(INode node)
+    public void afterEditingEdge(IEdge edge)
     {
-        this.editorPart.getSwingComponent().invalidate();
-        this.editorPart.getSwingComponent().repaint();
+        repaintChanges(Collections.singletonList(edge));
+        this.nodesAroundChange = null;
+        this.areaBeforeChange = null;
     }
 
     @Override
-    public void afterEditingEdge(IEdge edge)
+    public void afterChangingColorOnElement(IColorable element)
     {
-        this.editorPart.getSwingComponent().invalidate();
-        this.editorPart.getSwingComponent().repaint();
+        if (element instanceof IEdge)
+        {
+            afterEditingEdge((IEdge) element);
+        }
+        else if (element instanceof INode)
+        {
+            afterEditingNode((INode) element);
+        }
     }
 
     @Override
     public void afterAddingNodeAtPoint(INode node, Point2D location)
     {
-        this.editorPart.getSwingComponent().invalidate();
-        this.editorPart.getSwingComponent().repaint();
+        // Parents may grow to contain the new node
+        List<INode> nodesAround = getNodesAround(Collections.singletonList(node), Collections.<IEdge>emptyList());
+        this.editorPart.repaintArea(getGraph().getDrawingBounds(nodesAround, Collections.<IEdge>emptyList()));
     }
 
     @Override
     public void afterAddingEdgeAtPoints(IEdge edge, Point2D startPoint, Point2D endPoint)
     {
-        this.editorPart.getSwingComponent().invalidate();
-        this.editorPart.getSwingComponent().repaint();
+        this.editorPart.repaintArea(getGraph().getDrawingBounds(Collections.<INode>emptyList(), Collections.singletonList(edge)));
     }
     
     @Override
-    public void onPaint(Graphics2D g2)
+    public void whileEditingEdge(IEdge edge, PropertyChangeEvent event)
     {
-        // nothing to do
-        
+        repaintChanges(Collections.singletonList(edge));
     }
 
     @Override
-    public void onEdgeSelected(IEdge edge)
+    public void whileEditingNode(INode node, PropertyChangeEvent event)
     {
-        this.editorPart.getSwingComponent().invalidate();
-        this.editorPart.getSwingComponent().repaint();
+        repaintChanges(Collections.<IEdge>emptyList());
     }
 
-    @Override
-    public void onNodeSelected(INode node)
+    /**
+     * Repaints what was drawn before the current change and what is drawn now
+     * 
+     * @param edges changed edges
+     */
+    private void repaintChanges(List<IEdge> edges)
     {
-        this.editorPart.getSwingComponent().invalidate();
-        this.editorPart.getSwingComponent().repaint();
+        if (this.nodesAroundChange == null)
+        {
+            this.editorPart.getSwingComponent().invalidate();
+            this.editorPart.getSwingComponent().repaint();
+            return;
+        }
+        Rectangle2D areaAfterChange = getGraph().getDrawingBounds(this.nodesAroundChange, edges);
+        this.editorPart.repaintArea(this.areaBeforeChange, areaAfterChange);
+        // Several changes can happen while the same element is edited
+        this.areaBeforeChange = areaAfterChange;
     }
 
-    @Override
-    public void whileEditingEdge(IEdge edge, PropertyChangeEvent event)
+    /**
+     * Repaints elements which were selected at the previous call and elements which are selected now (to draw or
+     * erase their grabbers)
+     */
+    private void repaintSelectionChanges()
     {
-        this.editorPart.getSwingComponent().invalidate();
-        this.editorPart.getSwingComponent().repaint();
+        IEditorPartSelectionHandler selectionHandler = this.editorPart.getSelectionHandler();
+        // Selection lists are snapshots kept until the selection changes
+        List<INode> selectedNodes = selectionHandler.getSelectedNodes();
+        List<IEdge> selectedEdges = selectionHandler.getSelectedEdges();
+        if (selectedNodes == this.lastSelectedNodes && selectedEdges == this.lastSelectedEdges)
+        {
+            return;
+        }
+        List<INode> changedNodes = new ArrayList<INode>();
+        List<IEdge> changedEdges = new ArrayList<IEdge>();
+        addDifferences(selectedNodes, this.lastSelectedNodes, changedNodes);
+        addDifferences(selectedEdges, this.lastSelectedEdges, changedEdges);
+        this.lastSelectedNodes = selectedNodes;
+        this.lastSelectedEdges = selectedEdges;
+        // Removed elements are no longer drawn, so their grabbers were already erased with them
+        this.editorPart.repaintArea(getGraph().getDrawingBounds(changedNodes, changedEdges));
     }
 
-    @Override
-    public void whileEditingNode(INode node, PropertyChangeEvent event)
-    {
-        this.editorPart.getSwingComponent().invalidate();
-        this.editorPart.getSwingComponent().repaint();
-    }
-    
-    @Override
-    public void beforeChangingTransitionPointsOnEdge(IEdge edge)
+    private <T> void addDifferences(List<T> list1, List<T> list2, List<T> result)
     {
-        // Nothing to do
+        Map<T, Boolean> set1 = new IdentityHashMap<T, Boolean>();
+        Map<T, Boolean> set2 = new IdentityHashMap<T, Boolean>();
+        for (T anElement : list1)
+        {
+            set1.put(anElement, Boolean.TRUE);
+        }
+        for (T anElement : list2)
+        {
+            set2.put(anElement, Boolean.TRUE);
+        }
+        for (T anElement : list1)
+        {
+            if (!set2.containsKey(anElement)) result.add(anElement);
+        }
+        for (T anElement : list2)
+        {
+            if (!set1.containsKey(anElement)) result.add(anElement);
+        }
     }
-    
-    @Override
-    public void afterChangingTransitionPointsOnEdge(IEdge edge)
-    {
-        // Nothing to do
-        
-    }
-    
-    @Override
-    public void beforeChangingColorOnElement(IColorable element)
+
+    /**
+     * Gets the nodes whose drawing may change with the given elements : their top level ancestors (which may grow or
+     * shrink) and the nodes at the other end of their edges.
+     */
+    private List<INode> getNodesAround(Collection<INode> nodes, Collection<IEdge> edges)
     {
-        // TODO Auto-generated method stub
-        
+        IGraph graph = getGraph();
+        Map<INode, Boolean> result = new IdentityHashMap<INode, Boolean>();
+        List<INode> changedNodes = new ArrayList<INode>(nodes);
+        for (IEdge anEdge : edges)
+        {
+            changedNodes.add(anEdge.getStartNode());
+            changedNodes.add(anEdge.getEndNode());
+        }
+        for (INode aNode : changedNodes)
+        {
+            if (aNode == null)
+            {
+                continue;
+            }
+            result.put(aNode, Boolean.TRUE);
+            INode root = aNode;
+            while (root.getParent() != null)
+            {
+                root = root.getParent();
+            }
+            result.put(root, Boolean.TRUE);
+            for (IEdge anEdge : graph.getConnectedEdges(aNode))
+            {
+                result.put(anEdge.getStartNode(), Boolean.TRUE);
+                result.put(anEdge.getEndNode(), Boolean.TRUE);
+            }
+        }
+        return new ArrayList<INode>(result.keySet());
     }
-    
-    @Override
-    public void afterChangingColorOnElement(IColorable element)
+
+    private IGraph getGraph()
     {
-        // TODO Auto-generated method stub
-        
+        return this.editorPart.getGraph();
     }
 
-   
+    /** Nodes whose drawing may change with the element being edited or removed */
+    private List<INode> nodesAroundChange;
+
+    /** Area drawn before the current edition or removal */
+    private Rectangle2D areaBeforeChange;
+
+    private List<INode> lastSelectedNodes = new ArrayList<INode>();
+
+    private List<IEdge> lastSelectedEdges = new ArrayList<IEdge>();
 }
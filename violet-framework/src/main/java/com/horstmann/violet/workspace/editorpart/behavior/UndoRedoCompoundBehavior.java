@@ -2,17 +2,29 @@ package com.horstmann.violet.workspace.editorpart.behavior;
 
 import java.awt.event.MouseEvent;
 import java.awt.geom.Point2D;
+import java.awt.geom.Rectangle2D;
 import java.beans.PropertyChangeEvent;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.IdentityHashMap;
 import java.util.List;
+import java.util.Map;
 
+import javax.swing.undo.CannotRedoException;
+import javax.swing.undo.CannotUndoException;
 import javax.swing.undo.CompoundEdit;
-import javax.swing.undo.UndoManager;
+import javax.swing.undo.UndoableEdit;
 
+import com.horstmann.violet.framework.injection.bean.ManiocFramework.BeanInjector;
+import com.horstmann.violet.framework.injection.bean.ManiocFramework.InjectedBean;
+import com.horstmann.violet.framework.userpreferences.UserPreferencesService;
 import com.horstmann.violet.product.diagram.abstracts.IColorable;
+import com.horstmann.violet.product.diagram.abstracts.IGraph;
 import com.horstmann.violet.product.diagram.abstracts.edge.IEdge;
 import com.horstmann.violet.product.diagram.abstracts.node.INode;
+import com.horstmann.violet.workspace.editorpart.EditorPartBehaviorManager;
 import com.horstmann.violet.workspace.editorpart.IEditorPart;
+import com.horstmann.violet.workspace.editorpart.IEditorPartSelectionHandler;
 
 /**
  * This behavior for undo/redo actions is composed of sub-behaviors
@@ -36,12 +48,38 @@ public class UndoRedoCompoundBehavior extends AbstractEditorPartBehavior
     /**
      * Undo/redo manager
      */
-    private UndoManager undoManager = new UndoManager();
+    private BoundedUndoManager undoManager;
+
+    /**
+     * Gives the history budget
+     */
+    @InjectedBean
+    private UserPreferencesService userPreferencesService;
     
     /**
-     * List of individual undo/redo behaviors
+     * Individual undo/redo behaviors (each one only gets the events it handles)
+     */
+    private EditorPartBehaviorManager behaviors = new EditorPartBehaviorManager();
+
+    /**
+     * Elements changed by the action being captured
      */
-    private List<IEditorPartBehavior> behaviors = new ArrayList<IEditorPartBehavior>();
+    private Map<INode, Boolean> changedNodes = new IdentityHashMap<INode, Boolean>();
+
+    /**
+     * Elements changed by the action being captured
+     */
+    private Map<IEdge, Boolean> changedEdges = new IdentityHashMap<IEdge, Boolean>();
+
+    /**
+     * Last history entry added, until something is undone or redone
+     */
+    private ChangesEdit lastHistoryEntry;
+
+    /**
+     * True while the mouse is dragged
+     */
+    private boolean isDragging = false;
 
 
     /**
@@ -50,22 +88,24 @@ public class UndoRedoCompoundBehavior extends AbstractEditorPartBehavior
      */
     public UndoRedoCompoundBehavior(IEditorPart editorPart)
     {
+        BeanInjector.getInjector().inject(this);
         this.editorPart = editorPart;
-        behaviors.add(new UndoRedoOnAddBehavior(editorPart, this));
-        behaviors.add(new UndoRedoOnDragBehavior(editorPart, this));
-        behaviors.add(new UndoRedoOnEditBehavior(this));
-        behaviors.add(new UndoRedoOnRemoveBehavior(editorPart, this));
-        behaviors.add(new UndoRedoOnTransitionPointChangeBehavior(this));
-        behaviors.add(new UndoRedoOnColorizeBehavior(this));
+        this.undoManager = new BoundedUndoManager(this.userPreferencesService.getUndoHistoryMaxSize());
+        this.undoManager.setLimit(this.userPreferencesService.getUndoHistoryMaxCount());
+        behaviors.addBehavior(new UndoRedoOnAddBehavior(editorPart, this));
+        behaviors.addBehavior(new UndoRedoOnDragBehavior(editorPart, this));
+        behaviors.addBehavior(new UndoRedoOnEditBehavior(this));
+        behaviors.addBehavior(new UndoRedoOnRemoveBehavior(editorPart, this));
+        behaviors.addBehavior(new UndoRedoOnTransitionPointChangeBehavior(this));
+        behaviors.addBehavior(new UndoRedoOnColorizeBehavior(this));
     }
 
     
     @Override
     public void onMousePressed(MouseEvent event)
     {
-        for (IEditorPartBehavior aBehavior : this.behaviors) {
-            aBehavior.onMousePressed(event);
-        }
+        this.isDragging = false;
+        this.behaviors.fireOnMousePressed(event);
     }
 
 
@@ -73,9 +113,8 @@ public class UndoRedoCompoundBehavior extends AbstractEditorPartBehavior
     @Override
     public void onMouseDragged(MouseEvent event)
     {
-        for (IEditorPartBehavior aBehavior : this.behaviors) {
-            aBehavior.onMouseDragged(event);
-        }
+        this.isDragging = true;
+        this.behaviors.fireOnMouseDragged(event);
     }
 
 
@@ -83,8 +122,20 @@ public class UndoRedoCompoundBehavior extends AbstractEditorPartBehavior
     @Override
     public void onMouseReleased(MouseEvent event)
     {
-        for (IEditorPartBehavior aBehavior : this.behaviors) {
-            aBehavior.onMouseReleased(event);
+        if (this.isDragging)
+        {
+            // Selected elements may have been moved or resized
+            IEditorPartSelectionHandler selectionHandler = this.editorPart.getSelectionHandler();
+            addChangedElements(selectionHandler.getSelectedNodes(), selectionHandler.getSelectedEdges());
+        }
+        this.behaviors.fireOnMouseReleased(event);
+        this.isDragging = false;
+        if (this.currentCapturedEdit == null && (!this.changedNodes.isEmpty() || !this.changedEdges.isEmpty()))
+        {
+            // Changes without undo support (such as resizing) are still notified
+            fireElementsChanged(new ArrayList<INode>(this.changedNodes.keySet()), new ArrayList<IEdge>(this.changedEdges.keySet()));
+            this.changedNodes.clear();
+            this.changedEdges.clear();
         }
     }
 
@@ -92,130 +143,109 @@ public class UndoRedoCompoundBehavior extends AbstractEditorPartBehavior
     @Override
     public void beforeRemovingSelectedElements()
     {
-        for (IEditorPartBehavior aBehavior : this.behaviors) {
-            aBehavior.beforeRemovingSelectedElements();
-        }
+        this.behaviors.fireBeforeRemovingSelectedElements();
     }
     
     @Override
     public void afterRemovingSelectedElements() {
-        for (IEditorPartBehavior aBehavior : this.behaviors) {
-            aBehavior.afterRemovingSelectedElements();
-        }
+        this.behaviors.fireAfterRemovingSelectedElements();
     }
     
     
     @Override
     public void beforeAddingNodeAtPoint(INode node, Point2D location)
     {
-        for (IEditorPartBehavior aBehavior : this.behaviors) {
-            aBehavior.beforeAddingNodeAtPoint(node, location);
-        }
+        this.behaviors.fireBeforeAddingNodeAtPoint(node, location);
     }
 
     @Override
     public void afterAddingNodeAtPoint(final INode node, final Point2D location)
     {
-        for (IEditorPartBehavior aBehavior : this.behaviors) {
-            aBehavior.afterAddingNodeAtPoint(node, location);
-        }
+        this.behaviors.fireAfterAddingNodeAtPoint(node, location);
     }
 
     @Override
     public void beforeAddingEdgeAtPoints(IEdge edge, Point2D startPoint, Point2D endPoint)
     {
-        for (IEditorPartBehavior aBehavior : this.behaviors) {
-            aBehavior.beforeAddingEdgeAtPoints(edge, startPoint, endPoint);
-        }
+        this.behaviors.fireBeforeAddingEdgeAtPoints(edge, startPoint, endPoint);
     }
     
     @Override
     public void afterAddingEdgeAtPoints(final IEdge edge, final Point2D startPoint, final Point2D endPoint)
     {
-        for (IEditorPartBehavior aBehavior : this.behaviors) {
-            aBehavior.afterAddingEdgeAtPoints(edge, startPoint, endPoint);
-        }
+        this.behaviors.fireAfterAddingEdgeAtPoints(edge, startPoint, endPoint);
     }
     
     @Override
     public void beforeChangingTransitionPointsOnEdge(IEdge edge)
     {
-        for (IEditorPartBehavior aBehavior : this.behaviors) {
-            aBehavior.beforeChangingTransitionPointsOnEdge(edge);
-        }
+        this.changedEdges.put(edge, Boolean.TRUE);
+        this.behaviors.fireBeforeChangingTransitionPointsOnEdge(edge);
     }
     
     @Override
     public void afterChangingTransitionPointsOnEdge(IEdge edge)
     {
-        for (IEditorPartBehavior aBehavior : this.behaviors) {
-            aBehavior.afterChangingTransitionPointsOnEdge(edge);
-        }
+        this.behaviors.fireAfterChangingTransitionPointsOnEdge(edge);
     }
     
     @Override
     public void beforeChangingColorOnElement(IColorable element)
     {
-        for (IEditorPartBehavior aBehavior : this.behaviors) {
-            aBehavior.beforeChangingColorOnElement(element);
+        if (element instanceof INode)
+        {
+            this.changedNodes.put((INode) element, Boolean.TRUE);
         }
+        if (element instanceof IEdge)
+        {
+            this.changedEdges.put((IEdge) element, Boolean.TRUE);
+        }
+        this.behaviors.fireBeforeChangingColorOnElement(element);
     }
     
     @Override
     public void afterChangingColorOnElement(IColorable element)
     {
-        for (IEditorPartBehavior aBehavior : this.behaviors) {
-            aBehavior.afterChangingColorOnElement(element);
-        }
+        this.behaviors.fireAfterChangingColorOnElement(element);
     }
     
 
     @Override
     public void beforeEditingNode(INode node)
     {
-        for (IEditorPartBehavior aBehavior : this.behaviors) {
-            aBehavior.beforeEditingNode(node);
-        }
+        this.changedNodes.put(node, Boolean.TRUE);
+        this.behaviors.fireBeforeEditingNode(node);
     }
 
     @Override
     public void whileEditingNode(INode node, PropertyChangeEvent event)
     {
-        for (IEditorPartBehavior aBehavior : this.behaviors) {
-            aBehavior.whileEditingNode(node, event);
-        }
+        this.behaviors.fireWhileEditingNode(node, event);
     }
 
     @Override
     public void afterEditingNode(INode node)
     {
-        for (IEditorPartBehavior aBehavior : this.behaviors) {
-            aBehavior.afterEditingNode(node);
-        }
+        this.behaviors.fireAfterEditingNode(node);
     }
 
     @Override
     public void beforeEditingEdge(IEdge edge)
     {
-        for (IEditorPartBehavior aBehavior : this.behaviors) {
-            aBehavior.beforeEditingEdge(edge);
-        }
+        this.changedEdges.put(edge, Boolean.TRUE);
+        this.behaviors.fireBeforeEditingEdge(edge);
     }
 
     @Override
     public void whileEditingEdge(IEdge edge, final PropertyChangeEvent event)
     {
-        for (IEditorPartBehavior aBehavior : this.behaviors) {
-            aBehavior.whileEditingEdge(edge, event);
-        }
+        this.behaviors.fireWhileEditingEdge(edge, event);
     }
 
     @Override
     public void afterEditingEdge(IEdge edge)
     {
-        for (IEditorPartBehavior aBehavior : this.behaviors) {
-            aBehavior.afterEditingEdge(edge);
-        }
+        this.behaviors.fireAfterEditingEdge(edge);
     }
 
     
@@ -226,9 +256,10 @@ public class UndoRedoCompoundBehavior extends AbstractEditorPartBehavior
     {
         if (undoManager.canUndo())
         {
+            Rectangle2D areaBeforeUndo = getDrawingBounds();
+            this.lastHistoryEntry = null;
             undoManager.undo();
-            editorPart.getSwingComponent().invalidate();
-            editorPart.getSwingComponent().repaint();
+            editorPart.repaintArea(areaBeforeUndo, getDrawingBounds());
         }
     }
 
@@ -239,12 +270,38 @@ public class UndoRedoCompoundBehavior extends AbstractEditorPartBehavior
     {
         if (undoManager.canRedo())
         {
+            Rectangle2D areaBeforeRedo = getDrawingBounds();
+            this.lastHistoryEntry = null;
             undoManager.redo();
-            editorPart.getSwingComponent().invalidate();
-            editorPart.getSwingComponent().repaint();
+            editorPart.repaintArea(areaBeforeRedo, getDrawingBounds());
         }
     }
 
+    /**
+     * @return number of entries in the undo history (undoable and redoable ones)
+     */
+    public int getHistoryCount()
+    {
+        return this.undoManager.getEditCount();
+    }
+
+    /**
+     * @return estimated memory (in bytes) taken by the undo history
+     */
+    public long getHistorySize()
+    {
+        return this.undoManager.getEstimatedSize();
+    }
+
+    /**
+     * Undoable edits don't tell which elements they change so the area painted by the whole graph is taken
+     */
+    private Rectangle2D getDrawingBounds()
+    {
+        IGraph graph = editorPart.getGraph();
+        return graph.getDrawingBounds(graph.getAllNodes(), graph.getAllEdges());
+    }
+
     /**
      * Starts capturing actions on graph
      */
@@ -252,7 +309,7 @@ public class UndoRedoCompoundBehavior extends AbstractEditorPartBehavior
     {
         if (this.currentCapturedEdit == null)
         {
-        	this.currentCapturedEdit = new CompoundEdit();
+        	this.currentCapturedEdit = new ChangesEdit();
         }
     }
 
@@ -265,15 +322,121 @@ public class UndoRedoCompoundBehavior extends AbstractEditorPartBehavior
         return this.currentCapturedEdit;
     }
 
+    /**
+     * @param edit
+     * @return true if the edit belongs to the last history entry and no other capture is in progress, so that it can
+     *         still be changed
+     */
+    protected boolean isLastHistoryEntry(UndoableEdit edit)
+    {
+        return this.currentCapturedEdit == null && this.lastHistoryEntry != null && this.lastHistoryEntry.contains(edit);
+    }
+
+    /**
+     * Declares elements changed by the action being captured
+     * 
+     * @param nodes
+     * @param edges
+     */
+    protected void addChangedElements(Collection<? extends INode> nodes, Collection<? extends IEdge> edges)
+    {
+        for (INode aNode : nodes)
+        {
+            this.changedNodes.put(aNode, Boolean.TRUE);
+        }
+        for (IEdge anEdge : edges)
+        {
+            this.changedEdges.put(anEdge, Boolean.TRUE);
+        }
+    }
+
     /**
      * Stops capturing actions on graph and adds an entry to history
      */
     protected void stopHistoryCapture()
     {
         if (this.currentCapturedEdit == null) return;
-        this.currentCapturedEdit.end();
-        this.undoManager.addEdit(this.currentCapturedEdit);
+        ChangesEdit capturedEdit = (ChangesEdit) this.currentCapturedEdit;
+        capturedEdit.nodes.addAll(this.changedNodes.keySet());
+        capturedEdit.edges.addAll(this.changedEdges.keySet());
+        this.changedNodes.clear();
+        this.changedEdges.clear();
+        capturedEdit.end();
+        this.undoManager.addEdit(capturedEdit);
+        this.lastHistoryEntry = capturedEdit;
         this.currentCapturedEdit = null;
+        fireElementsChanged(capturedEdit.nodes, capturedEdit.edges);
+    }
+
+    /**
+     * Tells all the behaviors which elements have been changed
+     * 
+     * @param nodes
+     * @param edges
+     */
+    private void fireElementsChanged(List<INode> nodes, List<IEdge> edges)
+    {
+        this.editorPart.getBehaviorManager().fireOnElementsChanged(nodes, edges);
+    }
+
+    /**
+     * Composed undoable edit which knows the elements it changes
+     */
+    private class ChangesEdit extends CompoundEdit implements ISizedUndoableEdit
+    {
+        @Override
+        public void undo() throws CannotUndoException
+        {
+            super.undo();
+            fireElementsChanged(this.nodes, this.edges);
+        }
+
+        @Override
+        public void redo() throws CannotRedoException
+        {
+            super.redo();
+            fireElementsChanged(this.nodes, this.edges);
+        }
+
+        public boolean contains(UndoableEdit edit)
+        {
+            return this.edits.contains(edit);
+        }
+
+        /**
+         * Elements still in the diagram are only referred to, the other ones (removed ones) are only kept by this edit
+         */
+        @Override
+        public long getEstimatedSize()
+        {
+            long size = BoundedUndoManager.EDIT_SIZE;
+            IGraph graph = editorPart.getGraph();
+            for (INode aNode : this.nodes)
+            {
+                size += BoundedUndoManager.REFERENCE_SIZE;
+                if (graph.findNode(aNode.getId()) != aNode)
+                {
+                    size += BoundedUndoManager.estimateNodeSize(aNode);
+                }
+            }
+            for (IEdge anEdge : this.edges)
+            {
+                size += BoundedUndoManager.REFERENCE_SIZE;
+                if (graph.findEdge(anEdge.getId()) != anEdge)
+                {
+                    size += BoundedUndoManager.EDGE_SIZE;
+                }
+            }
+            for (UndoableEdit anEdit : this.edits)
+            {
+                size += BoundedUndoManager.REFERENCE_SIZE;
+                size += anEdit instanceof ISizedUndoableEdit ? ((ISizedUndoableEdit) anEdit).getEstimatedSize() : BoundedUndoManager.EDIT_SIZE;
+            }
+            return size;
+        }
+
+        private List<INode> nodes = new ArrayList<INode>();
+        private List<IEdge> edges = new ArrayList<IEdge>();
     }
     
     
@@ -84,6 +84,7 @@ public class UndoRedoOnAddBehavior extends AbstractEditorPartBehavior
         edgesReallyAdded.removeAll(this.edgesOnGraphBeforeAdd);
         
         this.compoundBehavior.startHistoryCapture();
+        this.compoundBehavior.addChangedElements(nodesReallyAdded, edgesReallyAdded);
         CompoundEdit capturedEdit = this.compoundBehavior.getCurrentCapturedEdit();
 
         for (final INode aSelectedNode : nodesReallyAdded)
@@ -165,6 +166,7 @@ public class UndoRedoOnAddBehavior extends AbstractEditorPartBehavior
         edgesReallyAdded.removeAll(this.edgesOnGraphBeforeAdd);
         
         this.compoundBehavior.startHistoryCapture();
+        this.compoundBehavior.addChangedElements(nodesReallyAdded, edgesReallyAdded);
         CompoundEdit capturedEdit = this.compoundBehavior.getCurrentCapturedEdit();
 
         for (final INode aSelectedNode : nodesReallyAdded)
@@ -3,8 +3,7 @@ package com.horstmann.violet.workspace.editorpart.behavior;
 import java.awt.event.MouseEvent;
 import java.awt.geom.Point2D;
 import java.util.ArrayList;
-import java.util.Collection;
-import java.util.HashMap;
+import java.util.IdentityHashMap;
 import java.util.List;
 import java.util.Map;
 
@@ -12,16 +11,17 @@ import javax.swing.undo.AbstractUndoableEdit;
 import javax.swing.undo.CannotRedoException;
 import javax.swing.undo.CannotUndoException;
 import javax.swing.undo.CompoundEdit;
-import javax.swing.undo.UndoableEdit;
 
 import com.horstmann.violet.product.diagram.abstracts.IGraph;
+import com.horstmann.violet.product.diagram.abstracts.edge.IEdge;
 import com.horstmann.violet.product.diagram.abstracts.node.INode;
 import com.horstmann.violet.workspace.editorpart.IEditorPart;
 import com.horstmann.violet.workspace.editorpart.IEditorPartSelectionHandler;
 
 /**
- * Undo/Redo behavior triggered when node and edges are dragged
- * 
+ * Undo/Redo behavior triggered when node and edges are dragged. Only the dragged elements are recorded, and
+ * consecutive drags of the same elements are merged into one history entry.
+ *
  * @author Alexandre de Pellegrin
  *
  */
@@ -44,15 +44,30 @@ public class UndoRedoOnDragBehavior extends AbstractEditorPartBehavior
     private IEditorPartSelectionHandler selectionHandler;
 
     /**
-     * Keeps node_old locations before dragging event
+     * Locations of the dragged elements before dragging event
      */
-    private Map<INode, Point2D> nodesLocationsBeforeDrag = new HashMap<INode, Point2D>();
+    private DragEdit locationsBeforeDrag;
 
     /**
      * Used on node_old's drag'n drop
      */
     private boolean isDragInProgress = false;
 
+    /**
+     * Last drag added to history, which the next drag of the same elements can be merged into
+     */
+    private DragEdit lastDragEdit;
+
+    /**
+     * When the last drag ended
+     */
+    private long lastDragTime;
+
+    /**
+     * Drags of the same elements starting less than this delay (in ms) after the end of the previous one are merged
+     */
+    private static final long MERGE_DELAY = 1000;
+
     /**
      * Default constructor
      * @param editorPart
@@ -71,9 +86,14 @@ public class UndoRedoOnDragBehavior extends AbstractEditorPartBehavior
         double zoom = editorPart.getZoomFactor();
         final Point2D mousePoint = new Point2D.Double(event.getX() / zoom, event.getY() / zoom);
         this.isDragInProgress = false;
+        this.locationsBeforeDrag = null;
         if (isMouseOnNode(mousePoint))
         {
-            saveNodesLocationsBeforeDrag();
+            saveLocationsBeforeDrag();
+        }
+        if (event.getWhen() - this.lastDragTime > MERGE_DELAY)
+        {
+            this.lastDragEdit = null;
         }
     }
 
@@ -86,70 +106,80 @@ public class UndoRedoOnDragBehavior extends AbstractEditorPartBehavior
     @Override
     public void onMouseReleased(MouseEvent event)
     {
-        if (!this.isDragInProgress)
+        if (!this.isDragInProgress || this.locationsBeforeDrag == null)
         {
+            this.isDragInProgress = false;
             return;
         }
-        List<INode> selectedNodes = this.selectionHandler.getSelectedNodes();
-        List<UndoableEdit> editList = new ArrayList<UndoableEdit>();
-        for (final INode aSelectedNode : selectedNodes)
+        DragEdit edit = this.locationsBeforeDrag.toMoves();
+        this.locationsBeforeDrag = null;
+        this.isDragInProgress = false;
+        if (edit == null)
         {
-            if (!this.nodesLocationsBeforeDrag.containsKey(aSelectedNode))
-            {
-                continue;
-            }
-            Point2D lastNodeLocation = this.nodesLocationsBeforeDrag.get(aSelectedNode);
-            Point2D currentNodeLocation = aSelectedNode.getLocation();
-            if (currentNodeLocation.equals(lastNodeLocation))
-            {
-                continue;
-            }
-            final double dx = currentNodeLocation.getX() - lastNodeLocation.getX();
-            final double dy = currentNodeLocation.getY() - lastNodeLocation.getY();
-            UndoableEdit edit = new AbstractUndoableEdit()
-            {
-                @Override
-                public void undo() throws CannotUndoException
-                {
-                    aSelectedNode.translate(-dx, -dy);
-                    super.undo();
-                }
-
-                @Override
-                public void redo() throws CannotRedoException
-                {
-                    super.redo();
-                    aSelectedNode.translate(dx, dy);
-                }
-            };
-            editList.add(edit);
+            return;
         }
-        if (editList.size() > 0)
+        if (this.lastDragEdit != null && this.compoundBehavior.isLastHistoryEntry(this.lastDragEdit) && this.lastDragEdit.merge(edit))
         {
-            this.compoundBehavior.startHistoryCapture();
-            CompoundEdit capturedEdit = this.compoundBehavior.getCurrentCapturedEdit();
-            for (UndoableEdit edit : editList)
-            {
-                capturedEdit.addEdit(edit);
-            }
-            this.compoundBehavior.stopHistoryCapture();
+            // The compound behavior tells which elements moved, as no history capture is done
+            this.lastDragTime = event.getWhen();
+            return;
         }
-        this.nodesLocationsBeforeDrag.clear();
-        this.isDragInProgress = false;
+        this.compoundBehavior.startHistoryCapture();
+        CompoundEdit capturedEdit = this.compoundBehavior.getCurrentCapturedEdit();
+        capturedEdit.addEdit(edit);
+        this.compoundBehavior.stopHistoryCapture();
+        this.lastDragEdit = edit;
+        this.lastDragTime = event.getWhen();
     }
 
     /**
-     * Saves node locations
+     * Saves the locations of the elements DragSelectedBehavior moves : the selected nodes (except the ones whose parent
+     * is selected, as they move with it) and the transition points of the edges between selected nodes.
      */
-    private void saveNodesLocationsBeforeDrag()
+    private void saveLocationsBeforeDrag()
     {
-        this.nodesLocationsBeforeDrag.clear();
-        Collection<INode> selectedNodes = this.editorPart.getGraph().getAllNodes();
-        for (INode aSelectedNode : selectedNodes)
+        IGraph graph = this.editorPart.getGraph();
+        List<INode> draggedNodes = new ArrayList<INode>();
+        Map<IEdge, Boolean> draggedEdges = new IdentityHashMap<IEdge, Boolean>();
+        for (INode aSelectedNode : this.selectionHandler.getSelectedNodes())
+        {
+            if (!this.selectionHandler.isElementAlreadySelected(aSelectedNode.getParent()))
+            {
+                draggedNodes.add(aSelectedNode);
+            }
+            for (IEdge anEdge : graph.getConnectedEdges(aSelectedNode))
+            {
+                if (anEdge.getTransitionPoints().length > 0 && this.selectionHandler.isElementAlreadySelected(anEdge.getStartNode())
+                        && this.selectionHandler.isElementAlreadySelected(anEdge.getEndNode()))
+                {
+                    draggedEdges.put(anEdge, Boolean.TRUE);
+                }
+            }
+        }
+        if (draggedNodes.isEmpty())
+        {
+            return;
+        }
+        INode[] nodes = draggedNodes.toArray(new INode[draggedNodes.size()]);
+        IEdge[] edges = draggedEdges.keySet().toArray(new IEdge[draggedEdges.size()]);
+        double[] nodeX = new double[nodes.length];
+        double[] nodeY = new double[nodes.length];
+        for (int i = 0; i < nodes.length; i++)
+        {
+            Point2D location = nodes[i].getLocation();
+            nodeX[i] = location.getX();
+            nodeY[i] = location.getY();
+        }
+        double[] edgeX = new double[edges.length];
+        double[] edgeY = new double[edges.length];
+        for (int i = 0; i < edges.length; i++)
         {
-            Point2D location = aSelectedNode.getLocation();
-            this.nodesLocationsBeforeDrag.put(aSelectedNode, location);
+            // All transition points of an edge are moved together, so the first one gives the move
+            Point2D firstTransitionPoint = edges[i].getTransitionPoints()[0];
+            edgeX[i] = firstTransitionPoint.getX();
+            edgeY[i] = firstTransitionPoint.getY();
         }
+        this.locationsBeforeDrag = new DragEdit(nodes, nodeX, nodeY, edges, edgeX, edgeY);
     }
 
     private boolean isMouseOnNode(Point2D mouseLocation)
@@ -163,4 +193,176 @@ public class UndoRedoOnDragBehavior extends AbstractEditorPartBehavior
         return true;
     }
 
+    /**
+     * Moves of dragged nodes and of the transition points of dragged edges, kept in arrays (index i of nodeX and nodeY
+     * is the move of nodes[i]). Also used to keep locations before a drag.
+     */
+    private static class DragEdit extends AbstractUndoableEdit implements ISizedUndoableEdit
+    {
+        public DragEdit(INode[] nodes, double[] nodeX, double[] nodeY, IEdge[] edges, double[] edgeX, double[] edgeY)
+        {
+            this.nodes = nodes;
+            this.nodeX = nodeX;
+            this.nodeY = nodeY;
+            this.edges = edges;
+            this.edgeX = edgeX;
+            this.edgeY = edgeY;
+        }
+
+        /**
+         * @return the moves from these locations to the current ones, only for the elements which moved, or null if
+         *         nothing moved
+         */
+        public DragEdit toMoves()
+        {
+            int movedNodeCount = 0;
+            double[] dx = new double[this.nodes.length];
+            double[] dy = new double[this.nodes.length];
+            for (int i = 0; i < this.nodes.length; i++)
+            {
+                Point2D location = this.nodes[i].getLocation();
+                dx[i] = location.getX() - this.nodeX[i];
+                dy[i] = location.getY() - this.nodeY[i];
+                if (dx[i] != 0 || dy[i] != 0)
+                {
+                    movedNodeCount++;
+                }
+            }
+            if (movedNodeCount == 0)
+            {
+                return null;
+            }
+            int movedEdgeCount = 0;
+            double[] edgeDx = new double[this.edges.length];
+            double[] edgeDy = new double[this.edges.length];
+            for (int i = 0; i < this.edges.length; i++)
+            {
+                Point2D[] transitionPoints = this.edges[i].getTransitionPoints();
+                if (transitionPoints.length > 0)
+                {
+                    edgeDx[i] = transitionPoints[0].getX() - this.edgeX[i];
+                    edgeDy[i] = transitionPoints[0].getY() - this.edgeY[i];
+                }
+                if (edgeDx[i] != 0 || edgeDy[i] != 0)
+                {
+                    movedEdgeCount++;
+                }
+            }
+            INode[] movedNodes = new INode[movedNodeCount];
+            double[] movedNodeDx = new double[movedNodeCount];
+            double[] movedNodeDy = new double[movedNodeCount];
+            for (int i = 0, j = 0; i < this.nodes.length; i++)
+            {
+                if (dx[i] != 0 || dy[i] != 0)
+                {
+                    movedNodes[j] = this.nodes[i];
+                    movedNodeDx[j] = dx[i];
+                    movedNodeDy[j] = dy[i];
+                    j++;
+                }
+            }
+            IEdge[] movedEdges = new IEdge[movedEdgeCount];
+            double[] movedEdgeDx = new double[movedEdgeCount];
+            double[] movedEdgeDy = new double[movedEdgeCount];
+            for (int i = 0, j = 0; i < this.edges.length; i++)
+            {
+                if (edgeDx[i] != 0 || edgeDy[i] != 0)
+                {
+                    movedEdges[j] = this.edges[i];
+                    movedEdgeDx[j] = edgeDx[i];
+                    movedEdgeDy[j] = edgeDy[i];
+                    j++;
+                }
+            }
+            return new DragEdit(movedNodes, movedNodeDx, movedNodeDy, movedEdges, movedEdgeDx, movedEdgeDy);
+        }
+
+        /**
+         * Adds the moves of another drag of the same elements to this one
+         *
+         * @param other
+         * @return false if the other drag moved other elements
+         */
+        public boolean merge(DragEdit other)
+        {
+            if (!isSame(this.nodes, other.nodes) || !isSame(this.edges, other.edges))
+            {
+                return false;
+            }
+            for (int i = 0; i < this.nodes.length; i++)
+            {
+                this.nodeX[i] += other.nodeX[i];
+                this.nodeY[i] += other.nodeY[i];
+            }
+            for (int i = 0; i < this.edges.length; i++)
+            {
+                this.edgeX[i] += other.edgeX[i];
+                this.edgeY[i] += other.edgeY[i];
+            }
+            return true;
+        }
+
+        @Override
+        public long getEstimatedSize()
+        {
+            // A reference and two doubles per element
+            return BoundedUndoManager.EDIT_SIZE + (this.nodes.length + this.edges.length) * (BoundedUndoManager.REFERENCE_SIZE + 16);
+        }
+
+        @Override
+        public void undo() throws CannotUndoException
+        {
+            super.undo();
+            move(-1);
+        }
+
+        @Override
+        public void redo() throws CannotRedoException
+        {
+            super.redo();
+            move(1);
+        }
+
+        private void move(int direction)
+        {
+            for (int i = 0; i < this.nodes.length; i++)
+            {
+                this.nodes[i].translate(direction * this.nodeX[i], direction * this.nodeY[i]);
+            }
+            for (int i = 0; i < this.edges.length; i++)
+            {
+                Point2D[] transitionPoints = this.edges[i].getTransitionPoints();
+                for (Point2D aTransitionPoint : transitionPoints)
+                {
+                    aTransitionPoint.setLocation(aTransitionPoint.getX() + direction * this.edgeX[i], aTransitionPoint.getY() + direction
+                            * this.edgeY[i]);
+                }
+                this.edges[i].setTransitionPoints(transitionPoints);
+            }
+        }
+
+        private static boolean isSame(Object[] elements, Object[] otherElements)
+        {
+            if (elements.length != otherElements.length)
+            {
+                return false;
+            }
+            for (int i = 0; i < elements.length; i++)
+            {
+                if (elements[i] != otherElements[i])
+                {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        private final INode[] nodes;
+        private final double[] nodeX;
+        private final double[] nodeY;
+        private final IEdge[] edges;
+        private final double[] edgeX;
+        private final double[] edgeY;
+    }
+
 }
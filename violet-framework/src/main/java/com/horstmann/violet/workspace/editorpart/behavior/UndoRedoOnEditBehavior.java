@@ -85,28 +85,47 @@ public class UndoRedoOnEditBehavior extends AbstractEditorPartBehavior
 //        boolean isNewValueRecognized = oldValue != null
 //                && (String.class.isInstance(newValue) || MultiLineText.class.isInstance(newValue));
 //        if (!isOldValueRecognized && !isNewValueRecognized) return;
-        UndoableEdit edit = new AbstractUndoableEdit()
-        {
-            @Override
-            public void undo() throws CannotUndoException
-            {
-                PropertyChangeEvent invertedEvent = new PropertyChangeEvent(event.getSource(), event.getPropertyName(),
-                        event.getNewValue(), event.getOldValue());
-                changeNodeOrEdgeProperty(invertedEvent);
-            }
-
-            @Override
-            public void redo() throws CannotRedoException
-            {
-                changeNodeOrEdgeProperty(event);
-            }
-
-            private void changeNodeOrEdgeProperty(PropertyChangeEvent e)
-            {
-                PropertyUtils.setProperty(e.getSource(), e.getPropertyName(), e.getNewValue());
-            }
-        };
+        UndoableEdit edit = new PropertyChangeEdit(event);
         capturedEdit.addEdit(edit);
     }
 
+    /**
+     * Edit keeping the old and the new value of a property
+     */
+    private static class PropertyChangeEdit extends AbstractUndoableEdit implements ISizedUndoableEdit
+    {
+        public PropertyChangeEdit(PropertyChangeEvent event)
+        {
+            this.event = event;
+        }
+
+        @Override
+        public void undo() throws CannotUndoException
+        {
+            PropertyChangeEvent invertedEvent = new PropertyChangeEvent(event.getSource(), event.getPropertyName(),
+                    event.getNewValue(), event.getOldValue());
+            changeNodeOrEdgeProperty(invertedEvent);
+        }
+
+        @Override
+        public void redo() throws CannotRedoException
+        {
+            changeNodeOrEdgeProperty(event);
+        }
+
+        @Override
+        public long getEstimatedSize()
+        {
+            return BoundedUndoManager.EDIT_SIZE + BoundedUndoManager.estimateValueSize(event.getOldValue())
+                    + BoundedUndoManager.estimateValueSize(event.getNewValue());
+        }
+
+        private void changeNodeOrEdgeProperty(PropertyChangeEvent e)
+        {
+            PropertyUtils.setProperty(e.getSource(), e.getPropertyName(), e.getNewValue());
+        }
+
+        private final PropertyChangeEvent event;
+    }
+
 }
@@ -79,6 +79,7 @@ public class UndoRedoOnRemoveBehavior extends AbstractEditorPartBehavior
         edgesReallyRemoved.removeAll(edgesOnGraphAfterAction);
 
         this.compoundBehavior.startHistoryCapture();
+        this.compoundBehavior.addChangedElements(nodesReallyRemoved, edgesReallyRemoved);
         CompoundEdit capturedEdit = this.compoundBehavior.getCurrentCapturedEdit();
 
         for (final IEdge aSelectedEdge : edgesReallyRemoved)
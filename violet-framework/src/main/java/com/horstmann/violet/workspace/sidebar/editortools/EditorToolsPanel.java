@@ -24,6 +24,9 @@ package com.horstmann.violet.workspace.sidebar.editortools;
 import java.awt.Component;
 import java.awt.event.ActionEvent;
 import java.awt.event.ActionListener;
+import java.awt.event.MouseAdapter;
+import java.awt.event.MouseEvent;
+import java.text.MessageFormat;
 import java.util.List;
 
 import javax.swing.JButton;
@@ -119,6 +122,36 @@ public class EditorToolsPanel extends JPanel implements ISideBarElement
                 }
             }
         });        
+        this.undoTooltip = this.bUndo.getToolTipText();
+        this.redoTooltip = this.bRedo.getToolTipText();
+        MouseAdapter historyTooltipUpdater = new MouseAdapter()
+        {
+            @Override
+            public void mouseEntered(MouseEvent e)
+            {
+                updateHistoryTooltips();
+            }
+        };
+        this.bUndo.addMouseListener(historyTooltipUpdater);
+        this.bRedo.addMouseListener(historyTooltipUpdater);
+    }
+
+    /**
+     * Shows the size of the undo history of the current diagram in the undo and redo tooltips
+     */
+    private void updateHistoryTooltips()
+    {
+        UndoRedoCompoundBehavior undoRedoBehavior = this.workspace != null ? getUndoRedoBehavior() : null;
+        if (undoRedoBehavior == null)
+        {
+            this.bUndo.setToolTipText(this.undoTooltip);
+            this.bRedo.setToolTipText(this.redoTooltip);
+            return;
+        }
+        String history = MessageFormat.format(this.historyTooltip, undoRedoBehavior.getHistoryCount(),
+                (undoRedoBehavior.getHistorySize() + 1023) / 1024);
+        this.bUndo.setToolTipText(this.undoTooltip + " " + history);
+        this.bRedo.setToolTipText(this.redoTooltip + " " + history);
     }
     
     /**
@@ -266,5 +299,11 @@ public class EditorToolsPanel extends JPanel implements ISideBarElement
     private JButton bPaste;
     @ResourceBundleBean(key = "title.standardbuttons.text")
     private String title;
+    @ResourceBundleBean(key = "history.tooltip")
+    private String historyTooltip;
+
+    /** Tooltips of the undo and redo buttons without history details */
+    private String undoTooltip;
+    private String redoTooltip;
     
 }
@@ -0,0 +1,164 @@
+package com.horstmann.violet.framework.file;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.awt.geom.Point2D;
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.After;
+import org.junit.AfterClass;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import com.horstmann.violet.framework.dialog.DialogFactory;
+import com.horstmann.violet.framework.dialog.DialogFactoryMode;
+import com.horstmann.violet.framework.file.chooser.IFileChooserService;
+import com.horstmann.violet.framework.file.naming.ExtensionFilter;
+import com.horstmann.violet.framework.file.persistence.IFilePersistenceService;
+import com.horstmann.violet.framework.file.persistence.IFileReader;
+import com.horstmann.violet.framework.file.persistence.IFileWriter;
+import com.horstmann.violet.framework.file.persistence.JFileReader;
+import com.horstmann.violet.framework.file.persistence.JFileWriter;
+import com.horstmann.violet.framework.file.persistence.XStreamBasedPersistenceService;
+import com.horstmann.violet.framework.injection.bean.ManiocFramework.BeanFactory;
+import com.horstmann.violet.framework.injection.bean.ManiocFramework.ManiocException;
+import com.horstmann.violet.framework.injection.bean.ManiocFramework.ManagedBean;
+import com.horstmann.violet.product.diagram.abstracts.AbstractGraph;
+import com.horstmann.violet.product.diagram.abstracts.edge.IEdge;
+import com.horstmann.violet.product.diagram.abstracts.node.INode;
+import com.horstmann.violet.product.diagram.common.edge.NoteEdge;
+import com.horstmann.violet.product.diagram.common.node.NoteNode;
+
+public class GraphFileTest
+{
+    private static String userHome;
+
+    private static File directory;
+
+    private static File savedFile;
+
+    @BeforeClass
+    public static void setUpBeans() throws IOException
+    {
+        // Backups are written in the user home
+        directory = File.createTempFile("graphfile", "");
+        directory.delete();
+        new File(directory, "VioletUML").mkdirs();
+        userHome = System.getProperty("user.home");
+        System.setProperty("user.home", directory.getAbsolutePath());
+
+        registerOnce(DialogFactory.class, new DialogFactory(DialogFactoryMode.INTERNAL));
+        BeanFactory.getFactory().register(IFilePersistenceService.class, new XStreamBasedPersistenceService());
+        BeanFactory.getFactory().register(IFileChooserService.class, new LocalFileChooserService());
+    }
+
+    /**
+     * Test classes share the bean factory when they run in the same JVM
+     */
+    private static <T> void registerOnce(Class<T> classType, T bean)
+    {
+        try
+        {
+            BeanFactory.getFactory().register(classType, bean);
+        }
+        catch (ManiocException e)
+        {
+            // Already registered by another test
+        }
+    }
+
+    @AfterClass
+    public static void restoreUserHome()
+    {
+        System.setProperty("user.home", userHome);
+    }
+
+    @Before
+    public void setUp()
+    {
+        savedFile = new File(directory, "diagram.violet.html");
+        savedFile.delete();
+    }
+
+    @After
+    public void tearDown()
+    {
+        savedFile.delete();
+    }
+
+    @Test
+    public void testSaveToLocalFile()
+    {
+        GraphFile graphFile = new GraphFile(TestingGraph.class);
+        graphFile.getGraph().addNode(new NoteNode(), new Point2D.Double(10, 10));
+        graphFile.saveToNewLocation();
+        assertTrue(graphFile.waitForPendingSaves());
+        long firstLength = savedFile.length();
+        assertTrue(firstLength > 0);
+
+        // The file now has a location, so it is replaced directly
+        graphFile.getGraph().addNode(new NoteNode(), new Point2D.Double(100, 10));
+        graphFile.setSaveRequired();
+        graphFile.save();
+        assertTrue(graphFile.waitForPendingSaves());
+        assertFalse(graphFile.isSaveRequired());
+        assertTrue(savedFile.length() > firstLength);
+    }
+
+    public static class TestingGraph extends AbstractGraph
+    {
+        @Override
+        public List<INode> getNodePrototypes()
+        {
+            List<INode> prototypes = new ArrayList<INode>();
+            prototypes.add(new NoteNode());
+            return prototypes;
+        }
+
+        @Override
+        public List<IEdge> getEdgePrototypes()
+        {
+            List<IEdge> prototypes = new ArrayList<IEdge>();
+            prototypes.add(new NoteEdge());
+            return prototypes;
+        }
+    }
+
+    /**
+     * Always chooses the same local file
+     */
+    @ManagedBean(registeredManually=true)
+    private static class LocalFileChooserService implements IFileChooserService
+    {
+        public boolean isWebStart()
+        {
+            return false;
+        }
+
+        public IFileReader chooseAndGetFileReader(ExtensionFilter... extensions) throws IOException
+        {
+            return new JFileReader(savedFile);
+        }
+
+        public IFileReader getFileReader(IFile file) throws IOException
+        {
+            return new JFileReader(savedFile);
+        }
+
+        public IFileWriter chooseAndGetFileWriter(ExtensionFilter... extensions) throws IOException
+        {
+            return new JFileWriter(savedFile);
+        }
+
+        public IFileWriter getFileWriter(IFile file) throws IOException
+        {
+            return new JFileWriter(savedFile);
+        }
+    }
+
+}
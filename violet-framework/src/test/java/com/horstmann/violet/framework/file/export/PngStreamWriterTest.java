@@ -0,0 +1,79 @@
+package com.horstmann.violet.framework.file.export;
+
+import static org.junit.Assert.assertEquals;
+
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.util.Random;
+
+import javax.imageio.ImageIO;
+
+import org.junit.Test;
+
+public class PngStreamWriterTest
+{
+    private static BufferedImage writeAndRead(int[] pixels, int width, int height, int rowsPerWrite) throws Exception
+    {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        PngStreamWriter writer = new PngStreamWriter(out, width, height);
+        for (int y = 0; y < height; y += rowsPerWrite)
+        {
+            writer.writeRows(pixels, y * width, width, Math.min(rowsPerWrite, height - y));
+        }
+        writer.finish();
+        return ImageIO.read(new ByteArrayInputStream(out.toByteArray()));
+    }
+
+    private static void assertPixels(int[] pixels, int width, int height, BufferedImage image)
+    {
+        assertEquals(width, image.getWidth());
+        assertEquals(height, image.getHeight());
+        for (int y = 0; y < height; y++)
+        {
+            for (int x = 0; x < width; x++)
+            {
+                assertEquals(pixels[y * width + x] & 0xFFFFFF, image.getRGB(x, y) & 0xFFFFFF);
+            }
+        }
+    }
+
+    @Test
+    public void testRandomPixels() throws Exception
+    {
+        int width = 301;
+        int height = 97;
+        int[] pixels = new int[width * height];
+        Random random = new Random(1);
+        for (int i = 0; i < pixels.length; i++)
+        {
+            pixels[i] = random.nextInt();
+        }
+        assertPixels(pixels, width, height, writeAndRead(pixels, width, height, 10));
+    }
+
+    @Test
+    public void testGradientAndFlatRows() throws Exception
+    {
+        // Rows which are best filtered with each filter
+        int width = 200;
+        int height = 60;
+        int[] pixels = new int[width * height];
+        for (int y = 0; y < height; y++)
+        {
+            for (int x = 0; x < width; x++)
+            {
+                pixels[y * width + x] = y < 20 ? 0xFFFFFF : (y < 40 ? (x << 16) | (x << 8) | x : (y << 8) | x);
+            }
+        }
+        assertPixels(pixels, width, height, writeAndRead(pixels, width, height, height));
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void testMissingRows() throws Exception
+    {
+        PngStreamWriter writer = new PngStreamWriter(new ByteArrayOutputStream(), 10, 10);
+        writer.writeRows(new int[100], 0, 10, 5);
+        writer.finish();
+    }
+}
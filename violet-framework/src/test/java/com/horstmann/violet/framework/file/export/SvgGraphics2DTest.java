@@ -0,0 +1,102 @@
+package com.horstmann.violet.framework.file.export;
+
+import static org.junit.Assert.assertEquals;
+
+import java.awt.BasicStroke;
+import java.awt.Color;
+import java.awt.Font;
+import java.awt.RenderingHints;
+import java.awt.geom.Rectangle2D;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+
+import javax.xml.parsers.DocumentBuilderFactory;
+
+import org.junit.Test;
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import org.w3c.dom.NodeList;
+
+import com.horstmann.violet.product.diagram.property.text.DisplayTextLayout;
+
+public class SvgGraphics2DTest
+{
+    private static Document parse(ByteArrayOutputStream out) throws Exception
+    {
+        return DocumentBuilderFactory.newInstance().newDocumentBuilder().parse(new ByteArrayInputStream(out.toByteArray()));
+    }
+
+    @Test
+    public void testSharedStyles() throws Exception
+    {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        SvgGraphics2D g2 = new SvgGraphics2D(out, 200, 100);
+        g2.setColor(Color.RED);
+        g2.fillRect(0, 0, 10, 10);
+        g2.translate(20.5, 0);
+        g2.fill(new Rectangle2D.Double(0, 0, 10, 10));
+        g2.setColor(Color.BLACK);
+        g2.setStroke(new BasicStroke(2));
+        g2.drawLine(0, 0, 30, 40);
+        g2.finish();
+
+        Document document = parse(out);
+        NodeList paths = document.getElementsByTagName("path");
+        assertEquals(3, paths.getLength());
+        Element first = (Element) paths.item(0);
+        Element second = (Element) paths.item(1);
+        Element third = (Element) paths.item(2);
+        assertEquals(first.getAttribute("class"), second.getAttribute("class"));
+        assertEquals("M20.5 0L30.5 0L30.5 10L20.5 10L20.5 0Z", second.getAttribute("d"));
+        assertEquals("M20.5 0L50.5 40", third.getAttribute("d"));
+        String styles = document.getElementsByTagName("style").item(0).getTextContent().trim();
+        assertEquals(".s0{fill:#ff0000;stroke:none}\n.s1{fill:none;stroke:#000000;stroke-width:2;stroke-linecap:square}", styles);
+    }
+
+    @Test
+    public void testText() throws Exception
+    {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        SvgGraphics2D g2 = new SvgGraphics2D(out, 200, 100);
+        g2.setFont(new Font(Font.SANS_SERIF, Font.BOLD, 12));
+        g2.drawString("a < b & \u00e9t\u00e9", 10, 20);
+        g2.drawImage(new BufferedImage(4, 4, BufferedImage.TYPE_INT_ARGB), 5, 5, null);
+        g2.finish();
+
+        Document document = parse(out);
+        Element text = (Element) document.getElementsByTagName("text").item(0);
+        assertEquals("a < b & \u00e9t\u00e9", text.getTextContent());
+        assertEquals("10", text.getAttribute("x"));
+        assertEquals(1, document.getElementsByTagName("image").getLength());
+        String styles = document.getElementsByTagName("style").item(0).getTextContent().trim();
+        assertEquals(".s0{fill:#000000;stroke:none;font-family:sans-serif;font-size:12px;font-weight:bold}", styles);
+    }
+
+    @Test
+    public void testDisplayTextIsWrittenAsText() throws Exception
+    {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        SvgGraphics2D g2 = new SvgGraphics2D(out, 200, 100);
+        g2.setRenderingHints(new RenderingHints(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON));
+        DisplayTextLayout layout = new DisplayTextLayout("<b>bold</b> plain", new Font(Font.SANS_SERIF, Font.PLAIN, 12));
+        layout.draw(g2, 0, 0);
+        g2.finish();
+
+        Document document = parse(out);
+        NodeList texts = document.getElementsByTagName("text");
+        assertEquals(2, texts.getLength());
+        assertEquals("bold", texts.item(0).getTextContent());
+        assertEquals(0, document.getElementsByTagName("path").getLength());
+    }
+
+    @Test
+    public void testFormat()
+    {
+        assertEquals("0", SvgGraphics2D.format(0.001));
+        assertEquals("-1.5", SvgGraphics2D.format(-1.5));
+        assertEquals("3.14", SvgGraphics2D.format(Math.PI));
+        assertEquals("0.05", SvgGraphics2D.format(0.05));
+        assertEquals("100", SvgGraphics2D.format(99.999));
+    }
+}
@@ -0,0 +1,115 @@
+package com.horstmann.violet.framework.file.persistence;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+
+import org.junit.Test;
+
+public class CompactBinaryFormatTest
+{
+    private static CompactBinaryReader writeAndRead(String... values)
+    {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        CompactBinaryWriter writer = new CompactBinaryWriter(out);
+        writer.startNode("graph");
+        writer.addAttribute("id", "1");
+        for (String value : values)
+        {
+            writer.startNode("node");
+            writer.addAttribute("x", value);
+            writer.setValue(value);
+            writer.endNode();
+        }
+        writer.endNode();
+        writer.close();
+        return new CompactBinaryReader(new ByteArrayInputStream(out.toByteArray()));
+    }
+
+    @Test
+    public void testValues() throws Exception
+    {
+        String[] values = {
+                "", "text", "0", "-12", "007", "-0", "12345678901234567890", "80.0", "-30.0", "0.5", "1.0E10",
+                "14f3f7a8-4363-41ed-a331-2c12dcc2901a", "14F3F7A8-4363-41ED-A331-2C12DCC2901A", "text", "\u00e9t\u00e9"
+        };
+        CompactBinaryReader reader = writeAndRead(values);
+
+        assertEquals("graph", reader.getNodeName());
+        assertEquals("1", reader.getAttribute("id"));
+        for (String value : values)
+        {
+            assertTrue(reader.hasMoreChildren());
+            reader.moveDown();
+            assertEquals("node", reader.getNodeName());
+            assertEquals(value, reader.getAttribute("x"));
+            assertEquals(value, reader.getValue());
+            assertFalse(reader.hasMoreChildren());
+            reader.moveUp();
+        }
+        assertFalse(reader.hasMoreChildren());
+    }
+
+    @Test
+    public void testAttributes() throws Exception
+    {
+        CompactBinaryReader reader = writeAndRead("10.0");
+        reader.moveDown();
+
+        assertEquals(1, reader.getAttributeCount());
+        assertEquals("x", reader.getAttributeName(0));
+        assertEquals("10.0", reader.getAttribute(0));
+        assertNull(reader.getAttribute("y"));
+    }
+
+    @Test
+    public void testMoveUpSkipsChildren() throws Exception
+    {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        CompactBinaryWriter writer = new CompactBinaryWriter(out);
+        writer.startNode("graph");
+        writer.startNode("nodes");
+        writer.startNode("node");
+        writer.endNode();
+        writer.startNode("node");
+        writer.endNode();
+        writer.endNode();
+        writer.startNode("edges");
+        writer.endNode();
+        writer.endNode();
+        writer.close();
+        CompactBinaryReader reader = new CompactBinaryReader(new ByteArrayInputStream(out.toByteArray()));
+
+        reader.moveDown();
+        assertEquals("nodes", reader.getNodeName());
+        reader.moveUp();
+        assertEquals("graph", reader.getNodeName());
+        reader.moveDown();
+        assertEquals("edges", reader.getNodeName());
+        reader.moveUp();
+        assertFalse(reader.hasMoreChildren());
+    }
+
+    @Test
+    public void testRepeatedStringsAreWrittenOnce() throws Exception
+    {
+        ByteArrayOutputStream once = new ByteArrayOutputStream();
+        CompactBinaryWriter writer = new CompactBinaryWriter(once);
+        writer.startNode("aLongNodeName");
+        writer.endNode();
+        writer.close();
+        ByteArrayOutputStream twice = new ByteArrayOutputStream();
+        writer = new CompactBinaryWriter(twice);
+        writer.startNode("aLongNodeName");
+        writer.startNode("aLongNodeName");
+        writer.endNode();
+        writer.endNode();
+        writer.close();
+
+        assertTrue(twice.size() - once.size() < "aLongNodeName".length());
+    }
+}
@@ -0,0 +1,210 @@
+package com.horstmann.violet.framework.file.persistence;
+
+import static org.junit.Assert.assertEquals;
+
+import java.awt.geom.Point2D;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.horstmann.violet.product.diagram.abstracts.IGraph;
+import com.horstmann.violet.product.diagram.abstracts.edge.IEdge;
+import com.horstmann.violet.product.diagram.abstracts.node.INode;
+import com.horstmann.violet.product.diagram.common.edge.NoteEdge;
+import com.horstmann.violet.product.diagram.common.node.NoteNode;
+
+public class EditJournalTest
+{
+    private File journalFile;
+
+    private EditJournal journal;
+
+    private XStreamBasedPersistenceService persistenceService;
+
+    private IGraph graph;
+
+    private NoteNode a;
+
+    private NoteNode b;
+
+    private IEdge ab;
+
+    private byte[] checkpoint;
+
+    @Before
+    public void setUp() throws IOException
+    {
+        journalFile = File.createTempFile("diagram", ".journal");
+        journalFile.delete();
+        journal = new EditJournal(journalFile);
+        persistenceService = new XStreamBasedPersistenceService();
+
+        graph = new XStreamPersistenceBenchmark.BenchmarkGraph();
+        a = createNode("a", 10, 10);
+        b = createNode("b", 200, 10);
+        ab = new NoteEdge();
+        graph.connect(ab, a, new Point2D.Double(0, 0), b, new Point2D.Double(0, 0), null);
+        checkpoint = writeCheckpoint();
+    }
+
+    @After
+    public void tearDown()
+    {
+        journalFile.delete();
+    }
+
+    @Test
+    public void testReplayGivesTheLiveGraph() throws IOException
+    {
+        NoteNode c = createNode("c", 300, 200);
+        journalChanges(Arrays.<INode> asList(c), Collections.<IEdge> emptyList());
+
+        a.translate(50, 100);
+        journalChanges(Arrays.<INode> asList(a), Collections.<IEdge> emptyList());
+
+        IEdge ac = new NoteEdge();
+        graph.connect(ac, a, new Point2D.Double(0, 0), c, new Point2D.Double(0, 0), null);
+        IEdge bc = new NoteEdge();
+        graph.connect(bc, b, new Point2D.Double(0, 0), c, new Point2D.Double(0, 0), null);
+        journalChanges(Collections.<INode> emptyList(), Arrays.asList(ac, bc));
+
+        graph.removeNode(b);
+        journalChanges(Arrays.<INode> asList(b), Arrays.asList(ab, bc));
+
+        IGraph recoveredGraph = readCheckpoint();
+        assertEquals(4, journal.replay(recoveredGraph));
+        assertEquals(describe(graph), describe(recoveredGraph));
+    }
+
+    @Test
+    public void testReplayOntoCheckpointIncludingRecords() throws IOException
+    {
+        // Crash after the checkpoint is written, but before the journal is cleared
+        NoteNode c = createNode("c", 300, 200);
+        journalChanges(Arrays.<INode> asList(c), Collections.<IEdge> emptyList());
+        a.translate(50, 100);
+        journalChanges(Arrays.<INode> asList(a), Collections.<IEdge> emptyList());
+        checkpoint = writeCheckpoint();
+
+        IGraph recoveredGraph = readCheckpoint();
+        assertEquals(2, journal.replay(recoveredGraph));
+        assertEquals(describe(graph), describe(recoveredGraph));
+    }
+
+    @Test
+    public void testTruncatedLastRecordIsSkipped() throws IOException
+    {
+        String expected = moveNodesAndJournalTwice();
+        RandomAccessFile file = new RandomAccessFile(journalFile, "rw");
+        file.setLength(file.length() - 3);
+        file.close();
+
+        IGraph recoveredGraph = readCheckpoint();
+        assertEquals(1, journal.replay(recoveredGraph));
+        assertEquals(expected, describe(recoveredGraph));
+    }
+
+    @Test
+    public void testCorruptedLastRecordIsSkipped() throws IOException
+    {
+        String expected = moveNodesAndJournalTwice();
+        RandomAccessFile file = new RandomAccessFile(journalFile, "rw");
+        file.seek(file.length() - 1);
+        int lastByte = file.read();
+        file.seek(file.length() - 1);
+        file.write(lastByte ^ 0xFF);
+        file.close();
+
+        IGraph recoveredGraph = readCheckpoint();
+        assertEquals(1, journal.replay(recoveredGraph));
+        assertEquals(expected, describe(recoveredGraph));
+    }
+
+    @Test
+    public void testNothingToReplayAfterCheckpoint() throws IOException
+    {
+        a.translate(50, 100);
+        journalChanges(Arrays.<INode> asList(a), Collections.<IEdge> emptyList());
+        checkpoint = writeCheckpoint();
+        journal.clear();
+
+        IGraph recoveredGraph = readCheckpoint();
+        assertEquals(0, journal.replay(recoveredGraph));
+        assertEquals(describe(graph), describe(recoveredGraph));
+    }
+
+    /**
+     * Journals a move of a, then a move of b
+     *
+     * @return the graph description after the first move only
+     */
+    private String moveNodesAndJournalTwice() throws IOException
+    {
+        a.translate(50, 100);
+        journalChanges(Arrays.<INode> asList(a), Collections.<IEdge> emptyList());
+        String afterFirstRecord = describe(graph);
+        b.translate(0, 300);
+        journalChanges(Arrays.<INode> asList(b), Collections.<IEdge> emptyList());
+        return afterFirstRecord;
+    }
+
+    private NoteNode createNode(String text, double x, double y)
+    {
+        NoteNode node = new NoteNode();
+        node.getText().setText(text);
+        graph.addNode(node, new Point2D.Double(x, y));
+        return node;
+    }
+
+    private void journalChanges(Collection<INode> nodes, Collection<IEdge> edges) throws IOException
+    {
+        journal.append(journal.createRecord(graph, nodes, edges));
+    }
+
+    private byte[] writeCheckpoint()
+    {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        persistenceService.write(graph, out);
+        return out.toByteArray();
+    }
+
+    private IGraph readCheckpoint() throws IOException
+    {
+        return persistenceService.read(new ByteArrayInputStream(checkpoint));
+    }
+
+    /**
+     * Ids change when elements are replayed, so nodes are described by their text and location, and edges by the
+     * texts of their nodes
+     *
+     * @return sorted description of the graph elements
+     */
+    private static String describe(IGraph aGraph)
+    {
+        List<String> elements = new ArrayList<String>();
+        for (INode aNode : aGraph.getAllNodes())
+        {
+            Point2D location = aNode.getLocation();
+            elements.add(((NoteNode) aNode).getText().toEdit() + "@" + location.getX() + "," + location.getY());
+        }
+        for (IEdge anEdge : aGraph.getAllEdges())
+        {
+            elements.add(((NoteNode) anEdge.getStartNode()).getText().toEdit() + "->"
+                    + ((NoteNode) anEdge.getEndNode()).getText().toEdit());
+        }
+        Collections.sort(elements);
+        return elements.toString();
+    }
+
+}
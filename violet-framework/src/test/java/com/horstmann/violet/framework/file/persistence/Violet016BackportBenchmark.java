@@ -0,0 +1,191 @@
+package com.horstmann.violet.framework.file.persistence;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.util.HashMap;
+import java.util.Hashtable;
+import java.util.Map;
+
+/**
+ * Compares converting Violet 0.16 files of 1, 10 and 50 MB with a replaceAll() call per mapping entry on the whole
+ * content (as it was done before) and with the single pass streams of Violet016BackportFormatService. 100 mapping
+ * entries are registered, as plugins would do. Prints time per operation and throughput.
+ *
+ * Not a unit test : run it with its main() method (with a heap large enough for the biggest file, -Xmx1g for example).
+ */
+public class Violet016BackportBenchmark
+{
+    public static void main(String[] args) throws Exception
+    {
+        final Map<String, String> mapping = new HashMap<String, String>();
+        for (int i = 0; i < MAPPING_SIZE; i++)
+        {
+            mapping.put("com.horstmann.violet.Element" + i, "com.horstmann.violet.product.diagram.plugin" + (i % 7)
+                    + ".Element" + i);
+        }
+        Violet016BackportFormatService.addViolet016CompatibilityEntries(mapping);
+        final Map<String, String> reversedMapping = new HashMap<String, String>();
+        for (Map.Entry<String, String> entry : mapping.entrySet())
+        {
+            reversedMapping.put(entry.getValue(), entry.getKey());
+        }
+
+        // Warm up
+        byte[] warmUpContent = createContent(1024 * 1024);
+        for (int i = 0; i < 5; i++)
+        {
+            readWithReplaceAll(warmUpContent, mapping);
+            read(warmUpContent);
+            writeWithReplaceAll(warmUpContent, reversedMapping);
+            write(warmUpContent);
+        }
+
+        for (int size : new int[] {
+                1, 10, 50
+        })
+        {
+            final byte[] content = createContent(size * 1024 * 1024);
+            final byte[] convertedContent = read(content);
+            System.out.println(String.format("%d MB", size));
+            measure("  read, replaceAll per entry ", content.length, new Operation()
+            {
+                public void run() throws Exception
+                {
+                    readWithReplaceAll(content, mapping);
+                }
+            });
+            measure("  read, single pass          ", content.length, new Operation()
+            {
+                public void run() throws Exception
+                {
+                    read(content);
+                }
+            });
+            measure("  write, replaceAll per entry", content.length, new Operation()
+            {
+                public void run() throws Exception
+                {
+                    writeWithReplaceAll(convertedContent, reversedMapping);
+                }
+            });
+            measure("  write, single pass         ", content.length, new Operation()
+            {
+                public void run() throws Exception
+                {
+                    write(convertedContent);
+                }
+            });
+        }
+    }
+
+    /**
+     * @param size
+     * @return XMLEncoder like content using old class names
+     */
+    private static byte[] createContent(int size) throws Exception
+    {
+        StringBuilder content = new StringBuilder();
+        content.append("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n<java version=\"1.6.0\" class=\"java.beans.XMLDecoder\">\n");
+        content.append(" <object class=\"com.horstmann.violet.ClassDiagramGraph\">\n");
+        int i = 0;
+        while (content.length() < size)
+        {
+            content.append("  <void method=\"addNode\">\n   <object class=\"com.horstmann.violet.Element");
+            content.append(i % MAPPING_SIZE).append("\" id=\"Element").append(i).append("\">\n");
+            content.append("    <void property=\"name\">\n     <void property=\"text\">\n      <string>com.horstmann.violet n");
+            content.append(i).append("</string>\n     </void>\n    </void>\n   </object>\n");
+            content.append("   <object class=\"java.awt.geom.Point2D$Double\">\n    <void method=\"setLocation\">\n     <double>");
+            content.append(i % 100 * 80).append(".0</double>\n     <double>").append(i / 100 * 60).append(".0</double>\n");
+            content.append("    </void>\n   </object>\n  </void>\n");
+            i++;
+        }
+        content.append(" </object>\n</java>\n");
+        return content.toString().getBytes("UTF-8");
+    }
+
+    private static byte[] read(byte[] content) throws Exception
+    {
+        InputStream in = Violet016BackportFormatService.convertFromViolet016(new ByteArrayInputStream(content));
+        ByteArrayOutputStream out = new ByteArrayOutputStream(content.length);
+        byte[] buffer = new byte[8192];
+        int count = in.read(buffer);
+        while (count != -1)
+        {
+            out.write(buffer, 0, count);
+            count = in.read(buffer);
+        }
+        in.close();
+        return out.toByteArray();
+    }
+
+    private static byte[] write(byte[] content) throws Exception
+    {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(content.length);
+        OutputStream filter = Violet016BackportFormatService.convertToViolet016(out);
+        // XMLEncoder writes through an 8 KB buffer
+        for (int i = 0; i < content.length; i += 8192)
+        {
+            filter.write(content, i, Math.min(8192, content.length - i));
+        }
+        filter.close();
+        return out.toByteArray();
+    }
+
+    private static byte[] readWithReplaceAll(byte[] content, Map<String, String> mapping) throws Exception
+    {
+        InputStreamReader reader = new InputStreamReader(new ByteArrayInputStream(content), "UTF-8");
+        StringBuffer buffer = new StringBuffer();
+        char[] chars = new char[1024];
+        int count = reader.read(chars, 0, chars.length);
+        while (count != -1)
+        {
+            buffer.append(chars, 0, count);
+            count = reader.read(chars, 0, chars.length);
+        }
+        reader.close();
+        return replaceAll(buffer.toString(), mapping).getBytes("UTF-8");
+    }
+
+    private static byte[] writeWithReplaceAll(byte[] content, Map<String, String> mapping) throws Exception
+    {
+        ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+        buffer.write(content);
+        return replaceAll(buffer.toString("UTF-8"), mapping).getBytes("UTF-8");
+    }
+
+    private static String replaceAll(String input, Map<String, String> mapping)
+    {
+        Map<String, String> replaceMap = new Hashtable<String, String>(mapping);
+        for (Map.Entry<String, String> entry : replaceMap.entrySet())
+        {
+            input = input.replaceAll(entry.getKey(), entry.getValue());
+        }
+        return input;
+    }
+
+    private static void measure(String label, int length, Operation operation) throws Exception
+    {
+        int iterations = Math.max(3, 50 * 1024 * 1024 / length);
+        long totalTime = 0;
+        for (int i = 0; i < iterations; i++)
+        {
+            System.gc();
+            long start = System.nanoTime();
+            operation.run();
+            totalTime += System.nanoTime() - start;
+        }
+        long time = totalTime / iterations;
+        System.out.println(String.format("%s: %8.2f ms/op, %7.1f MB/s", label, time / 1000000.0, length * 1000.0 / 1024 / 1024
+                / (time / 1000000.0)));
+    }
+
+    private interface Operation
+    {
+        void run() throws Exception;
+    }
+
+    private static final int MAPPING_SIZE = 100;
+}
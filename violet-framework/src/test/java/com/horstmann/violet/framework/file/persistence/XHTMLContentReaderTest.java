@@ -0,0 +1,75 @@
+package com.horstmann.violet.framework.file.persistence;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.StringReader;
+
+import org.junit.Test;
+
+public class XHTMLContentReaderTest
+{
+    private static String readContent(String html) throws IOException
+    {
+        Reader reader = new XHTMLContentReader(new StringReader(html));
+        StringBuilder content = new StringBuilder();
+        char[] buffer = new char[3];
+        int count = reader.read(buffer, 0, buffer.length);
+        while (count != -1)
+        {
+            content.append(buffer, 0, count);
+            count = reader.read(buffer, 0, buffer.length);
+        }
+        reader.close();
+        return content.toString();
+    }
+
+    @Test
+    public void testCDataContent() throws Exception
+    {
+        String html = "<HTML><HEAD><SCRIPT type=\"text/javascript\">var a = 1;</SCRIPT></HEAD>\n<BODY>\n"
+                + "\t<SCRIPT id=\"content\" type=\"text/xml\"><![CDATA[<Graph id=\"1\">\n</Graph>]]></SCRIPT>\n"
+                + "\t<IMG src=\"data:image/png;base64,AAAA\" />\n</BODY></HTML>";
+
+        assertEquals("<Graph id=\"1\">\n</Graph>", readContent(html));
+    }
+
+    @Test
+    public void testCommentContent() throws Exception
+    {
+        String html = "<html><body><script type='text/xml' id='content'>\n<!-- <Graph/> --></script></body></html>";
+
+        assertEquals("<Graph/> ", readContent(html));
+    }
+
+    @Test
+    public void testPlainContent() throws Exception
+    {
+        String html = "<html><body><script id=content> <Graph/></Script></body></html>";
+
+        assertEquals("<Graph/>", readContent(html));
+    }
+
+    @Test
+    public void testEndMarkerAfterBracket() throws Exception
+    {
+        String html = "<SCRIPT id=\"content\"><![CDATA[<a>]</a>]]]></SCRIPT>";
+
+        assertEquals("<a>]</a>]", readContent(html));
+    }
+
+    @Test
+    public void testOtherIds() throws Exception
+    {
+        String html = "<SCRIPT id=\"contents\">a</SCRIPT><SCRIPT id=\"content\">b</SCRIPT>";
+
+        assertEquals("b", readContent(html));
+    }
+
+    @Test
+    public void testNoContent() throws Exception
+    {
+        assertEquals("", readContent("<HTML><BODY>text</BODY></HTML>"));
+    }
+}
@@ -0,0 +1,129 @@
+package com.horstmann.violet.framework.file.persistence;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.awt.geom.Point2D;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+import javax.imageio.ImageIO;
+
+import org.apache.commons.codec.binary.Base64;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import com.horstmann.violet.framework.dialog.DialogFactory;
+import com.horstmann.violet.framework.dialog.DialogFactoryMode;
+import com.horstmann.violet.framework.injection.bean.ManiocFramework.BeanFactory;
+import com.horstmann.violet.framework.injection.bean.ManiocFramework.BeanInjector;
+import com.horstmann.violet.framework.injection.bean.ManiocFramework.ManagedBean;
+import com.horstmann.violet.framework.injection.bean.ManiocFramework.ManiocException;
+import com.horstmann.violet.framework.theme.ClassicMetalTheme;
+import com.horstmann.violet.framework.theme.ITheme;
+import com.horstmann.violet.framework.theme.ThemeManager;
+import com.horstmann.violet.framework.userpreferences.IUserPreferencesDao;
+import com.horstmann.violet.framework.userpreferences.PreferencesConstant;
+import com.horstmann.violet.framework.userpreferences.UserPreferencesService;
+import com.horstmann.violet.product.diagram.abstracts.IGraph;
+import com.horstmann.violet.product.diagram.common.node.NoteNode;
+
+public class XHTMLPersistenceServiceTest
+{
+    private static final String IMAGE_PREFIX = "src=\"data:image/png;base64,";
+
+    private static UserPreferencesService userPreferencesService;
+
+    @BeforeClass
+    public static void setUpBeans()
+    {
+        registerOnce(IUserPreferencesDao.class, new MemoryUserPreferencesDao());
+        userPreferencesService = BeanFactory.getFactory().getBean(UserPreferencesService.class);
+        // Needed by the version checker
+        registerOnce(DialogFactory.class, new DialogFactory(DialogFactoryMode.INTERNAL));
+        // Needed to draw the image
+        ThemeManager themeManager = new ThemeManager();
+        ITheme theme = new ClassicMetalTheme();
+        themeManager.setInstalledThemes(new ArrayList<ITheme>(Arrays.asList(theme)));
+        themeManager.setThemeWithoutLookAndFeel(theme);
+        registerOnce(ThemeManager.class, themeManager);
+    }
+
+    /**
+     * Test classes share the bean factory when they run in the same JVM
+     */
+    private static <T> void registerOnce(Class<T> classType, T bean)
+    {
+        try
+        {
+            BeanFactory.getFactory().register(classType, bean);
+        }
+        catch (ManiocException e)
+        {
+            // Already registered by another test
+        }
+    }
+
+    @Test
+    public void testImageSizeFromPreferences() throws Exception
+    {
+        IGraph graph = new XStreamPersistenceBenchmark.BenchmarkGraph();
+        graph.addNode(new NoteNode(), new Point2D.Double(10, 10));
+        graph.addNode(new NoteNode(), new Point2D.Double(800, 400));
+
+        userPreferencesService.setImageMaxSizeInFiles(100);
+        BufferedImage thumbnail = writeImage(graph);
+        assertEquals(100, Math.max(thumbnail.getWidth(), thumbnail.getHeight()));
+
+        userPreferencesService.setImageMaxSizeInFiles(0);
+        BufferedImage image = writeImage(graph);
+        assertTrue(image.getWidth() > 800);
+    }
+
+    /**
+     * Writes a file with a service set up as the editor does
+     *
+     * @return image embedded in the file
+     */
+    private BufferedImage writeImage(IGraph graph) throws Exception
+    {
+        XHTMLPersistenceService persistenceService = new XHTMLPersistenceService();
+        BeanInjector.getInjector().inject(persistenceService);
+        persistenceService.applyUserPreferences(userPreferencesService);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        persistenceService.write(graph, out);
+
+        String content = out.toString("UTF-8");
+        int start = content.indexOf(IMAGE_PREFIX) + IMAGE_PREFIX.length();
+        String base64Image = content.substring(start, content.indexOf('"', start));
+        return ImageIO.read(new ByteArrayInputStream(Base64.decodeBase64(base64Image)));
+    }
+
+    @ManagedBean(registeredManually=true)
+    private static class MemoryUserPreferencesDao implements IUserPreferencesDao
+    {
+        public String get(PreferencesConstant key, String defval)
+        {
+            String value = this.preferences.get(key.toString());
+            return value != null ? value : defval;
+        }
+
+        public void put(PreferencesConstant key, String value)
+        {
+            this.preferences.put(key.toString(), value);
+        }
+
+        public void reset()
+        {
+            this.preferences.clear();
+        }
+
+        private final Map<String, String> preferences = new HashMap<String, String>();
+    }
+
+}
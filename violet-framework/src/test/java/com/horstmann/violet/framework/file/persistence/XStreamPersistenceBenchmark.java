@@ -0,0 +1,267 @@
+package com.horstmann.violet.framework.file.persistence;
+
+import java.awt.geom.Point2D;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.util.ArrayList;
+import java.util.List;
+
+import com.horstmann.violet.framework.injection.bean.ManiocFramework.BeanFactory;
+import com.horstmann.violet.framework.plugin.IDiagramPlugin;
+import com.horstmann.violet.framework.plugin.PluginRegistry;
+import com.horstmann.violet.product.diagram.abstracts.AbstractGraph;
+import com.horstmann.violet.product.diagram.abstracts.IGraph;
+import com.horstmann.violet.product.diagram.abstracts.edge.IEdge;
+import com.horstmann.violet.product.diagram.abstracts.node.INode;
+import com.horstmann.violet.product.diagram.common.edge.NoteEdge;
+import com.horstmann.violet.product.diagram.common.node.NoteNode;
+import com.thoughtworks.xstream.XStream;
+import com.thoughtworks.xstream.io.xml.DomDriver;
+
+/**
+ * Compares saving and loading diagrams of 1000, 10000 and 50000 elements (half nodes, half edges) with a new DOM based
+ * XStream configured on each call (as it was done before) and with the shared StAX based XStream of
+ * XStreamBasedPersistenceService. Prints time per operation, throughput and heap used above the heap before the
+ * operation.
+ *
+ * Not a unit test : run it with its main() method (with a heap large enough for the biggest diagram, -Xmx1g for
+ * example).
+ */
+public class XStreamPersistenceBenchmark
+{
+    public static void main(String[] args) throws Exception
+    {
+        PluginRegistry pluginRegistry = BeanFactory.getFactory().getBean(PluginRegistry.class);
+        pluginRegistry.register(new BenchmarkPlugin());
+        final XStreamBasedPersistenceService service = new XStreamBasedPersistenceService();
+
+        // Warm up
+        IGraph warmUpGraph = createGraph(2000);
+        for (int i = 0; i < 5; i++)
+        {
+            readPerCall(service, writePerCall(service, warmUpGraph));
+            service.read(new ByteArrayInputStream(write(service, warmUpGraph)));
+        }
+
+        for (int size : new int[] {
+                1000, 10000, 50000
+        })
+        {
+            final IGraph graph = createGraph(size);
+            final byte[] content = write(service, graph);
+            System.out.println(String.format("%d elements (%d KB)", size, content.length / 1024));
+            measure("  save, XStream per call ", size, new Operation()
+            {
+                public void run() throws Exception
+                {
+                    writePerCall(service, graph);
+                }
+            });
+            measure("  save, shared XStream   ", size, new Operation()
+            {
+                public void run() throws Exception
+                {
+                    write(service, graph);
+                }
+            });
+            measure("  load, XStream per call ", size, new Operation()
+            {
+                public void run() throws Exception
+                {
+                    readPerCall(service, content);
+                }
+            });
+            measure("  load, shared XStream   ", size, new Operation()
+            {
+                public void run() throws Exception
+                {
+                    service.read(new ByteArrayInputStream(content));
+                }
+            });
+        }
+    }
+
+    private static IGraph createGraph(int size)
+    {
+        AbstractGraph graph = new BenchmarkGraph();
+        List<INode> nodes = new ArrayList<INode>();
+        for (int i = 0; i < size / 2; i++)
+        {
+            INode node = new NoteNode();
+            graph.addNode(node, new Point2D.Double((i % 100) * 80, (i / 100) * 60));
+            nodes.add(node);
+        }
+        for (int i = 0; i < size / 2; i++)
+        {
+            INode startNode = nodes.get(i);
+            INode endNode = nodes.get((i * 7 + 1) % nodes.size());
+            graph.connect(new NoteEdge(), startNode, new Point2D.Double(0, 0), endNode, new Point2D.Double(0, 0), null);
+        }
+        return graph;
+    }
+
+    private static byte[] write(XStreamBasedPersistenceService service, IGraph graph)
+    {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        service.write(graph, out);
+        return out.toByteArray();
+    }
+
+    private static byte[] writePerCall(XStreamBasedPersistenceService service, IGraph graph) throws Exception
+    {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        OutputStreamWriter writer = new OutputStreamWriter(out);
+        XStream xStream = service.getConfiguredXStream(new XStream(new DomDriver("UTF-8")));
+        xStream.toXML(graph, writer);
+        writer.close();
+        return out.toByteArray();
+    }
+
+    private static IGraph readPerCall(XStreamBasedPersistenceService service, byte[] content) throws Exception
+    {
+        InputStreamReader reader = new InputStreamReader(new ByteArrayInputStream(content));
+        XStream xStream = service.getConfiguredXStream(new XStream(new DomDriver("UTF-8")));
+        IGraph graph = (IGraph) xStream.fromXML(reader);
+        for (INode aNode : graph.getAllNodes())
+        {
+            aNode.setGraph(graph);
+        }
+        reader.close();
+        graph.deserializeSupport();
+        return graph;
+    }
+
+    private static void measure(String label, int size, Operation operation) throws Exception
+    {
+        int iterations = Math.max(3, 100000 / size);
+        long peakHeap = 0;
+        long totalTime = 0;
+        for (int i = 0; i < iterations; i++)
+        {
+            System.gc();
+            long usedHeap = resetHeapPeaks();
+            long start = System.nanoTime();
+            operation.run();
+            totalTime += System.nanoTime() - start;
+            peakHeap = Math.max(peakHeap, getHeapPeaks() - usedHeap);
+        }
+        long time = totalTime / iterations;
+        System.out.println(String.format("%s: %7.2f ms/op, %9.0f elements/s, peak heap +%d MB", label, time / 1000000.0, size * 1000000000.0
+                / time, peakHeap / (1024 * 1024)));
+    }
+
+    /**
+     * @return heap used now
+     */
+    private static long resetHeapPeaks()
+    {
+        long used = 0;
+        for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans())
+        {
+            if (pool.getType() == MemoryType.HEAP)
+            {
+                pool.resetPeakUsage();
+                used += pool.getUsage().getUsed();
+            }
+        }
+        return used;
+    }
+
+    /**
+     * @return sum of heap pools peaks since the last reset
+     */
+    private static long getHeapPeaks()
+    {
+        long peak = 0;
+        for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans())
+        {
+            if (pool.getType() == MemoryType.HEAP)
+            {
+                peak += pool.getPeakUsage().getUsed();
+            }
+        }
+        return peak;
+    }
+
+    private interface Operation
+    {
+        void run() throws Exception;
+    }
+
+    public static class BenchmarkGraph extends AbstractGraph
+    {
+        @Override
+        public List<INode> getNodePrototypes()
+        {
+            List<INode> prototypes = new ArrayList<INode>();
+            prototypes.add(new NoteNode());
+            return prototypes;
+        }
+
+        @Override
+        public List<IEdge> getEdgePrototypes()
+        {
+            List<IEdge> prototypes = new ArrayList<IEdge>();
+            prototypes.add(new NoteEdge());
+            return prototypes;
+        }
+    }
+
+    private static class BenchmarkPlugin implements IDiagramPlugin
+    {
+        public String getProvider()
+        {
+            return "benchmark";
+        }
+
+        public String getVersion()
+        {
+            return "1";
+        }
+
+        public String getShortDescription()
+        {
+            return "benchmark";
+        }
+
+        public String getFullDescription()
+        {
+            return "benchmark";
+        }
+
+        public String getName()
+        {
+            return "Benchmark diagram";
+        }
+
+        public String getCategory()
+        {
+            return "benchmark";
+        }
+
+        public String getFileExtension()
+        {
+            return ".benchmark.violet";
+        }
+
+        public String getFileExtensionName()
+        {
+            return "Benchmark diagram";
+        }
+
+        public String getSampleFilePath()
+        {
+            return null;
+        }
+
+        public Class<? extends IGraph> getGraphClass()
+        {
+            return BenchmarkGraph.class;
+        }
+    }
+}
@@ -0,0 +1,51 @@
+package com.horstmann.violet.framework.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.awt.geom.GeneralPath;
+import java.awt.geom.Point2D;
+import java.awt.geom.QuadCurve2D;
+import java.awt.geom.Rectangle2D;
+
+import org.junit.Test;
+
+public class PolylineTest
+{
+    @Test
+    public void testPointsNearSegments()
+    {
+        GeneralPath path = new GeneralPath();
+        path.moveTo(0, 0);
+        path.lineTo(100, 0);
+        path.lineTo(100, 50);
+        Polyline polyline = Polyline.valueOf(path);
+
+        assertEquals(2, polyline.getSegmentCount());
+        assertEquals(new Rectangle2D.Double(0, 0, 100, 50), polyline.getBounds());
+        assertTrue(polyline.isNear(new Point2D.Double(50, 10), 10));
+        assertTrue(polyline.isNear(new Point2D.Double(108, 25), 10));
+        assertFalse(polyline.isNear(new Point2D.Double(50, 11), 10));
+        assertFalse(polyline.isNear(new Point2D.Double(50, 40), 10));
+        assertFalse(polyline.isNear(new Point2D.Double(-20, 0), 10));
+    }
+
+    @Test
+    public void testClosedShape()
+    {
+        Polyline polyline = Polyline.valueOf(new Rectangle2D.Double(0, 0, 100, 100));
+
+        assertEquals(4, polyline.getSegmentCount());
+        assertTrue(polyline.isNear(new Point2D.Double(2, 50), 5));
+        assertFalse(polyline.isNear(new Point2D.Double(50, 50), 5));
+    }
+
+    @Test
+    public void testCurvesAreNotSupported()
+    {
+        assertNull(Polyline.valueOf(new QuadCurve2D.Double(0, 0, 50, 50, 100, 0)));
+    }
+
+}
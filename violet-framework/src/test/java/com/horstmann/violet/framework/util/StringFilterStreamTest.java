@@ -0,0 +1,81 @@
+package com.horstmann.violet.framework.util;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.junit.Test;
+
+public class StringFilterStreamTest
+{
+    private static StringReplacementTrie createTrie()
+    {
+        Map<String, String> replaceMap = new HashMap<String, String>();
+        replaceMap.put("a.Node", "a.b.Node");
+        replaceMap.put("a.NodeEdge", "a.c.Edge");
+        replaceMap.put("a.b", "x");
+        return new StringReplacementTrie(replaceMap);
+    }
+
+    private static String filterOutput(String input, int chunkSize) throws Exception
+    {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        OutputStream filter = new StringFilterOutputStream(out, createTrie());
+        byte[] bytes = input.getBytes("UTF-8");
+        for (int i = 0; i < bytes.length; i += chunkSize)
+        {
+            filter.write(bytes, i, Math.min(chunkSize, bytes.length - i));
+        }
+        filter.close();
+        return out.toString("UTF-8");
+    }
+
+    private static String filterInput(String input) throws Exception
+    {
+        InputStream in = new StringFilterInputStream(new ByteArrayInputStream(input.getBytes("UTF-8")), createTrie());
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        int b = in.read();
+        while (b != -1)
+        {
+            out.write(b);
+            b = in.read();
+        }
+        in.close();
+        return out.toString("UTF-8");
+    }
+
+    @Test
+    public void testReplacementsAreNotFilteredAgain() throws Exception
+    {
+        assertEquals("<a.b.Node/>", filterOutput("<a.Node/>", 100));
+    }
+
+    @Test
+    public void testLongestKeyIsReplaced() throws Exception
+    {
+        assertEquals("a.c.Edge a.b.NodeEdg x", filterOutput("a.NodeEdge a.NodeEdg a.b", 100));
+    }
+
+    @Test
+    public void testKeysSplitBetweenWrites() throws Exception
+    {
+        String input = "a.Nod a.Node \u00e9a.NodeEdge.a.b-a.a.";
+        String expected = "a.Nod a.b.Node \u00e9a.c.Edge.x-a.a.";
+        for (int chunkSize = 1; chunkSize < input.length(); chunkSize++)
+        {
+            assertEquals(expected, filterOutput(input, chunkSize));
+        }
+    }
+
+    @Test
+    public void testInputStream() throws Exception
+    {
+        assertEquals("", filterInput(""));
+        assertEquals("<\u00e9t\u00e9 class=\"a.b.Node\"/>x", filterInput("<\u00e9t\u00e9 class=\"a.Node\"/>a.b"));
+    }
+}
@@ -0,0 +1,179 @@
+package com.horstmann.violet.product.diagram.abstracts;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.awt.geom.Point2D;
+import java.awt.image.BufferedImage;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import com.horstmann.violet.product.diagram.abstracts.edge.IEdge;
+import com.horstmann.violet.product.diagram.abstracts.node.INode;
+import com.horstmann.violet.product.diagram.common.edge.NoteEdge;
+import com.horstmann.violet.product.diagram.common.node.ImageNode;
+import com.horstmann.violet.product.diagram.common.node.NoteNode;
+
+public class AbstractGraphTest
+{
+    static class TestingGraph extends AbstractGraph
+    {
+        @Override
+        public List<INode> getNodePrototypes()
+        {
+            return new ArrayList<INode>();
+        }
+
+        @Override
+        public List<IEdge> getEdgePrototypes()
+        {
+            return new ArrayList<IEdge>();
+        }
+    }
+
+    private AbstractGraph graph;
+
+    @Before
+    public void setUp()
+    {
+        graph = new TestingGraph();
+    }
+
+    @Test
+    public void testFindNodeById()
+    {
+        INode node = new NoteNode();
+        Id idBeforeAdd = node.getId();
+        graph.addNode(node, new Point2D.Double(10, 10));
+
+        assertSame(node, graph.findNode(node.getId()));
+        assertNull(graph.findNode(idBeforeAdd));
+
+        graph.removeNode(node);
+        assertNull(graph.findNode(node.getId()));
+    }
+
+    @Test
+    public void testFindEdgeById()
+    {
+        INode start = new NoteNode();
+        INode end = new NoteNode();
+        graph.addNode(start, new Point2D.Double(10, 10));
+        graph.addNode(end, new Point2D.Double(200, 10));
+        IEdge edge = new NoteEdge();
+        assertTrue(graph.connect(edge, start, new Point2D.Double(0, 0), end, new Point2D.Double(0, 0), null));
+
+        assertSame(edge, graph.findEdge(edge.getId()));
+        assertSame(start, graph.findNode(edge.getStartNode().getId()));
+
+        graph.removeEdge(edge);
+        assertNull(graph.findEdge(edge.getId()));
+    }
+
+    @Test
+    public void testConnectedEdges()
+    {
+        INode a = new NoteNode();
+        INode b = new NoteNode();
+        INode c = new NoteNode();
+        graph.addNode(a, new Point2D.Double(10, 10));
+        graph.addNode(b, new Point2D.Double(200, 10));
+        graph.addNode(c, new Point2D.Double(400, 10));
+        IEdge ab = new NoteEdge();
+        IEdge bc = new NoteEdge();
+        IEdge ca = new NoteEdge();
+        graph.connect(ab, a, new Point2D.Double(0, 0), b, new Point2D.Double(0, 0), null);
+        graph.connect(bc, b, new Point2D.Double(0, 0), c, new Point2D.Double(0, 0), null);
+        graph.connect(ca, c, new Point2D.Double(0, 0), a, new Point2D.Double(0, 0), null);
+
+        assertEquals(Arrays.asList(ab, ca), new ArrayList<IEdge>(graph.getConnectedEdges(a)));
+        assertEquals(Arrays.asList(ab, bc), new ArrayList<IEdge>(graph.getConnectedEdges(b)));
+
+        graph.removeEdge(ab);
+        assertEquals(Arrays.asList(ca), new ArrayList<IEdge>(graph.getConnectedEdges(a)));
+        assertEquals(Arrays.asList(bc), new ArrayList<IEdge>(graph.getConnectedEdges(b)));
+
+        graph.removeNode(c);
+        assertTrue(graph.getConnectedEdges(a).isEmpty());
+        assertTrue(graph.getConnectedEdges(b).isEmpty());
+    }
+
+    @Test
+    public void testRemoveNodeDisconnectsEdges()
+    {
+        INode start = new NoteNode();
+        INode end = new NoteNode();
+        graph.addNode(start, new Point2D.Double(10, 10));
+        graph.addNode(end, new Point2D.Double(200, 10));
+        IEdge edge = new NoteEdge();
+        graph.connect(edge, start, new Point2D.Double(0, 0), end, new Point2D.Double(0, 0), null);
+
+        graph.removeNode(end);
+        assertEquals(1, graph.getAllNodes().size());
+        assertEquals(0, graph.getAllEdges().size());
+        assertNull(graph.findEdge(edge.getId()));
+    }
+
+    @Test
+    public void testOnlyEdgesOfMovedNodesAreValidated()
+    {
+        INode a = new NoteNode();
+        INode b = new NoteNode();
+        INode c = new NoteNode();
+        INode d = new NoteNode();
+        graph.addNode(a, new Point2D.Double(10, 10));
+        graph.addNode(b, new Point2D.Double(200, 10));
+        graph.addNode(c, new Point2D.Double(10, 400));
+        graph.addNode(d, new Point2D.Double(200, 400));
+        CountingEdge ab = new CountingEdge();
+        CountingEdge cd = new CountingEdge();
+        graph.connect(ab, a, new Point2D.Double(0, 0), b, new Point2D.Double(0, 0), null);
+        graph.connect(cd, c, new Point2D.Double(0, 0), d, new Point2D.Double(0, 0), null);
+        graph.findEdge(new Point2D.Double(0, 0));
+        ab.validationCount = 0;
+        cd.validationCount = 0;
+
+        a.translate(0, 200);
+        graph.findEdge(new Point2D.Double(0, 0));
+        assertTrue(ab.validationCount > 0);
+        assertEquals(0, cd.validationCount);
+        assertFalse(graph.findEdges(ab.getBounds()).isEmpty());
+    }
+
+    @Test
+    public void testFindNodeAfterImageNodeGrows()
+    {
+        ImageNode node = new ImageNode(new BufferedImage(20, 20, BufferedImage.TYPE_INT_ARGB));
+        graph.addNode(node, new Point2D.Double(10, 10));
+        Point2D rightOfImage = new Point2D.Double(150, 60);
+        Point2D belowImage = new Point2D.Double(15, 150);
+        assertSame(node, graph.findNode(new Point2D.Double(15, 15)));
+        assertNull(graph.findNode(rightOfImage));
+
+        node.setImage(new BufferedImage(200, 100, BufferedImage.TYPE_INT_ARGB));
+        assertSame(node, graph.findNode(rightOfImage));
+        assertNull(graph.findNode(belowImage));
+
+        node.getText().setText("first line\nsecond line\nthird line\nfourth line\nfifth line");
+        assertSame(node, graph.findNode(belowImage));
+    }
+
+    private static class CountingEdge extends NoteEdge
+    {
+        @Override
+        public void validateGeometry()
+        {
+            validationCount++;
+            super.validateGeometry();
+        }
+
+        private int validationCount;
+    }
+}
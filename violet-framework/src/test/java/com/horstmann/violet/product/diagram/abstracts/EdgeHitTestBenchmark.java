@@ -0,0 +1,104 @@
+package com.horstmann.violet.product.diagram.abstracts;
+
+import java.awt.BasicStroke;
+import java.awt.geom.Point2D;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import com.horstmann.violet.product.diagram.abstracts.edge.IEdge;
+import com.horstmann.violet.product.diagram.abstracts.edge.ShapeEdge;
+import com.horstmann.violet.product.diagram.abstracts.node.INode;
+import com.horstmann.violet.product.diagram.common.edge.NoteEdge;
+import com.horstmann.violet.product.diagram.common.node.NoteNode;
+
+/**
+ * Measures the latency of a click on a diagram of 10000 edges : the edge under the mouse found with
+ * AbstractGraph.findEdge(), with the edges tested one by one against their polyline and tested one by one against a
+ * shape stroked on each test (as it was done before).
+ *
+ * Not a unit test : run it with its main() method.
+ */
+public class EdgeHitTestBenchmark
+{
+    public static void main(String[] args)
+    {
+        final int edgeCount = 10000;
+        final int clickCount = 200;
+        AbstractGraph graph = new AbstractGraphTest.TestingGraph();
+        List<INode> nodes = new ArrayList<INode>();
+        for (int i = 0; i < edgeCount; i++)
+        {
+            INode node = new NoteNode();
+            graph.addNode(node, new Point2D.Double((i % 100) * 80, (i / 100) * 60));
+            nodes.add(node);
+        }
+        Random random = new Random(42);
+        for (int i = 0; i < edgeCount; i++)
+        {
+            INode startNode = nodes.get(i);
+            INode endNode = nodes.get((i + 1 + random.nextInt(200)) % edgeCount);
+            graph.connect(new NoteEdge(), startNode, new Point2D.Double(0, 0), endNode, new Point2D.Double(0, 0), null);
+        }
+        Point2D[] clicks = new Point2D[clickCount];
+        for (int i = 0; i < clickCount; i++)
+        {
+            clicks[i] = new Point2D.Double(random.nextDouble() * 8000, random.nextDouble() * 6000);
+        }
+        List<IEdge> edges = new ArrayList<IEdge>(graph.getAllEdges());
+
+        for (int round = 0; round < 2; round++)
+        {
+            // First round is a warm up
+            long start = System.nanoTime();
+            int found = 0;
+            for (Point2D aClick : clicks)
+            {
+                found += graph.findEdge(aClick) != null ? 1 : 0;
+            }
+            long indexTime = System.nanoTime() - start;
+
+            start = System.nanoTime();
+            int polylineFound = 0;
+            for (Point2D aClick : clicks)
+            {
+                for (IEdge anEdge : edges)
+                {
+                    if (anEdge.contains(aClick))
+                    {
+                        polylineFound++;
+                        break;
+                    }
+                }
+            }
+            long polylineTime = System.nanoTime() - start;
+
+            start = System.nanoTime();
+            int strokeFound = 0;
+            BasicStroke fatStroke = new BasicStroke(20);
+            for (Point2D aClick : clicks)
+            {
+                for (IEdge anEdge : edges)
+                {
+                    if (aClick.distance(anEdge.getConnectionPoints().getP1()) > 10
+                            && aClick.distance(anEdge.getConnectionPoints().getP2()) > 10
+                            && fatStroke.createStrokedShape(((ShapeEdge) anEdge).getShape()).contains(aClick))
+                    {
+                        strokeFound++;
+                        break;
+                    }
+                }
+            }
+            long strokeTime = System.nanoTime() - start;
+
+            if (round > 0)
+            {
+                System.out.println(String.format("%d edges, %d clicks (%d / %d / %d on an edge)", edgeCount, clickCount, found, polylineFound,
+                        strokeFound));
+                System.out.println(String.format("  findEdge()              : %9.3f ms/click", indexTime / 1000000.0 / clickCount));
+                System.out.println(String.format("  scan, polyline          : %9.3f ms/click", polylineTime / 1000000.0 / clickCount));
+                System.out.println(String.format("  scan, stroked each time : %9.3f ms/click", strokeTime / 1000000.0 / clickCount));
+            }
+        }
+    }
+}
@@ -0,0 +1,77 @@
+package com.horstmann.violet.product.diagram.abstracts;
+
+import java.awt.geom.Point2D;
+import java.util.ArrayList;
+import java.util.List;
+
+import com.horstmann.violet.product.diagram.abstracts.edge.IEdge;
+import com.horstmann.violet.product.diagram.abstracts.node.INode;
+import com.horstmann.violet.product.diagram.common.edge.NoteEdge;
+import com.horstmann.violet.product.diagram.common.node.NoteNode;
+
+/**
+ * Replays what CutCopyPasteBehavior does on paste (add nodes, then look up edge ends by id and connect) and on undo (remove
+ * edges then nodes one by one) for growing selections. Time per element should stay flat when both operations scale
+ * linearly.
+ * 
+ * Not a unit test : run it with its main() method.
+ */
+public class GraphIdIndexBenchmark
+{
+    public static void main(String[] args)
+    {
+        // Warm up
+        run(2000);
+        for (int size = 1000; size <= 16000; size *= 2)
+        {
+            long[] times = run(size);
+            System.out.println(String.format("%6d elements : paste %5d ms (%6.2f us/element), undo %5d ms (%6.2f us/element)", size,
+                    times[0] / 1000000, times[0] / 1000.0 / size, times[1] / 1000000, times[1] / 1000.0 / size));
+        }
+    }
+
+    private static long[] run(int size)
+    {
+        AbstractGraph graph = new AbstractGraphTest.TestingGraph();
+        List<INode> nodes = new ArrayList<INode>();
+        List<IEdge> edges = new ArrayList<IEdge>();
+        List<Id[]> edgeEnds = new ArrayList<Id[]>();
+
+        long start = System.nanoTime();
+        for (int i = 0; i < size; i++)
+        {
+            INode node = new NoteNode();
+            graph.addNode(node, new Point2D.Double((i % 100) * 80, (i / 100) * 60));
+            nodes.add(node);
+        }
+        for (int i = 0; i < size; i++)
+        {
+            edgeEnds.add(new Id[] {
+                    nodes.get(i).getId(), nodes.get((i * 7 + 1) % size).getId()
+            });
+        }
+        for (Id[] ends : edgeEnds)
+        {
+            INode startNode = graph.findNode(ends[0]);
+            INode endNode = graph.findNode(ends[1]);
+            IEdge edge = new NoteEdge();
+            graph.connect(edge, startNode, new Point2D.Double(0, 0), endNode, new Point2D.Double(0, 0), null);
+            edges.add(edge);
+        }
+        long pasteTime = System.nanoTime() - start;
+
+        start = System.nanoTime();
+        for (int i = edges.size() - 1; i >= 0; i--)
+        {
+            graph.removeEdge(edges.get(i));
+        }
+        for (int i = nodes.size() - 1; i >= 0; i--)
+        {
+            graph.removeNode(nodes.get(i));
+        }
+        long undoTime = System.nanoTime() - start;
+        return new long[] {
+                pasteTime, undoTime
+        };
+    }
+}
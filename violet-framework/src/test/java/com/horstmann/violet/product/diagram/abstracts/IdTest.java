@@ -0,0 +1,73 @@
+package com.horstmann.violet.product.diagram.abstracts;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+
+import java.util.HashSet;
+import java.util.Set;
+
+import org.junit.Test;
+
+public class IdTest
+{
+    @Test
+    public void testNewIdsAreUnique() throws Exception
+    {
+        final Set<Id> ids = new HashSet<Id>();
+        final Id[][] threadIds = new Id[4][10000];
+        Thread[] threads = new Thread[threadIds.length];
+        for (int i = 0; i < threads.length; i++)
+        {
+            final Id[] someIds = threadIds[i];
+            threads[i] = new Thread()
+            {
+                public void run()
+                {
+                    for (int j = 0; j < someIds.length; j++)
+                    {
+                        someIds[j] = new Id();
+                    }
+                }
+            };
+            threads[i].start();
+        }
+        for (int i = 0; i < threads.length; i++)
+        {
+            threads[i].join();
+            for (Id anId : threadIds[i])
+            {
+                ids.add(anId);
+            }
+        }
+
+        assertEquals(40000, ids.size());
+    }
+
+    @Test
+    public void testValueIsKeptAsWritten() throws Exception
+    {
+        String[] values = {
+                "14f3f7a8-4363-41ed-a331-2c12dcc2901a", "14F3F7A8-4363-41ED-A331-2C12DCC2901A", "ffffffff-ffff-ffff-ffff-ffffffffffff",
+                "00000000-0000-0000-0000-000000000000", "node1", "14f3f7a8-4363-41ed-a331-2c12dcc2901a0", ""
+        };
+        for (String value : values)
+        {
+            assertEquals(value, new Id(value).getValue());
+        }
+        Id id = new Id();
+        assertEquals(id, new Id(id.getValue()));
+        assertEquals(id.hashCode(), new Id(id.getValue()).hashCode());
+    }
+
+    @Test
+    public void testEquals() throws Exception
+    {
+        Id id = new Id("14f3f7a8-4363-41ed-a331-2c12dcc2901a");
+
+        assertEquals(id, id.clone());
+        assertEquals(new Id("node1"), new Id("node1"));
+        assertFalse(id.equals(new Id("14F3F7A8-4363-41ED-A331-2C12DCC2901A")));
+        assertFalse(id.equals(new Id()));
+        assertFalse(id.equals("14f3f7a8-4363-41ed-a331-2c12dcc2901a"));
+    }
+}
@@ -0,0 +1,53 @@
+package com.horstmann.violet.product.diagram.abstracts.property.string;
+
+import com.horstmann.violet.product.diagram.property.text.DisplayTextLayout;
+import com.horstmann.violet.product.diagram.property.text.DisplayTextLayoutCache;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.awt.*;
+
+import static org.junit.Assert.*;
+
+public class DisplayTextLayoutCacheTest
+{
+    private static final Font FONT = new Font("Dialog", Font.PLAIN, 12);
+
+    @Before
+    public void setUp() throws Exception {
+        DisplayTextLayoutCache.getInstance().clear();
+    }
+
+    @Test
+    public void testSharedLayout() throws Exception {
+        DisplayTextLayoutCache cache = DisplayTextLayoutCache.getInstance();
+        DisplayTextLayout layout = cache.getLayout("interface", FONT);
+
+        assertSame(layout, cache.getLayout("interface", FONT));
+        assertNotSame(layout, cache.getLayout("interface", FONT.deriveFont(Font.BOLD)));
+        assertEquals(2, cache.getSize());
+    }
+
+    @Test
+    public void testCounters() throws Exception {
+        DisplayTextLayoutCache cache = DisplayTextLayoutCache.getInstance();
+        cache.getLayout("test", FONT);
+        cache.getLayout("test", FONT);
+        cache.getLayout("test", FONT);
+        cache.getLayout("other", FONT);
+
+        assertEquals(2, cache.getHitCount());
+        assertEquals(2, cache.getMissCount());
+    }
+
+    @Test
+    public void testClear() throws Exception {
+        DisplayTextLayoutCache cache = DisplayTextLayoutCache.getInstance();
+        cache.getLayout("test", FONT);
+        cache.clear();
+
+        assertEquals(0, cache.getSize());
+        assertEquals(0, cache.getHitCount());
+        assertEquals(0, cache.getMissCount());
+    }
+}
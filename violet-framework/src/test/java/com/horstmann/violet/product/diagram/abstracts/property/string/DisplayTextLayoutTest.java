@@ -0,0 +1,72 @@
+package com.horstmann.violet.product.diagram.abstracts.property.string;
+
+import com.horstmann.violet.product.diagram.property.text.DisplayTextLayout;
+import org.junit.Test;
+
+import java.awt.*;
+
+import static org.junit.Assert.*;
+
+public class DisplayTextLayoutTest
+{
+    private static final Font FONT = new Font("Dialog", Font.PLAIN, 12);
+
+    @Test
+    public void testEmpty() throws Exception {
+        DisplayTextLayout layout = new DisplayTextLayout("<b></b>", FONT);
+
+        assertEquals(0, layout.getWidth());
+        assertEquals(0, layout.getHeight());
+    }
+
+    @Test
+    public void testLines() throws Exception {
+        DisplayTextLayout line = new DisplayTextLayout("test", FONT);
+        DisplayTextLayout lines = new DisplayTextLayout("test<br>test<br>test", FONT);
+
+        assertTrue(line.getWidth() > 0);
+        assertEquals(line.getWidth(), lines.getWidth());
+        assertEquals(3 * line.getHeight(), lines.getHeight());
+    }
+
+    @Test
+    public void testCenterMakesLines() throws Exception {
+        DisplayTextLayout line = new DisplayTextLayout("test", FONT);
+        DisplayTextLayout lines = new DisplayTextLayout("<center>test</center> test", FONT);
+
+        assertEquals(line.getWidth(), lines.getWidth());
+        assertEquals(2 * line.getHeight(), lines.getHeight());
+    }
+
+    @Test
+    public void testWhitespaceCollapsed() throws Exception {
+        DisplayTextLayout layout = new DisplayTextLayout("a b", FONT);
+
+        assertEquals(layout.getWidth(), new DisplayTextLayout("a    b", FONT).getWidth());
+        assertEquals(layout.getWidth(), new DisplayTextLayout("a b ", FONT).getWidth());
+    }
+
+    @Test
+    public void testEntities() throws Exception {
+        assertEquals(new DisplayTextLayout("a>b", FONT).getWidth(), new DisplayTextLayout("a&gt;b", FONT).getWidth());
+        assertEquals(new DisplayTextLayout("a/b", FONT).getWidth(), new DisplayTextLayout("a&#x2F;b", FONT).getWidth());
+    }
+
+    @Test
+    public void testFontSize() throws Exception {
+        DisplayTextLayout normal = new DisplayTextLayout("test", FONT);
+        DisplayTextLayout large = new DisplayTextLayout("<font size=+1>test</font>", FONT);
+
+        assertTrue(large.getWidth() > normal.getWidth());
+        assertTrue(large.getHeight() > normal.getHeight());
+    }
+
+    @Test
+    public void testIsLayoutOf() throws Exception {
+        DisplayTextLayout layout = new DisplayTextLayout("test", FONT);
+
+        assertTrue(layout.isLayoutOf("test", FONT));
+        assertFalse(layout.isLayoutOf("test2", FONT));
+        assertFalse(layout.isLayoutOf("test", FONT.deriveFont(Font.BOLD)));
+    }
+}
@@ -0,0 +1,68 @@
+package com.horstmann.violet.product.diagram.abstracts.spatial;
+
+import org.junit.Test;
+
+import java.awt.geom.Point2D;
+import java.awt.geom.Rectangle2D;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class GridSpatialIndexTest
+{
+    @Test
+    public void testPointQuery() throws Exception
+    {
+        GridSpatialIndex<String> index = new GridSpatialIndex<String>(100);
+        index.put("a", new Rectangle2D.Double(10, 10, 50, 50));
+        index.put("b", new Rectangle2D.Double(90, 90, 50, 50));
+
+        assertEquals(1, index.query(new Point2D.Double(20, 20)).size());
+        assertEquals("a", index.query(new Point2D.Double(20, 20)).get(0));
+        assertEquals("b", index.query(new Point2D.Double(120, 120)).get(0));
+        assertTrue(index.query(new Point2D.Double(75, 75)).isEmpty());
+        assertTrue(index.query(new Point2D.Double(-20, -20)).isEmpty());
+    }
+
+    @Test
+    public void testAreaQuery() throws Exception
+    {
+        GridSpatialIndex<String> index = new GridSpatialIndex<String>(100);
+        index.put("a", new Rectangle2D.Double(10, 10, 50, 50));
+        index.put("b", new Rectangle2D.Double(90, 90, 500, 50));
+        index.put("c", new Rectangle2D.Double(1000, 1000, 10, 10));
+
+        List<String> found = index.query(new Rectangle2D.Double(0, 0, 300, 300));
+        assertEquals(2, found.size());
+        assertTrue(found.contains("a"));
+        assertTrue(found.contains("b"));
+        assertEquals(3, index.query(new Rectangle2D.Double(-10000, -10000, 20000, 20000)).size());
+    }
+
+    @Test
+    public void testUpdateAndRemove() throws Exception
+    {
+        GridSpatialIndex<String> index = new GridSpatialIndex<String>(100);
+        index.put("a", new Rectangle2D.Double(10, 10, 50, 50));
+        index.put("a", new Rectangle2D.Double(510, 510, 50, 50));
+
+        assertEquals(1, index.size());
+        assertTrue(index.query(new Point2D.Double(20, 20)).isEmpty());
+        assertEquals("a", index.query(new Point2D.Double(520, 520)).get(0));
+
+        index.remove("a");
+        assertFalse(index.contains("a"));
+        assertTrue(index.query(new Point2D.Double(520, 520)).isEmpty());
+    }
+
+    @Test
+    public void testOversizedElement() throws Exception
+    {
+        GridSpatialIndex<String> index = new GridSpatialIndex<String>(1);
+        index.put("huge", new Rectangle2D.Double(0, 0, 100000, 100000));
+
+        assertEquals("huge", index.query(new Point2D.Double(50000, 50000)).get(0));
+        index.remove("huge");
+        assertEquals(0, index.size());
+    }
+}
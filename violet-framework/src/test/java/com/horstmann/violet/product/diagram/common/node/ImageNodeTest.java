@@ -0,0 +1,90 @@
+package com.horstmann.violet.product.diagram.common.node;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.awt.image.BufferedImage;
+
+import org.junit.Test;
+
+public class ImageNodeTest
+{
+    private static final int RED = 0xFFFF0000;
+
+    private static final int TRANSPARENT_BLUE = 0x400000FF;
+
+    @Test
+    public void testReadLegacyPixels()
+    {
+        ImageNode node = new ImageNode(new BufferedImage(1, 1, BufferedImage.TYPE_INT_ARGB));
+        node.setImageContent(RED + ":" + TRANSPARENT_BLUE + ":" + RED + ":" + TRANSPARENT_BLUE, 2, 2);
+
+        BufferedImage image = getImage(node);
+        assertEquals(2, image.getWidth());
+        assertEquals(2, image.getHeight());
+        assertEquals(RED, image.getRGB(0, 0));
+        assertEquals(TRANSPARENT_BLUE, image.getRGB(1, 0));
+        // Saved again as PNG
+        assertTrue(node.getImageContent().startsWith("iVBORw0KGgo"));
+    }
+
+    @Test
+    public void testReadPng()
+    {
+        String content = new ImageNode(createImage(3, 2)).getImageContent();
+        ImageNode node = new ImageNode(new BufferedImage(1, 1, BufferedImage.TYPE_INT_ARGB));
+        node.setImageContent(content, 3, 2);
+
+        BufferedImage image = getImage(node);
+        assertEquals(3, image.getWidth());
+        assertEquals(2, image.getHeight());
+        assertEquals(RED, image.getRGB(0, 0));
+        assertEquals(TRANSPARENT_BLUE, image.getRGB(2, 1));
+        assertEquals(content, node.getImageContent());
+    }
+
+    @Test
+    public void testSizeIsKnownBeforeDecoding()
+    {
+        ImageNode node = new ImageNode(new BufferedImage(1, 1, BufferedImage.TYPE_INT_ARGB));
+        // Decoding this content would fail
+        node.setImageContent("iVBORw0KGgoAAAAunreadable", 40, 30);
+        assertEquals(40, node.getImageWidth());
+        assertEquals(30, node.getImageHeight());
+    }
+
+    @Test
+    public void testSameContentSharesDecodedImage()
+    {
+        String content = new ImageNode(createImage(4, 4)).getImageContent();
+        ImageNode first = new ImageNode(new BufferedImage(1, 1, BufferedImage.TYPE_INT_ARGB));
+        ImageNode second = new ImageNode(new BufferedImage(1, 1, BufferedImage.TYPE_INT_ARGB));
+        first.setImageContent(content, 4, 4);
+        second.setImageContent(content, 4, 4);
+        assertSame(getImage(first), getImage(second));
+    }
+
+    private static BufferedImage getImage(ImageNode node)
+    {
+        return (BufferedImage) node.getImageIcon().getImage();
+    }
+
+    /**
+     * @return an image whose first pixel is red and whose other pixels are transparent blue
+     */
+    private static BufferedImage createImage(int width, int height)
+    {
+        BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB);
+        for (int x = 0; x < width; x++)
+        {
+            for (int y = 0; y < height; y++)
+            {
+                image.setRGB(x, y, TRANSPARENT_BLUE);
+            }
+        }
+        image.setRGB(0, 0, RED);
+        return image;
+    }
+
+}
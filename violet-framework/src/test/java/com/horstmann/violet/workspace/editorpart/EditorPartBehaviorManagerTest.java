@@ -0,0 +1,114 @@
+package com.horstmann.violet.workspace.editorpart;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.awt.Component;
+import java.awt.event.MouseEvent;
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.swing.JPanel;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import com.horstmann.violet.product.diagram.abstracts.node.INode;
+import com.horstmann.violet.workspace.editorpart.behavior.AbstractEditorPartBehavior;
+
+public class EditorPartBehaviorManagerTest
+{
+    private EditorPartBehaviorManager behaviorManager;
+
+    private List<String> calls;
+
+    @Before
+    public void setUp()
+    {
+        behaviorManager = new EditorPartBehaviorManager(true);
+        calls = new ArrayList<String>();
+    }
+
+    @Test
+    public void testEventsOnlyGoToBehaviorsHandlingThem()
+    {
+        behaviorManager.addBehavior(new AbstractEditorPartBehavior()
+        {
+            @Override
+            public void onMousePressed(MouseEvent event)
+            {
+                calls.add("pressed");
+            }
+        });
+        behaviorManager.addBehavior(new AbstractEditorPartBehavior()
+        {
+            @Override
+            public void afterEditingNode(INode node)
+            {
+                calls.add("edited");
+            }
+        });
+        behaviorManager.fireOnMousePressed(createMouseEvent());
+        behaviorManager.fireAfterEditingNode(null);
+        behaviorManager.fireOnMouseDragged(createMouseEvent());
+        assertEquals("[pressed, edited]", calls.toString());
+
+        List<BehaviorLatency> latencies = behaviorManager.getHandlerLatencies();
+        assertEquals(2, latencies.size());
+        for (BehaviorLatency aLatency : latencies)
+        {
+            assertEquals(1, aLatency.getCallCount());
+            assertTrue(aLatency.getMaxNanos() <= aLatency.getTotalNanos());
+        }
+        behaviorManager.resetHandlerLatencies();
+        assertTrue(behaviorManager.getHandlerLatencies().isEmpty());
+    }
+
+    @Test
+    public void testLatenciesAreOnlyRecordedWhenProfiling()
+    {
+        EditorPartBehaviorManager defaultBehaviorManager = new EditorPartBehaviorManager();
+        defaultBehaviorManager.addBehavior(new AbstractEditorPartBehavior()
+        {
+            @Override
+            public void onMousePressed(MouseEvent event)
+            {
+                calls.add("pressed");
+            }
+        });
+        defaultBehaviorManager.fireOnMousePressed(createMouseEvent());
+        assertEquals("[pressed]", calls.toString());
+        assertTrue(defaultBehaviorManager.getHandlerLatencies().isEmpty());
+    }
+
+    @Test
+    public void testConsumedMouseEventIsNotDispatchedFurther()
+    {
+        behaviorManager.addBehavior(new AbstractEditorPartBehavior()
+        {
+            @Override
+            public void onMouseReleased(MouseEvent event)
+            {
+                calls.add("first");
+                event.consume();
+            }
+        });
+        behaviorManager.addBehavior(new AbstractEditorPartBehavior()
+        {
+            @Override
+            public void onMouseReleased(MouseEvent event)
+            {
+                calls.add("second");
+            }
+        });
+        behaviorManager.fireOnMouseReleased(createMouseEvent());
+        assertEquals("[first]", calls.toString());
+    }
+
+    private MouseEvent createMouseEvent()
+    {
+        Component source = new JPanel();
+        return new MouseEvent(source, MouseEvent.MOUSE_PRESSED, 0, 0, 10, 10, 1, false, MouseEvent.BUTTON1);
+    }
+
+}
@@ -0,0 +1,107 @@
+package com.horstmann.violet.workspace.editorpart;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import com.horstmann.violet.product.diagram.abstracts.edge.IEdge;
+import com.horstmann.violet.product.diagram.abstracts.node.INode;
+import com.horstmann.violet.product.diagram.common.edge.NoteEdge;
+import com.horstmann.violet.product.diagram.common.node.NoteNode;
+
+public class EditorPartSelectionHandlerTest
+{
+    private EditorPartSelectionHandler selectionHandler;
+
+    private int notificationCount;
+
+    @Before
+    public void setUp()
+    {
+        selectionHandler = new EditorPartSelectionHandler();
+        selectionHandler.addSelectionListener(new IEditorPartSelectionListener()
+        {
+            @Override
+            public void onSelectionChanged()
+            {
+                notificationCount++;
+            }
+        });
+    }
+
+    @Test
+    public void testSelectionOrder()
+    {
+        INode a = new NoteNode();
+        INode b = new NoteNode();
+        INode c = new NoteNode();
+        selectionHandler.addSelectedElement(a);
+        selectionHandler.addSelectedElement(b);
+        selectionHandler.addSelectedElement(c);
+        // Selecting again moves to the end
+        selectionHandler.addSelectedElement(a);
+        assertEquals(Arrays.asList(b, c, a), selectionHandler.getSelectedNodes());
+        assertSame(a, selectionHandler.getLastSelectedNode());
+
+        selectionHandler.removeElementFromSelection(a);
+        assertSame(c, selectionHandler.getLastSelectedNode());
+        assertFalse(selectionHandler.isElementAlreadySelected(a));
+        assertTrue(selectionHandler.getSelectedNodes().contains(b));
+        assertEquals(5, notificationCount);
+    }
+
+    @Test
+    public void testBulkOperations()
+    {
+        INode a = new NoteNode();
+        INode b = new NoteNode();
+        INode c = new NoteNode();
+        IEdge edge = new NoteEdge();
+        selectionHandler.addSelectedElement(b);
+        selectionHandler.addSelectedElements(Arrays.asList(a, b, c), Collections.singletonList(edge));
+        // Already selected elements keep their place
+        assertEquals(Arrays.asList(b, a, c), selectionHandler.getSelectedNodes());
+        assertEquals(Collections.singletonList(edge), selectionHandler.getSelectedEdges());
+
+        selectionHandler.retainOnlySelectedElements(Arrays.asList(c, b), Collections.<IEdge> emptyList());
+        assertEquals(Arrays.asList(b, c), selectionHandler.getSelectedNodes());
+        assertFalse(selectionHandler.isEdgeSelectedAtLeast());
+        assertEquals(3, notificationCount);
+
+        // Nothing changes, nothing is notified
+        selectionHandler.addSelectedElements(Arrays.asList(b), Collections.<IEdge> emptyList());
+        selectionHandler.retainOnlySelectedElements(Arrays.asList(b, c), Collections.<IEdge> emptyList());
+        assertEquals(3, notificationCount);
+    }
+
+    @Test
+    public void testGroupedChanges()
+    {
+        List<INode> nodes = Arrays.<INode> asList(new NoteNode(), new NoteNode());
+        selectionHandler.beginSelectionChanges();
+        selectionHandler.clearSelection();
+        for (INode aNode : nodes)
+        {
+            selectionHandler.addSelectedElement(aNode);
+        }
+        selectionHandler.removeElementFromSelection(nodes.get(0));
+        assertEquals(0, notificationCount);
+        selectionHandler.endSelectionChanges();
+        assertEquals(1, notificationCount);
+        assertEquals(Collections.singletonList(nodes.get(1)), selectionHandler.getSelectedNodes());
+
+        // A snapshot isn't changed by later selections
+        List<INode> snapshot = selectionHandler.getSelectedNodes();
+        selectionHandler.setSelectedElement(nodes.get(0));
+        assertEquals(Collections.singletonList(nodes.get(1)), snapshot);
+        assertEquals(2, notificationCount);
+    }
+}
@@ -0,0 +1,77 @@
+package com.horstmann.violet.workspace.editorpart.behavior;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import javax.swing.undo.AbstractUndoableEdit;
+
+import org.junit.Test;
+
+public class BoundedUndoManagerTest
+{
+    @Test
+    public void testOldestEditsAreDiscardedOverBudget()
+    {
+        BoundedUndoManager undoManager = new BoundedUndoManager(1000);
+        SizedEdit first = new SizedEdit(400);
+        SizedEdit second = new SizedEdit(400);
+        SizedEdit third = new SizedEdit(400);
+        undoManager.addEdit(first);
+        undoManager.addEdit(second);
+        assertEquals(800, undoManager.getEstimatedSize());
+
+        undoManager.addEdit(third);
+        assertEquals(2, undoManager.getEditCount());
+        assertEquals(800, undoManager.getEstimatedSize());
+        assertFalse(first.canUndo());
+        undoManager.undo();
+        undoManager.undo();
+        assertFalse(undoManager.canUndo());
+    }
+
+    @Test
+    public void testLastEditIsKeptOverBudget()
+    {
+        BoundedUndoManager undoManager = new BoundedUndoManager(1000);
+        undoManager.addEdit(new SizedEdit(400));
+        undoManager.addEdit(new SizedEdit(5000));
+        assertEquals(1, undoManager.getEditCount());
+        assertEquals(5000, undoManager.getEstimatedSize());
+        assertTrue(undoManager.canUndo());
+    }
+
+    @Test
+    public void testRedoableEditsAreNotCountedOnceReplaced()
+    {
+        BoundedUndoManager undoManager = new BoundedUndoManager(10000);
+        undoManager.setLimit(2);
+        undoManager.addEdit(new SizedEdit(100));
+        undoManager.addEdit(new SizedEdit(200));
+        undoManager.undo();
+        undoManager.addEdit(new SizedEdit(300));
+        assertEquals(400, undoManager.getEstimatedSize());
+        undoManager.addEdit(new SizedEdit(400));
+        assertEquals(2, undoManager.getEditCount());
+        assertEquals(700, undoManager.getEstimatedSize());
+        undoManager.discardAllEdits();
+        assertEquals(0, undoManager.getEstimatedSize());
+    }
+
+    private static class SizedEdit extends AbstractUndoableEdit implements ISizedUndoableEdit
+    {
+        public SizedEdit(long size)
+        {
+            this.size = size;
+        }
+
+        @Override
+        public long getEstimatedSize()
+        {
+            return this.size;
+        }
+
+        private final long size;
+    }
+
+}
@@ -0,0 +1,243 @@
+package com.horstmann.violet.workspace.editorpart.behavior;
+
+import static org.junit.Assert.assertEquals;
+
+import java.awt.event.MouseEvent;
+import java.awt.geom.Point2D;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import javax.swing.undo.AbstractUndoableEdit;
+
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import com.horstmann.violet.framework.injection.bean.ManiocFramework.BeanFactory;
+import com.horstmann.violet.framework.injection.bean.ManiocFramework.ManagedBean;
+import com.horstmann.violet.framework.injection.bean.ManiocFramework.ManiocException;
+import com.horstmann.violet.framework.userpreferences.IUserPreferencesDao;
+import com.horstmann.violet.framework.userpreferences.PreferencesConstant;
+import com.horstmann.violet.product.diagram.abstracts.AbstractGraph;
+import com.horstmann.violet.product.diagram.abstracts.edge.IEdge;
+import com.horstmann.violet.product.diagram.abstracts.node.INode;
+import com.horstmann.violet.product.diagram.common.edge.NoteEdge;
+import com.horstmann.violet.product.diagram.common.node.NoteNode;
+import com.horstmann.violet.workspace.editorpart.EditorPart;
+import com.horstmann.violet.workspace.editorpart.IEditorPartSelectionHandler;
+
+public class UndoRedoOnDragBehaviorTest
+{
+    private EditorPart editorPart;
+
+    private UndoRedoCompoundBehavior undoRedoBehavior;
+
+    private INode a;
+
+    private INode b;
+
+    private IEdge ab;
+
+    @BeforeClass
+    public static void setUpBeans()
+    {
+        // Test classes share the bean factory when they run in the same JVM
+        try
+        {
+            BeanFactory.getFactory().register(IUserPreferencesDao.class, new MemoryUserPreferencesDao());
+        }
+        catch (ManiocException e)
+        {
+            // Already registered by another test
+        }
+    }
+
+    @Before
+    public void setUp()
+    {
+        TestingGraph graph = new TestingGraph();
+        editorPart = new EditorPart(graph);
+        undoRedoBehavior = new UndoRedoCompoundBehavior(editorPart);
+        a = new NoteNode();
+        b = new NoteNode();
+        graph.addNode(a, new Point2D.Double(10, 10));
+        graph.addNode(b, new Point2D.Double(300, 10));
+        ab = new NoteEdge();
+        graph.connect(ab, a, new Point2D.Double(0, 0), b, new Point2D.Double(0, 0), new Point2D[] {
+                new Point2D.Double(150, 200), new Point2D.Double(250, 200)
+        });
+    }
+
+    @Test
+    public void testUndoRedoMultiNodeDrag()
+    {
+        select(a, b, ab);
+        drag(30, 40, 1000);
+        assertEquals(1, undoRedoBehavior.getHistoryCount());
+        assertLocations(40, 50, 330, 50, 180, 240);
+
+        undoRedoBehavior.undo();
+        assertLocations(10, 10, 300, 10, 150, 200);
+        assertEquals(250, ab.getTransitionPoints()[1].getX(), 0);
+
+        undoRedoBehavior.redo();
+        assertLocations(40, 50, 330, 50, 180, 240);
+        assertEquals(280, ab.getTransitionPoints()[1].getX(), 0);
+    }
+
+    @Test
+    public void testDragsOfSameSelectionAreMerged()
+    {
+        select(a, b, ab);
+        drag(30, 40, 1000);
+        drag(5, 5, 1500);
+        assertEquals(1, undoRedoBehavior.getHistoryCount());
+        assertLocations(45, 55, 335, 55, 185, 245);
+
+        undoRedoBehavior.undo();
+        assertLocations(10, 10, 300, 10, 150, 200);
+    }
+
+    @Test
+    public void testDragsAreNotMergedAfterDelay()
+    {
+        select(a, b, ab);
+        drag(30, 40, 1000);
+        drag(5, 5, 5000);
+        assertEquals(2, undoRedoBehavior.getHistoryCount());
+
+        undoRedoBehavior.undo();
+        assertLocations(40, 50, 330, 50, 180, 240);
+    }
+
+    @Test
+    public void testDragOfOtherSelectionIsNotMerged()
+    {
+        select(a, b, ab);
+        drag(30, 40, 1000);
+        select(a);
+        drag(5, 5, 1500);
+        assertEquals(2, undoRedoBehavior.getHistoryCount());
+
+        undoRedoBehavior.undo();
+        assertLocations(40, 50, 330, 50, 180, 240);
+    }
+
+    @Test
+    public void testDragAfterOtherEditIsNotMerged()
+    {
+        select(a, b, ab);
+        drag(30, 40, 1000);
+        undoRedoBehavior.startHistoryCapture();
+        undoRedoBehavior.getCurrentCapturedEdit().addEdit(new AbstractUndoableEdit());
+        undoRedoBehavior.stopHistoryCapture();
+        drag(5, 5, 1500);
+        assertEquals(3, undoRedoBehavior.getHistoryCount());
+
+        undoRedoBehavior.undo();
+        assertLocations(40, 50, 330, 50, 180, 240);
+    }
+
+    private void select(Object... elements)
+    {
+        IEditorPartSelectionHandler selectionHandler = editorPart.getSelectionHandler();
+        selectionHandler.clearSelection();
+        for (Object anElement : elements)
+        {
+            if (anElement instanceof INode)
+            {
+                selectionHandler.addSelectedElement((INode) anElement);
+            }
+            else
+            {
+                selectionHandler.addSelectedElement((IEdge) anElement);
+            }
+        }
+    }
+
+    /**
+     * Drags the selection from the first selected node, moving elements as DragSelectedBehavior does
+     *
+     * @param dx
+     * @param dy
+     * @param when time of the mouse press
+     */
+    private void drag(double dx, double dy, long when)
+    {
+        IEditorPartSelectionHandler selectionHandler = editorPart.getSelectionHandler();
+        Point2D start = selectionHandler.getSelectedNodes().get(0).getLocation();
+        int x = (int) start.getX() + 5;
+        int y = (int) start.getY() + 5;
+        undoRedoBehavior.onMousePressed(createMouseEvent(MouseEvent.MOUSE_PRESSED, when, x, y));
+        for (INode aNode : selectionHandler.getSelectedNodes())
+        {
+            aNode.translate(dx, dy);
+        }
+        for (IEdge anEdge : selectionHandler.getSelectedEdges())
+        {
+            Point2D[] transitionPoints = anEdge.getTransitionPoints();
+            for (Point2D aTransitionPoint : transitionPoints)
+            {
+                aTransitionPoint.setLocation(aTransitionPoint.getX() + dx, aTransitionPoint.getY() + dy);
+            }
+            anEdge.setTransitionPoints(transitionPoints);
+        }
+        undoRedoBehavior.onMouseDragged(createMouseEvent(MouseEvent.MOUSE_DRAGGED, when + 50, (int) (x + dx), (int) (y + dy)));
+        undoRedoBehavior.onMouseReleased(createMouseEvent(MouseEvent.MOUSE_RELEASED, when + 100, (int) (x + dx), (int) (y + dy)));
+    }
+
+    private MouseEvent createMouseEvent(int id, long when, int x, int y)
+    {
+        return new MouseEvent(editorPart, id, when, 0, x, y, 1, false, MouseEvent.BUTTON1);
+    }
+
+    private void assertLocations(double ax, double ay, double bx, double by, double transitionX, double transitionY)
+    {
+        assertEquals(ax, a.getLocation().getX(), 0);
+        assertEquals(ay, a.getLocation().getY(), 0);
+        assertEquals(bx, b.getLocation().getX(), 0);
+        assertEquals(by, b.getLocation().getY(), 0);
+        assertEquals(transitionX, ab.getTransitionPoints()[0].getX(), 0);
+        assertEquals(transitionY, ab.getTransitionPoints()[0].getY(), 0);
+    }
+
+    private static class TestingGraph extends AbstractGraph
+    {
+        @Override
+        public List<INode> getNodePrototypes()
+        {
+            return new ArrayList<INode>();
+        }
+
+        @Override
+        public List<IEdge> getEdgePrototypes()
+        {
+            return new ArrayList<IEdge>();
+        }
+    }
+
+    @ManagedBean(registeredManually=true)
+    private static class MemoryUserPreferencesDao implements IUserPreferencesDao
+    {
+        public String get(PreferencesConstant key, String defval)
+        {
+            String value = this.preferences.get(key.toString());
+            return value != null ? value : defval;
+        }
+
+        public void put(PreferencesConstant key, String value)
+        {
+            this.preferences.put(key.toString(), value);
+        }
+
+        public void reset()
+        {
+            this.preferences.clear();
+        }
+
+        private final Map<String, String> preferences = new HashMap<String, String>();
+    }
+
+}
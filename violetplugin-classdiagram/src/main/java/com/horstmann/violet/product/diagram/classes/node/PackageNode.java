@@ -80,6 +80,15 @@ public class PackageNode extends ColorableNode
         nameContent = new TextContent(name);
         nameContent.setMinHeight(DEFAULT_TOP_HEIGHT);
         nameContent.setMinWidth(DEFAULT_TOP_WIDTH);
+        nameContent.addResizeListener(new ContentResizeListener()
+        {
+            @Override
+            public void onContentResized(Content content)
+            {
+                // Connection points depend on the name tab size
+                fireGeometryChanged();
+            }
+        });
 
         TextContent textContent = new TextContent(context);
 
@@ -22,11 +22,14 @@
 package com.horstmann.violet.product.diagram.sequence;
 
 import java.awt.geom.Point2D;
+import java.awt.geom.Rectangle2D;
 import java.util.*;
 
 import com.horstmann.violet.product.diagram.abstracts.AbstractGraph;
 import com.horstmann.violet.product.diagram.abstracts.edge.IEdge;
 import com.horstmann.violet.product.diagram.abstracts.node.INode;
+import com.horstmann.violet.product.diagram.abstracts.spatial.ISpatialIndex;
+import com.horstmann.violet.product.diagram.abstracts.spatial.LinearSpatialIndex;
 import com.horstmann.violet.product.diagram.common.edge.NoteEdge;
 import com.horstmann.violet.product.diagram.common.node.NoteNode;
 import com.horstmann.violet.product.diagram.sequence.edge.AsynchronousCallEdge;
@@ -51,6 +54,38 @@ public class SequenceDiagramGraph extends AbstractGraph
         return super.addNode(newNode, p);
     }
 
+    /**
+     * Lifelines and activation bars compute their bounds from the other nodes and edges, so they can't be tracked by a
+     * grid.
+     */
+    @Override
+    protected <T> ISpatialIndex<T> createSpatialIndex()
+    {
+        return new LinearSpatialIndex<T>();
+    }
+
+    /**
+     * For the same reason, changing one element may move many others : the whole graph is repainted.
+     */
+    @Override
+    public Rectangle2D getDrawingBounds(Collection<INode> nodes, Collection<IEdge> edges)
+    {
+        if (nodes.isEmpty() && edges.isEmpty())
+        {
+            return null;
+        }
+        return super.getDrawingBounds(getAllNodes(), getAllEdges());
+    }
+
+    /**
+     * Lifelines are drawn down to the lowest lifeline, far out of their bounds, so nothing is skipped when drawing.
+     */
+    @Override
+    protected boolean isCullingSupported()
+    {
+        return false;
+    }
+
     public List<INode> getNodePrototypes() {
         return NODE_PROTOTYPES;
     }
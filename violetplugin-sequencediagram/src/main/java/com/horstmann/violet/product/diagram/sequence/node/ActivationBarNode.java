@@ -290,7 +290,7 @@ public class ActivationBarNode extends ColorableNode
     {
         double y = this.getLocation().getY();
 
-        for (IEdge edge : getGraph().getAllEdges())
+        for (IEdge edge : getGraph().getConnectedEdges(this))
         {
             if (edge instanceof CallEdge && edge.getEndNode() instanceof ActivationBarNode)
             {
@@ -306,7 +306,7 @@ public class ActivationBarNode extends ColorableNode
     private double calculateHeight()
     {
         double height = 0;
-        for (IEdge edge : getGraph().getAllEdges())
+        for (IEdge edge : getGraph().getConnectedEdges(this))
         {
             if (edge instanceof CallEdge)
             {
@@ -237,7 +237,7 @@ public class LifelineNode extends ColorableNode
     public Point2D getLocation()
     {
         double y = 0;
-        for (IEdge edge : getGraph().getAllEdges())
+        for (IEdge edge : getGraph().getConnectedEdges(this))
         {
             if (edge instanceof CallEdge)
             {
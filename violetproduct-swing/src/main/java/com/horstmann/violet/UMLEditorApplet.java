@@ -46,6 +46,7 @@ import com.horstmann.violet.framework.theme.ThemeManager;
 import com.horstmann.violet.framework.theme.BlueAmbianceTheme;
 import com.horstmann.violet.framework.userpreferences.AppletUserPreferencesDao;
 import com.horstmann.violet.framework.userpreferences.IUserPreferencesDao;
+import com.horstmann.violet.framework.userpreferences.UserPreferencesService;
 
 /**
  * A program for editing UML diagrams.
@@ -84,7 +85,8 @@ public class UMLEditorApplet extends JApplet
         DialogFactory dialogFactory = new DialogFactory(DialogFactoryMode.INTERNAL);
         BeanFactory.getFactory().register(DialogFactory.class, dialogFactory);
         
-        IFilePersistenceService filePersistenceService = new XHTMLPersistenceService();
+        XHTMLPersistenceService filePersistenceService = new XHTMLPersistenceService();
+        filePersistenceService.applyUserPreferences(BeanFactory.getFactory().getBean(UserPreferencesService.class));
         BeanFactory.getFactory().register(IFilePersistenceService.class, filePersistenceService);
         
         IFileChooserService fileChooserService = new JFileChooserService();
@@ -24,9 +24,11 @@ import java.awt.Toolkit;
 import java.io.File;
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 import java.util.Locale;
 
+import com.horstmann.violet.application.batch.BatchConverter;
 import com.horstmann.violet.application.gui.MainFrame;
 import com.horstmann.violet.application.gui.SplashScreen;
 import com.horstmann.violet.framework.dialog.DialogFactory;
@@ -71,6 +73,12 @@ public class UMLEditorApplication
      */
     public static void main(String[] args)
     {
+        if (args.length > 0 && "-convert".equals(args[0]))
+        {
+            int failureCount = convert(args);
+            System.exit(failureCount == 0 ? 0 : 1);
+            return;
+        }
         for (int i = 0; i < args.length; i++)
         {
             String arg = args[i];
@@ -91,12 +99,111 @@ public class UMLEditorApplication
                 System.out.println("Violet UML Editor command line help. Options are :");
                 System.out.println("-reset to reset user preferences,");
                 System.out.println("-english to force language to english.");
+                printConvertUsage();
                 return;
             }
         }
         new UMLEditorApplication(args);
     }
 
+    /**
+     * Converts diagrams to images or pdf files, headless
+     * 
+     * @param args -convert, format, options and files
+     * @return number of files which couldn't be converted
+     */
+    private static int convert(String[] args)
+    {
+        System.setProperty("java.awt.headless", "true");
+        if (args.length < 2 || !BatchConverter.isSupportedFormat(args[1]))
+        {
+            System.err.println(args.length < 2 ? "Missing format (png, pdf or svg)." : "Unsupported format " + args[1] + ".");
+            printConvertUsage();
+            return 1;
+        }
+        String format = args[1];
+        int threadCount = Runtime.getRuntime().availableProcessors();
+        File outputDirectory = null;
+        List<String> filesToConvert = new ArrayList<String>();
+        for (int i = 2; i < args.length; i++)
+        {
+            if ("-threads".equals(args[i]))
+            {
+                threadCount = parseThreadCount(i + 1 < args.length ? args[++i] : null);
+                if (threadCount <= 0)
+                {
+                    System.err.println("-threads needs a positive number of threads.");
+                    printConvertUsage();
+                    return 1;
+                }
+            }
+            else if ("-output".equals(args[i]))
+            {
+                if (i + 1 == args.length)
+                {
+                    System.err.println("-output needs a directory.");
+                    printConvertUsage();
+                    return 1;
+                }
+                outputDirectory = new File(args[++i]);
+                outputDirectory.mkdirs();
+            }
+            else
+            {
+                filesToConvert.add(args[i]);
+            }
+        }
+        initHeadlessBeanFactory();
+        BeanFactory.getFactory().getBean(PluginLoader.class).installPlugins();
+        BatchConverter converter = new BatchConverter(format, outputDirectory, threadCount);
+        return converter.convert(converter.findFiles(filesToConvert));
+    }
+
+    /**
+     * @param value
+     * @return the number of threads given by value or 0 if it isn't a number
+     */
+    private static int parseThreadCount(String value)
+    {
+        if (value == null)
+        {
+            return 0;
+        }
+        try
+        {
+            return Integer.parseInt(value);
+        }
+        catch (NumberFormatException e)
+        {
+            return 0;
+        }
+    }
+
+    private static void printConvertUsage()
+    {
+        System.out.println("-convert png|pdf|svg [-threads n] [-output directory] files, directories or patterns");
+        System.out.println("   to convert diagrams without opening the editor (must be the first option).");
+    }
+
+    /**
+     * Registers the beans needed to read and draw diagrams. The theme only gives colors to diagrams : its look and
+     * feel isn't applied as nothing is shown.
+     */
+    private static void initHeadlessBeanFactory()
+    {
+        IUserPreferencesDao userPreferencesDao = new DefaultUserPreferencesDao();
+        BeanFactory.getFactory().register(IUserPreferencesDao.class, userPreferencesDao);
+
+        ThemeManager themeManager = new ThemeManager();
+        ITheme theme = new ClassicMetalTheme();
+        themeManager.setInstalledThemes(new ArrayList<ITheme>(Arrays.asList(theme)));
+        themeManager.setThemeWithoutLookAndFeel(theme);
+        BeanFactory.getFactory().register(ThemeManager.class, themeManager);
+
+        IFilePersistenceService filePersistenceService = new XHTMLPersistenceService();
+        BeanFactory.getFactory().register(IFilePersistenceService.class, filePersistenceService);
+    }
+
     /**
      * Default constructor
      * 
@@ -131,7 +238,8 @@ public class UMLEditorApplication
         DialogFactory dialogFactory = new DialogFactory(DialogFactoryMode.INTERNAL);
         BeanFactory.getFactory().register(DialogFactory.class, dialogFactory);
         
-        IFilePersistenceService filePersistenceService = new XHTMLPersistenceService();
+        XHTMLPersistenceService filePersistenceService = new XHTMLPersistenceService();
+        filePersistenceService.applyUserPreferences(BeanFactory.getFactory().getBean(UserPreferencesService.class));
         BeanFactory.getFactory().register(IFilePersistenceService.class, filePersistenceService);
         
         IFileChooserService fileChooserService = new JFileChooserService();
@@ -42,6 +42,7 @@ import com.horstmann.violet.framework.theme.DarkBlueTheme;
 import com.horstmann.violet.framework.theme.ITheme;
 import com.horstmann.violet.framework.theme.ThemeManager;
 import com.horstmann.violet.framework.userpreferences.IUserPreferencesDao;
+import com.horstmann.violet.framework.userpreferences.UserPreferencesService;
 import com.horstmann.violet.framework.userpreferences.JNLPUserPreferencesDao;
 
 /**
@@ -88,7 +89,8 @@ public class UMLEditorWebStart
         DialogFactory dialogFactory = new DialogFactory(DialogFactoryMode.INTERNAL);
         BeanFactory.getFactory().register(DialogFactory.class, dialogFactory);
 
-        IFilePersistenceService filePersistenceService = new XHTMLPersistenceService();
+        XHTMLPersistenceService filePersistenceService = new XHTMLPersistenceService();
+        filePersistenceService.applyUserPreferences(BeanFactory.getFactory().getBean(UserPreferencesService.class));
         BeanFactory.getFactory().register(IFilePersistenceService.class, filePersistenceService);
         
         IFileChooserService fileChooserService = new JNLPFileChooserService();
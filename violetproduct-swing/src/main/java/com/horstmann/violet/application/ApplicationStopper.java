@@ -88,6 +88,13 @@ public class ApplicationStopper
                 {
                     aDirtyWorkspace.getGraphFile().save();
                 }
+                for (IWorkspace aDirtyWorkspace : dirtyWorkspaceList)
+                {
+                    if (!aDirtyWorkspace.getGraphFile().waitForPendingSaves())
+                    {
+                        return false;
+                    }
+                }
                 this.userPreferencesService.setActiveDiagramFile(activeWorkspace.getGraphFile());
                 return true;
             }
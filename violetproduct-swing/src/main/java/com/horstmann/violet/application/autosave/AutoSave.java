@@ -15,6 +15,7 @@ import com.horstmann.violet.framework.dialog.DialogFactory;
 import com.horstmann.violet.framework.file.GraphFile;
 import com.horstmann.violet.framework.file.IFile;
 import com.horstmann.violet.framework.file.LocalFile;
+import com.horstmann.violet.framework.file.persistence.EditJournal;
 import com.horstmann.violet.framework.file.persistence.IFilePersistenceService;
 import com.horstmann.violet.framework.file.persistence.IFileReader;
 import com.horstmann.violet.framework.file.persistence.JFileReader;
@@ -81,6 +82,10 @@ public class AutoSave implements ActionListener {
 
 			for (File file: files)
 			{
+				if (EditJournal.isJournalFile(file))
+				{
+					continue;
+				}
 				try {
 					IFile autoSaveFile = new LocalFile(file);
 					IFileReader readFile = new JFileReader(file);
@@ -89,6 +94,7 @@ public class AutoSave implements ActionListener {
 					{
 						IGraph graph = this.filePersistenceService.read(in);
 						IGraphFile graphFile = new GraphFile(autoSaveFile);
+						replayJournal(file, graphFile.getGraph());
 					
 						IWorkspace workspace = new Workspace(graphFile);
 						mainFrame.addWorkspace(workspace);
@@ -101,7 +107,32 @@ public class AutoSave implements ActionListener {
 					file.delete();
 				}
 			}
+			// Journals left are either replayed or without backup
+			for (File file: files)
+			{
+				if (EditJournal.isJournalFile(file))
+				{
+					file.delete();
+				}
+			}
+		}
+	}
+
+	/**
+	 * Applies the changes made after the backup was written
+	 * 
+	 * @param autoSaveFile
+	 * @param graph read from the backup
+	 */
+	private void replayJournal(File autoSaveFile, IGraph graph)
+	{
+		File journalFile = EditJournal.getJournalFile(autoSaveFile);
+		try {
+			new EditJournal(journalFile).replay(graph);
+		} catch (Exception e) {
+			// The backup is still better than nothing
 		}
+		journalFile.delete();
 	}
 
 	private void initializeTimer()
@@ -0,0 +1,317 @@
+package com.horstmann.violet.application.batch;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.regex.Pattern;
+
+import com.horstmann.violet.framework.file.export.FileExportService;
+import com.horstmann.violet.framework.file.naming.FileNamingService;
+import com.horstmann.violet.framework.file.persistence.BinaryPersistenceService;
+import com.horstmann.violet.framework.file.persistence.IFilePersistenceService;
+import com.horstmann.violet.framework.file.persistence.StandardJavaFilePersistenceService;
+import com.horstmann.violet.framework.injection.bean.ManiocFramework.BeanInjector;
+import com.horstmann.violet.framework.injection.bean.ManiocFramework.InjectedBean;
+import com.horstmann.violet.product.diagram.abstracts.IGraph;
+
+/**
+ * Converts diagram files to images or pdf files without showing anything (for documentation builds for example).
+ * Files are converted in parallel by a fixed number of threads, so that only this number of diagrams is in memory at
+ * once. Each conversion is reported with its timings, then the throughput of the whole batch.
+ */
+public class BatchConverter
+{
+
+    /**
+     * @param format FORMAT_PNG, FORMAT_PDF or FORMAT_SVG
+     * @param outputDirectory where converted files are written (null to write them next to the diagram files)
+     * @param threadCount number of files converted at the same time
+     */
+    public BatchConverter(String format, File outputDirectory, int threadCount)
+    {
+        BeanInjector.getInjector().inject(this);
+        if (!isSupportedFormat(format))
+        {
+            throw new IllegalArgumentException("Unsupported format " + format);
+        }
+        this.format = format;
+        this.outputDirectory = outputDirectory;
+        this.threadCount = Math.max(1, threadCount);
+    }
+
+    /**
+     * @param format
+     * @return true if files can be converted to this format
+     */
+    public static boolean isSupportedFormat(String format)
+    {
+        return FORMAT_PNG.equals(format) || FORMAT_PDF.equals(format) || FORMAT_SVG.equals(format);
+    }
+
+    /**
+     * Finds the diagram files to convert
+     *
+     * @param arguments files, directories (searched recursively) or file name patterns using * and ?
+     * @return diagram files, in the order of arguments
+     */
+    public List<File> findFiles(List<String> arguments)
+    {
+        List<File> files = new ArrayList<File>();
+        for (String anArgument : arguments)
+        {
+            File file = new File(anArgument);
+            if (file.isDirectory())
+            {
+                addDiagramFiles(file, null, files);
+            }
+            else if (anArgument.indexOf('*') != -1 || anArgument.indexOf('?') != -1)
+            {
+                File directory = file.getAbsoluteFile().getParentFile();
+                addDiagramFiles(directory, toPattern(file.getName()), files);
+            }
+            else
+            {
+                files.add(file);
+            }
+        }
+        return files;
+    }
+
+    /**
+     * Converts files and prints a line per file, then a summary
+     *
+     * @param files
+     * @return number of files which couldn't be converted
+     */
+    public int convert(List<File> files)
+    {
+        long start = System.nanoTime();
+        ExecutorService executor = Executors.newFixedThreadPool(this.threadCount);
+        List<Future<Long>> results = new ArrayList<Future<Long>>();
+        for (final File aFile : files)
+        {
+            results.add(executor.submit(new Callable<Long>()
+            {
+                public Long call() throws Exception
+                {
+                    return convert(aFile);
+                }
+            }));
+        }
+        executor.shutdown();
+        int failureCount = 0;
+        long totalLength = 0;
+        for (int i = 0; i < files.size(); i++)
+        {
+            try
+            {
+                totalLength += results.get(i).get();
+            }
+            catch (ExecutionException e)
+            {
+                failureCount++;
+                report("FAILED " + files.get(i).getPath() + " : " + e.getCause());
+            }
+            catch (InterruptedException e)
+            {
+                Thread.currentThread().interrupt();
+                executor.shutdownNow();
+                return files.size() - i;
+            }
+        }
+        double seconds = (System.nanoTime() - start) / 1000000000.0;
+        int convertedCount = files.size() - failureCount;
+        report(String.format("%d file(s) converted, %d failed in %.2f s with %d thread(s) : %.1f files/s, %.2f MB/s read", convertedCount,
+                failureCount, seconds, this.threadCount, convertedCount / seconds, totalLength / 1024.0 / 1024.0 / seconds));
+        return failureCount;
+    }
+
+    /**
+     * Converts a file
+     *
+     * @param file
+     * @return size of the diagram file
+     * @throws IOException
+     */
+    private long convert(File file) throws IOException
+    {
+        long start = System.nanoTime();
+        IGraph graph;
+        InputStream in = new BufferedInputStream(new FileInputStream(file));
+        try
+        {
+            graph = getPersistenceService(file).read(in);
+        }
+        finally
+        {
+            in.close();
+        }
+        long readTime = System.nanoTime();
+        File outputFile = getOutputFile(file);
+        OutputStream out = new BufferedOutputStream(new FileOutputStream(outputFile));
+        try
+        {
+            if (FORMAT_PNG.equals(this.format))
+            {
+                FileExportService.exportToPng(graph, out);
+            }
+            else if (FORMAT_SVG.equals(this.format))
+            {
+                FileExportService.exportToSvg(graph, out);
+            }
+            else
+            {
+                FileExportService.exportToPdf(graph, out);
+            }
+        }
+        finally
+        {
+            out.close();
+        }
+        long end = System.nanoTime();
+        report(String.format("%s -> %s (read %d ms, render %d ms, %d KB)", file.getPath(), outputFile.getPath(),
+                (readTime - start) / 1000000, (end - readTime) / 1000000, outputFile.length() / 1024));
+        return file.length();
+    }
+
+    private IFilePersistenceService getPersistenceService(File file)
+    {
+        if (this.fileNamingService.isBinaryFile(file.getName()))
+        {
+            return this.binaryPersistenceService;
+        }
+        if (file.getName().toLowerCase().endsWith(DIAGRAM_EXTENSION))
+        {
+            // Files of Violet 0.16 and older versions
+            return this.legacyPersistenceService;
+        }
+        return this.filePersistenceService;
+    }
+
+    /**
+     * @param file diagram file
+     * @return converted file, named as the diagram file without its diagram extensions (package visible for tests)
+     */
+    File getOutputFile(File file)
+    {
+        String name = file.getName();
+        int extensionIndex = name.toLowerCase().indexOf(DIAGRAM_EXTENSION);
+        if (extensionIndex > 0)
+        {
+            name = name.substring(0, extensionIndex);
+        }
+        File directory = this.outputDirectory != null ? this.outputDirectory : file.getAbsoluteFile().getParentFile();
+        return new File(directory, name + "." + this.format);
+    }
+
+    /**
+     * Adds the diagram files of a directory and of its sub-directories
+     *
+     * @param directory
+     * @param namePattern pattern of the file names to add (null to add all diagram files)
+     * @param files where files are added
+     */
+    private void addDiagramFiles(File directory, Pattern namePattern, List<File> files)
+    {
+        File[] children = directory.listFiles();
+        if (children == null)
+        {
+            return;
+        }
+        Arrays.sort(children);
+        for (File aChild : children)
+        {
+            if (aChild.isDirectory())
+            {
+                if (namePattern == null)
+                {
+                    addDiagramFiles(aChild, null, files);
+                }
+                continue;
+            }
+            String name = aChild.getName();
+            boolean isAccepted = namePattern != null ? namePattern.matcher(name).matches() : isDiagramFile(name);
+            if (isAccepted)
+            {
+                files.add(aChild);
+            }
+        }
+    }
+
+    private boolean isDiagramFile(String filename)
+    {
+        String name = filename.toLowerCase();
+        return name.endsWith(DIAGRAM_EXTENSION + ".html") || name.endsWith(DIAGRAM_EXTENSION) || this.fileNamingService.isBinaryFile(name);
+    }
+
+    /**
+     * @param glob file name with * and ? wildcards
+     * @return matching regular expression
+     */
+    private static Pattern toPattern(String glob)
+    {
+        StringBuilder regex = new StringBuilder();
+        int literalStart = 0;
+        for (int i = 0; i < glob.length(); i++)
+        {
+            char c = glob.charAt(i);
+            if (c == '*' || c == '?')
+            {
+                if (i > literalStart)
+                {
+                    regex.append(Pattern.quote(glob.substring(literalStart, i)));
+                }
+                regex.append(c == '*' ? ".*" : ".");
+                literalStart = i + 1;
+            }
+        }
+        if (literalStart < glob.length())
+        {
+            regex.append(Pattern.quote(glob.substring(literalStart)));
+        }
+        return Pattern.compile(regex.toString());
+    }
+
+    /**
+     * Prints a line (lines of different threads are not mixed)
+     *
+     * @param line
+     */
+    private static synchronized void report(String line)
+    {
+        System.out.println(line);
+    }
+
+    public static final String FORMAT_PNG = "png";
+    public static final String FORMAT_PDF = "pdf";
+    public static final String FORMAT_SVG = "svg";
+
+    private static final String DIAGRAM_EXTENSION = ".violet";
+
+    private final String format;
+    private final File outputDirectory;
+    private final int threadCount;
+
+    @InjectedBean
+    private FileNamingService fileNamingService;
+
+    @InjectedBean
+    private IFilePersistenceService filePersistenceService;
+
+    private final IFilePersistenceService binaryPersistenceService = new BinaryPersistenceService();
+
+    private final IFilePersistenceService legacyPersistenceService = new StandardJavaFilePersistenceService();
+}
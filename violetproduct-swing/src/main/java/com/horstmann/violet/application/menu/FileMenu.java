@@ -177,12 +177,14 @@ public class FileMenu extends JMenu
         initFileExportToImageItem();
         initFileExportToClipboardItem();
         initFileExportToPdfItem();
+        initFileExportToSvgItem();
         initFileExportToJavaItem();
         initFileExportToPythonItem();
 
         this.fileExportMenu.add(this.fileExportToImageItem);
         this.fileExportMenu.add(this.fileExportToClipBoardItem);
         this.fileExportMenu.add(this.fileExportToPdfItem);
+        this.fileExportMenu.add(this.fileExportToSvgItem);
         // this.fileExportMenu.add(this.fileExportToJavaItem);
         // this.fileExportMenu.add(this.fileExportToPythonItem);
 
@@ -315,6 +317,40 @@ public class FileMenu extends JMenu
         });
     }
 
+    /**
+     * Init export to svg menu entry
+     */
+    private void initFileExportToSvgItem()
+    {
+        this.fileExportToSvgItem.addActionListener(new ActionListener()
+        {
+            @Override
+            public void actionPerformed(ActionEvent e)
+            {
+                IWorkspace workspace = (Workspace) mainFrame.getActiveWorkspace();
+                if (workspace != null)
+                {
+                    try
+                    {
+                        ExtensionFilter extensionFilter = fileNamingService.getSvgExtensionFilter();
+                        IFileWriter fileSaver = fileChooserService.chooseAndGetFileWriter(extensionFilter);
+                        OutputStream out = fileSaver.getOutputStream();
+                        if (null == out)
+                        {
+                            throw new IOException("Unable to get output stream for extension " + extensionFilter.getExtension());
+                        }
+                        workspace.getGraphFile().exportToSvg(out);
+                    }
+                    catch (IOException e1)
+                    {
+                        String message = MessageFormat.format(fileExportErrorMessage, e1.getMessage());
+                        JOptionPane.showMessageDialog(null, message, fileExportError, JOptionPane.ERROR_MESSAGE);
+                    }
+                }
+            }
+        });
+    }
+
     /**
      * Init 'save as' menu entry
      */
@@ -428,6 +464,7 @@ public class FileMenu extends JMenu
                             {
                                 graphFile.save();
                             }
+                            graphFile.waitForPendingSaves();
                             if (!graphFile.isSaveRequired())
                             {
                                 mainFrame.removeWorkspace(workspace);
@@ -730,6 +767,9 @@ public class FileMenu extends JMenu
     @ResourceBundleBean(key = "file.export_to_pdf")
     private JMenuItem fileExportToPdfItem;
 
+    @ResourceBundleBean(key = "file.export_to_svg")
+    private JMenuItem fileExportToSvgItem;
+
     @ResourceBundleBean(key = "file.export_to_image")
     private JMenuItem fileExportToImageItem;
 
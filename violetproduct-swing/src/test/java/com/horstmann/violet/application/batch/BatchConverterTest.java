@@ -0,0 +1,127 @@
+package com.horstmann.violet.application.batch;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import com.horstmann.violet.framework.file.persistence.IFilePersistenceService;
+import com.horstmann.violet.framework.file.persistence.XStreamBasedPersistenceService;
+import com.horstmann.violet.framework.injection.bean.ManiocFramework.BeanFactory;
+import com.horstmann.violet.framework.injection.bean.ManiocFramework.ManiocException;
+
+public class BatchConverterTest
+{
+    private File directory;
+
+    private BatchConverter converter;
+
+    @BeforeClass
+    public static void setUpBeans()
+    {
+        // Test classes share the bean factory when they run in the same JVM
+        try
+        {
+            BeanFactory.getFactory().register(IFilePersistenceService.class, new XStreamBasedPersistenceService());
+        }
+        catch (ManiocException e)
+        {
+            // Already registered by another test
+        }
+    }
+
+    @Before
+    public void setUp() throws IOException
+    {
+        directory = File.createTempFile("batch", "");
+        directory.delete();
+        createFile("a.violet.html");
+        createFile("b.violet");
+        createFile("notes.txt");
+        createFile("sub/c.violet.html");
+        createFile("sub/d.txt");
+        converter = new BatchConverter(BatchConverter.FORMAT_PNG, null, 1);
+    }
+
+    @After
+    public void tearDown()
+    {
+        delete(directory);
+    }
+
+    @Test
+    public void testFindFilesInDirectories()
+    {
+        assertEquals(Arrays.asList("a.violet.html", "b.violet", "sub/c.violet.html"), findFiles(directory.getPath()));
+    }
+
+    @Test
+    public void testFindFilesByPattern()
+    {
+        assertEquals(Arrays.asList("a.violet.html", "b.violet"), findFiles(new File(directory, "?.violet*").getPath()));
+        assertEquals(Arrays.asList("notes.txt"), findFiles(new File(directory, "*.txt").getPath()));
+        assertEquals(Arrays.asList("sub/c.violet.html"), findFiles(new File(directory, "sub/c.*.html").getPath()));
+    }
+
+    @Test
+    public void testFindFilesKeepsArgumentOrder()
+    {
+        assertEquals(Arrays.asList("notes.txt", "a.violet.html"),
+                findFiles(new File(directory, "notes.txt").getPath(), new File(directory, "a*").getPath()));
+    }
+
+    @Test
+    public void testOutputFileNames()
+    {
+        assertEquals(new File(directory, "x.png"), converter.getOutputFile(new File(directory, "x.violet.html")));
+        assertEquals(new File(directory, "y.png"), converter.getOutputFile(new File(directory, "y.violet")));
+        assertEquals(new File(directory, "z.class.png"), converter.getOutputFile(new File(directory, "z.class.violet.html")));
+
+        File outputDirectory = new File(directory, "out");
+        BatchConverter pdfConverter = new BatchConverter(BatchConverter.FORMAT_PDF, outputDirectory, 1);
+        assertEquals(new File(outputDirectory, "x.pdf"), pdfConverter.getOutputFile(new File(directory, "sub/x.violet.html")));
+    }
+
+    /**
+     * @return found files, relative to the test directory
+     */
+    private List<String> findFiles(String... arguments)
+    {
+        List<String> result = new ArrayList<String>();
+        String directoryPath = directory.getAbsolutePath() + File.separator;
+        for (File aFile : converter.findFiles(Arrays.asList(arguments)))
+        {
+            result.add(aFile.getAbsolutePath().substring(directoryPath.length()).replace(File.separatorChar, '/'));
+        }
+        return result;
+    }
+
+    private void createFile(String path) throws IOException
+    {
+        File file = new File(directory, path);
+        file.getParentFile().mkdirs();
+        file.createNewFile();
+    }
+
+    private static void delete(File file)
+    {
+        File[] children = file.listFiles();
+        if (children != null)
+        {
+            for (File aChild : children)
+            {
+                delete(aChild);
+            }
+        }
+        file.delete();
+    }
+
+}